@@ -0,0 +1,129 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Runs the benchmarks matching the given pattern with the GC profiler
+ * attached and reports ns/op and bytes/op per benchmark.
+ * </p>
+ * <p>
+ * The results are checked against {@code thresholds.properties}, which
+ * contains entries of the form {@code <Class>.<method>.ns} and
+ * {@code <Class>.<method>.bytes}. The process exits with {@code 1} if any
+ * benchmark exceeds one of its thresholds. The GC profiler reports the
+ * bytes allocated by JMH itself, spread across all operations, as a
+ * fraction of a byte per operation. Bytes are therefore allowed to exceed
+ * their threshold by {@value #BYTES_TOLERANCE}, which is far less than
+ * any object the code under test could allocate.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class BenchmarkGate {
+
+	private static final String THRESHOLDS = "thresholds.properties";
+
+	private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+	private static final double BYTES_TOLERANCE = 0.5d;
+
+	private BenchmarkGate() {
+		// prevent instantiation
+	}
+
+	public static void main(String[] args) throws RunnerException, IOException {
+		String include = (args.length > 0) ? args[0] : ".*";
+		Options options = new OptionsBuilder()
+			.include(include)
+			.addProfiler(GCProfiler.class)
+			.shouldFailOnError(true)
+			.build();
+		Collection<RunResult> results = new Runner(options).run();
+		Properties thresholds = loadThresholds();
+		List<String> violations = new ArrayList<String>();
+		System.out.println();
+		System.out.println(String.format(Locale.ROOT,
+			"%-60s %12s %12s", "Benchmark", "ns/op", "bytes/op"));
+		for (RunResult result : results) {
+			String name = name(result);
+			double nanos = result.getPrimaryResult().getScore();
+			Result<?> alloc = result.getSecondaryResults().get(ALLOC_RATE_NORM);
+			double bytes = (alloc == null) ? Double.NaN : alloc.getScore();
+			System.out.println(String.format(Locale.ROOT,
+				"%-60s %12.1f %12.1f", name, nanos, bytes));
+			check(thresholds, name + ".ns", nanos, 0d, violations);
+			check(thresholds, name + ".bytes", bytes, BYTES_TOLERANCE, violations);
+		}
+		System.out.println();
+		if (!violations.isEmpty()) {
+			for (String violation : violations) {
+				System.err.println("Threshold exceeded: " + violation);
+			}
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the simple class name and method of the benchmark, plus its
+	 * 		parameters if it has any
+	 */
+	private static String name(RunResult result) {
+		String benchmark = result.getParams().getBenchmark();
+		int idx = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1);
+		String name = benchmark.substring(idx + 1);
+		for (String key : result.getParams().getParamsKeys()) {
+			name += "." + key + "=" + result.getParams().getParam(key);
+		}
+		return name;
+	}
+
+	private static void check(
+			Properties thresholds,
+			String key,
+			double value,
+			double tolerance,
+			List<String> violations
+	) {
+		String threshold = thresholds.getProperty(key);
+		if (threshold == null) {
+			return;
+		}
+		double max = Double.parseDouble(threshold.trim());
+		if (Double.isNaN(value) || (value > max + tolerance)) {
+			violations.add(String.format(Locale.ROOT,
+				"%s = %.3f (threshold %.1f)", key, value, max));
+		}
+	}
+
+	private static Properties loadThresholds() throws IOException {
+		Properties thresholds = new Properties();
+		InputStream in =
+			BenchmarkGate.class.getClassLoader().getResourceAsStream(THRESHOLDS);
+		if (in == null) {
+			return thresholds;
+		}
+		try {
+			thresholds.load(in);
+		} finally {
+			in.close();
+		}
+		return thresholds;
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Runs the {@link ServerHandleBenchmark} in four forks: without the
+ * weaver, with the weaver attached but without any aspects, with the
+ * aspect woven in but turned off via {@code -Ddt.restlet.enabled=false}
+ * and with the aspect turned on.
+ * </p>
+ * <p>
+ * With the {@link KillSwitch} off the advice should fold away entirely.
+ * Merely attaching a Java agent already costs a few nanoseconds, which is
+ * why the disabled run is compared against the run with the weaver
+ * attached. The process exits with {@code 1} if even the lower bound of
+ * the confidence interval of the disabled run is slower than that run by
+ * more than {@code -Djmh.tolerance} percent (default 5).
+ * </p>
+ * <p>
+ * Run via {@code mvn -Pjmh test-compile exec:exec@killswitch}, which
+ * passes the location of the weaver via {@code -Djmh.weaver}.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class KillSwitchBenchmark {
+
+	/**
+	 * Points the weaver to a configuration which does not exist, so it
+	 * does not register any aspect
+	 */
+	private static final String NO_ASPECTS =
+			"-Dorg.aspectj.weaver.loadtime.configuration=file:/dev/null/aop.xml";
+
+	private KillSwitchBenchmark() {
+		// prevent instantiation
+	}
+
+	public static void main(String[] args) throws Exception {
+		String weaver = System.getProperty("jmh.weaver");
+		if ((weaver == null) || !new File(weaver).isFile()) {
+			throw new IllegalArgumentException(
+				"-Djmh.weaver needs to point to aspectjweaver.jar");
+		}
+		double tolerance = Double.parseDouble(
+			System.getProperty("jmh.tolerance", "5")
+		) / 100d;
+		Result<?> plain = run();
+		Result<?> agent = run(woven(weaver, NO_ASPECTS));
+		Result<?> disabled = run(woven(weaver, "-Ddt.restlet.enabled=false"));
+		Result<?> enabled = run(woven(weaver, "-Ddt.restlet.enabled=true"));
+
+		System.out.println();
+		System.out.println(String.format(Locale.ROOT,
+			"%-10s %12s %12s", "mode", "ns/op", "error"));
+		print("plain", plain);
+		print("agent", agent);
+		print("disabled", disabled);
+		print("enabled", enabled);
+		System.out.println();
+
+		double limit = agent.getScore() * (1d + tolerance);
+		double lowerBound = disabled.getScore() - error(disabled);
+		if (lowerBound > limit) {
+			System.err.println(String.format(Locale.ROOT,
+				"Disabled instrumentation costs at least %.1f ns/op, limit %.1f ns/op",
+				lowerBound, limit));
+			System.exit(1);
+		}
+	}
+
+	private static String[] woven(String weaver, String setting) {
+		List<String> jvmArgs = new ArrayList<String>();
+		jvmArgs.add("-javaagent:" + weaver);
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			// required by the weaver to define closure classes
+			jvmArgs.add("--add-opens=java.base/java.lang=ALL-UNNAMED");
+		}
+		jvmArgs.add(setting);
+		return jvmArgs.toArray(new String[jvmArgs.size()]);
+	}
+
+	private static Result<?> run(String... jvmArgs) throws Exception {
+		Options options = new OptionsBuilder()
+			.include(ServerHandleBenchmark.class.getName())
+			.jvmArgsAppend(jvmArgs)
+			.shouldFailOnError(true)
+			.build();
+		RunResult result = new Runner(options).runSingle();
+		return result.getPrimaryResult();
+	}
+
+	private static double error(Result<?> result) {
+		double error = result.getScoreError();
+		return Double.isNaN(error) ? 0d : error;
+	}
+
+	private static void print(String mode, Result<?> result) {
+		System.out.println(String.format(Locale.ROOT,
+			"%-10s %12.1f %12.1f", mode, result.getScore(), error(result)));
+	}
+
+}
@@ -0,0 +1,291 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Router;
+
+/**
+ * <p>
+ * Starts a Restlet {@link Component} on a loopback port and drives it with
+ * a number of client threads for a fixed amount of time. Prints a single
+ * line starting with {@value #RESULT} which contains throughput and
+ * latency percentiles, which is what {@link ScalabilityLoadTest} parses.
+ * </p>
+ * <p>
+ * Whether {@code RestletAspect} is woven in is decided by the JVM running
+ * this class, i.e. whether the AspectJ weaver agent has been specified.
+ * </p>
+ * <p>
+ * Configured via system properties:
+ * </p>
+ * <ul>
+ * <li>{@code load.threads} - number of client threads (default 4)</li>
+ * <li>{@code load.connections} - maximum keep-alive connections
+ * 		(default: number of client threads)</li>
+ * <li>{@code load.warmup} - warmup in seconds (default 5)</li>
+ * <li>{@code load.duration} - measurement in seconds (default 10)</li>
+ * <li>{@code load.workMicros} - busy work per request in microseconds
+ * 		(default 0)</li>
+ * <li>{@code load.cpuMicros} - CPU time consumed per request in
+ * 		microseconds (default 0). Unlike {@code load.workMicros} this takes
+ * 		longer once threads compete for the cores, as business logic
+ * 		would.</li>
+ * <li>{@code load.serverThreads} - maximum threads of the server
+ * 		connector (default 64)</li>
+ * <li>{@code load.backoffMillis} - how long a client thread pauses after
+ * 		a {@code 503} response, as a client honoring {@code Retry-After}
+ * 		would (default 0)</li>
+ * </ul>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class LoopbackLoad {
+
+	static final String RESULT = "RESULT";
+
+	private static final long WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(
+		Long.getLong("load.workMicros", 0L)
+	);
+
+	private static final long CPU_NANOS = TimeUnit.MICROSECONDS.toNanos(
+		Long.getLong("load.cpuMicros", 0L)
+	);
+
+	private static final long BACKOFF_MILLIS = Long.getLong("load.backoffMillis", 0L);
+
+	private LoopbackLoad() {
+		// prevent instantiation
+	}
+
+	/**
+	 * The resource under test. Optionally spins for a configured amount of
+	 * time or CPU time in order to simulate business logic.
+	 */
+	public static final class ItemResource extends ServerResource {
+
+		@Get("txt")
+		public String represent() {
+			if (WORK_NANOS > 0) {
+				long end = System.nanoTime() + WORK_NANOS;
+				while (System.nanoTime() < end) {
+					// busy work
+				}
+			}
+			if (CPU_NANOS > 0) {
+				ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+				long end = threads.getCurrentThreadCpuTime() + CPU_NANOS;
+				while (threads.getCurrentThreadCpuTime() < end) {
+					// busy work
+				}
+			}
+			return "item " + getAttribute("id");
+		}
+
+	}
+
+	/**
+	 * Starts a component serving {@code /api/items/{id}} on an ephemeral
+	 * loopback port
+	 *
+	 * @return the started component
+	 */
+	static Component start() throws Exception {
+		// avoid Nagle / delayed ACK stalls between response head and body
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		Component component = new Component();
+		component.getLogService().setEnabled(false);
+		Server server = component.getServers().add(Protocol.HTTP, "127.0.0.1", 0);
+		server.getContext().getParameters().add("maxThreads",
+			System.getProperty("load.serverThreads", "64"));
+		component.getDefaultHost().attach("/api", new Application() {
+			@Override
+			public Restlet createInboundRoot() {
+				Router router = new Router(getContext());
+				router.attach("/items/{id}", ItemResource.class);
+				return router;
+			}
+		});
+		component.start();
+		return component;
+	}
+
+	/**
+	 * @return the port the first server of the given component listens on
+	 */
+	static int port(Component component) {
+		return component.getServers().get(0).getEphemeralPort();
+	}
+
+	/**
+	 * Issues a GET request and reads the response body completely, which
+	 * allows the connection to be reused
+	 *
+	 * @return the status code of the response
+	 */
+	static int get(URL url, byte[] buffer) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		int status = connection.getResponseCode();
+		InputStream in = (status < 400)
+				? connection.getInputStream()
+				: connection.getErrorStream();
+		if (in != null) {
+			try {
+				while (in.read(buffer) >= 0) {
+					// drain
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return status;
+	}
+
+	/**
+	 * Collects the latencies of the requests issued by a single client
+	 * thread during the measurement phase
+	 */
+	static final class Recorder {
+
+		long[] latencies = new long[1 << 16];
+		int count = 0;
+		int errors = 0;
+
+		void record(long nanos) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count << 1);
+			}
+			latencies[count++] = nanos;
+		}
+
+	}
+
+	/**
+	 * @return all recorded latencies, sorted
+	 */
+	static long[] merge(Recorder[] recorders) {
+		int total = 0;
+		for (Recorder recorder : recorders) {
+			total += recorder.count;
+		}
+		long[] result = new long[total];
+		int pos = 0;
+		for (Recorder recorder : recorders) {
+			System.arraycopy(recorder.latencies, 0, result, pos, recorder.count);
+			pos += recorder.count;
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return the given percentile of the given sorted latencies in
+	 * 		microseconds
+	 */
+	static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return Double.NaN;
+		}
+		int idx = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1000d;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final int threads = Integer.getInteger("load.threads", 4);
+		int connections = Integer.getInteger("load.connections", threads);
+		System.setProperty("http.maxConnections", String.valueOf(connections));
+		long warmupNanos = TimeUnit.SECONDS.toNanos(Long.getLong("load.warmup", 5L));
+		long durationNanos = TimeUnit.SECONDS.toNanos(Long.getLong("load.duration", 10L));
+
+		Component component = start();
+		try {
+			final URL url = new URL("http://127.0.0.1:" + port(component) + "/api/items/");
+			final long measureStart = System.nanoTime() + warmupNanos;
+			final long measureEnd = measureStart + durationNanos;
+			final Recorder[] recorders = new Recorder[threads];
+			final CountDownLatch done = new CountDownLatch(threads);
+			for (int i = 0; i < threads; i++) {
+				final Recorder recorder = recorders[i] = new Recorder();
+				final int clientId = i;
+				Thread client = new Thread("load-client-" + i) {
+					@Override
+					public void run() {
+						byte[] buffer = new byte[4096];
+						try {
+							long n = 0;
+							while (true) {
+								URL itemUrl = new URL(url, String.valueOf(clientId * 1000 + (n++ % 1000)));
+								long start = System.nanoTime();
+								if (start >= measureEnd) {
+									return;
+								}
+								int status;
+								try {
+									status = get(itemUrl, buffer);
+								} catch (IOException e) {
+									status = -1;
+								}
+								long end = System.nanoTime();
+								if (start >= measureStart) {
+									if (status == 200) {
+										recorder.record(end - start);
+									} else {
+										recorder.errors++;
+									}
+								}
+								if ((status == 503) && (BACKOFF_MILLIS > 0)) {
+									try {
+										Thread.sleep(BACKOFF_MILLIS);
+									} catch (InterruptedException e) {
+										return;
+									}
+								}
+							}
+						} catch (IOException e) {
+							e.printStackTrace(System.err);
+						} finally {
+							done.countDown();
+						}
+					}
+				};
+				client.setDaemon(true);
+				client.start();
+			}
+			done.await();
+			long[] sorted = merge(recorders);
+			int errors = 0;
+			for (Recorder recorder : recorders) {
+				errors += recorder.errors;
+			}
+			double seconds = durationNanos / 1e9d;
+			System.out.println(String.format(Locale.ROOT,
+				"%s throughput=%.1f p50=%.1f p99=%.1f p999=%.1f errors=%d",
+				RESULT,
+				sorted.length / seconds,
+				percentile(sorted, 50),
+				percentile(sorted, 99),
+				percentile(sorted, 99.9),
+				errors
+			));
+		} finally {
+			component.stop();
+		}
+	}
+
+}
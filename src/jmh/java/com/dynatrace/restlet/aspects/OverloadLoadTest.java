@@ -0,0 +1,103 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * Overloads a Restlet server woven with {@code RestletAspect} via
+ * {@link LoopbackLoad}, once without and once with the
+ * {@link ConcurrencyLimiter} enabled, and compares the latency of the
+ * requests which got answered with {@code 200}. Every request consumes
+ * CPU time, so without the limiter all requests slow down the more of
+ * them execute concurrently. With the limiter the excess gets rejected
+ * with {@code 503} instead, which keeps the latency of the accepted
+ * requests bounded.
+ * </p>
+ * <p>
+ * Run via {@code mvn -Pjmh test-compile exec:exec@overload}. Next to the
+ * properties understood by {@link LoopbackLoad}, which are passed on to the
+ * forked JVMs, {@code load.weaver} needs to point to
+ * {@code aspectjweaver.jar}. Without further properties 64 client threads
+ * request 2 ms of CPU time each and pause for 100 ms after a rejection.
+ * Exits with {@code 1} if the p99 of the accepted requests does not
+ * improve with the limiter enabled.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class OverloadLoadTest {
+
+	private static final String[] FORWARDED = {
+		"load.connections", "load.warmup", "load.duration", "load.workMicros",
+		"load.serverThreads"
+	};
+
+	private OverloadLoadTest() {
+		// prevent instantiation
+	}
+
+	public static void main(String[] args) throws Exception {
+		String weaver = System.getProperty("load.weaver");
+		if ((weaver == null) || !new File(weaver).isFile()) {
+			throw new IllegalArgumentException(
+				"-Dload.weaver needs to point to aspectjweaver.jar");
+		}
+		Map<String, Double> unlimited = run(weaver, false);
+		Map<String, Double> limited = run(weaver, true);
+		System.out.println(String.format(Locale.ROOT,
+			"%9s | %12s %10s %10s %10s",
+			"limiter", "accepted/s", "p50 us", "p99 us", "rejected"));
+		print("off", unlimited);
+		print("on", limited);
+		if (!(limited.get("p99") < unlimited.get("p99"))) {
+			System.out.println("FAILED: the limiter did not bound the p99 latency");
+			System.exit(1);
+		}
+	}
+
+	private static void print(String mode, Map<String, Double> result) {
+		System.out.println(String.format(Locale.ROOT,
+			"%9s | %12.1f %10.1f %10.1f %10.0f",
+			mode, result.get("throughput"), result.get("p50"),
+			result.get("p99"), result.get("errors")));
+	}
+
+	/**
+	 * Runs {@link LoopbackLoad} woven in a forked JVM
+	 *
+	 * @param weaver the path to the AspectJ weaver
+	 * @param limited whether to enable the {@link ConcurrencyLimiter}
+	 * @return the values parsed from the result line
+	 */
+	private static Map<String, Double> run(String weaver, boolean limited)
+			throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-javaagent:" + weaver);
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			// required by the weaver to define closure classes
+			command.add("--add-opens=java.base/java.lang=ALL-UNNAMED");
+		}
+		command.add("-Ddt.restlet.limit.enabled=" + limited);
+		command.add("-Dload.threads=" + Integer.getInteger("load.threads", 64));
+		command.add("-Dload.cpuMicros=" + Long.getLong("load.cpuMicros", 2000L));
+		command.add("-Dload.backoffMillis=" + Long.getLong("load.backoffMillis", 100L));
+		for (String key : FORWARDED) {
+			String value = System.getProperty(key);
+			if (value != null) {
+				command.add("-D" + key + "=" + value);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LoopbackLoad.class.getName());
+		return ScalabilityLoadTest.execute(command,
+			"limiter " + (limited ? "on" : "off"));
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link PathNormalizer} for typical paths of applications
+ * without {@code Router} templates, once their normalized route has been
+ * built.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathNormalizerBenchmark {
+
+	private PathNormalizer normalizer;
+	private PrefixTrie rules;
+
+	/**
+	 * Not constants, so the JIT compiler cannot fold them
+	 */
+	private String numericPath;
+	private String uuidPath;
+	private String hashPath;
+	private String plainPath;
+	private String prefixPath;
+
+	@Setup
+	public void setup() {
+		Map<String, String> prefixes = new HashMap<String, String>();
+		prefixes.put("/static", "/static/*");
+		prefixes.put("/api/admin", "/api/admin/*");
+		this.rules = PrefixTrie.of(prefixes);
+		this.normalizer = new PathNormalizer(1024);
+		this.numericPath = new String("/api/users/42/orders/1337");
+		this.uuidPath = new String("/api/sessions/123e4567-e89b-12d3-a456-426614174000");
+		this.hashPath = new String("/api/blobs/d41d8cd98f00b204e9800998ecf8427e");
+		this.plainPath = new String("/api/users/me/settings");
+		this.prefixPath = new String("/static/css/main.css");
+	}
+
+	@Benchmark
+	public String numeric() {
+		return normalizer.normalize(numericPath, rules);
+	}
+
+	@Benchmark
+	public String uuid() {
+		return normalizer.normalize(uuidPath, rules);
+	}
+
+	@Benchmark
+	public String hash() {
+		return normalizer.normalize(hashPath, rules);
+	}
+
+	/**
+	 * A path without any segment to collapse, returned as it is
+	 */
+	@Benchmark
+	public String plain() {
+		return normalizer.normalize(plainPath, rules);
+	}
+
+	@Benchmark
+	public String prefix() {
+		return normalizer.normalize(prefixPath, rules);
+	}
+
+}
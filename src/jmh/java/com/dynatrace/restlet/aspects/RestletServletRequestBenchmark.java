@@ -0,0 +1,122 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.restlet.Request;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.engine.header.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.util.Series;
+
+/**
+ * Measures the methods of {@link RestletServletRequest} queried by the
+ * Dynatrace Servlet Sensor against a Restlet {@link Request} populated the
+ * same way the internal server connector populates it.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RestletServletRequestBenchmark {
+
+	private RestletServletRequest servletRequest;
+
+	@Setup
+	public void setup() {
+		Request request = new Request(
+			Method.GET,
+			"http://localhost:8182/api/users/42?page=2&size=20"
+		);
+		request.setProtocol(Protocol.HTTP);
+		request.getClientInfo().setAddress("10.0.0.42");
+		Series<Header> headers = new Series<Header>(Header.class);
+		headers.add("Host", "localhost:8182");
+		headers.add("User-agent", "Java/1.7.0");
+		headers.add("Accept", "application/json");
+		headers.add("Accept-encoding", "gzip");
+		headers.add("Connection", "keep-alive");
+		headers.add("X-dynatrace", "FW4;-1;1;2;3;0;0");
+		request.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS, headers);
+		request.getAttributes().put("id", "42");
+		this.servletRequest = new RestletServletRequest(request);
+	}
+
+	@Benchmark
+	public String getMethod() {
+		return servletRequest.getMethod();
+	}
+
+	@Benchmark
+	public String getRequestURI() {
+		return servletRequest.getRequestURI();
+	}
+
+	@Benchmark
+	public String getQueryString() {
+		return servletRequest.getQueryString();
+	}
+
+	@Benchmark
+	public String getProtocol() {
+		return servletRequest.getProtocol();
+	}
+
+	@Benchmark
+	public String getRemoteAddr() {
+		return servletRequest.getRemoteAddr();
+	}
+
+	/**
+	 * An exact match on a regular header
+	 */
+	@Benchmark
+	public String getHeader() {
+		return servletRequest.getHeader("Accept");
+	}
+
+	/**
+	 * The Dynatrace header as queried by the sensor, which only matches
+	 * case insensitive
+	 */
+	@Benchmark
+	public String getHeaderDynatrace() {
+		return servletRequest.getHeader("x-dynaTrace");
+	}
+
+	@Benchmark
+	public void getHeaderNames(Blackhole blackhole) {
+		Enumeration<String> names = servletRequest.getHeaderNames();
+		while (names.hasMoreElements()) {
+			blackhole.consume(names.nextElement());
+		}
+	}
+
+	@Benchmark
+	public String getParameter() {
+		return servletRequest.getParameter("size");
+	}
+
+	@Benchmark
+	public Object getAttribute() {
+		return servletRequest.getAttribute("id");
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * Measures how throughput and latency of a Restlet server scale with the
+ * number of cores, once plain and once woven with {@code RestletAspect}.
+ * For every core count and mode a separate JVM runs {@link LoopbackLoad},
+ * restricted to that many cores via {@code taskset} (if available) and
+ * {@code -XX:ActiveProcessorCount}.
+ * </p>
+ * <p>
+ * Run via {@code mvn -Pjmh test-compile exec:exec@loadtest}. Next to the
+ * properties understood by {@link LoopbackLoad}, which are passed on to the
+ * forked JVMs, the following system properties are supported:
+ * </p>
+ * <ul>
+ * <li>{@code load.cores} - comma separated core counts to sweep
+ * 		(default 1, 2, 4, ... up to the available processors)</li>
+ * <li>{@code load.threadsPerCore} - client threads per core, used if
+ * 		{@code load.threads} has not been specified (default 2)</li>
+ * <li>{@code load.weaver} - path to {@code aspectjweaver.jar}, required for
+ * 		the woven runs</li>
+ * </ul>
+ * <p>
+ * A throughput or p99 gap between the two modes which widens with the
+ * number of cores points at shared state within the instrumentation.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ScalabilityLoadTest {
+
+	private static final String[] FORWARDED = {
+		"load.threads", "load.connections", "load.warmup", "load.duration",
+		"load.workMicros", "load.cpuMicros", "load.serverThreads"
+	};
+
+	private ScalabilityLoadTest() {
+		// prevent instantiation
+	}
+
+	public static void main(String[] args) throws Exception {
+		String weaver = System.getProperty("load.weaver");
+		if ((weaver == null) || !new File(weaver).isFile()) {
+			throw new IllegalArgumentException(
+				"-Dload.weaver needs to point to aspectjweaver.jar");
+		}
+		List<Integer> cores = cores();
+		boolean taskset = new File("/usr/bin/taskset").canExecute();
+		if (!taskset) {
+			System.out.println("taskset not available, only limiting "
+				+ "-XX:ActiveProcessorCount");
+		}
+		System.out.println(String.format(Locale.ROOT,
+			"%5s | %12s %10s | %12s %10s | %9s %9s",
+			"cores", "plain req/s", "p99 us", "woven req/s", "p99 us",
+			"tput gap", "p99 gap"));
+		for (int n : cores) {
+			Map<String, Double> plain = run(n, null, taskset);
+			Map<String, Double> woven = run(n, weaver, taskset);
+			double plainTput = plain.get("throughput");
+			double wovenTput = woven.get("throughput");
+			double plainP99 = plain.get("p99");
+			double wovenP99 = woven.get("p99");
+			System.out.println(String.format(Locale.ROOT,
+				"%5d | %12.1f %10.1f | %12.1f %10.1f | %8.1f%% %8.1f%%",
+				n, plainTput, plainP99, wovenTput, wovenP99,
+				100d * (plainTput - wovenTput) / plainTput,
+				100d * (wovenP99 - plainP99) / plainP99));
+		}
+	}
+
+	private static List<Integer> cores() {
+		List<Integer> result = new ArrayList<Integer>();
+		String spec = System.getProperty("load.cores");
+		if ((spec != null) && (spec.trim().length() > 0)) {
+			for (String token : spec.split(",")) {
+				result.add(Integer.parseInt(token.trim()));
+			}
+			return result;
+		}
+		int max = Runtime.getRuntime().availableProcessors();
+		for (int n = 1; n < max; n <<= 1) {
+			result.add(n);
+		}
+		result.add(max);
+		return result;
+	}
+
+	/**
+	 * Runs {@link LoopbackLoad} in a forked JVM
+	 *
+	 * @param cores the number of cores to restrict the JVM to
+	 * @param weaver the path to the AspectJ weaver or {@code null} for a
+	 * 		plain run
+	 * @param taskset whether to pin the JVM via {@code taskset}
+	 * @return the values parsed from the result line
+	 */
+	private static Map<String, Double> run(int cores, String weaver, boolean taskset)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		if (taskset) {
+			command.add("taskset");
+			command.add("-c");
+			command.add("0-" + (cores - 1));
+		}
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-XX:ActiveProcessorCount=" + cores);
+		if (weaver != null) {
+			command.add("-javaagent:" + weaver);
+			if (!System.getProperty("java.specification.version").startsWith("1.")) {
+				// required by the weaver to define closure classes
+				command.add("--add-opens=java.base/java.lang=ALL-UNNAMED");
+			}
+		}
+		int threads = Integer.getInteger("load.threads",
+			cores * Integer.getInteger("load.threadsPerCore", 2));
+		command.add("-Dload.threads=" + threads);
+		for (String key : FORWARDED) {
+			String value = System.getProperty(key);
+			if ((value != null) && !"load.threads".equals(key)) {
+				command.add("-D" + key + "=" + value);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LoopbackLoad.class.getName());
+		return execute(command,
+			cores + " cores (" + ((weaver == null) ? "plain" : "woven") + ")");
+	}
+
+	/**
+	 * Runs the given command and parses the {@link LoopbackLoad} result line
+	 *
+	 * @param command the command forking a JVM running {@link LoopbackLoad}
+	 * @param label describes the run in case it fails
+	 * @return the values parsed from the result line
+	 */
+	static Map<String, Double> execute(List<String> command, String label)
+			throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		Map<String, Double> result = new HashMap<String, Double>();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(process.getInputStream(), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.startsWith(LoopbackLoad.RESULT)) {
+					continue;
+				}
+				for (String token : line.substring(LoopbackLoad.RESULT.length()).trim().split(" ")) {
+					int idx = token.indexOf('=');
+					result.put(token.substring(0, idx), Double.valueOf(token.substring(idx + 1)));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if ((process.waitFor() != 0) || result.isEmpty()) {
+			throw new IllegalStateException("Load run with " + label + " failed");
+		}
+		return result;
+	}
+
+}
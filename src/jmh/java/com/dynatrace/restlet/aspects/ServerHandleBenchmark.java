@@ -0,0 +1,75 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+
+/**
+ * <p>
+ * Measures a single invocation of {@link Server#handle(Request, Response)}
+ * passing the request on to a trivial {@link Restlet}, without any network
+ * I/O involved.
+ * </p>
+ * <p>
+ * Whether {@code RestletAspect} is woven in and whether it is turned off
+ * is decided by the JVM arguments of the fork, see
+ * {@link KillSwitchBenchmark}.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ServerHandleBenchmark {
+
+	private Server server;
+	private Request request;
+	private Response response;
+
+	@Setup
+	public void setup() throws Exception {
+		server = new Server(Protocol.HTTP, "127.0.0.1", 0, new Restlet() {
+			@Override
+			public void handle(Request request, Response response) {
+				response.setStatus(Status.SUCCESS_OK);
+			}
+		});
+		server.start();
+		request = new Request(Method.GET, "http://127.0.0.1/api/items/42");
+		response = new Response(request);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Benchmark
+	public Response handle() {
+		server.handle(request, response);
+		return response;
+	}
+
+}
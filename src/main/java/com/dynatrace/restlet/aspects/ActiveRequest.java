@@ -0,0 +1,363 @@
+package com.dynatrace.restlet.aspects;
+
+import java.lang.ref.WeakReference;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Reference;
+
+/**
+ * A reusable, per thread record of the request currently being handled by
+ * that thread. Every thread which ever executed {@code Server.handle} owns
+ * exactly one instance, which is linked once into the
+ * {@link InFlightRegistry} and afterwards only flipped between idle and
+ * active, so entering and leaving a request does not allocate. The same
+ * instance is handed to the {@link TelemetryBackend}s as the
+ * {@link RequestDescriptor} of the request.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class ActiveRequest implements RequestDescriptor {
+
+	/**
+	 * Marks a slot which is currently not executing any request
+	 */
+	static final long IDLE = Long.MIN_VALUE;
+
+	/**
+	 * The owning thread. Only weakly referenced in order not to keep
+	 * terminated pool threads alive through the registry.
+	 */
+	private final WeakReference<Thread> thread;
+	private final long threadId;
+	private final String threadName;
+
+	/**
+	 * The next slot within the same stripe of the {@link InFlightRegistry}.
+	 * Written once on linking and afterwards only by the (single) pruning
+	 * reader.
+	 */
+	volatile ActiveRequest next;
+
+	/**
+	 * The number of nested {@code Server.handle} invocations. Only accessed
+	 * by the owning thread.
+	 */
+	int depth = 0;
+
+	/**
+	 * The state of the sampling done by {@link RequestCosts}. Only accessed
+	 * by the owning thread.
+	 */
+	int costCountdown = 0;
+	boolean costSampled = false;
+	long cpuStartNanos = 0L;
+	long allocatedStartBytes = 0L;
+
+	/**
+	 * The settings in effect for the current request. Only accessed by the
+	 * owning thread.
+	 */
+	InstrumentationConfig config = null;
+
+	/**
+	 * The route, key and time to live of a request whose response should
+	 * be stored by the {@link ResponseCache}. Only accessed by the owning
+	 * thread.
+	 */
+	String cacheRoute = null;
+	String cacheKey = null;
+	long cacheTtlNanos = 0L;
+
+	/**
+	 * Set while the current request executes on behalf of identical
+	 * requests waiting within the {@link Coalescer}. Only accessed by the
+	 * owning thread.
+	 */
+	Coalescer.Flight flight = null;
+	String flightKey = null;
+
+	/**
+	 * The server and the body bytes of the exchange the owning thread is
+	 * handling for the internal connector, counted by {@link WireBytes}.
+	 * Only accessed by the owning thread.
+	 */
+	WireBytes.Server wire = null;
+	long wireBodyIn = 0L;
+	long wireBodyOut = 0L;
+
+	/**
+	 * The server which received the current request, set once it has been
+	 * admitted. Only written by the owning thread.
+	 */
+	ServerConnectors.Connector connector = null;
+
+	/**
+	 * The body of the current request once its stream or channel has been
+	 * handed out, timed by {@link Uploads}, and the number of nested
+	 * invocations obtaining it. Only written by the owning thread.
+	 */
+	Uploads.Body upload = null;
+	int uploadDepth = 0;
+
+	/**
+	 * The state of the sampled self-measurement done by {@link Overhead}.
+	 * Only accessed by the owning thread.
+	 */
+	int overheadCountdown = 0;
+	boolean overheadTimed = false;
+	long overheadMark = 0L;
+	long aspectNanos = 0L;
+	long servletCreateNanos = 0L;
+	long servletDispatchNanos = 0L;
+
+	private Request request = null;
+	private Response response = null;
+	private Throwable failure = null;
+	private String path = null;
+	/**
+	 * The route of the current request, which is read by the registry from
+	 * other threads. Matching a route happens after {@link #startNanos} has
+	 * been published, which is why these are volatile themselves.
+	 */
+	private volatile String template = null;
+	private volatile String normalizedPath = null;
+	private long startMillis = 0L;
+	private long queueWaitNanos = 0L;
+	private boolean excluded = false;
+
+	/**
+	 * The {@link System#nanoTime()} when the task of the worker thread
+	 * has been handed over to the connector's thread pool or {@link #IDLE}
+	 * if unknown. Only accessed by the owning thread.
+	 */
+	private long enqueuedNanos = IDLE;
+
+	/**
+	 * The {@link System#nanoTime()} when the current request started or
+	 * {@link #IDLE}. Being volatile this field publishes all other fields
+	 * to readers of the registry.
+	 */
+	private volatile long startNanos = IDLE;
+
+	/**
+	 * c'tor
+	 *
+	 * @param thread the thread owning this slot
+	 */
+	ActiveRequest(Thread thread) {
+		this.thread = new WeakReference<Thread>(thread);
+		this.threadId = thread.getId();
+		this.threadName = thread.getName();
+	}
+
+	/**
+	 * Marks this slot as executing the given request
+	 *
+	 * @param request the request object
+	 * @param response the response object
+	 */
+	void start(Request request, Response response) {
+		this.request = request;
+		this.response = response;
+		this.failure = null;
+		this.path = path(request);
+		this.template = null;
+		this.normalizedPath = null;
+		this.excluded = false;
+		this.startMillis = System.currentTimeMillis();
+		long now = System.nanoTime();
+		this.queueWaitNanos = (enqueuedNanos == IDLE) ? 0L : now - enqueuedNanos;
+		this.startNanos = now;
+	}
+
+	/**
+	 * Marks this slot as idle again
+	 */
+	void stop() {
+		this.startNanos = IDLE;
+		this.config = null;
+		this.cacheRoute = null;
+		this.cacheKey = null;
+		this.connector = null;
+		this.upload = null;
+		this.request = null;
+		this.response = null;
+		this.failure = null;
+		// idle slots of threads nobody reuses must not retain strings
+		this.path = null;
+		this.template = null;
+		this.normalizedPath = null;
+	}
+
+	/**
+	 * @param enqueuedNanos the {@link System#nanoTime()} when the task
+	 * 		currently executed by the owning thread has been queued or
+	 * 		{@link #IDLE} once the task has been executed
+	 */
+	void enqueued(long enqueuedNanos) {
+		this.enqueuedNanos = enqueuedNanos;
+	}
+
+	/**
+	 * @return {@code true} if the owning thread is executing the outermost
+	 * 		of possibly nested {@code Server.handle} invocations
+	 */
+	boolean isOutermost() {
+		return depth == 1;
+	}
+
+	/**
+	 * @param failure the exception which escaped {@code Server.handle}
+	 */
+	void failed(Throwable failure) {
+		this.failure = failure;
+	}
+
+	/**
+	 * @param request the request object
+	 * @return the path of the requested resource or {@code null} if the
+	 * 		request does not carry a resource reference
+	 */
+	private static String path(Request request) {
+		if (request == null) {
+			return null;
+		}
+		Reference ref = request.getResourceRef();
+		if (ref == null) {
+			return null;
+		}
+		return ref.getPath();
+	}
+
+	/**
+	 * Appends the pattern of a matched {@code TemplateRoute}. Nested
+	 * routers (virtual host, application, sub resources) each consume a
+	 * part of the remaining reference, which is why the patterns are
+	 * concatenated, interned by the {@link RouteTemplates}.
+	 *
+	 * @param pattern the URI template pattern of the matched route
+	 */
+	void routed(String pattern) {
+		if (pattern == null) {
+			return;
+		}
+		String current = this.template;
+		this.template = (current == null) ? pattern : RouteTemplates.INSTANCE.join(current, pattern);
+	}
+
+	/**
+	 * Excludes the current request from the metrics recorded by the aspect,
+	 * e.g. because it is a scrape of those metrics
+	 */
+	void exclude() {
+		this.excluded = true;
+	}
+
+	/**
+	 * @return {@code true} if the current request should not be accounted
+	 * 		for within the metrics recorded by the aspect
+	 */
+	boolean isExcluded() {
+		return excluded;
+	}
+
+	/**
+	 * @return {@code true} if the owning thread is currently executing a
+	 * 		request
+	 */
+	boolean isActive() {
+		return startNanos != IDLE;
+	}
+
+	/**
+	 * @return {@code true} if the owning thread has terminated and this
+	 * 		slot is not executing a request anymore
+	 */
+	boolean isDead() {
+		Thread t = thread.get();
+		return ((t == null) || !t.isAlive()) && !isActive();
+	}
+
+	/**
+	 * @return the matched route template or, in case no
+	 * 		{@code TemplateRoute} has been matched (yet), the request path,
+	 * 		normalized by the {@link PathNormalizer} if configured so
+	 */
+	@Override
+	public String getRoute() {
+		String t = this.template;
+		if (t != null) {
+			return t;
+		}
+		String normalized = this.normalizedPath;
+		if (normalized != null) {
+			return normalized;
+		}
+		InstrumentationConfig c = this.config;
+		if ((c == null) || !c.isPathNormalized()) {
+			return this.path;
+		}
+		normalized = PathNormalizer.INSTANCE.normalize(this.path, c.getPrefixRules());
+		if (Thread.currentThread().getId() == threadId) {
+			// only the owning thread caches, readers of the registry might
+			// otherwise cache the route of a request which already finished
+			this.normalizedPath = normalized;
+		}
+		return normalized;
+	}
+
+	/**
+	 * @return the matched route template or {@code null} if no
+	 * 		{@code TemplateRoute} has been matched (yet)
+	 */
+	String getTemplate() {
+		return template;
+	}
+
+	@Override
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	@Override
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	@Override
+	public Request getRequest() {
+		return request;
+	}
+
+	@Override
+	public Response getResponse() {
+		return response;
+	}
+
+	@Override
+	public ServerIdentity getServer() {
+		ServerConnectors.Connector c = this.connector;
+		return (c == null) ? null : c.identity;
+	}
+
+	@Override
+	public long getQueueWaitNanos() {
+		return queueWaitNanos;
+	}
+
+	@Override
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	long getThreadId() {
+		return threadId;
+	}
+
+	String getThreadName() {
+		return threadName;
+	}
+
+}
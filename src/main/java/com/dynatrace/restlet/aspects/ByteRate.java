@@ -0,0 +1,82 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Sums up bytes per second within a ring covering the last
+ * {@value #SECONDS} seconds, in order to tell the throughput of the last
+ * couple of seconds.
+ * </p>
+ * <p>
+ * Like within {@link RouteTimeSeries} every cell carries the second it
+ * belongs to within its upper bits, so rotating the ring requires neither
+ * locks nor a background thread.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class ByteRate {
+
+	/**
+	 * The number of seconds covered, a power of two
+	 */
+	static final int SECONDS = 16;
+
+	private static final int VALUE_BITS = 44;
+	private static final long VALUE_MASK = (1L << VALUE_BITS) - 1L;
+	private static final long TAG_MASK = (1L << (64 - VALUE_BITS)) - 1L;
+
+	private final AtomicLongArray cells = new AtomicLongArray(SECONDS);
+
+	/**
+	 * @param bytes the number of bytes transferred just now
+	 */
+	void add(long bytes) {
+		if (bytes <= 0L) {
+			return;
+		}
+		long second = now();
+		long tag = second & TAG_MASK;
+		int i = (int) (second & (SECONDS - 1));
+		long delta = Math.min(bytes, VALUE_MASK);
+		long v = cells.get(i);
+		while (true) {
+			if ((v >>> VALUE_BITS) == tag) {
+				cells.getAndAdd(i, delta);
+				return;
+			}
+			// the cell still belongs to an older second
+			if (cells.compareAndSet(i, v, (tag << VALUE_BITS) | delta)) {
+				return;
+			}
+			v = cells.get(i);
+		}
+	}
+
+	/**
+	 * @param window the number of seconds to look back, at most
+	 * 		{@value #SECONDS} - 1
+	 * @return the mean bytes per second within the given number of
+	 * 		complete seconds preceding the current one
+	 */
+	double perSecond(int window) {
+		int length = Math.max(1, Math.min(window, SECONDS - 1));
+		long now = now();
+		long sum = 0L;
+		for (long second = now - length; second < now; second++) {
+			long v = cells.get((int) (second & (SECONDS - 1)));
+			if ((v >>> VALUE_BITS) == (second & TAG_MASK)) {
+				sum += v & VALUE_MASK;
+			}
+		}
+		return (double) sum / length;
+	}
+
+	private static long now() {
+		return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+	}
+
+}
@@ -0,0 +1,370 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.restlet.Response;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
+import org.restlet.data.Language;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * <p>
+ * A response stored by the {@link ResponseCache} or shared by the
+ * {@link Coalescer}: the status, the entity bytes including their
+ * metadata, the {@code Vary} dimensions and the extension headers.
+ * Immutable, apart from the links maintained by the eviction policy.
+ * </p>
+ * <p>
+ * Every request served a stored response gets its own representation and
+ * its own copy of the headers, so the connector writing it cannot affect
+ * the stored response.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class CachedResponse {
+
+	/**
+	 * Rough per entry overhead in bytes accounted next to the entity
+	 */
+	private static final int OVERHEAD = 256;
+
+	/**
+	 * The number of bytes read from a transient entity at once
+	 */
+	private static final int CHUNK = 8192;
+
+	static final int WINDOW = 0;
+	static final int PROBATION = 1;
+	static final int PROTECTED = 2;
+
+	private final String key;
+	private final int hash;
+	private final Status status;
+	private final byte[] bytes;
+	private final MediaType mediaType;
+	private final CharacterSet characterSet;
+	private final List<Language> languages;
+	private final List<Encoding> encodings;
+	private final Tag tag;
+	private final Date modificationDate;
+	private final Date expirationDate;
+	private final List<Dimension> dimensions;
+	private final List<Header> headers;
+	private final long expiresAtNanos;
+
+	/**
+	 * The queue of the eviction policy this entry currently belongs to and
+	 * its neighbors within that queue. Guarded by the lock of the
+	 * {@link ResponseCache}.
+	 */
+	int queue = WINDOW;
+	CachedResponse prev = null;
+	CachedResponse next = null;
+
+	/**
+	 * c'tor
+	 *
+	 * @param key the key of the request, see {@link ResponseCache}
+	 * @param hash the spread hash code of the key
+	 * @param response the response to store
+	 * @param entity the entity of the response, whose content has been
+	 * 		read into {@code bytes}
+	 * @param bytes the content of the entity
+	 * @param expiresAtNanos the {@link System#nanoTime()} after which the
+	 * 		entry must not be served anymore
+	 */
+	CachedResponse(
+			String key,
+			int hash,
+			Response response,
+			Representation entity,
+			byte[] bytes,
+			long expiresAtNanos
+	) {
+		this.key = key;
+		this.hash = hash;
+		this.status = response.getStatus();
+		this.bytes = bytes;
+		this.mediaType = entity.getMediaType();
+		this.characterSet = entity.getCharacterSet();
+		this.languages = new ArrayList<Language>(entity.getLanguages());
+		this.encodings = new ArrayList<Encoding>(entity.getEncodings());
+		this.tag = entity.getTag();
+		this.modificationDate = entity.getModificationDate();
+		this.expirationDate = entity.getExpirationDate();
+		this.dimensions = new ArrayList<Dimension>(response.getDimensions());
+		this.headers = new ArrayList<Header>(headers(response));
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+	/**
+	 * Reads the entity of the given response and replaces it by a copy of
+	 * the bytes read. At most {@code maxBytes} (plus a single chunk) get
+	 * buffered, also if the size of the entity is unknown up front:
+	 * <ul>
+	 * <li>entities which can be written more than once (e.g. generated by
+	 * 		an {@code OutputRepresentation}) are written into a buffer which
+	 * 		gives up once it exceeds {@code maxBytes}, leaving the entity as
+	 * 		it is</li>
+	 * <li>transient entities (streams and channels) are read up to
+	 * 		{@code maxBytes}. If there is more, the response gets an entity
+	 * 		streaming the bytes read so far followed by the rest of the
+	 * 		original stream.</li>
+	 * </ul>
+	 *
+	 * @param key the key of the request
+	 * @param hash the spread hash code of the key
+	 * @param response a response with an available entity
+	 * @param maxBytes the size of the largest entity to be returned
+	 * @param expiresAtNanos the {@link System#nanoTime()} after which the
+	 * 		response must not be served anymore
+	 * @return the stored response or {@code null} if the entity exceeds
+	 * 		{@code maxBytes}, in which case the response still carries all
+	 * 		of the entity
+	 * @throws IOException if reading the entity failed
+	 */
+	static CachedResponse capture(
+			String key,
+			int hash,
+			Response response,
+			long maxBytes,
+			long expiresAtNanos
+	) throws IOException {
+		Representation entity = response.getEntity();
+		long size = entity.getSize();
+		if (size > maxBytes) {
+			return null;
+		}
+		int initial = (int) Math.min(
+			maxBytes,
+			(size > 0L) ? size : ResponseCache.AVERAGE_BYTES
+		);
+		byte[] bytes = entity.isTransient()
+				? read(response, entity, initial, maxBytes)
+				: write(entity, initial, maxBytes);
+		if (bytes == null) {
+			return null;
+		}
+		CachedResponse cached = new CachedResponse(
+			key, hash, response, entity, bytes, expiresAtNanos
+		);
+		response.setEntity(cached.toRepresentation());
+		return cached;
+	}
+
+	/**
+	 * A buffer giving up once it exceeds its limit
+	 */
+	private static final class BoundedBuffer extends ByteArrayOutputStream {
+
+		private final long maxBytes;
+		private boolean exceeded = false;
+
+		BoundedBuffer(int initial, long maxBytes) {
+			super(initial);
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			ensure(1);
+			super.write(b);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			ensure(len);
+			super.write(b, off, len);
+		}
+
+		private void ensure(int len) {
+			if (count + (long) len > maxBytes) {
+				exceeded = true;
+				throw new BufferExceededException();
+			}
+		}
+
+	}
+
+	/**
+	 * Aborts writing an entity into a {@link BoundedBuffer}. Unchecked, so
+	 * representations catching and wrapping {@link IOException}s pass it
+	 * on unchanged, the {@code exceeded} flag of the buffer covers any
+	 * wrapping anyway.
+	 */
+	private static final class BufferExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		BufferExceededException() {
+			super(null, null, false, false);
+		}
+
+	}
+
+	/**
+	 * @return the content of the given entity or {@code null} if it
+	 * 		exceeds {@code maxBytes}, in which case it is left untouched
+	 */
+	private static byte[] write(Representation entity, int initial, long maxBytes)
+			throws IOException {
+		BoundedBuffer out = new BoundedBuffer(initial, maxBytes);
+		try {
+			entity.write(out);
+		} catch (IOException e) {
+			if (out.exceeded) {
+				return null;
+			}
+			entity.release();
+			throw e;
+		} catch (RuntimeException e) {
+			if (out.exceeded) {
+				return null;
+			}
+			entity.release();
+			throw e;
+		}
+		entity.release();
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return the content of the given transient entity or {@code null} if
+	 * 		it exceeds {@code maxBytes}, in which case the entity of the
+	 * 		given response streams the bytes read followed by the rest
+	 */
+	private static byte[] read(Response response, Representation entity,
+			int initial, long maxBytes) throws IOException {
+		InputStream in = entity.getStream();
+		if (in == null) {
+			entity.release();
+			return new byte[0];
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(initial);
+		byte[] chunk = new byte[CHUNK];
+		boolean resumed = false;
+		try {
+			int n;
+			while ((n = in.read(chunk)) >= 0) {
+				out.write(chunk, 0, n);
+				if (out.size() > maxBytes) {
+					response.setEntity(resume(entity, new SequenceInputStream(
+						new ByteArrayInputStream(out.toByteArray()), in
+					)));
+					resumed = true;
+					return null;
+				}
+			}
+		} finally {
+			if (!resumed) {
+				entity.release();
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return a representation streaming the given content with the
+	 * 		metadata of the given entity
+	 */
+	private static Representation resume(Representation entity, InputStream content) {
+		InputRepresentation resumed = new InputRepresentation(content, entity.getMediaType());
+		resumed.setCharacterSet(entity.getCharacterSet());
+		resumed.getLanguages().addAll(entity.getLanguages());
+		resumed.getEncodings().addAll(entity.getEncodings());
+		resumed.setTag(entity.getTag());
+		resumed.setModificationDate(entity.getModificationDate());
+		resumed.setExpirationDate(entity.getExpirationDate());
+		resumed.setDisposition(entity.getDisposition());
+		resumed.setLocationRef(entity.getLocationRef());
+		return resumed;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Header> headers(Response response) {
+		Object headers = response.getAttributes().get(HeaderConstants.ATTRIBUTE_HEADERS);
+		if (headers instanceof Series) {
+			return (Series<Header>) headers;
+		}
+		return new ArrayList<Header>();
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	int getHash() {
+		return hash;
+	}
+
+	Tag getTag() {
+		return tag;
+	}
+
+	/**
+	 * @return the number of bytes accounted for this entry
+	 */
+	int getWeight() {
+		return bytes.length + OVERHEAD;
+	}
+
+	/**
+	 * @param now the current {@link System#nanoTime()}
+	 * @return {@code true} if this entry must not be served anymore
+	 */
+	boolean isExpired(long now) {
+		return now - expiresAtNanos >= 0L;
+	}
+
+	/**
+	 * @return a new representation of the stored entity
+	 */
+	Representation toRepresentation() {
+		ByteArrayRepresentation entity = new ByteArrayRepresentation(bytes, mediaType);
+		entity.setCharacterSet(characterSet);
+		entity.getLanguages().addAll(languages);
+		entity.getEncodings().addAll(encodings);
+		entity.setTag(tag);
+		entity.setModificationDate(modificationDate);
+		entity.setExpirationDate(expirationDate);
+		return entity;
+	}
+
+	/**
+	 * Turns the given response into a copy of the stored one
+	 *
+	 * @param response the response to fill
+	 * @param notModified {@code true} in order to answer with
+	 * 		{@code 304 Not Modified}, which keeps the entity headers only
+	 */
+	void applyTo(Response response, boolean notModified) {
+		response.setStatus(notModified ? Status.REDIRECTION_NOT_MODIFIED : status);
+		response.setEntity(toRepresentation());
+		response.getDimensions().addAll(dimensions);
+		if (!headers.isEmpty()) {
+			Series<Header> copy = new Series<Header>(Header.class);
+			copy.addAll(headers);
+			response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS, copy);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+
+/**
+ * <p>
+ * Aggregates the calls made via {@code org.restlet.Client} per downstream,
+ * identified by scheme, host and port of the target reference.
+ * </p>
+ * <p>
+ * The number of downstreams tracked individually is bounded by
+ * {@code -Ddt.restlet.client.maxDownstreams} (default 256). Calls towards
+ * any further downstream are accounted to a single overflow entry.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ClientMetrics implements ClientMetricsMXBean {
+
+	public static final ClientMetrics INSTANCE = new ClientMetrics(
+		Integer.getInteger("dt.restlet.client.maxDownstreams", 256)
+	);
+
+	static {
+		Management.register("ClientMetrics", INSTANCE);
+	}
+
+	private final MetricKeyTable<DownstreamMetrics> downstreams;
+
+	private ClientMetrics(int maxDownstreams) {
+		this.downstreams = new MetricKeyTable<DownstreamMetrics>(maxDownstreams) {
+			@Override
+			protected DownstreamMetrics create(String key) {
+				return new DownstreamMetrics(key);
+			}
+		};
+	}
+
+	/**
+	 * @param request the request about to be sent
+	 * @return the metrics of the downstream the given request targets
+	 */
+	DownstreamMetrics lookup(Request request) {
+		Reference ref = request.getResourceRef();
+		if (ref == null) {
+			return downstreams.get(MetricKeyTable.UNKNOWN);
+		}
+		int port = ref.getHostPort();
+		if (port == -1) {
+			Protocol protocol = ref.getSchemeProtocol();
+			if (protocol != null) {
+				port = protocol.getDefaultPort();
+			}
+		}
+		// scheme://host:port, looked up without concatenating it
+		return downstreams.get(ref.getScheme(), ref.getHostDomain(), port);
+	}
+
+	@Override
+	public List<DownstreamStats> getDownstreams() {
+		List<DownstreamStats> result = new ArrayList<DownstreamStats>();
+		for (DownstreamMetrics metrics : downstreams.values()) {
+			result.add(metrics.snapshot());
+		}
+		return result;
+	}
+
+	@Override
+	public int getMaxDownstreams() {
+		return downstreams.getMaxKeys();
+	}
+
+	@Override
+	public long getOverflowCalls() {
+		return downstreams.getDropped();
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link ClientMetrics}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ClientMetricsMXBean {
+
+	/**
+	 * @return the metrics per downstream host and port
+	 */
+	List<DownstreamStats> getDownstreams();
+
+	/**
+	 * @return the maximum number of downstreams tracked individually
+	 */
+	int getMaxDownstreams();
+
+	/**
+	 * @return the number of calls which have been accounted to the
+	 * 		overflow downstream because the maximum number of downstreams
+	 * 		had already been reached
+	 */
+	long getOverflowCalls();
+
+}
@@ -0,0 +1,267 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.header.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.util.Series;
+
+/**
+ * <p>
+ * Coalesces identical concurrent {@code GET} requests of the routes
+ * configured via {@code coalesce.route.<route>} of the
+ * {@link Configuration}. Requests are identical if method, the server
+ * which received them, the host addressed by the client, path, query (with
+ * its parameters sorted) and the values of the request headers listed by
+ * {@code coalesce.headers} are equal. Requests carrying credentials or
+ * cookies are only coalesced if {@code Authorization} respectively
+ * {@code Cookie} are among those headers, so responses never get handed to
+ * a different user.
+ * </p>
+ * <p>
+ * The first of them, the leader, executes as usual. Any identical request
+ * arriving while the leader is still executing waits for it, at most for
+ * the milliseconds configured for its route, and then gets a copy of the
+ * buffered response of the leader without invoking the resource. If the
+ * leader does not finish in time or its response cannot be shared (see
+ * {@link ResponseCache}), the waiting requests execute on their own.
+ * </p>
+ * <p>
+ * The leader removes its key as soon as it is done, so the map of keys
+ * only ever contains the requests currently executing on behalf of others.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class Coalescer implements CoalescerMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(Coalescer.class.getName());
+
+	private static final String ERRMSG_BUFFER =
+			"Unable to buffer the response of ";
+
+	public static final Coalescer INSTANCE = new Coalescer(
+		Math.max(0L, Long.getLong("dt.restlet.coalesce.maxEntryBytes", 1L << 20))
+	);
+
+	static {
+		Management.register("Coalescer", INSTANCE);
+	}
+
+	/**
+	 * A request currently executing on behalf of identical requests
+	 */
+	static final class Flight {
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		/**
+		 * The buffered response or {@code null} if it cannot be shared.
+		 * Published via {@link #done}.
+		 */
+		private CachedResponse result = null;
+
+	}
+
+	private final long maxEntryBytes;
+
+	private final ConcurrentMap<String, Flight> flights =
+			new ConcurrentHashMap<String, Flight>();
+
+	private final StripedCounter leaders = new StripedCounter();
+	private final StripedCounter coalesced = new StripedCounter();
+	private final StripedCounter timeouts = new StripedCounter();
+	private final StripedCounter fallbacks = new StripedCounter();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private Coalescer(long maxEntryBytes) {
+		this.maxEntryBytes = maxEntryBytes;
+	}
+
+	/**
+	 * Makes the given request the leader of its key or waits for the
+	 * current leader and answers the request with its response
+	 *
+	 * @param active the request currently executed
+	 * @param request the request object
+	 * @param response the response, which gets filled with the response of
+	 * 		the leader
+	 * @return {@code true} if the request has been answered
+	 */
+	boolean join(ActiveRequest active, Request request, Response response) {
+		InstrumentationConfig config = active.config;
+		if ((config == null) || !config.hasCoalescedRoutes()
+				|| (active.flight != null)
+				|| !Method.GET.equals(request.getMethod())) {
+			return false;
+		}
+		long wait = config.getCoalesceWaitNanos(active.getRoute());
+		if (wait <= 0L) {
+			return false;
+		}
+		String[] names = config.getCoalesceHeaders();
+		if (!isKeyedByCredentials(request, names)) {
+			return false;
+		}
+		String key = key(active.getServer(), request, names);
+		Flight flight = flights.get(key);
+		if (flight == null) {
+			Flight created = new Flight();
+			flight = flights.putIfAbsent(key, created);
+			if (flight == null) {
+				active.flight = created;
+				active.flightKey = key;
+				leaders.increment();
+				return false;
+			}
+		}
+		try {
+			if (!flight.done.await(wait, TimeUnit.NANOSECONDS)) {
+				timeouts.increment();
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			timeouts.increment();
+			return false;
+		}
+		CachedResponse result = flight.result;
+		if (result == null) {
+			fallbacks.increment();
+			return false;
+		}
+		result.applyTo(
+			response,
+			ResponseCache.matches(request.getConditions().getNoneMatch(), result.getTag())
+		);
+		coalesced.increment();
+		return true;
+	}
+
+	/**
+	 * Hands the response of a leader over to the requests waiting for it.
+	 * Needs to be invoked by every leader, no matter how it finished.
+	 *
+	 * @param active the request about to finish
+	 * @param response the response of the request
+	 */
+	void complete(ActiveRequest active, Response response) {
+		Flight flight = active.flight;
+		String key = active.flightKey;
+		active.flight = null;
+		active.flightKey = null;
+		if (flight == null) {
+			return;
+		}
+		CachedResponse result = null;
+		try {
+			if ((active.getFailure() == null) && ResponseCache.isShareable(response)) {
+				result = CachedResponse.capture(key, 0, response, maxEntryBytes, 0L);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, ERRMSG_BUFFER + key, e);
+			response.setStatus(Status.SERVER_ERROR_INTERNAL, e);
+			response.setEntity(null);
+		} finally {
+			flights.remove(key, flight);
+			flight.result = result;
+			flight.done.countDown();
+		}
+	}
+
+	/**
+	 * @param request the request to coalesce
+	 * @param names the request headers the key of the request comprises
+	 * @return {@code false} if the request carries credentials or cookies
+	 * 		whose header is not part of its key, so the response of one
+	 * 		user could be handed to another one
+	 */
+	private static boolean isKeyedByCredentials(Request request, String[] names) {
+		if ((request.getChallengeResponse() != null)
+				&& !contains(names, HeaderConstants.HEADER_AUTHORIZATION)) {
+			return false;
+		}
+		return request.getCookies().isEmpty()
+				|| contains(names, HeaderConstants.HEADER_COOKIE);
+	}
+
+	private static boolean contains(String[] names, String header) {
+		for (String name : names) {
+			if (header.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the method, the server, the host, the path and sorted query
+	 * 		and the values of the given request headers
+	 */
+	@SuppressWarnings("unchecked")
+	private static String key(ServerIdentity server, Request request, String[] names) {
+		StringBuilder sb = new StringBuilder(96);
+		sb.append(request.getMethod().getName()).append(' ');
+		ResponseCache.appendPrimaryKey(sb, server, request);
+		if (names.length == 0) {
+			return sb.toString();
+		}
+		Series<Header> headers = (Series<Header>) request.getAttributes().get(
+			HeaderConstants.ATTRIBUTE_HEADERS
+		);
+		for (String name : names) {
+			String value = (headers == null) ? null : headers.getValues(name, ",", true);
+			sb.append('\n').append(name).append(':');
+			if (value != null) {
+				sb.append(value);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public long getLeaders() {
+		return leaders.sum();
+	}
+
+	@Override
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	@Override
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	@Override
+	public long getFallbacks() {
+		return fallbacks.sum();
+	}
+
+	@Override
+	public int getInFlight() {
+		return flights.size();
+	}
+
+	@Override
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * Management interface of the {@link Coalescer}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface CoalescerMXBean {
+
+	/**
+	 * @return the number of requests which executed on behalf of identical
+	 * 		concurrent requests
+	 */
+	long getLeaders();
+
+	/**
+	 * @return the number of requests answered with a copy of the response
+	 * 		of an identical concurrent request
+	 */
+	long getCoalesced();
+
+	/**
+	 * @return the number of requests which stopped waiting for an identical
+	 * 		concurrent request and executed on their own
+	 */
+	long getTimeouts();
+
+	/**
+	 * @return the number of requests which executed on their own because
+	 * 		the response of the identical concurrent request could not be
+	 * 		shared
+	 */
+	long getFallbacks();
+
+	/**
+	 * @return the number of distinct requests currently executing on
+	 * 		behalf of others
+	 */
+	int getInFlight();
+
+	/**
+	 * @return the size above which responses do not get shared
+	 */
+	long getMaxEntryBytes();
+
+}
@@ -0,0 +1,253 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Response;
+import org.restlet.data.Status;
+
+/**
+ * <p>
+ * Limits the number of requests executing concurrently within
+ * {@code Server.handle} and rejects any excess requests immediately with
+ * {@code 503 Service Unavailable}, instead of letting them queue up and
+ * slow down every request. Enabled via {@code limit.enabled} of the
+ * {@link Configuration}.
+ * </p>
+ * <p>
+ * The limit adapts to the observed latency following a gradient
+ * algorithm: as long as the average latency of the most recent requests
+ * stays within {@code -Ddt.restlet.limit.tolerance} (default 1.5) times
+ * the latency without queueing, the limit grows by roughly its square
+ * root. Once latency rises beyond that, the limit shrinks proportionally.
+ * Increases only happen while at least half of the limit is actually in
+ * use. The latency without queueing is estimated as the lowest latency
+ * observed, which slowly drifts upwards in order to follow changes of the
+ * application or its environment.
+ * </p>
+ * <p>
+ * The limit stays within {@code -Ddt.restlet.limit.min} (default 4) and
+ * {@code -Ddt.restlet.limit.max} (default 1000), starting at
+ * {@code -Ddt.restlet.limit.initial} (default 20). All state is held in
+ * atomics updated via compare-and-set.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ConcurrencyLimiter implements ConcurrencyLimiterMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ConcurrencyLimiter.class.getName());
+
+	/**
+	 * Weight of a single sample within the short term average
+	 * (about 10 samples)
+	 */
+	private static final double SHORT_ALPHA = 2d / (10 + 1);
+
+	/**
+	 * How fast the lowest latency observed drifts upwards per sample
+	 * (doubles within about 700 samples)
+	 */
+	private static final double MIN_DRIFT = 1.001d;
+
+	/**
+	 * How fast the limit follows its target
+	 */
+	private static final double SMOOTHING = 0.2d;
+
+	public static final ConcurrencyLimiter INSTANCE = new ConcurrencyLimiter(
+		Math.max(1, Integer.getInteger("dt.restlet.limit.min", 4)),
+		Math.max(1, Integer.getInteger("dt.restlet.limit.max", 1000)),
+		Math.max(1, Integer.getInteger("dt.restlet.limit.initial", 20)),
+		tolerance()
+	);
+
+	static {
+		Management.register("ConcurrencyLimiter", INSTANCE);
+	}
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong limit;
+	private final AtomicLong shortRtt = new AtomicLong();
+	private final AtomicLong minRtt = new AtomicLong();
+	private final StripedCounter accepted = new StripedCounter();
+	private final StripedCounter rejected = new StripedCounter();
+
+	/**
+	 * c'tor is package private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 *
+	 * @param minLimit the lower bound of the limit
+	 * @param maxLimit the upper bound of the limit
+	 * @param initial the limit to start with
+	 * @param tolerance by how much latency may exceed the latency without
+	 * 		queueing before the limit shrinks
+	 */
+	ConcurrencyLimiter(int minLimit, int maxLimit, int initial,
+			double tolerance) {
+		this.minLimit = Math.min(minLimit, maxLimit);
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		double start = Math.max(this.minLimit, Math.min(maxLimit, initial));
+		this.limit = new AtomicLong(Double.doubleToRawLongBits(start));
+	}
+
+	private static double tolerance() {
+		String value = System.getProperty("dt.restlet.limit.tolerance", "1.5");
+		try {
+			return Math.max(1d, Double.parseDouble(value));
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Invalid dt.restlet.limit.tolerance " + value, e);
+			return 1.5d;
+		}
+	}
+
+	/**
+	 * Admits a request if the limit has not been reached yet
+	 *
+	 * @return {@code true} if the request may proceed, in which case
+	 * 		{@link #release(long)} needs to be invoked once it completed
+	 */
+	boolean acquire() {
+		int current = getLimit();
+		while (true) {
+			int n = inFlight.get();
+			if (n >= current) {
+				rejected.increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(n, n + 1)) {
+				accepted.increment();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Answers a request which has not been admitted
+	 *
+	 * @param response the response of the rejected request
+	 * @param retryAfterSeconds the value of the {@code Retry-After} header,
+	 * 		{@code 0} to omit the header
+	 */
+	void reject(Response response, int retryAfterSeconds) {
+		response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+		if (retryAfterSeconds > 0) {
+			response.setRetryAfter(new Date(
+				System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfterSeconds)
+			));
+		}
+	}
+
+	/**
+	 * Releases the permit of a completed request and adapts the limit to
+	 * the latency observed
+	 *
+	 * @param rttNanos the duration of the request
+	 */
+	void release(long rttNanos) {
+		int concurrency = inFlight.getAndDecrement();
+		double rtt = Math.max(1d, rttNanos);
+		double s = average(shortRtt, rtt, SHORT_ALPHA);
+		double m = minimum(minRtt, rtt);
+		double gradient = Math.max(0.5d, Math.min(1d, tolerance * m / s));
+		while (true) {
+			long bits = limit.get();
+			double current = Double.longBitsToDouble(bits);
+			double target = current * gradient + Math.sqrt(current);
+			double next = current * (1d - SMOOTHING) + target * SMOOTHING;
+			next = Math.max(minLimit, Math.min(maxLimit, next));
+			if ((next > current) && (concurrency < current / 2d)) {
+				// not enough load to tell whether a higher limit is safe
+				return;
+			}
+			if (limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds a sample to an exponentially weighted moving average
+	 *
+	 * @return the updated average
+	 */
+	private static double average(AtomicLong average, double sample, double alpha) {
+		while (true) {
+			long bits = average.get();
+			double current = Double.longBitsToDouble(bits);
+			double next = (bits == 0L) ? sample : current + alpha * (sample - current);
+			if (average.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Adds a sample to a minimum which drifts upwards by
+	 * {@link #MIN_DRIFT} per sample
+	 *
+	 * @return the updated minimum
+	 */
+	private static double minimum(AtomicLong minimum, double sample) {
+		while (true) {
+			long bits = minimum.get();
+			double current = Double.longBitsToDouble(bits);
+			double next = (bits == 0L) ? sample : Math.min(sample, current * MIN_DRIFT);
+			if (minimum.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+				return next;
+			}
+		}
+	}
+
+	@Override
+	public int getLimit() {
+		return (int) Double.longBitsToDouble(limit.get());
+	}
+
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	@Override
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	@Override
+	public long getAccepted() {
+		return accepted.sum();
+	}
+
+	@Override
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	@Override
+	public double getShortRttMillis() {
+		return Double.longBitsToDouble(shortRtt.get()) / 1e6d;
+	}
+
+	@Override
+	public double getMinRttMillis() {
+		return Double.longBitsToDouble(minRtt.get()) / 1e6d;
+	}
+
+}
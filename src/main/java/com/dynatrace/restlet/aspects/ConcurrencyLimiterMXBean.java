@@ -0,0 +1,52 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * Management interface of the {@link ConcurrencyLimiter}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ConcurrencyLimiterMXBean {
+
+	/**
+	 * @return the number of requests currently allowed to execute
+	 * 		concurrently
+	 */
+	int getLimit();
+
+	/**
+	 * @return the number of requests currently executing
+	 */
+	int getInFlight();
+
+	/**
+	 * @return the lower bound of the limit
+	 */
+	int getMinLimit();
+
+	/**
+	 * @return the upper bound of the limit
+	 */
+	int getMaxLimit();
+
+	/**
+	 * @return the number of requests admitted so far
+	 */
+	long getAccepted();
+
+	/**
+	 * @return the number of requests rejected so far
+	 */
+	long getRejected();
+
+	/**
+	 * @return the average latency of the most recent requests
+	 */
+	double getShortRttMillis();
+
+	/**
+	 * @return the estimated latency of a request without any queueing
+	 */
+	double getMinRttMillis();
+
+}
@@ -0,0 +1,298 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Holds the {@link InstrumentationConfig} currently in effect.
+ * </p>
+ * <p>
+ * The settings are initially taken from system properties prefixed with
+ * {@code dt.restlet.}, e.g. {@code -Ddt.restlet.cost.sampleRate=0.01}. If
+ * {@code -Ddt.restlet.config=<file>} points to a properties file, its
+ * entries take precedence. The file is watched via a {@link WatchService}
+ * and re-applied whenever it changes, without requiring a restart. A file
+ * which cannot be read or contains invalid values is rejected as a whole
+ * and the previous settings remain in effect.
+ * </p>
+ * <p>
+ * Every change publishes a new immutable snapshot, so readers on the hot
+ * path get by with a single volatile read and never observe a partially
+ * applied configuration. Turning instrumentation off additionally flips the
+ * {@link KillSwitch}, which removes the advice from compiled code.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class Configuration implements ConfigurationMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(Configuration.class.getName());
+
+	static final String PREFIX = "dt.restlet.";
+
+	private static final String PROPERTY_FILE = PREFIX + "config";
+
+	private static final String ERRMSG_LOAD =
+			"Unable to apply configuration file ";
+
+	/**
+	 * Editors tend to write a file in several steps, which is why changes
+	 * are only applied once the file has been quiet for this long
+	 */
+	private static final long SETTLE_MILLIS = 100L;
+
+	public static final Configuration INSTANCE = new Configuration(
+		System.getProperty(PROPERTY_FILE)
+	);
+
+	static {
+		Management.register("Configuration", INSTANCE);
+		INSTANCE.watch();
+	}
+
+	private final Path file;
+	private final AtomicLong failedReloads = new AtomicLong();
+	private volatile InstrumentationConfig current;
+	private volatile long lastApplied;
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 *
+	 * @param file the configuration file or {@code null}
+	 */
+	private Configuration(String file) {
+		this.file = (file == null) ? null : Paths.get(file).toAbsolutePath();
+		InstrumentationConfig config;
+		try {
+			config = InstrumentationConfig.parse(load());
+		} catch (IOException e) {
+			failedReloads.incrementAndGet();
+			LOGGER.log(Level.WARNING, ERRMSG_LOAD + this.file, e);
+			config = fromSystemProperties();
+		} catch (IllegalArgumentException e) {
+			failedReloads.incrementAndGet();
+			LOGGER.log(Level.WARNING, ERRMSG_LOAD + this.file, e);
+			config = fromSystemProperties();
+		}
+		apply(config);
+	}
+
+	/**
+	 * @return the settings currently in effect
+	 */
+	InstrumentationConfig current() {
+		return current;
+	}
+
+	private void apply(InstrumentationConfig config) {
+		this.lastApplied = System.currentTimeMillis();
+		this.current = config;
+		KillSwitch.set(config.isEnabled());
+	}
+
+	private static InstrumentationConfig fromSystemProperties() {
+		try {
+			return InstrumentationConfig.parse(systemProperties());
+		} catch (IllegalArgumentException e) {
+			LOGGER.log(Level.WARNING, "Invalid system properties", e);
+			return InstrumentationConfig.DEFAULTS;
+		}
+	}
+
+	/**
+	 * @return all system properties prefixed with {@link #PREFIX}, with
+	 * 		the prefix stripped
+	 */
+	private static Properties systemProperties() {
+		Properties result = new Properties();
+		Properties system = System.getProperties();
+		for (String key : system.stringPropertyNames()) {
+			if (key.startsWith(PREFIX)) {
+				result.setProperty(
+					key.substring(PREFIX.length()),
+					system.getProperty(key)
+				);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the system properties overridden by the contents of the
+	 * 		configuration file, if any
+	 * @throws IOException if the configuration file cannot be read
+	 */
+	private Properties load() throws IOException {
+		Properties props = systemProperties();
+		if (file == null) {
+			return props;
+		}
+		InputStream in = Files.newInputStream(file);
+		try {
+			props.load(in);
+		} finally {
+			in.close();
+		}
+		return props;
+	}
+
+	/**
+	 * Starts a daemon thread watching the directory of the configuration
+	 * file, unless no configuration file has been specified
+	 */
+	private void watch() {
+		if (file == null) {
+			return;
+		}
+		Path dir = file.getParent();
+		final WatchService watchService;
+		try {
+			watchService = dir.getFileSystem().newWatchService();
+			dir.register(
+				watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY
+			);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unable to watch configuration file " + file, e);
+			return;
+		}
+		Thread watcher = new Thread("dt-restlet-config-watcher") {
+			@Override
+			public void run() {
+				watch(watchService);
+			}
+		};
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	private void watch(WatchService watchService) {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean changed = changed(key);
+				boolean valid = key.reset();
+				// wait for the writer to finish, collecting further events
+				while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					changed |= changed(key);
+					valid = key.reset();
+				}
+				if (changed) {
+					reload();
+				}
+				if (!valid) {
+					LOGGER.log(Level.WARNING, "Stopped watching configuration file " + file);
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// terminate
+		}
+	}
+
+	/**
+	 * @return {@code true} if the given key reports a change of the
+	 * 		configuration file
+	 */
+	private boolean changed(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if ((event.kind() == StandardWatchEventKinds.OVERFLOW)
+					|| file.getFileName().equals(event.context())) {
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	@Override
+	public synchronized void reload() {
+		try {
+			apply(InstrumentationConfig.parse(load()));
+			LOGGER.log(Level.INFO, "Configuration file " + file + " applied");
+		} catch (IOException e) {
+			failedReloads.incrementAndGet();
+			LOGGER.log(Level.WARNING, ERRMSG_LOAD + file, e);
+		} catch (IllegalArgumentException e) {
+			failedReloads.incrementAndGet();
+			LOGGER.log(Level.WARNING, ERRMSG_LOAD + file, e);
+		}
+	}
+
+	/**
+	 * Publishes a copy of the current snapshot with a different sample
+	 * rate for {@link RequestCosts}
+	 *
+	 * @param sampleRate the fraction of requests to sample
+	 */
+	synchronized void setSampleRate(double sampleRate) {
+		apply(current.withSampleRate(sampleRate));
+	}
+
+	@Override
+	public String getConfigFile() {
+		return (file == null) ? null : file.toString();
+	}
+
+	@Override
+	public long getLastApplied() {
+		return lastApplied;
+	}
+
+	@Override
+	public long getFailedReloads() {
+		return failedReloads.get();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return current.isEnabled();
+	}
+
+	@Override
+	public synchronized void setEnabled(boolean enabled) {
+		apply(current.withEnabled(enabled));
+	}
+
+	@Override
+	public List<String> getIncludes() {
+		return current.getIncludes();
+	}
+
+	@Override
+	public List<String> getExcludes() {
+		return current.getExcludes();
+	}
+
+	@Override
+	public long getSlowThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(current.getSlowThresholdNanos(null));
+	}
+
+	@Override
+	public boolean isClientMetrics() {
+		return current.isClientMetrics();
+	}
+
+}
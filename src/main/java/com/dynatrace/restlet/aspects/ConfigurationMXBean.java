@@ -0,0 +1,72 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link Configuration}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ConfigurationMXBean {
+
+	/**
+	 * @return the path of the configuration file being watched or
+	 * 		{@code null} if none has been specified
+	 */
+	String getConfigFile();
+
+	/**
+	 * @return the time in milliseconds since the epoch the settings
+	 * 		currently in effect have been applied
+	 */
+	long getLastApplied();
+
+	/**
+	 * @return the number of times the configuration file could not be
+	 * 		applied because it was not readable or contained invalid values
+	 */
+	long getFailedReloads();
+
+	/**
+	 * @return {@code false} if all requests are passed on without any
+	 * 		instrumentation
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param enabled {@code false} in order to pass on all requests
+	 * 		without any instrumentation
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return the path prefixes of the requests to instrument, empty if all
+	 * 		requests are instrumented
+	 */
+	List<String> getIncludes();
+
+	/**
+	 * @return the path prefixes of the requests not to instrument
+	 */
+	List<String> getExcludes();
+
+	/**
+	 * @return the duration in milliseconds above which requests get
+	 * 		logged as slow unless configured differently for their route,
+	 * 		{@code 0} if disabled
+	 */
+	long getSlowThresholdMillis();
+
+	/**
+	 * @return {@code true} if calls via {@code org.restlet.Client} are
+	 * 		measured
+	 */
+	boolean isClientMetrics();
+
+	/**
+	 * Reads the configuration file again
+	 */
+	void reload();
+
+}
@@ -0,0 +1,351 @@
+package com.dynatrace.restlet.aspects;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.engine.header.HeaderConstants;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * <p>
+ * Tracks the keep-alive connections of the internal HTTP connector of
+ * Restlet, which is based on {@code com.sun.net.httpserver}. The
+ * connections themselves live within the JDK and cannot be woven, which
+ * is why they are derived from the exchanges handed over to Restlet: a
+ * connection is identified by the remote address and port of its
+ * exchanges. It is considered open with its first exchange and closed
+ * once an exchange ends with {@code Connection: close} (sent by either
+ * side, or implied by {@code HTTP/1.0}), fails or once it has been idle
+ * for longer than the JDK keeps idle connections open
+ * ({@code -Dsun.net.httpserver.idleInterval}, default 30 seconds).
+ * </p>
+ * <p>
+ * For every closed connection the number of requests it served and its
+ * lifetime, from the start of its first exchange to the end of its last
+ * one, get recorded. The idle time between two exchanges gets recorded
+ * whenever a connection is reused.
+ * </p>
+ * <p>
+ * The state of a connection is kept within fields of its own, which are
+ * only ever updated by the single thread handling its current exchange.
+ * Closed connections get swept lazily, at most once per second, by the
+ * thread handling the next exchange. At most
+ * {@code -Ddt.restlet.connection.maxTracked} (default 4096) connections
+ * are tracked at once, further ones are only counted.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class Connections implements ConnectionsMXBean {
+
+	private static final String CLOSE = "close";
+
+	private static final String KEEP_ALIVE = "keep-alive";
+
+	private static final String HTTP_1_0 = "HTTP/1.0";
+
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+	public static final Connections INSTANCE = new Connections(
+		Math.max(0, Integer.getInteger("dt.restlet.connection.maxTracked", 4096)),
+		TimeUnit.SECONDS.toNanos(
+			Math.max(1L, Long.getLong("sun.net.httpserver.idleInterval", 30L))
+		)
+	);
+
+	static {
+		Management.register("Connections", INSTANCE);
+	}
+
+	/**
+	 * A connection currently open
+	 */
+	static final class Connection {
+
+		private final InetSocketAddress remote;
+		private final long openedNanos;
+
+		/**
+		 * The number of exchanges served so far, including the current one
+		 */
+		private volatile int requests = 0;
+
+		/**
+		 * When the last exchange ended or {@link ActiveRequest#IDLE} while
+		 * an exchange is executing
+		 */
+		private volatile long lastEndNanos = ActiveRequest.IDLE;
+
+		/**
+		 * The bytes received and sent so far, counted by {@link WireBytes}
+		 */
+		private volatile long bytesIn = 0L;
+		private volatile long bytesOut = 0L;
+
+		Connection(InetSocketAddress remote, long openedNanos) {
+			this.remote = remote;
+			this.openedNanos = openedNanos;
+		}
+
+		/**
+		 * Only invoked by the thread handling the current exchange
+		 *
+		 * @param in the bytes received with an exchange
+		 * @param out the bytes sent with an exchange
+		 */
+		void transferred(long in, long out) {
+			bytesIn = bytesIn + in;
+			bytesOut = bytesOut + out;
+		}
+
+		/**
+		 * @return {@code true} if the connection has been idle for longer
+		 * 		than the given time
+		 */
+		boolean isExpired(long now, long idleNanos) {
+			long end = lastEndNanos;
+			return (end != ActiveRequest.IDLE) && (now - end > idleNanos);
+		}
+
+	}
+
+	private final int maxTracked;
+	private final long idleNanos;
+
+	private final ConcurrentMap<InetSocketAddress, Connection> connections =
+			new ConcurrentHashMap<InetSocketAddress, Connection>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime());
+
+	private final StripedCounter opened = new StripedCounter();
+	private final StripedCounter closedExplicitly = new StripedCounter();
+	private final StripedCounter closedIdle = new StripedCounter();
+	private final StripedCounter untracked = new StripedCounter();
+
+	private final LatencyHistogram requestsPerConnection = new LatencyHistogram();
+	private final LatencyHistogram idle = new LatencyHistogram();
+	private final LatencyHistogram lifetime = new LatencyHistogram();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private Connections(int maxTracked, long idleNanos) {
+		this.maxTracked = maxTracked;
+		this.idleNanos = idleNanos;
+	}
+
+	/**
+	 * Invoked once the internal connector starts handling an exchange
+	 *
+	 * @param exchange the exchange about to be handled
+	 * @return the connection of the exchange or {@code null} if it is not
+	 * 		tracked
+	 */
+	Connection begin(HttpExchange exchange) {
+		long now = System.nanoTime();
+		sweep(now);
+		InetSocketAddress remote = exchange.getRemoteAddress();
+		if (remote == null) {
+			return null;
+		}
+		Connection connection = connections.get(remote);
+		if ((connection != null) && connection.isExpired(now, idleNanos)) {
+			// the same address and port got reused by a new connection
+			close(connection, closedIdle);
+			connection = null;
+		}
+		if (connection == null) {
+			connection = open(remote, now);
+			if (connection == null) {
+				return null;
+			}
+		}
+		long end = connection.lastEndNanos;
+		if (end != ActiveRequest.IDLE) {
+			idle.record(now - end);
+		}
+		connection.lastEndNanos = ActiveRequest.IDLE;
+		connection.requests = connection.requests + 1;
+		return connection;
+	}
+
+	/**
+	 * Invoked once the internal connector is done with an exchange
+	 *
+	 * @param exchange the exchange which has been handled
+	 * @param connection the connection returned by {@link #begin}
+	 * @param failed whether handling the exchange threw, which causes the
+	 * 		JDK to close the connection
+	 */
+	void end(HttpExchange exchange, Connection connection, boolean failed) {
+		connection.lastEndNanos = System.nanoTime();
+		if (failed || isClosing(exchange)) {
+			close(connection, closedExplicitly);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the JDK closes the connection once the given
+	 * 		exchange is done
+	 */
+	private static boolean isClosing(HttpExchange exchange) {
+		String response = exchange.getResponseHeaders().getFirst(
+			HeaderConstants.HEADER_CONNECTION
+		);
+		if (CLOSE.equalsIgnoreCase(response)) {
+			return true;
+		}
+		String request = exchange.getRequestHeaders().getFirst(
+			HeaderConstants.HEADER_CONNECTION
+		);
+		if (CLOSE.equalsIgnoreCase(request)) {
+			return true;
+		}
+		return HTTP_1_0.equals(exchange.getProtocol())
+				&& !KEEP_ALIVE.equalsIgnoreCase(request);
+	}
+
+	private Connection open(InetSocketAddress remote, long now) {
+		// reserve a slot first, so the bound holds under concurrent inserts
+		if (size.incrementAndGet() > maxTracked) {
+			size.decrementAndGet();
+			untracked.increment();
+			return null;
+		}
+		Connection created = new Connection(remote, now);
+		Connection existing = connections.putIfAbsent(remote, created);
+		if (existing != null) {
+			// never happens for well-behaved clients, an address and port
+			// only ever serve a single exchange at a time
+			size.decrementAndGet();
+			return existing;
+		}
+		opened.increment();
+		return created;
+	}
+
+	private void close(Connection connection, StripedCounter reason) {
+		if (!connections.remove(connection.remote, connection)) {
+			return;
+		}
+		size.decrementAndGet();
+		reason.increment();
+		requestsPerConnection.record(connection.requests);
+		WireBytes.INSTANCE.closed(connection.bytesIn, connection.bytesOut);
+		long end = connection.lastEndNanos;
+		if (end != ActiveRequest.IDLE) {
+			lifetime.record(end - connection.openedNanos);
+		}
+	}
+
+	/**
+	 * Closes all connections idle for longer than the JDK keeps them open,
+	 * unless another thread has done so within the last second
+	 */
+	private void sweep(long now) {
+		long next = nextSweepNanos.get();
+		if ((now - next < 0L)
+				|| !nextSweepNanos.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+			return;
+		}
+		for (Connection connection : connections.values()) {
+			if (connection.isExpired(now, idleNanos)) {
+				close(connection, closedIdle);
+			}
+		}
+	}
+
+	@Override
+	public int getOpen() {
+		sweep(System.nanoTime());
+		return size.get();
+	}
+
+	@Override
+	public long getOpened() {
+		return opened.sum();
+	}
+
+	@Override
+	public long getClosedExplicitly() {
+		return closedExplicitly.sum();
+	}
+
+	@Override
+	public long getClosedIdle() {
+		return closedIdle.sum();
+	}
+
+	@Override
+	public long getUntracked() {
+		return untracked.sum();
+	}
+
+	@Override
+	public int getMaxTracked() {
+		return maxTracked;
+	}
+
+	@Override
+	public long getIdleTimeoutMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(idleNanos);
+	}
+
+	@Override
+	public double getRequestsPerConnectionMean() {
+		return requestsPerConnection.getMean();
+	}
+
+	@Override
+	public long getRequestsPerConnectionP50() {
+		return requestsPerConnection.getPercentile(50d);
+	}
+
+	@Override
+	public long getRequestsPerConnectionP99() {
+		return requestsPerConnection.getPercentile(99d);
+	}
+
+	@Override
+	public long getRequestsPerConnectionMax() {
+		return requestsPerConnection.getMax();
+	}
+
+	@Override
+	public double getIdleMeanMillis() {
+		return idle.getMean() / 1e6d;
+	}
+
+	@Override
+	public double getIdleP99Millis() {
+		return idle.getPercentile(99d) / 1e6d;
+	}
+
+	@Override
+	public double getIdleMaxMillis() {
+		return idle.getMax() / 1e6d;
+	}
+
+	@Override
+	public double getLifetimeMeanMillis() {
+		return lifetime.getMean() / 1e6d;
+	}
+
+	@Override
+	public double getLifetimeP99Millis() {
+		return lifetime.getPercentile(99d) / 1e6d;
+	}
+
+	@Override
+	public double getLifetimeMaxMillis() {
+		return lifetime.getMax() / 1e6d;
+	}
+
+}
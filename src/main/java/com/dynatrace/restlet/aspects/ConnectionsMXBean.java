@@ -0,0 +1,81 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * Management interface of the {@link Connections}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ConnectionsMXBean {
+
+	/**
+	 * @return the number of connections currently open
+	 */
+	int getOpen();
+
+	/**
+	 * @return the number of connections opened so far
+	 */
+	long getOpened();
+
+	/**
+	 * @return the number of connections closed because of
+	 * 		{@code Connection: close}, {@code HTTP/1.0} or a failed exchange
+	 */
+	long getClosedExplicitly();
+
+	/**
+	 * @return the number of connections closed because they have been
+	 * 		idle for longer than {@link #getIdleTimeoutMillis()}
+	 */
+	long getClosedIdle();
+
+	/**
+	 * @return the number of connections which have not been tracked
+	 * 		because {@link #getMaxTracked()} connections had already been
+	 * 		open
+	 */
+	long getUntracked();
+
+	/**
+	 * @return the maximum number of connections tracked at once
+	 */
+	int getMaxTracked();
+
+	/**
+	 * @return the time after which the JDK closes idle connections
+	 */
+	long getIdleTimeoutMillis();
+
+	/**
+	 * @return the mean number of requests served by a closed connection
+	 */
+	double getRequestsPerConnectionMean();
+
+	long getRequestsPerConnectionP50();
+
+	long getRequestsPerConnectionP99();
+
+	long getRequestsPerConnectionMax();
+
+	/**
+	 * @return the mean time a connection has been idle before it got
+	 * 		reused
+	 */
+	double getIdleMeanMillis();
+
+	double getIdleP99Millis();
+
+	double getIdleMaxMillis();
+
+	/**
+	 * @return the mean time from the start of the first to the end of the
+	 * 		last exchange of a closed connection
+	 */
+	double getLifetimeMeanMillis();
+
+	double getLifetimeP99Millis();
+
+	double getLifetimeMaxMillis();
+
+}
@@ -0,0 +1,109 @@
+package com.dynatrace.restlet.aspects;
+
+import org.restlet.Response;
+import org.restlet.data.Status;
+
+/**
+ * The metrics of the calls made via {@code org.restlet.Client} towards a
+ * single downstream host and port. All updates are lock-free.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class DownstreamMetrics {
+
+	/**
+	 * Index of the counter for connector errors and exceptions
+	 */
+	private static final int CONNECTION_ERRORS = 0;
+
+	/**
+	 * Index of the counter for status codes not covered by any class
+	 */
+	private static final int OTHER = 6;
+
+	private final String key;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final StripedCounter inFlight = new StripedCounter();
+
+	/**
+	 * Counters per status class, indexed by the first digit of the status
+	 * code. Index 0 counts connection errors, index 6 anything else.
+	 */
+	private final StripedCounter[] statusClasses = new StripedCounter[7];
+
+	/**
+	 * c'tor
+	 *
+	 * @param key the downstream this object holds the metrics for
+	 */
+	DownstreamMetrics(String key) {
+		this.key = key;
+		for (int i = 0; i < statusClasses.length; i++) {
+			statusClasses[i] = new StripedCounter();
+		}
+	}
+
+	/**
+	 * Records the start of a call
+	 *
+	 * @return the {@link System#nanoTime()} the call started
+	 */
+	long start() {
+		inFlight.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the end of a call
+	 *
+	 * @param startNanos the value returned by {@link #start()}
+	 * @param response the response of the call or {@code null} if the call
+	 * 		failed with an exception
+	 */
+	void end(long startNanos, Response response) {
+		latency.record(System.nanoTime() - startNanos);
+		inFlight.decrement();
+		statusClasses[statusClass(response)].increment();
+	}
+
+	private static int statusClass(Response response) {
+		if (response == null) {
+			return CONNECTION_ERRORS;
+		}
+		Status status = response.getStatus();
+		if (status == null) {
+			return OTHER;
+		}
+		int code = status.getCode();
+		if (Status.isConnectorError(code)) {
+			return CONNECTION_ERRORS;
+		}
+		if ((code >= 100) && (code < 600)) {
+			return code / 100;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * @return a snapshot of the current values
+	 */
+	DownstreamStats snapshot() {
+		return new DownstreamStats(
+			key,
+			latency.getCount(),
+			inFlight.sum(),
+			latency.getMean() / 1e6d,
+			latency.getPercentile(50d) / 1e6d,
+			latency.getPercentile(99d) / 1e6d,
+			latency.getMax() / 1e6d,
+			statusClasses[1].sum(),
+			statusClasses[2].sum(),
+			statusClasses[3].sum(),
+			statusClasses[4].sum(),
+			statusClasses[5].sum(),
+			statusClasses[CONNECTION_ERRORS].sum()
+		);
+	}
+
+}
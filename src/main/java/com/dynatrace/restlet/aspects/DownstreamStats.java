@@ -0,0 +1,144 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the metrics of the calls towards a single
+ * downstream host and port.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class DownstreamStats {
+
+	private final String downstream;
+	private final long calls;
+	private final long inFlight;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p99Millis;
+	private final double maxMillis;
+	private final long informational;
+	private final long success;
+	private final long redirection;
+	private final long clientErrors;
+	private final long serverErrors;
+	private final long connectionErrors;
+
+	@ConstructorProperties({
+		"downstream", "calls", "inFlight", "meanMillis", "p50Millis",
+		"p99Millis", "maxMillis", "informational", "success", "redirection",
+		"clientErrors", "serverErrors", "connectionErrors"
+	})
+	public DownstreamStats(
+			String downstream,
+			long calls,
+			long inFlight,
+			double meanMillis,
+			double p50Millis,
+			double p99Millis,
+			double maxMillis,
+			long informational,
+			long success,
+			long redirection,
+			long clientErrors,
+			long serverErrors,
+			long connectionErrors
+	) {
+		this.downstream = downstream;
+		this.calls = calls;
+		this.inFlight = inFlight;
+		this.meanMillis = meanMillis;
+		this.p50Millis = p50Millis;
+		this.p99Millis = p99Millis;
+		this.maxMillis = maxMillis;
+		this.informational = informational;
+		this.success = success;
+		this.redirection = redirection;
+		this.clientErrors = clientErrors;
+		this.serverErrors = serverErrors;
+		this.connectionErrors = connectionErrors;
+	}
+
+	/**
+	 * @return scheme, host and port of the downstream, e.g.
+	 * 		{@code http://backend:8080}
+	 */
+	public String getDownstream() {
+		return downstream;
+	}
+
+	/**
+	 * @return the number of completed calls
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * @return the number of calls currently in progress
+	 */
+	public long getInFlight() {
+		return inFlight;
+	}
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	public double getP50Millis() {
+		return p50Millis;
+	}
+
+	public double getP99Millis() {
+		return p99Millis;
+	}
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+	/**
+	 * @return the number of calls answered with a 1xx status
+	 */
+	public long getInformational() {
+		return informational;
+	}
+
+	/**
+	 * @return the number of calls answered with a 2xx status
+	 */
+	public long getSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return the number of calls answered with a 3xx status
+	 */
+	public long getRedirection() {
+		return redirection;
+	}
+
+	/**
+	 * @return the number of calls answered with a 4xx status
+	 */
+	public long getClientErrors() {
+		return clientErrors;
+	}
+
+	/**
+	 * @return the number of calls answered with a 5xx status
+	 */
+	public long getServerErrors() {
+		return serverErrors;
+	}
+
+	/**
+	 * @return the number of calls which failed with a connector error
+	 * 		(status 1000 - 1002) or an exception
+	 */
+	public long getConnectionErrors() {
+		return connectionErrors;
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * <p>
+ * Estimates how often keys have been accessed recently, as required by the
+ * admission policy of the {@link ResponseCache}. A count-min sketch with
+ * four rows of 4 bit counters, all packed into a single {@code long[]}, so
+ * the memory required does not depend on the number of keys seen.
+ * </p>
+ * <p>
+ * Once the number of increments reaches ten times the number of keys
+ * expected, all counters get halved. Keys which have been popular a while
+ * ago therefore fade out and make room for keys popular now.
+ * </p>
+ * <p>
+ * Not thread safe, guarded by the lock of the {@link ResponseCache}.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class FrequencySketch {
+
+	private static final long[] SEEDS = {
+		0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+		0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+	};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private static final int MAX_COUNT = 15;
+
+	private final long[] table;
+	private final int mask;
+	private final int sampleSize;
+	private int additions = 0;
+
+	/**
+	 * c'tor
+	 *
+	 * @param expectedKeys the number of keys expected to be tracked, which
+	 * 		determines the width of the sketch
+	 */
+	FrequencySketch(int expectedKeys) {
+		int width = Integer.highestOneBit(Math.max(16, Math.min(1 << 24, expectedKeys)) - 1) << 1;
+		this.table = new long[width];
+		this.mask = width - 1;
+		this.sampleSize = 10 * width;
+	}
+
+	/**
+	 * @return the index of the {@code long} holding the counter of the given
+	 * 		row
+	 */
+	private int index(int hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		h += h >>> 32;
+		return (int) h & mask;
+	}
+
+	/**
+	 * @return the bit offset of the counter of the given row within its
+	 * 		{@code long}
+	 */
+	private static int offset(int hash, int row) {
+		return (((hash >>> (row << 3)) & 3) << 4) + (row << 2);
+	}
+
+	/**
+	 * @param hash the hash code of the key accessed
+	 */
+	void increment(int hash) {
+		boolean added = false;
+		for (int row = 0; row < SEEDS.length; row++) {
+			int i = index(hash, row);
+			int shift = offset(hash, row);
+			if (((table[i] >>> shift) & 0xfL) < MAX_COUNT) {
+				table[i] += 1L << shift;
+				added = true;
+			}
+		}
+		if (added && (++additions >= sampleSize)) {
+			reset();
+		}
+	}
+
+	/**
+	 * @param hash the hash code of a key
+	 * @return the estimated number of recent accesses of that key
+	 */
+	int frequency(int hash) {
+		int frequency = MAX_COUNT;
+		for (int row = 0; row < SEEDS.length; row++) {
+			int count = (int) ((table[index(hash, row)] >>> offset(hash, row)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions >>>= 1;
+	}
+
+}
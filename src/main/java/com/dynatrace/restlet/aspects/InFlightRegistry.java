@@ -0,0 +1,274 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.restlet.Request;
+import org.restlet.Response;
+
+/**
+ * <p>
+ * Keeps track of the requests currently being executed within
+ * {@code Server.handle}.
+ * </p>
+ * <p>
+ * Every thread owns a single {@link ActiveRequest} slot, which gets linked
+ * into one of several stripes the first time the thread handles a request.
+ * Linking is a single compare-and-set on the head of a stripe chosen by the
+ * thread id, so threads do not contend on a common lock or counter.
+ * Entering and leaving a request afterwards only writes the thread's own
+ * slot, which makes both operations O(1) and free of allocations.
+ * </p>
+ * <p>
+ * Queries walk all stripes and are therefore meant for diagnostics and
+ * management purposes only. Slots of terminated threads get unlinked again
+ * by queries and whenever a thread links its slot into a stripe, so the
+ * stripes do not grow with thread churn even if nobody queries.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class InFlightRegistry implements InFlightRegistryMXBean {
+
+	private static final int DEFAULT_TOP_N =
+			Integer.getInteger("dt.restlet.inflight.topN", 10);
+
+	public static final InFlightRegistry INSTANCE = new InFlightRegistry();
+
+	static {
+		Management.register("InFlightRegistry", INSTANCE);
+	}
+
+	private static final Comparator<InFlightRequestInfo> BY_AGE =
+			new Comparator<InFlightRequestInfo>() {
+		@Override
+		public int compare(InFlightRequestInfo o1, InFlightRequestInfo o2) {
+			long a1 = o1.getAgeMillis();
+			long a2 = o2.getAgeMillis();
+			return (a1 < a2) ? 1 : ((a1 == a2) ? 0 : -1);
+		}
+	};
+
+	private final AtomicReferenceArray<ActiveRequest> stripes;
+	private final int mask;
+
+	private final ThreadLocal<ActiveRequest> slots =
+			new ThreadLocal<ActiveRequest>() {
+		@Override
+		protected ActiveRequest initialValue() {
+			return link(new ActiveRequest(Thread.currentThread()));
+		}
+	};
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private InFlightRegistry() {
+		int size = 1;
+		int wanted = Runtime.getRuntime().availableProcessors() * 2;
+		while (size < wanted) {
+			size <<= 1;
+		}
+		this.stripes = new AtomicReferenceArray<ActiveRequest>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Pushes the slot of a thread onto its stripe, unlinking the slots of
+	 * terminated threads from that stripe on the way. This happens once
+	 * per thread, so pruning does not weigh on requests.
+	 *
+	 * @param slot the slot of the calling thread
+	 * @return the given slot
+	 */
+	private ActiveRequest link(ActiveRequest slot) {
+		int stripe = (int) (slot.getThreadId() * 0x9E3779B9L) & mask;
+		ActiveRequest head;
+		do {
+			head = stripes.get(stripe);
+			slot.next = head;
+		} while (!stripes.compareAndSet(stripe, head, slot));
+		prune(stripe);
+		return slot;
+	}
+
+	/**
+	 * Registers the calling thread as executing the given request. Nested
+	 * invocations on the same thread are counted but not registered again.
+	 *
+	 * @param request the request object
+	 * @param response the response object
+	 * @return the slot of the calling thread, which needs to be passed to
+	 * 		{@link #exit(ActiveRequest)} once the request has been handled
+	 */
+	public ActiveRequest enter(Request request, Response response) {
+		ActiveRequest slot = slots.get();
+		if (slot.depth++ == 0) {
+			slot.start(request, response);
+		}
+		return slot;
+	}
+
+	/**
+	 * @return the slot of the calling thread
+	 */
+	ActiveRequest current() {
+		return slots.get();
+	}
+
+	/**
+	 * Unregisters the request represented by the given slot.
+	 *
+	 * @param slot the slot returned by {@link #enter(Request, Response)}
+	 */
+	public void exit(ActiveRequest slot) {
+		if (slot == null) {
+			return;
+		}
+		if (--slot.depth == 0) {
+			slot.stop();
+		}
+	}
+
+	/**
+	 * Records that the request currently executed by the calling thread
+	 * has been matched by a route with the given template pattern.
+	 *
+	 * @param pattern the URI template pattern of the matched route
+	 */
+	public void routed(String pattern) {
+		ActiveRequest slot = slots.get();
+		if (slot.isActive()) {
+			slot.routed(pattern);
+		}
+	}
+
+	/**
+	 * Walks all stripes, collecting snapshots of all currently executing
+	 * requests after unlinking the slots of terminated threads.
+	 *
+	 * @return snapshots of all currently executing requests
+	 */
+	private synchronized List<InFlightRequestInfo> snapshot() {
+		List<InFlightRequestInfo> result = new ArrayList<InFlightRequestInfo>();
+		long nowNanos = System.nanoTime();
+		for (int i = 0; i < stripes.length(); i++) {
+			prune(i);
+			for (ActiveRequest slot = stripes.get(i); slot != null; slot = slot.next) {
+				long startNanos = slot.getStartNanos();
+				if (startNanos != ActiveRequest.IDLE) {
+					result.add(new InFlightRequestInfo(
+						slot.getRoute(),
+						slot.getThreadId(),
+						slot.getThreadName(),
+						slot.getStartMillis(),
+						TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos)
+					));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Unlinks the slots of terminated threads from a stripe. Slots are only
+	 * ever pushed onto the head of a stripe, so unlinking any slot except
+	 * the head does not interfere with concurrent pushes. The head itself
+	 * is unlinked via compare-and-set, see
+	 * {@link #unlinkHead(int, ActiveRequest)}. Pruning itself is serialized
+	 * by synchronizing on this registry.
+	 *
+	 * @param stripe the index of the stripe
+	 */
+	private synchronized void prune(int stripe) {
+		ActiveRequest prev = null;
+		ActiveRequest slot = stripes.get(stripe);
+		while (slot != null) {
+			ActiveRequest next = slot.next;
+			if (slot.isDead()) {
+				if (prev == null) {
+					prev = unlinkHead(stripe, slot);
+				} else {
+					prev.next = next;
+				}
+			} else {
+				prev = slot;
+			}
+			slot = next;
+		}
+	}
+
+	/**
+	 * Unlinks the dead head of a stripe. If a thread pushed its slot
+	 * concurrently, the dead slot is no head anymore and gets unlinked from
+	 * its new predecessor instead.
+	 *
+	 * @param stripe the index of the stripe
+	 * @param dead the slot to unlink, read as head of the stripe
+	 * @return the predecessor of the slot following the dead one or
+	 * 		{@code null} if that slot is the head of the stripe now
+	 */
+	private ActiveRequest unlinkHead(int stripe, ActiveRequest dead) {
+		ActiveRequest next = dead.next;
+		if (stripes.compareAndSet(stripe, dead, next)) {
+			return null;
+		}
+		ActiveRequest prev = stripes.get(stripe);
+		while (prev.next != dead) {
+			prev = prev.next;
+		}
+		prev.next = next;
+		return prev;
+	}
+
+	@Override
+	public int getInFlightCount() {
+		return snapshot().size();
+	}
+
+	@Override
+	public long getOldestInFlightMillis() {
+		long oldest = 0L;
+		for (InFlightRequestInfo info : snapshot()) {
+			oldest = Math.max(oldest, info.getAgeMillis());
+		}
+		return oldest;
+	}
+
+	@Override
+	public Map<String, Integer> getConcurrencyByRoute() {
+		Map<String, Integer> result = new HashMap<String, Integer>();
+		for (InFlightRequestInfo info : snapshot()) {
+			String route = String.valueOf(info.getRoute());
+			Integer count = result.get(route);
+			result.put(route, (count == null) ? 1 : count + 1);
+		}
+		return result;
+	}
+
+	@Override
+	public List<InFlightRequestInfo> getLongestRunning() {
+		return longestRunning(DEFAULT_TOP_N);
+	}
+
+	@Override
+	public List<InFlightRequestInfo> longestRunning(int count) {
+		List<InFlightRequestInfo> infos = snapshot();
+		Collections.sort(infos, BY_AGE);
+		if (infos.size() > count) {
+			return new ArrayList<InFlightRequestInfo>(
+				infos.subList(0, Math.max(0, count))
+			);
+		}
+		return infos;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of the {@link InFlightRegistry}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface InFlightRegistryMXBean {
+
+	/**
+	 * @return the number of requests currently being executed
+	 */
+	int getInFlightCount();
+
+	/**
+	 * @return the age in milliseconds of the longest running request or
+	 * 		{@code 0} if no request is currently being executed
+	 */
+	long getOldestInFlightMillis();
+
+	/**
+	 * @return the number of currently executing requests per route
+	 */
+	Map<String, Integer> getConcurrencyByRoute();
+
+	/**
+	 * @return the longest running requests, the longest one first
+	 */
+	List<InFlightRequestInfo> getLongestRunning();
+
+	/**
+	 * @param count the maximum number of requests to return
+	 * @return the {@code count} longest running requests, the longest one
+	 * 		first
+	 */
+	List<InFlightRequestInfo> longestRunning(int count);
+
+}
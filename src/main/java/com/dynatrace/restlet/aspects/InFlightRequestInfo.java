@@ -0,0 +1,88 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of a single request which was executing at the
+ * time the {@link InFlightRegistry} got queried.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class InFlightRequestInfo {
+
+	private final String route;
+	private final long threadId;
+	private final String threadName;
+	private final long startTime;
+	private final long ageMillis;
+
+	/**
+	 * c'tor
+	 *
+	 * @param route the route template or path of the request
+	 * @param threadId the id of the thread executing the request
+	 * @param threadName the name of the thread executing the request
+	 * @param startTime the wall clock time when the request started
+	 * @param ageMillis for how many milliseconds the request has been
+	 * 		executing at the time of the snapshot
+	 */
+	@ConstructorProperties({
+		"route", "threadId", "threadName", "startTime", "ageMillis"
+	})
+	public InFlightRequestInfo(
+			String route,
+			long threadId,
+			String threadName,
+			long startTime,
+			long ageMillis
+	) {
+		this.route = route;
+		this.threadId = threadId;
+		this.threadName = threadName;
+		this.startTime = startTime;
+		this.ageMillis = ageMillis;
+	}
+
+	/**
+	 * @return the matched route template or the request path if no route
+	 * 		has been matched (yet)
+	 */
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return the id of the thread executing the request
+	 */
+	public long getThreadId() {
+		return threadId;
+	}
+
+	/**
+	 * @return the name of the thread executing the request
+	 */
+	public String getThreadName() {
+		return threadName;
+	}
+
+	/**
+	 * @return the wall clock time in milliseconds when the request started
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return for how many milliseconds the request has been executing
+	 */
+	public long getAgeMillis() {
+		return ageMillis;
+	}
+
+	@Override
+	public String toString() {
+		return route + " on " + threadName + " for " + ageMillis + " ms";
+	}
+
+}
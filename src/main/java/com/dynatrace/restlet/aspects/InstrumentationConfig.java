@@ -0,0 +1,648 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Request;
+import org.restlet.data.Reference;
+
+/**
+ * <p>
+ * An immutable snapshot of the settings which can be changed at runtime,
+ * see {@link Configuration}. The aspects read the current snapshot once per
+ * request, so a request always sees a consistent set of settings.
+ * </p>
+ * <p>
+ * The following keys are supported:
+ * </p>
+ * <ul>
+ * <li>{@code enabled} - {@code false} passes all requests on without any
+ * 		instrumentation (default {@code true})</li>
+ * <li>{@code include} - comma separated path prefixes, only requests with
+ * 		a matching path get instrumented (default: all)</li>
+ * <li>{@code exclude} - comma separated path prefixes of requests which
+ * 		should not get instrumented (default: none)</li>
+ * <li>{@code cost.sampleRate} - the fraction of requests sampled by
+ * 		{@link RequestCosts} (default {@code 0.0}, disabled)</li>
+ * <li>{@code slow.thresholdMillis} - requests taking longer get logged,
+ * 		{@code 0} disables logging (default)</li>
+ * <li>{@code slow.thresholdMillis.<route>} - the threshold for a specific
+ * 		route, e.g. {@code slow.thresholdMillis./api/users/{id}=250}</li>
+ * <li>{@code client.enabled} - whether calls via {@code org.restlet.Client}
+ * 		are measured (default {@code true})</li>
+ * <li>{@code upload.enabled} - whether the time requests are blocked
+ * 		reading their bodies is measured by {@link Uploads} (default
+ * 		{@code false})</li>
+ * <li>{@code limit.enabled} - whether the {@link ConcurrencyLimiter} rejects
+ * 		requests exceeding its limit (default {@code false})</li>
+ * <li>{@code limit.retryAfterSeconds} - the {@code Retry-After} sent along
+ * 		with rejected requests, {@code 0} omits the header (default
+ * 		{@code 1})</li>
+ * <li>{@code rate.client} - the token bucket per client address enforced by
+ * 		the {@link RateLimiter}, written as
+ * 		{@code <permitsPerSecond>[,<burst>]} (default: none)</li>
+ * <li>{@code rate.route.<route>} - the token bucket of a specific route,
+ * 		e.g. {@code rate.route./api/search=5,10} (default: none)</li>
+ * <li>{@code cache.route.<route>} - the seconds responses of a specific
+ * 		route may be served by the {@link ResponseCache}, e.g.
+ * 		{@code cache.route./api/catalog/{id}=60} (default: none)</li>
+ * <li>{@code coalesce.route.<route>} - the milliseconds identical
+ * 		concurrent requests of a specific route wait for the first of them,
+ * 		see {@link Coalescer} (default: none)</li>
+ * <li>{@code coalesce.headers} - comma separated request headers which
+ * 		need to be equal for requests to be identical (default
+ * 		{@code Accept,Accept-Encoding,Accept-Language,Authorization,Cookie})</li>
+ * <li>{@code slo.route.<route>} - the latency objective of a specific
+ * 		route tracked by the {@link SloTracker}, written as
+ * 		{@code <percent>,<thresholdMillis>}, e.g.
+ * 		{@code slo.route./api/users/{id}=99,200} (default: none)</li>
+ * <li>{@code normalize.enabled} - whether the path of requests no
+ * 		{@code TemplateRoute} matched gets reported as normalized route by
+ * 		the {@link PathNormalizer} (default {@code false})</li>
+ * <li>{@code normalize.prefix.<prefix>} - the route reported for all
+ * 		paths starting with a specific prefix, e.g.
+ * 		{@code normalize.prefix./static=/static/*}, see {@link PrefixTrie}
+ * 		(default: none)</li>
+ * <li>{@code overhead.budgetPercent} - the share of the request time the
+ * 		instrumentation may take before the {@link Overhead} governor sheds
+ * 		sampling and detail, {@code 0} only measures (default)</li>
+ * </ul>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class InstrumentationConfig {
+
+	static final String ENABLED = "enabled";
+	static final String INCLUDE = "include";
+	static final String EXCLUDE = "exclude";
+	static final String COST_SAMPLE_RATE = "cost.sampleRate";
+	static final String SLOW_THRESHOLD = "slow.thresholdMillis";
+	static final String CLIENT_ENABLED = "client.enabled";
+	static final String UPLOAD_ENABLED = "upload.enabled";
+	static final String LIMIT_ENABLED = "limit.enabled";
+	static final String LIMIT_RETRY_AFTER = "limit.retryAfterSeconds";
+	static final String RATE_CLIENT = "rate.client";
+	static final String RATE_ROUTE = "rate.route.";
+	static final String CACHE_ROUTE = "cache.route.";
+	static final String COALESCE_ROUTE = "coalesce.route.";
+	static final String COALESCE_HEADERS = "coalesce.headers";
+	static final String SLO_ROUTE = "slo.route.";
+	static final String NORMALIZE_ENABLED = "normalize.enabled";
+	static final String NORMALIZE_PREFIX = "normalize.prefix.";
+	static final String OVERHEAD_BUDGET = "overhead.budgetPercent";
+
+	private static final String[] NONE = new String[0];
+
+	private static final Map<String, Long> NO_THRESHOLDS =
+			Collections.emptyMap();
+
+	private static final Map<String, RateLimit> NO_RATE_LIMITS =
+			Collections.emptyMap();
+
+	private static final Map<String, SloObjective> NO_SLOS =
+			Collections.emptyMap();
+
+	private static final String[] COALESCE_HEADERS_DEFAULT = {
+		"Accept", "Accept-Encoding", "Accept-Language", "Authorization", "Cookie"
+	};
+
+	/**
+	 * The settings in effect if neither a configuration file nor any
+	 * system properties have been specified
+	 */
+	static final InstrumentationConfig DEFAULTS = new InstrumentationConfig(
+		true, NONE, NONE, 0d, 0L, NO_THRESHOLDS, true, false, false, 1, null,
+		NO_RATE_LIMITS, NO_THRESHOLDS, NO_THRESHOLDS, COALESCE_HEADERS_DEFAULT,
+		NO_SLOS, false, PrefixTrie.EMPTY, 0d
+	);
+
+	private final boolean enabled;
+	private final String[] includes;
+	private final String[] excludes;
+	private final double sampleRate;
+	private final int costSampleInterval;
+	private final long slowThresholdNanos;
+	private final Map<String, Long> slowThresholdNanosByRoute;
+	private final boolean clientMetrics;
+	private final boolean uploadTimed;
+	private final boolean limited;
+	private final int retryAfterSeconds;
+	private final RateLimit clientRateLimit;
+	private final Map<String, RateLimit> routeRateLimits;
+	private final Map<String, Long> cacheTtlNanosByRoute;
+	private final Map<String, Long> coalesceWaitNanosByRoute;
+	private final String[] coalesceHeaders;
+	private final Map<String, SloObjective> slosByRoute;
+	private final boolean pathNormalized;
+	private final PrefixTrie prefixRules;
+	private final double overheadBudget;
+
+	private InstrumentationConfig(
+			boolean enabled,
+			String[] includes,
+			String[] excludes,
+			double sampleRate,
+			long slowThresholdNanos,
+			Map<String, Long> slowThresholdNanosByRoute,
+			boolean clientMetrics,
+			boolean uploadTimed,
+			boolean limited,
+			int retryAfterSeconds,
+			RateLimit clientRateLimit,
+			Map<String, RateLimit> routeRateLimits,
+			Map<String, Long> cacheTtlNanosByRoute,
+			Map<String, Long> coalesceWaitNanosByRoute,
+			String[] coalesceHeaders,
+			Map<String, SloObjective> slosByRoute,
+			boolean pathNormalized,
+			PrefixTrie prefixRules,
+			double overheadBudget
+	) {
+		this.enabled = enabled;
+		this.includes = includes;
+		this.excludes = excludes;
+		this.sampleRate = Math.max(0d, Math.min(1d, sampleRate));
+		this.costSampleInterval = interval(this.sampleRate);
+		this.slowThresholdNanos = slowThresholdNanos;
+		this.slowThresholdNanosByRoute = slowThresholdNanosByRoute;
+		this.clientMetrics = clientMetrics;
+		this.uploadTimed = uploadTimed;
+		this.limited = limited;
+		this.retryAfterSeconds = retryAfterSeconds;
+		this.clientRateLimit = clientRateLimit;
+		this.routeRateLimits = routeRateLimits;
+		this.cacheTtlNanosByRoute = cacheTtlNanosByRoute;
+		this.coalesceWaitNanosByRoute = coalesceWaitNanosByRoute;
+		this.coalesceHeaders = coalesceHeaders;
+		this.slosByRoute = slosByRoute;
+		this.pathNormalized = pathNormalized;
+		this.prefixRules = prefixRules;
+		this.overheadBudget = Math.max(0d, Math.min(1d, overheadBudget));
+	}
+
+	/**
+	 * Copies all settings of the given snapshot except for the ones which
+	 * can be changed at runtime via the {@link Configuration}. Fields are
+	 * copied by name, so they cannot get mixed up the way arguments of the
+	 * same type passed positionally could.
+	 *
+	 * @param source the snapshot to copy
+	 * @param enabled whether instrumentation should be enabled
+	 * @param sampleRate the fraction of requests to be sampled by
+	 * 		{@link RequestCosts}
+	 */
+	private InstrumentationConfig(
+			InstrumentationConfig source,
+			boolean enabled,
+			double sampleRate
+	) {
+		this.enabled = enabled;
+		this.includes = source.includes;
+		this.excludes = source.excludes;
+		this.sampleRate = Math.max(0d, Math.min(1d, sampleRate));
+		this.costSampleInterval = interval(this.sampleRate);
+		this.slowThresholdNanos = source.slowThresholdNanos;
+		this.slowThresholdNanosByRoute = source.slowThresholdNanosByRoute;
+		this.clientMetrics = source.clientMetrics;
+		this.uploadTimed = source.uploadTimed;
+		this.limited = source.limited;
+		this.retryAfterSeconds = source.retryAfterSeconds;
+		this.clientRateLimit = source.clientRateLimit;
+		this.routeRateLimits = source.routeRateLimits;
+		this.cacheTtlNanosByRoute = source.cacheTtlNanosByRoute;
+		this.coalesceWaitNanosByRoute = source.coalesceWaitNanosByRoute;
+		this.coalesceHeaders = source.coalesceHeaders;
+		this.slosByRoute = source.slosByRoute;
+		this.pathNormalized = source.pathNormalized;
+		this.prefixRules = source.prefixRules;
+		this.overheadBudget = source.overheadBudget;
+	}
+
+	/**
+	 * @return every how many requests one gets sampled or {@code 0} if
+	 * 		sampling is disabled
+	 */
+	private static int interval(double sampleRate) {
+		if (!(sampleRate > 0d)) {
+			return 0;
+		}
+		long interval = Math.round(1d / sampleRate);
+		return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, interval));
+	}
+
+	/**
+	 * Creates a snapshot from the given properties. Keys not contained fall
+	 * back to the {@link #DEFAULTS}.
+	 *
+	 * @param props the properties to parse
+	 * @return the resulting snapshot
+	 * @throws IllegalArgumentException if any of the values is invalid
+	 */
+	static InstrumentationConfig parse(Properties props) {
+		Map<String, Long> byRoute = new HashMap<String, Long>();
+		Map<String, RateLimit> rateByRoute = new HashMap<String, RateLimit>();
+		Map<String, Long> ttlByRoute = new HashMap<String, Long>();
+		Map<String, Long> waitByRoute = new HashMap<String, Long>();
+		Map<String, SloObjective> sloByRoute = new HashMap<String, SloObjective>();
+		Map<String, String> routeByPrefix = new HashMap<String, String>();
+		String prefix = SLOW_THRESHOLD + ".";
+		for (String key : props.stringPropertyNames()) {
+			if (key.startsWith(prefix) && (key.length() > prefix.length())) {
+				byRoute.put(
+					key.substring(prefix.length()),
+					millisToNanos(key, props.getProperty(key))
+				);
+			} else if (key.startsWith(RATE_ROUTE) && (key.length() > RATE_ROUTE.length())) {
+				RateLimit limit = RateLimit.parse(key, props.getProperty(key));
+				if (limit != null) {
+					rateByRoute.put(key.substring(RATE_ROUTE.length()), limit);
+				}
+			} else if (key.startsWith(CACHE_ROUTE) && (key.length() > CACHE_ROUTE.length())) {
+				long ttl = TimeUnit.SECONDS.toNanos(
+					parseSeconds(key, props.getProperty(key), 0)
+				);
+				if (ttl > 0L) {
+					ttlByRoute.put(key.substring(CACHE_ROUTE.length()), Long.valueOf(ttl));
+				}
+			} else if (key.startsWith(COALESCE_ROUTE) && (key.length() > COALESCE_ROUTE.length())) {
+				long wait = millisToNanos(key, props.getProperty(key));
+				if (wait > 0L) {
+					waitByRoute.put(key.substring(COALESCE_ROUTE.length()), Long.valueOf(wait));
+				}
+			} else if (key.startsWith(SLO_ROUTE) && (key.length() > SLO_ROUTE.length())) {
+				sloByRoute.put(
+					key.substring(SLO_ROUTE.length()),
+					SloObjective.parse(key, props.getProperty(key))
+				);
+			} else if (key.startsWith(NORMALIZE_PREFIX) && (key.length() > NORMALIZE_PREFIX.length())) {
+				String route = props.getProperty(key).trim();
+				if (route.isEmpty()) {
+					throw new IllegalArgumentException("Invalid value for " + key + ": " + route);
+				}
+				routeByPrefix.put(key.substring(NORMALIZE_PREFIX.length()), route);
+			}
+		}
+		return new InstrumentationConfig(
+			parseBoolean(ENABLED, props.getProperty(ENABLED), DEFAULTS.enabled),
+			parseList(props.getProperty(INCLUDE)),
+			parseList(props.getProperty(EXCLUDE)),
+			parseDouble(
+				COST_SAMPLE_RATE,
+				props.getProperty(COST_SAMPLE_RATE),
+				DEFAULTS.sampleRate
+			),
+			millisToNanos(SLOW_THRESHOLD, props.getProperty(SLOW_THRESHOLD)),
+			byRoute.isEmpty() ? NO_THRESHOLDS : byRoute,
+			parseBoolean(
+				CLIENT_ENABLED,
+				props.getProperty(CLIENT_ENABLED),
+				DEFAULTS.clientMetrics
+			),
+			parseBoolean(
+				UPLOAD_ENABLED,
+				props.getProperty(UPLOAD_ENABLED),
+				DEFAULTS.uploadTimed
+			),
+			parseBoolean(
+				LIMIT_ENABLED,
+				props.getProperty(LIMIT_ENABLED),
+				DEFAULTS.limited
+			),
+			parseSeconds(
+				LIMIT_RETRY_AFTER,
+				props.getProperty(LIMIT_RETRY_AFTER),
+				DEFAULTS.retryAfterSeconds
+			),
+			RateLimit.parse(RATE_CLIENT, props.getProperty(RATE_CLIENT)),
+			rateByRoute.isEmpty() ? NO_RATE_LIMITS : rateByRoute,
+			ttlByRoute.isEmpty() ? NO_THRESHOLDS : ttlByRoute,
+			waitByRoute.isEmpty() ? NO_THRESHOLDS : waitByRoute,
+			(props.getProperty(COALESCE_HEADERS) == null)
+					? COALESCE_HEADERS_DEFAULT
+					: parseList(props.getProperty(COALESCE_HEADERS)),
+			sloByRoute.isEmpty() ? NO_SLOS : sloByRoute,
+			parseBoolean(
+				NORMALIZE_ENABLED,
+				props.getProperty(NORMALIZE_ENABLED),
+				DEFAULTS.pathNormalized
+			),
+			PrefixTrie.of(routeByPrefix),
+			parseDouble(
+				OVERHEAD_BUDGET,
+				props.getProperty(OVERHEAD_BUDGET),
+				DEFAULTS.overheadBudget * 100d
+			) / 100d
+		);
+	}
+
+	private static boolean parseBoolean(String key, String value, boolean def) {
+		if (value == null) {
+			return def;
+		}
+		value = value.trim();
+		if (Boolean.TRUE.toString().equalsIgnoreCase(value)) {
+			return true;
+		}
+		if (Boolean.FALSE.toString().equalsIgnoreCase(value)) {
+			return false;
+		}
+		throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+	}
+
+	private static double parseDouble(String key, String value, double def) {
+		if (value == null) {
+			return def;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+		}
+	}
+
+	private static long millisToNanos(String key, String value) {
+		if (value == null) {
+			return 0L;
+		}
+		try {
+			return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, Long.parseLong(value.trim())));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+		}
+	}
+
+	private static int parseSeconds(String key, String value, int def) {
+		if (value == null) {
+			return def;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(value.trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+		}
+	}
+
+	private static String[] parseList(String value) {
+		if (value == null) {
+			return NONE;
+		}
+		List<String> result = new ArrayList<String>();
+		for (String item : value.split(",")) {
+			item = item.trim();
+			if (!item.isEmpty()) {
+				result.add(item);
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * @param enabled whether instrumentation should be enabled
+	 * @return a copy of this snapshot with the given enablement
+	 */
+	InstrumentationConfig withEnabled(boolean enabled) {
+		return new InstrumentationConfig(this, enabled, sampleRate);
+	}
+
+	/**
+	 * @param sampleRate the fraction of requests to be sampled by
+	 * 		{@link RequestCosts}
+	 * @return a copy of this snapshot with the given sample rate
+	 */
+	InstrumentationConfig withSampleRate(double sampleRate) {
+		return new InstrumentationConfig(this, enabled, sampleRate);
+	}
+
+	/**
+	 * @param request the request about to be handled
+	 * @return {@code true} if the given request should get instrumented
+	 */
+	boolean isInstrumented(Request request) {
+		if (!enabled) {
+			return false;
+		}
+		if ((includes.length == 0) && (excludes.length == 0)) {
+			return true;
+		}
+		Reference ref = (request == null) ? null : request.getResourceRef();
+		String path = (ref == null) ? null : ref.getPath();
+		if (path == null) {
+			return includes.length == 0;
+		}
+		for (String exclude : excludes) {
+			if (path.startsWith(exclude)) {
+				return false;
+			}
+		}
+		if (includes.length == 0) {
+			return true;
+		}
+		for (String include : includes) {
+			if (path.startsWith(include)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	List<String> getIncludes() {
+		return Collections.unmodifiableList(Arrays.asList(includes));
+	}
+
+	List<String> getExcludes() {
+		return Collections.unmodifiableList(Arrays.asList(excludes));
+	}
+
+	double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return every how many requests of a thread one gets sampled by
+	 * 		{@link RequestCosts} or {@code 0} if sampling is disabled
+	 */
+	int getCostSampleInterval() {
+		return costSampleInterval;
+	}
+
+	/**
+	 * @param route the route of a request
+	 * @return the duration in nanoseconds above which a request of the
+	 * 		given route is considered slow or {@code 0} if slow requests of
+	 * 		that route should not be reported
+	 */
+	long getSlowThresholdNanos(String route) {
+		if (!slowThresholdNanosByRoute.isEmpty() && (route != null)) {
+			Long threshold = slowThresholdNanosByRoute.get(route);
+			if (threshold != null) {
+				return threshold.longValue();
+			}
+		}
+		return slowThresholdNanos;
+	}
+
+	/**
+	 * @return {@code true} if calls via {@code org.restlet.Client} should
+	 * 		be measured
+	 */
+	boolean isClientMetrics() {
+		return clientMetrics;
+	}
+
+	/**
+	 * @return {@code true} if the time requests are blocked reading their
+	 * 		bodies should be measured by {@link Uploads}
+	 */
+	boolean isUploadTimed() {
+		return uploadTimed;
+	}
+
+	/**
+	 * @return {@code true} if requests exceeding the limit of the
+	 * 		{@link ConcurrencyLimiter} should be rejected
+	 */
+	boolean isLimited() {
+		return limited;
+	}
+
+	/**
+	 * @return the {@code Retry-After} in seconds sent along with rejected
+	 * 		requests or {@code 0} if the header should be omitted
+	 */
+	int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	/**
+	 * @return the token bucket per client address or {@code null} if
+	 * 		clients should not be rate limited
+	 */
+	RateLimit getClientRateLimit() {
+		return clientRateLimit;
+	}
+
+	/**
+	 * @return {@code true} if any route should be rate limited
+	 */
+	boolean hasRouteRateLimits() {
+		return !routeRateLimits.isEmpty();
+	}
+
+	/**
+	 * @param route the route of a request
+	 * @return the token bucket of the given route or {@code null} if that
+	 * 		route should not be rate limited
+	 */
+	RateLimit getRouteRateLimit(String route) {
+		if (routeRateLimits.isEmpty() || (route == null)) {
+			return null;
+		}
+		return routeRateLimits.get(route);
+	}
+
+	/**
+	 * @return {@code true} if responses of any route should be cached
+	 */
+	boolean hasCachedRoutes() {
+		return !cacheTtlNanosByRoute.isEmpty();
+	}
+
+	/**
+	 * @param route the route of a request
+	 * @return how long responses of the given route may be served from the
+	 * 		{@link ResponseCache} in nanoseconds or {@code 0} if they should
+	 * 		not be cached
+	 */
+	long getCacheTtlNanos(String route) {
+		if (cacheTtlNanosByRoute.isEmpty() || (route == null)) {
+			return 0L;
+		}
+		Long ttl = cacheTtlNanosByRoute.get(route);
+		return (ttl == null) ? 0L : ttl.longValue();
+	}
+
+	/**
+	 * @return {@code true} if requests of any route should be coalesced
+	 */
+	boolean hasCoalescedRoutes() {
+		return !coalesceWaitNanosByRoute.isEmpty();
+	}
+
+	/**
+	 * @param route the route of a request
+	 * @return how long a request of the given route may wait for an
+	 * 		identical concurrent request in nanoseconds or {@code 0} if
+	 * 		requests of that route should not be coalesced
+	 */
+	long getCoalesceWaitNanos(String route) {
+		if (coalesceWaitNanosByRoute.isEmpty() || (route == null)) {
+			return 0L;
+		}
+		Long wait = coalesceWaitNanosByRoute.get(route);
+		return (wait == null) ? 0L : wait.longValue();
+	}
+
+	/**
+	 * @return the request headers which need to be equal for requests to
+	 * 		be coalesced
+	 */
+	String[] getCoalesceHeaders() {
+		return coalesceHeaders;
+	}
+
+	/**
+	 * @return {@code true} if the latency of any route should be tracked
+	 * 		against an objective
+	 */
+	boolean hasSlos() {
+		return !slosByRoute.isEmpty();
+	}
+
+	/**
+	 * @param route the route of a request
+	 * @return the latency objective of the given route or {@code null} if
+	 * 		there is none
+	 */
+	SloObjective getSlo(String route) {
+		if (slosByRoute.isEmpty() || (route == null)) {
+			return null;
+		}
+		return slosByRoute.get(route);
+	}
+
+	/**
+	 * @return {@code true} if the path of requests no {@code TemplateRoute}
+	 * 		matched should be normalized by the {@link PathNormalizer}
+	 */
+	boolean isPathNormalized() {
+		return pathNormalized;
+	}
+
+	/**
+	 * @return the prefix rules of the {@link PathNormalizer}
+	 */
+	PrefixTrie getPrefixRules() {
+		return prefixRules;
+	}
+
+	/**
+	 * @return the fraction of the request time the instrumentation may
+	 * 		take or {@code 0} if the {@link Overhead} governor should only
+	 * 		measure
+	 */
+	double getOverheadBudget() {
+		return overheadBudget;
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.dynatrace.restlet.aspects;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * <p>
+ * The global switch turning all advice off and on again, driven by the
+ * {@code enabled} setting of the {@link Configuration}.
+ * </p>
+ * <p>
+ * The state is held as the constant target of a {@link MutableCallSite}
+ * and queried via a {@code static final} invoker, which the JIT compiler
+ * treats as a constant. The {@code if()} pointcuts guarding the advice
+ * therefore fold away: with the switch off, compiled code of an advised
+ * method is the same as without the aspect. Flipping the switch replaces
+ * the target, which deoptimizes all code depending on the previous one.
+ * As that is expensive, the switch is meant to be flipped rarely, e.g.
+ * during an incident. Objects advice put in place before the switch got
+ * turned off, e.g. the {@link QueueTimingThreadPoolExecutor} of the
+ * internal connectors, query the switch themselves.
+ * </p>
+ * <p>
+ * The switch starts out on and is set by the {@link Configuration} once
+ * that gets initialized by the first advised request. Advice passing the
+ * switch still honors the configuration snapshot, so a disabled
+ * configuration is never ignored.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class KillSwitch {
+
+	private static final MethodHandle ON =
+			MethodHandles.constant(boolean.class, Boolean.TRUE);
+
+	private static final MethodHandle OFF =
+			MethodHandles.constant(boolean.class, Boolean.FALSE);
+
+	private static final MutableCallSite STATE = new MutableCallSite(ON);
+
+	private static final MethodHandle INVOKER = STATE.dynamicInvoker();
+
+	private KillSwitch() {
+		// prevent instantiation
+	}
+
+	/**
+	 * @return {@code true} if the aspects should do anything at all
+	 */
+	static boolean isOn() {
+		try {
+			return (boolean) INVOKER.invokeExact();
+		} catch (Throwable t) {
+			// constant method handles do not throw
+			return true;
+		}
+	}
+
+	/**
+	 * @param on {@code false} in order to turn all advice off
+	 */
+	static synchronized void set(boolean on) {
+		MethodHandle target = on ? ON : OFF;
+		if (STATE.getTarget() == target) {
+			return;
+		}
+		STATE.setTarget(target);
+		MutableCallSite.syncAll(new MutableCallSite[] { STATE });
+	}
+
+}
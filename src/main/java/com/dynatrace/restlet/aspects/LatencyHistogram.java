@@ -0,0 +1,161 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A lock-free histogram of non-negative values, typically durations in
+ * nanoseconds. Buckets are log-linear: every power of two is split into
+ * {@value #SUB_BUCKETS} equally sized buckets, which keeps the relative
+ * error below 12.5% over the whole range of {@code long} values with a
+ * fixed amount of memory.
+ * </p>
+ * <p>
+ * Recording increments a single bucket and a {@link StripedCounter} for
+ * the sum, the maximum only gets updated via compare-and-set if a value
+ * exceeds it. Reading walks all buckets.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The number of buckets required to cover all positive long values
+	 */
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final StripedCounter sum = new StripedCounter();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param value a non-negative value
+	 * @return the index of the bucket the given value falls into
+	 */
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(0L, value);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the smallest value falling into the given bucket
+	 */
+	static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long sub = bucket & (SUB_BUCKETS - 1);
+		return (1L << exponent) + (sub << (exponent - SUB_BUCKET_BITS));
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the largest value falling into the given bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket >= BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return lowerBound(bucket + 1) - 1;
+	}
+
+	/**
+	 * @param value the value to record, negative values are recorded as 0
+	 */
+	void record(long value) {
+		if (value < 0L) {
+			value = 0L;
+		}
+		buckets.getAndIncrement(bucket(value));
+		sum.add(value);
+		long current = max.get();
+		while ((value > current) && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the number of values recorded into the given bucket
+	 */
+	long count(int bucket) {
+		return buckets.get(bucket);
+	}
+
+	/**
+	 * @return the number of values recorded
+	 */
+	long getCount() {
+		long count = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the sum of all values recorded
+	 */
+	long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return the largest value recorded
+	 */
+	long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of all values recorded or {@code 0} if none have
+	 * 		been recorded yet
+	 */
+	double getMean() {
+		long count = getCount();
+		if (count == 0L) {
+			return 0d;
+		}
+		return (double) getSum() / count;
+	}
+
+	/**
+	 * @param percentile the percentile, e.g. {@code 99.0}
+	 * @return the upper bound of the bucket containing the given
+	 * 		percentile (but at most the largest value recorded) or {@code 0}
+	 * 		if no values have been recorded yet
+	 */
+	long getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0L) {
+			return 0L;
+		}
+		long rank = (long) Math.ceil(percentile / 100d * total);
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if ((seen >= rank) && (counts[i] > 0L)) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.dynatrace.restlet.aspects;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers the management beans offered by this solution with the
+ * platform {@link MBeanServer}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class Management {
+
+	/**
+	 * The JMX domain all management beans are registered under
+	 */
+	static final String DOMAIN = "com.dynatrace.restlet";
+
+	private static final String ERRMSG_REGISTER =
+			"Unable to register management bean ";
+
+	private static final Logger LOGGER =
+			Logger.getLogger(Management.class.getName());
+
+	private Management() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Registers the given object under {@code com.dynatrace.restlet:type=}
+	 * followed by the given type. Failures are only logged, because a
+	 * missing management bean must never break request processing.
+	 *
+	 * @param type the value of the {@code type} key of the object name
+	 * @param mbean the management bean to register
+	 */
+	static void register(String type, Object mbean) {
+		String name = DOMAIN + ":type=" + type;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(mbean, objectName);
+		} catch (Throwable t) {
+			LOGGER.log(Level.WARNING, ERRMSG_REGISTER + name, t);
+		}
+	}
+
+}
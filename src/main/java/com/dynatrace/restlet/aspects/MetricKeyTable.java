@@ -0,0 +1,405 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A bounded table of the keys metrics are aggregated by, e.g. routes or
+ * downstreams. Routes fall back to the raw path of requests no
+ * {@code TemplateRoute} matched, which is why clients sending random paths
+ * must not be able to grow a table without limit.
+ * </p>
+ * <p>
+ * At most {@code maxKeys} keys get admitted, each one receiving a dense id
+ * between {@code 0} and {@code maxKeys - 1}. The first instance of a key
+ * is kept for the lifetime of the table and handed to {@link #create}, so
+ * the value aggregated for it references that instance only. Lookups of
+ * any further key are accounted to a single overflow value keyed
+ * {@value #OVERFLOW} and counted as dropped.
+ * </p>
+ * <p>
+ * The slots are an open-addressing array with linear probing, sized to at
+ * least twice the number of keys so probe sequences stay short and always
+ * end at an empty slot. Lookups compare the cached hash of a {@link String}
+ * before its chars, which is computed once over the chars of the key and
+ * shared by all tables looked up with the same instance, e.g. the route of
+ * a request. Keys composed of several parts, e.g. {@code scheme://host:port}
+ * of a downstream, are hashed and compared part by part instead, so they
+ * only get concatenated once admitted. Looking up an admitted key does not
+ * allocate. Inserting
+ * publishes an immutable entry via compare-and-set, so concurrent inserts
+ * of the same key agree on a single id. Keys are never removed.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ * @param <V> the type of the values aggregated per key
+ */
+abstract class MetricKeyTable<V> {
+
+	static final String OVERFLOW = "other";
+
+	static final String UNKNOWN = "unknown";
+
+	/**
+	 * Returned by {@link #id(String)} for keys accounted to the overflow
+	 * value
+	 */
+	static final int OVERFLOW_ID = -1;
+
+	/**
+	 * An admitted key, immutable once published
+	 */
+	private static final class Entry {
+
+		final String key;
+		final int hash;
+		final int id;
+
+		Entry(String key, int hash, int id) {
+			this.key = key;
+			this.hash = hash;
+			this.id = id;
+		}
+
+	}
+
+	private final int maxKeys;
+	private final int mask;
+	private final AtomicReferenceArray<Entry> slots;
+	private final AtomicReferenceArray<String> keys;
+	private final AtomicReferenceArray<V> values;
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final AtomicReference<V> overflow = new AtomicReference<V>();
+	private final StripedCounter dropped = new StripedCounter();
+
+	/**
+	 * c'tor
+	 *
+	 * @param maxKeys the maximum number of keys tracked individually
+	 */
+	MetricKeyTable(int maxKeys) {
+		this.maxKeys = Math.max(0, maxKeys);
+		int capacity = 2;
+		while (capacity < this.maxKeys * 2) {
+			capacity <<= 1;
+		}
+		this.mask = capacity - 1;
+		this.slots = new AtomicReferenceArray<Entry>(capacity);
+		this.keys = new AtomicReferenceArray<String>(this.maxKeys);
+		this.values = new AtomicReferenceArray<V>(this.maxKeys);
+	}
+
+	/**
+	 * Creates the value aggregated for a key, invoked with the first
+	 * {@link #get(String)} of an admitted key and of the overflow value.
+	 * Concurrent first lookups may create several values, only one of
+	 * them is kept.
+	 *
+	 * @param key the key as kept by this table
+	 * @return the value to aggregate the given key by
+	 */
+	protected abstract V create(String key);
+
+	/**
+	 * @param key the key to look up, {@code null} is treated as
+	 * 		{@value #UNKNOWN}
+	 * @return the value of the given key or the overflow value if the key
+	 * 		has not been admitted
+	 */
+	final V get(String key) {
+		return value(entry(key));
+	}
+
+	/**
+	 * Looks up the key {@code scheme://host:port}, e.g. of a downstream,
+	 * without concatenating it. The key only gets built if it is admitted.
+	 *
+	 * @param scheme the scheme, {@code null} is treated as {@code "null"}
+	 * @param host the host, {@code null} is treated as {@code "null"}
+	 * @param port the port
+	 * @return the value of the given key or the overflow value if the key
+	 * 		has not been admitted
+	 */
+	final V get(String scheme, String host, int port) {
+		scheme = String.valueOf(scheme);
+		host = String.valueOf(host);
+		return value(entry(null, originHash(scheme, host, port), scheme, host, port));
+	}
+
+	/**
+	 * @return the value of the given entry, the overflow value if it is
+	 * 		{@code null}
+	 */
+	private V value(Entry entry) {
+		if (entry == null) {
+			return overflow();
+		}
+		V value = values.get(entry.id);
+		if (value != null) {
+			return value;
+		}
+		V created = create(entry.key);
+		if (values.compareAndSet(entry.id, null, created)) {
+			return created;
+		}
+		return values.get(entry.id);
+	}
+
+	/**
+	 * Looks up the given key, admitting it if there is room left
+	 *
+	 * @param key the key to look up, {@code null} is treated as
+	 * 		{@value #UNKNOWN}
+	 * @return the id of the given key or {@link #OVERFLOW_ID} if the key
+	 * 		has not been admitted
+	 */
+	final int id(String key) {
+		Entry entry = entry(key);
+		return (entry == null) ? OVERFLOW_ID : entry.id;
+	}
+
+	/**
+	 * @return the entry of the given key or {@code null} if the key has
+	 * 		not been admitted
+	 */
+	private Entry entry(String key) {
+		if (key == null) {
+			key = UNKNOWN;
+		}
+		return entry(key, key.hashCode(), null, null, 0);
+	}
+
+	/**
+	 * @param key the key to look up or {@code null} to look up the one
+	 * 		composed of {@code scheme}, {@code host} and {@code port}
+	 * @param hash the hash of the key
+	 * @return the entry of the key or {@code null} if the key has not been
+	 * 		admitted
+	 */
+	private Entry entry(String key, int hash, String scheme, String host, int port) {
+		int reserved = OVERFLOW_ID;
+		int i = spread(hash) & mask;
+		while (true) {
+			Entry entry = slots.get(i);
+			if (entry == null) {
+				if (reserved == OVERFLOW_ID) {
+					reserved = reserve();
+					if (reserved == OVERFLOW_ID) {
+						dropped.increment();
+						return null;
+					}
+				}
+				if (key == null) {
+					key = scheme + "://" + host + ":" + port;
+				}
+				Entry created = new Entry(key, hash, reserved);
+				if (slots.compareAndSet(i, null, created)) {
+					keys.set(reserved, key);
+					return created;
+				}
+				// lost against a concurrent insert, examine its key
+				entry = slots.get(i);
+			}
+			if ((entry.hash == hash) && ((key != null)
+					? entry.key.equals(key)
+					: isOrigin(entry.key, scheme, host, port))) {
+				// an id reserved on the way is lost, which costs a single
+				// key at most once per concurrently inserted key
+				return entry;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * @param key the key to look up
+	 * @return the id of the given key or {@link #OVERFLOW_ID} if it has not
+	 * 		been admitted, without admitting it
+	 */
+	final int find(String key) {
+		if (key == null) {
+			return OVERFLOW_ID;
+		}
+		int hash = key.hashCode();
+		int i = spread(hash) & mask;
+		Entry entry;
+		while ((entry = slots.get(i)) != null) {
+			if ((entry.hash == hash) && entry.key.equals(key)) {
+				return entry.id;
+			}
+			i = (i + 1) & mask;
+		}
+		return OVERFLOW_ID;
+	}
+
+	/**
+	 * @return the hash of {@code scheme://host:port}, equal to the one of
+	 * 		the concatenated {@link String}
+	 */
+	private static int originHash(String scheme, String host, int port) {
+		int hash = hash(scheme.hashCode(), "://");
+		hash = 31 * hash(hash, host) + ':';
+		if (port < 0) {
+			hash = 31 * hash + '-';
+		}
+		for (long unit = unit(port); unit > 0L; unit /= 10L) {
+			hash = 31 * hash + digit(port, unit);
+		}
+		return hash;
+	}
+
+	private static int hash(int hash, String s) {
+		for (int i = 0, length = s.length(); i < length; i++) {
+			hash = 31 * hash + s.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return {@code true} if the given key is {@code scheme://host:port}
+	 */
+	private static boolean isOrigin(String key, String scheme, String host, int port) {
+		int i = scheme.length();
+		int j = i + 3 + host.length();
+		if (!key.startsWith(scheme) || !key.startsWith("://", i)
+				|| !key.startsWith(host, i + 3) || (j >= key.length())
+				|| (key.charAt(j++) != ':')) {
+			return false;
+		}
+		if (port < 0) {
+			if ((j >= key.length()) || (key.charAt(j++) != '-')) {
+				return false;
+			}
+		}
+		for (long unit = unit(port); unit > 0L; unit /= 10L) {
+			if ((j >= key.length()) || (key.charAt(j++) != digit(port, unit))) {
+				return false;
+			}
+		}
+		return j == key.length();
+	}
+
+	/**
+	 * @return the power of ten of the most significant decimal digit of
+	 * 		the given number
+	 */
+	private static long unit(int n) {
+		long abs = Math.abs((long) n);
+		long unit = 1L;
+		while (abs / unit >= 10L) {
+			unit *= 10L;
+		}
+		return unit;
+	}
+
+	private static char digit(int n, long unit) {
+		return (char) ('0' + Math.abs(n / unit % 10L));
+	}
+
+	/**
+	 * @return the next free id or {@link #OVERFLOW_ID} if all ids have
+	 * 		been handed out already
+	 */
+	private int reserve() {
+		int id;
+		do {
+			id = nextId.get();
+			if (id >= maxKeys) {
+				return OVERFLOW_ID;
+			}
+		} while (!nextId.compareAndSet(id, id + 1));
+		return id;
+	}
+
+	/**
+	 * @return the given hash with its bits mixed, so keys differing only
+	 * 		in their upper bits do not collide
+	 */
+	static int spread(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private V overflow() {
+		V value = overflow.get();
+		if (value != null) {
+			return value;
+		}
+		V created = create(OVERFLOW);
+		if (overflow.compareAndSet(null, created)) {
+			return created;
+		}
+		return overflow.get();
+	}
+
+	/**
+	 * @param id the id of an admitted key
+	 * @return the key with the given id or {@code null} if that id has not
+	 * 		(yet) been handed out
+	 */
+	final String key(int id) {
+		return ((id < 0) || (id >= maxKeys)) ? null : keys.get(id);
+	}
+
+	/**
+	 * @return the values created so far, followed by the overflow value if
+	 * 		any key has been dropped
+	 */
+	final List<V> values() {
+		List<V> result = new ArrayList<V>();
+		int ids = Math.min(nextId.get(), maxKeys);
+		for (int id = 0; id < ids; id++) {
+			V value = values.get(id);
+			if (value != null) {
+				result.add(value);
+			}
+		}
+		if (isOverflowed()) {
+			result.add(overflow());
+		}
+		return result;
+	}
+
+	/**
+	 * @return the keys admitted so far
+	 */
+	final List<String> keys() {
+		List<String> result = new ArrayList<String>();
+		int ids = Math.min(nextId.get(), maxKeys);
+		for (int id = 0; id < ids; id++) {
+			String key = keys.get(id);
+			if (key != null) {
+				result.add(key);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the maximum number of keys tracked individually
+	 */
+	final int getMaxKeys() {
+		return maxKeys;
+	}
+
+	/**
+	 * @return the number of lookups accounted to the overflow value
+	 */
+	final long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return {@code true} if any lookup has been accounted to the overflow
+	 * 		value
+	 */
+	final boolean isOverflowed() {
+		return dropped.sum() > 0L;
+	}
+
+}
@@ -0,0 +1,280 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.representation.WriterRepresentation;
+
+/**
+ * <p>
+ * Serves the metrics aggregated by this solution in the Prometheus text
+ * exposition format. Attach it to an existing {@code Router} or
+ * {@code VirtualHost}, e.g.
+ * </p>
+ * <pre>
+ * component.getDefaultHost().attach("/metrics", new MetricsRestlet());
+ * </pre>
+ * <p>
+ * The metrics are read and written directly into the response stream once
+ * the connector writes the response, without building the whole document
+ * in memory first.
+ * </p>
+ * <p>
+ * Scrape requests are excluded from the metrics recorded by this solution.
+ * Telemetry backends still get to see them unless the path is listed
+ * within {@code exclude} of the {@link Configuration}.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class MetricsRestlet extends Restlet {
+
+	@Override
+	public void handle(Request request, Response response) {
+		super.handle(request, response);
+		ActiveRequest active = InFlightRegistry.INSTANCE.current();
+		if (active.isActive()) {
+			active.exclude();
+		}
+		Method method = request.getMethod();
+		if (!Method.GET.equals(method) && !Method.HEAD.equals(method)) {
+			response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+			response.getAllowedMethods().add(Method.GET);
+			response.getAllowedMethods().add(Method.HEAD);
+			return;
+		}
+		response.setEntity(new Exposition());
+		response.setStatus(Status.SUCCESS_OK);
+	}
+
+	/**
+	 * Writes all metrics in the text exposition format
+	 */
+	private static final class Exposition extends WriterRepresentation {
+
+		Exposition() {
+			super(MediaType.TEXT_PLAIN);
+			setCharacterSet(CharacterSet.UTF_8);
+		}
+
+		@Override
+		public void write(Writer writer) throws IOException {
+			writeInFlight(writer);
+			writeTimeSeries(writer);
+			writeServers(writer);
+			writeCosts(writer);
+			writeClients(writer);
+			writer.flush();
+		}
+
+		private static void writeInFlight(Writer w) throws IOException {
+			Map<String, Integer> byRoute =
+					InFlightRegistry.INSTANCE.getConcurrencyByRoute();
+			header(w, "restlet_inflight_requests", "gauge",
+				"Requests currently executing within Server.handle");
+			for (Map.Entry<String, Integer> entry : byRoute.entrySet()) {
+				sample(w, "restlet_inflight_requests", "route", entry.getKey(),
+					entry.getValue().longValue());
+			}
+		}
+
+		private static void writeTimeSeries(Writer w) throws IOException {
+			List<WindowStats> window = RouteTimeSeries.INSTANCE.getLastMinute();
+			header(w, "restlet_route_requests_per_second", "gauge",
+				"Mean throughput per route within the last minute");
+			for (WindowStats stats : window) {
+				sample(w, "restlet_route_requests_per_second", "route",
+					stats.getRoute(), stats.getRequestsPerSecond());
+			}
+			header(w, "restlet_route_errors_last_minute", "gauge",
+				"Failed requests (exception or 5xx) per route within the last minute");
+			for (WindowStats stats : window) {
+				sample(w, "restlet_route_errors_last_minute", "route",
+					stats.getRoute(), stats.getErrors());
+			}
+			header(w, "restlet_route_latency_mean_seconds", "gauge",
+				"Mean latency per route within the last minute");
+			for (WindowStats stats : window) {
+				sample(w, "restlet_route_latency_mean_seconds", "route",
+					stats.getRoute(), stats.getMeanMillis() / 1e3d);
+			}
+			header(w, "restlet_route_latency_max_seconds", "gauge",
+				"Maximum latency per route within the last minute");
+			for (WindowStats stats : window) {
+				sample(w, "restlet_route_latency_max_seconds", "route",
+					stats.getRoute(), stats.getMaxMillis() / 1e3d);
+			}
+		}
+
+		private static void writeServers(Writer w) throws IOException {
+			List<ServerConnectorStats> servers = ServerConnectors.INSTANCE.getServers();
+			header(w, "restlet_server_requests_total", "counter",
+				"Requests completed per server (scheme://host:port)");
+			for (ServerConnectorStats stats : servers) {
+				sample(w, "restlet_server_requests_total", "server",
+					stats.getServer(), stats.getRequests());
+			}
+			header(w, "restlet_server_errors_total", "counter",
+				"Failed requests (exception or 5xx) per server");
+			for (ServerConnectorStats stats : servers) {
+				sample(w, "restlet_server_errors_total", "server",
+					stats.getServer(), stats.getErrors());
+			}
+			header(w, "restlet_server_in_flight", "gauge",
+				"Requests currently in progress per server");
+			for (ServerConnectorStats stats : servers) {
+				sample(w, "restlet_server_in_flight", "server",
+					stats.getServer(), stats.getInFlight());
+			}
+		}
+
+		private static void writeCosts(Writer w) throws IOException {
+			List<RouteCostStats> costs = RequestCosts.INSTANCE.getRouteCosts();
+			header(w, "restlet_route_cost_samples_total", "counter",
+				"Requests sampled for CPU time and allocations per route");
+			for (RouteCostStats stats : costs) {
+				sample(w, "restlet_route_cost_samples_total", "route",
+					stats.getRoute(), stats.getSamples());
+			}
+			header(w, "restlet_route_cpu_seconds_total", "counter",
+				"CPU time consumed by the sampled requests per route");
+			for (RouteCostStats stats : costs) {
+				sample(w, "restlet_route_cpu_seconds_total", "route",
+					stats.getRoute(), stats.getCpuTotalMillis() / 1e3d);
+			}
+			header(w, "restlet_route_allocated_bytes_total", "counter",
+				"Bytes allocated by the sampled requests per route");
+			for (RouteCostStats stats : costs) {
+				sample(w, "restlet_route_allocated_bytes_total", "route",
+					stats.getRoute(), stats.getAllocatedTotalBytes());
+			}
+		}
+
+		private static void writeClients(Writer w) throws IOException {
+			List<DownstreamStats> downstreams =
+					ClientMetrics.INSTANCE.getDownstreams();
+			header(w, "restlet_client_calls_total", "counter",
+				"Calls via org.restlet.Client per downstream and outcome");
+			for (DownstreamStats stats : downstreams) {
+				String downstream = stats.getDownstream();
+				outcome(w, downstream, "1xx", stats.getInformational());
+				outcome(w, downstream, "2xx", stats.getSuccess());
+				outcome(w, downstream, "3xx", stats.getRedirection());
+				outcome(w, downstream, "4xx", stats.getClientErrors());
+				outcome(w, downstream, "5xx", stats.getServerErrors());
+				outcome(w, downstream, "error", stats.getConnectionErrors());
+			}
+			header(w, "restlet_client_in_flight", "gauge",
+				"Calls via org.restlet.Client currently in progress per downstream");
+			for (DownstreamStats stats : downstreams) {
+				sample(w, "restlet_client_in_flight", "downstream",
+					stats.getDownstream(), stats.getInFlight());
+			}
+			header(w, "restlet_client_latency_seconds", "summary",
+				"Latency of calls via org.restlet.Client per downstream");
+			for (DownstreamStats stats : downstreams) {
+				String downstream = stats.getDownstream();
+				quantile(w, downstream, "0.5", stats.getP50Millis() / 1e3d);
+				quantile(w, downstream, "0.99", stats.getP99Millis() / 1e3d);
+				sample(w, "restlet_client_latency_seconds_sum", "downstream",
+					downstream, stats.getMeanMillis() * stats.getCalls() / 1e3d);
+				sample(w, "restlet_client_latency_seconds_count", "downstream",
+					downstream, stats.getCalls());
+			}
+		}
+
+		private static void outcome(Writer w, String downstream, String outcome,
+				long value) throws IOException {
+			w.write("restlet_client_calls_total{downstream=\"");
+			escape(w, downstream);
+			w.write("\",outcome=\"");
+			w.write(outcome);
+			w.write("\"} ");
+			w.write(Long.toString(value));
+			w.write('\n');
+		}
+
+		private static void quantile(Writer w, String downstream,
+				String quantile, double value) throws IOException {
+			w.write("restlet_client_latency_seconds{downstream=\"");
+			escape(w, downstream);
+			w.write("\",quantile=\"");
+			w.write(quantile);
+			w.write("\"} ");
+			w.write(Double.toString(value));
+			w.write('\n');
+		}
+
+		private static void header(Writer w, String name, String type,
+				String help) throws IOException {
+			w.write("# HELP ");
+			w.write(name);
+			w.write(' ');
+			w.write(help);
+			w.write("\n# TYPE ");
+			w.write(name);
+			w.write(' ');
+			w.write(type);
+			w.write('\n');
+		}
+
+		private static void sample(Writer w, String name, String label,
+				String value, long sample) throws IOException {
+			labels(w, name, label, value);
+			w.write(Long.toString(sample));
+			w.write('\n');
+		}
+
+		private static void sample(Writer w, String name, String label,
+				String value, double sample) throws IOException {
+			labels(w, name, label, value);
+			w.write(Double.toString(sample));
+			w.write('\n');
+		}
+
+		private static void labels(Writer w, String name, String label,
+				String value) throws IOException {
+			w.write(name);
+			w.write('{');
+			w.write(label);
+			w.write("=\"");
+			escape(w, value);
+			w.write("\"} ");
+		}
+
+		/**
+		 * Writes the given label value, escaping backslashes, double quotes
+		 * and line feeds
+		 */
+		private static void escape(Writer w, String value) throws IOException {
+			if (value == null) {
+				return;
+			}
+			int start = 0;
+			int len = value.length();
+			for (int i = 0; i < len; i++) {
+				char c = value.charAt(i);
+				if ((c != '\\') && (c != '"') && (c != '\n')) {
+					continue;
+				}
+				w.write(value, start, i - start);
+				w.write('\\');
+				w.write((c == '\n') ? 'n' : c);
+				start = i + 1;
+			}
+			w.write(value, start, len - start);
+		}
+
+	}
+
+}
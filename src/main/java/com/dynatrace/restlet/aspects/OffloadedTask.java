@@ -0,0 +1,232 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.Callable;
+
+import org.restlet.engine.util.ContextualRunnable;
+
+/**
+ * <p>
+ * Wraps a task submitted to the {@code TaskService} while a request is
+ * executing. Capturing the context of the submitting request only copies
+ * the route and the time the task is due. Only if a propagating
+ * {@link TelemetryBackend} has been registered, the contexts captured by
+ * those backends get copied as well and the task executes within them.
+ * </p>
+ * <p>
+ * Once the task completes, the time it waited for a thread and the time
+ * it executed get recorded by {@link OffloadedTasks}.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+abstract class OffloadedTask {
+
+	private final String route;
+	private final long dueNanos;
+
+	/**
+	 * The contexts captured by the propagating backends or {@code null}
+	 */
+	private final Object[] contexts;
+
+	/**
+	 * c'tor
+	 *
+	 * @param request the request submitting the task
+	 * @param delayNanos the delay the task has been scheduled with
+	 */
+	OffloadedTask(ActiveRequest request, long delayNanos) {
+		this.route = request.getRoute();
+		this.dueNanos = System.nanoTime() + Math.max(0L, delayNanos);
+		this.contexts = TelemetryBackends.isPropagating()
+				? TelemetryBackends.capture(request)
+				: null;
+		OffloadedTasks.INSTANCE.submitted();
+	}
+
+	/**
+	 * @param request the request submitting the task
+	 * @param task the task to wrap
+	 * @param delayNanos the delay the task has been scheduled with
+	 * @return the wrapped task, which is a {@link ContextualRunnable} if
+	 * 		the given task is one, so the {@code TaskService} still applies
+	 * 		its class loader
+	 */
+	static Runnable wrap(ActiveRequest request, Runnable task, long delayNanos) {
+		if (task instanceof ContextualRunnable) {
+			return new ContextualTask(
+				new RunnableTask(request, task, delayNanos),
+				((ContextualRunnable) task).getContextClassLoader()
+			);
+		}
+		return new RunnableTask(request, task, delayNanos);
+	}
+
+	/**
+	 * @param request the request submitting the task
+	 * @param task the task to wrap
+	 * @param delayNanos the delay the task has been scheduled with
+	 * @return the wrapped task
+	 */
+	static <V> Callable<V> wrap(
+			ActiveRequest request,
+			Callable<V> task,
+			long delayNanos
+	) {
+		return new CallableTask<V>(request, task, delayNanos);
+	}
+
+	/**
+	 * Executes the original task
+	 *
+	 * @throws Exception if the original task throws
+	 */
+	abstract void invoke() throws Exception;
+
+	/**
+	 * Executes the original task exactly once, within the contexts of the
+	 * propagating backends if any have been captured, and records it
+	 *
+	 * @throws Exception if the original task throws
+	 */
+	final void execute() throws Exception {
+		long start = System.nanoTime();
+		boolean failed = true;
+		OffloadedTasks.INSTANCE.started(contexts != null);
+		try {
+			if (contexts == null) {
+				invoke();
+			} else {
+				propagate();
+			}
+			failed = false;
+		} finally {
+			OffloadedTasks.INSTANCE.record(
+				route, start - dueNanos, System.nanoTime() - start, failed
+			);
+		}
+	}
+
+	private void propagate() throws Exception {
+		final Exception[] failure = new Exception[1];
+		final boolean[] executed = new boolean[1];
+		Runnable invocation = new Runnable() {
+			@Override
+			public void run() {
+				executed[0] = true;
+				try {
+					invoke();
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		};
+		try {
+			TelemetryBackends.propagate(contexts, invocation);
+		} finally {
+			if (!executed[0]) {
+				invocation.run();
+			}
+		}
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	/**
+	 * Wraps a {@link Runnable}
+	 */
+	private static final class RunnableTask
+			extends OffloadedTask implements Runnable {
+
+		private final Runnable task;
+
+		RunnableTask(ActiveRequest request, Runnable task, long delayNanos) {
+			super(request, delayNanos);
+			this.task = task;
+		}
+
+		@Override
+		void invoke() {
+			task.run();
+		}
+
+		@Override
+		public void run() {
+			try {
+				execute();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				// Runnable.run does not throw checked exceptions
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+
+	}
+
+	/**
+	 * Wraps a {@link Runnable} which has been a {@link ContextualRunnable}
+	 */
+	private static final class ContextualTask extends ContextualRunnable {
+
+		private final RunnableTask task;
+
+		ContextualTask(RunnableTask task, ClassLoader contextClassLoader) {
+			this.task = task;
+			setContextClassLoader(contextClassLoader);
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+
+	}
+
+	/**
+	 * Wraps a {@link Callable}
+	 */
+	private static final class CallableTask<V>
+			extends OffloadedTask implements Callable<V> {
+
+		private final Callable<V> task;
+		private V result;
+
+		CallableTask(ActiveRequest request, Callable<V> task, long delayNanos) {
+			super(request, delayNanos);
+			this.task = task;
+		}
+
+		@Override
+		void invoke() throws Exception {
+			result = task.call();
+		}
+
+		@Override
+		public V call() throws Exception {
+			execute();
+			V value = result;
+			result = null;
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+
+	}
+
+}
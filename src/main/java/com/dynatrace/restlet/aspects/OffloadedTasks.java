@@ -0,0 +1,130 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * Accounts the tasks which requests hand over to the {@code TaskService}
+ * of Restlet to the route of the submitting request. For every task the
+ * time it waited for a thread beyond its scheduled delay and the time it
+ * executed get recorded once it completes.
+ * </p>
+ * <p>
+ * The number of routes tracked individually is bounded by
+ * {@code -Ddt.restlet.task.maxRoutes} (default 256). Tasks of any further
+ * route are accounted to a single overflow route.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class OffloadedTasks implements OffloadedTasksMXBean {
+
+	public static final OffloadedTasks INSTANCE = new OffloadedTasks(
+		Integer.getInteger("dt.restlet.task.maxRoutes", 256)
+	);
+
+	static {
+		Management.register("OffloadedTasks", INSTANCE);
+	}
+
+	private static final Comparator<RouteTaskStats> BY_TASKS =
+			new Comparator<RouteTaskStats>() {
+		@Override
+		public int compare(RouteTaskStats o1, RouteTaskStats o2) {
+			return Long.compare(o2.getTasks(), o1.getTasks());
+		}
+	};
+
+	private final MetricKeyTable<RouteTasks> routes;
+	private final StripedCounter pending = new StripedCounter();
+	private final StripedCounter propagated = new StripedCounter();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private OffloadedTasks(int maxRoutes) {
+		this.routes = new MetricKeyTable<RouteTasks>(maxRoutes) {
+			@Override
+			protected RouteTasks create(String key) {
+				return new RouteTasks(key);
+			}
+		};
+	}
+
+	/**
+	 * Invoked on the submitting thread once a task has been wrapped
+	 */
+	void submitted() {
+		pending.increment();
+	}
+
+	/**
+	 * Invoked on the submitting thread if a wrapped task has not been
+	 * accepted by the executor
+	 */
+	void rejected() {
+		pending.decrement();
+	}
+
+	/**
+	 * Invoked on the executing thread right before a task starts
+	 *
+	 * @param propagating whether the task gets executed within the context
+	 * 		of a propagating {@link TelemetryBackend}
+	 */
+	void started(boolean propagating) {
+		pending.decrement();
+		if (propagating) {
+			propagated.increment();
+		}
+	}
+
+	/**
+	 * Records a completed task
+	 *
+	 * @param route the route of the request which submitted the task
+	 * @param queueNanos how long the task waited for a thread beyond its
+	 * 		scheduled delay
+	 * @param runNanos how long the task executed
+	 * @param failed whether the task threw
+	 */
+	void record(String route, long queueNanos, long runNanos, boolean failed) {
+		routes.get(route).record(queueNanos, runNanos, failed);
+	}
+
+	@Override
+	public List<RouteTaskStats> getRouteTasks() {
+		List<RouteTaskStats> result = new ArrayList<RouteTaskStats>();
+		for (RouteTasks tasks : routes.values()) {
+			result.add(tasks.snapshot());
+		}
+		Collections.sort(result, BY_TASKS);
+		return result;
+	}
+
+	@Override
+	public long getPending() {
+		return Math.max(0L, pending.sum());
+	}
+
+	@Override
+	public long getPropagated() {
+		return propagated.sum();
+	}
+
+	@Override
+	public int getMaxRoutes() {
+		return routes.getMaxKeys();
+	}
+
+	@Override
+	public long getOverflowTasks() {
+		return routes.getDropped();
+	}
+
+}
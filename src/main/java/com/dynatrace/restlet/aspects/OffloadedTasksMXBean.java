@@ -0,0 +1,43 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link OffloadedTasks}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface OffloadedTasksMXBean {
+
+	/**
+	 * @return the tasks per route, the route which submitted the most
+	 * 		tasks first
+	 */
+	List<RouteTaskStats> getRouteTasks();
+
+	/**
+	 * @return the number of tasks submitted which have not started yet,
+	 * 		including tasks which got cancelled before they started
+	 */
+	long getPending();
+
+	/**
+	 * @return the number of tasks executed within the context of a
+	 * 		propagating {@link TelemetryBackend}
+	 */
+	long getPropagated();
+
+	/**
+	 * @return the maximum number of routes tracked individually
+	 */
+	int getMaxRoutes();
+
+	/**
+	 * @return the number of tasks which have been accounted to the
+	 * 		overflow route because the maximum number of routes had already
+	 * 		been reached
+	 */
+	long getOverflowTasks();
+
+}
@@ -0,0 +1,365 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Measures what the instrumentation itself costs and keeps that cost
+ * within the budget configured via {@code overhead.budgetPercent} of the
+ * {@link Configuration}. Three parts are measured, each net of the time
+ * spent within the Restlet chain:
+ * </p>
+ * <ul>
+ * <li>aspect - the advice around {@code Server.handle} (registry, limits,
+ * 		costs, time series and whatever else is recorded per request)</li>
+ * <li>servlet creation - handing the request over to the
+ * 		{@link TelemetryBackend.Enclosing} backends up to the point the
+ * 		{@link RestletServlet} and its {@link RestletServletRequest} have
+ * 		been constructed</li>
+ * <li>servlet dispatch - the emulated {@code service} call, including the
+ * 		work of the Dynatrace Servlet Sensor hooked into it and its calls
+ * 		into the {@link RestletServletRequest}</li>
+ * </ul>
+ * <p>
+ * Reading the clock costs as well, which is why only every n-th request of
+ * a thread gets timed, configured via
+ * {@code -Ddt.restlet.overhead.sampleInterval} (default 32, {@code 0}
+ * disables the measurement). Like for {@link RequestCosts} the decision is
+ * a countdown owned by the executing thread. The overhead is published as
+ * ratio of the time of the timed requests.
+ * </p>
+ * <p>
+ * A daemon thread evaluates the ratio of the last
+ * {@code -Ddt.restlet.overhead.tickSeconds} seconds (default 10). Once it
+ * exceeds the budget the governor raises its level by one, once it drops
+ * below half of the budget it lowers it again. Every level above zero
+ * suspends the timing of request bodies by {@link Uploads} and halves the
+ * sample rate of {@link RequestCosts} once more. The settings of the
+ * {@link Configuration} remain untouched, the governor only lowers what
+ * they ask for. The Servlet emulation itself is never shed, it is what
+ * the instrumentation is there for.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class Overhead implements OverheadMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(Overhead.class.getName());
+
+	/**
+	 * The highest level of the governor, sampling 64 times less than
+	 * configured
+	 */
+	static final int MAX_LEVEL = 6;
+
+	/**
+	 * Windows with fewer timed requests are too noisy to act upon
+	 */
+	private static final long MIN_SAMPLES = 20L;
+
+	public static final Overhead INSTANCE = new Overhead(
+		Math.max(0, Integer.getInteger("dt.restlet.overhead.sampleInterval", 32)),
+		Math.max(1, Math.min(60, Integer.getInteger("dt.restlet.overhead.tickSeconds", 10)))
+	);
+
+	static {
+		Management.register("Overhead", INSTANCE);
+		INSTANCE.start();
+	}
+
+	private final int sampleInterval;
+	private final int tickSeconds;
+
+	private final StripedCounter samples = new StripedCounter();
+	private final StripedCounter requestNanos = new StripedCounter();
+	private final StripedCounter aspectNanos = new StripedCounter();
+	private final StripedCounter servletCreateNanos = new StripedCounter();
+	private final StripedCounter servletDispatchNanos = new StripedCounter();
+	private final LatencyHistogram overheadNanos = new LatencyHistogram();
+
+	/**
+	 * The sums as of the last evaluation, only accessed by the tick thread
+	 */
+	private long lastSamples = 0L;
+	private long lastRequestNanos = 0L;
+	private long lastOverheadNanos = 0L;
+
+	private volatile double recentRatio = 0d;
+	private volatile int level = 0;
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private Overhead(int sampleInterval, int tickSeconds) {
+		this.sampleInterval = sampleInterval;
+		this.tickSeconds = tickSeconds;
+	}
+
+	private void start() {
+		if (sampleInterval == 0) {
+			return;
+		}
+		Thread ticker = new Thread("dt-restlet-overhead") {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						TimeUnit.SECONDS.sleep(tickSeconds);
+						tick(Configuration.INSTANCE.current());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		ticker.setDaemon(true);
+		ticker.start();
+	}
+
+	/**
+	 * @param config the settings in effect for the request
+	 * @return every how many requests of a thread one gets sampled by
+	 * 		{@link RequestCosts}, lowered according to the current level
+	 */
+	int getCostSampleInterval(InstrumentationConfig config) {
+		int interval = config.getCostSampleInterval();
+		int shift = level;
+		if ((interval == 0) || (shift == 0)) {
+			return interval;
+		}
+		return (int) Math.min(Integer.MAX_VALUE, ((long) interval) << shift);
+	}
+
+	/**
+	 * @param config the settings in effect for the request
+	 * @return {@code true} if the bodies of requests should be timed by
+	 * 		{@link Uploads}
+	 */
+	boolean isUploadTimed(InstrumentationConfig config) {
+		return config.isUploadTimed() && (level == 0);
+	}
+
+	/**
+	 * Decides whether the outermost request of the calling thread gets
+	 * timed and if so, accounts the time since it has been entered to the
+	 * aspect. Needs to be invoked right before the request is passed on.
+	 *
+	 * @param active the slot of the calling thread
+	 */
+	void begin(ActiveRequest active) {
+		active.overheadTimed = false;
+		if ((sampleInterval == 0) || (--active.overheadCountdown > 0)) {
+			return;
+		}
+		active.overheadCountdown = sampleInterval;
+		long now = System.nanoTime();
+		active.overheadTimed = true;
+		active.aspectNanos = now - active.getStartNanos();
+		active.servletCreateNanos = 0L;
+		active.servletDispatchNanos = 0L;
+		active.overheadMark = now;
+	}
+
+	/**
+	 * Marks the point from which on the calling thread spends its time
+	 * within the instrumentation again, e.g. once the Restlet chain
+	 * returned
+	 *
+	 * @param active the slot of the calling thread
+	 */
+	void mark(ActiveRequest active) {
+		if (active.overheadTimed) {
+			active.overheadMark = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Accounts the time since the last mark to the creation of the
+	 * artificial Servlet, invoked by the {@link RestletServlet} once it is
+	 * about to dispatch the request
+	 */
+	void created() {
+		ActiveRequest active = InFlightRegistry.INSTANCE.current();
+		if (active.overheadTimed && active.isOutermost()) {
+			long now = System.nanoTime();
+			active.servletCreateNanos += now - active.overheadMark;
+			active.overheadMark = now;
+		}
+	}
+
+	/**
+	 * Accounts the time since the last mark to the dispatch of the
+	 * artificial Servlet, invoked whenever the request enters the
+	 * Restlet chain from the {@code service} call or leaves the enclosing
+	 * backends
+	 *
+	 * @param active the slot of the calling thread
+	 */
+	void dispatched(ActiveRequest active) {
+		if (active.overheadTimed) {
+			active.servletDispatchNanos += System.nanoTime() - active.overheadMark;
+		}
+	}
+
+	/**
+	 * Accounts the time since the last mark to the aspect and records the
+	 * request, in case it has been timed. Needs to be invoked before the
+	 * request is marked as finished.
+	 *
+	 * @param active the slot of the calling thread
+	 */
+	void end(ActiveRequest active) {
+		if (!active.overheadTimed) {
+			return;
+		}
+		active.overheadTimed = false;
+		if (active.isExcluded()) {
+			return;
+		}
+		long now = System.nanoTime();
+		long aspect = active.aspectNanos + (now - active.overheadMark);
+		samples.increment();
+		requestNanos.add(now - active.getStartNanos());
+		aspectNanos.add(aspect);
+		servletCreateNanos.add(active.servletCreateNanos);
+		servletDispatchNanos.add(active.servletDispatchNanos);
+		overheadNanos.record(
+			aspect + active.servletCreateNanos + active.servletDispatchNanos
+		);
+	}
+
+	/**
+	 * Evaluates the ratio of the requests timed since the last evaluation
+	 * and adjusts the level of the governor
+	 */
+	void tick(InstrumentationConfig config) {
+		long sampleCount = samples.sum();
+		if (sampleCount - lastSamples < MIN_SAMPLES) {
+			if (config.getOverheadBudget() <= 0d) {
+				adjust(0, 0d, 0d);
+			}
+			return;
+		}
+		long request = requestNanos.sum();
+		long overhead = overhead();
+		double ratio = ratio(overhead - lastOverheadNanos, request - lastRequestNanos);
+		lastSamples = sampleCount;
+		lastRequestNanos = request;
+		lastOverheadNanos = overhead;
+		recentRatio = ratio;
+		double budget = config.getOverheadBudget();
+		int current = level;
+		if (budget <= 0d) {
+			adjust(0, ratio, budget);
+		} else if ((ratio > budget) && (current < MAX_LEVEL)) {
+			adjust(current + 1, ratio, budget);
+		} else if ((ratio < budget / 2d) && (current > 0)) {
+			adjust(current - 1, ratio, budget);
+		}
+	}
+
+	private void adjust(int newLevel, double ratio, double budget) {
+		int previous = level;
+		if (newLevel == previous) {
+			return;
+		}
+		level = newLevel;
+		LOGGER.log(
+			(newLevel > previous) ? Level.WARNING : Level.INFO,
+			String.format(Locale.ROOT,
+				"Instrumentation overhead %.2f%% (budget %.2f%%), level %d -> %d",
+				ratio * 100d, budget * 100d, previous, newLevel)
+		);
+	}
+
+	private long overhead() {
+		return aspectNanos.sum() + servletCreateNanos.sum() + servletDispatchNanos.sum();
+	}
+
+	private static double ratio(long overhead, long request) {
+		return (request <= 0L) ? 0d : (double) overhead / request;
+	}
+
+	private double meanMicros(StripedCounter nanos) {
+		long count = samples.sum();
+		return (count == 0L) ? 0d : nanos.sum() / 1e3d / count;
+	}
+
+	@Override
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	@Override
+	public long getTimedRequests() {
+		return samples.sum();
+	}
+
+	@Override
+	public double getOverheadRatio() {
+		return ratio(overhead(), requestNanos.sum());
+	}
+
+	@Override
+	public double getRecentOverheadRatio() {
+		return recentRatio;
+	}
+
+	@Override
+	public double getMeanMicros() {
+		return overheadNanos.getMean() / 1e3d;
+	}
+
+	@Override
+	public double getP99Micros() {
+		return overheadNanos.getPercentile(99d) / 1e3d;
+	}
+
+	@Override
+	public double getAspectMeanMicros() {
+		return meanMicros(aspectNanos);
+	}
+
+	@Override
+	public double getServletCreateMeanMicros() {
+		return meanMicros(servletCreateNanos);
+	}
+
+	@Override
+	public double getServletDispatchMeanMicros() {
+		return meanMicros(servletDispatchNanos);
+	}
+
+	@Override
+	public double getBudget() {
+		return Configuration.INSTANCE.current().getOverheadBudget();
+	}
+
+	@Override
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public double getEffectiveCostSampleRate() {
+		int interval = getCostSampleInterval(Configuration.INSTANCE.current());
+		return (interval == 0) ? 0d : 1d / interval;
+	}
+
+	@Override
+	public boolean isUploadTimingSuspended() {
+		return Configuration.INSTANCE.current().isUploadTimed() && (level > 0);
+	}
+
+	@Override
+	public int getTickSeconds() {
+		return tickSeconds;
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * Management interface of the {@link Overhead}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface OverheadMXBean {
+
+	/**
+	 * @return every how many requests of a thread one gets timed or
+	 * 		{@code 0} if the measurement is disabled
+	 */
+	int getSampleInterval();
+
+	/**
+	 * @return the number of requests timed so far
+	 */
+	long getTimedRequests();
+
+	/**
+	 * @return the time spent within the instrumentation divided by the
+	 * 		time of the timed requests, since startup
+	 */
+	double getOverheadRatio();
+
+	/**
+	 * @return the same ratio as of the last evaluation by the governor
+	 */
+	double getRecentOverheadRatio();
+
+	/**
+	 * @return the mean time a timed request spent within the
+	 * 		instrumentation
+	 */
+	double getMeanMicros();
+
+	double getP99Micros();
+
+	/**
+	 * @return the mean time spent within the advice around
+	 * 		{@code Server.handle}, net of the Restlet chain
+	 */
+	double getAspectMeanMicros();
+
+	/**
+	 * @return the mean time spent constructing the artificial Servlet and
+	 * 		its request
+	 */
+	double getServletCreateMeanMicros();
+
+	/**
+	 * @return the mean time spent within the emulated {@code service}
+	 * 		call including the Servlet Sensor, net of the Restlet chain
+	 */
+	double getServletDispatchMeanMicros();
+
+	/**
+	 * @return the configured fraction of the request time the
+	 * 		instrumentation may take, {@code 0} if the governor only
+	 * 		measures
+	 */
+	double getBudget();
+
+	/**
+	 * @return the current level of the governor, {@code 0} if nothing is
+	 * 		shed
+	 */
+	int getLevel();
+
+	/**
+	 * @return the fraction of requests actually sampled by
+	 * 		{@link RequestCosts} at the current level
+	 */
+	double getEffectiveCostSampleRate();
+
+	/**
+	 * @return {@code true} if the timing of request bodies by
+	 * 		{@link Uploads} has been configured but is suspended by the
+	 * 		governor
+	 */
+	boolean isUploadTimingSuspended();
+
+	/**
+	 * @return every how many seconds the governor evaluates the overhead
+	 */
+	int getTickSeconds();
+
+}
@@ -0,0 +1,334 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Derives a stable route from the plain path of requests no
+ * {@code TemplateRoute} matched, e.g. of applications dispatching on
+ * {@code Reference.getPath()} themselves. Enabled via
+ * {@code normalize.enabled} of the {@link Configuration}.
+ * </p>
+ * <ul>
+ * <li>paths matching a prefix rule ({@code normalize.prefix.<prefix>}, see
+ * 		{@link PrefixTrie}) are reported as the route of that rule</li>
+ * <li>segments consisting of digits only become {@value #ID}</li>
+ * <li>segments formatted like a UUID become {@value #UUID}</li>
+ * <li>segments of at least {@value #MIN_HASH_LENGTH} hexadecimal
+ * 		characters including a digit (e.g. MD5 or SHA digests, object ids)
+ * 		become {@value #HASH}</li>
+ * </ul>
+ * <p>
+ * A path is scanned once, classifying every segment in place and hashing
+ * the normalized form on the way, without regular expressions or
+ * substrings. Paths without any segment to collapse, or with more than
+ * {@value #MAX_SEGMENTS} segments, are returned as they are. Otherwise the
+ * normalized form is looked up by that hash within a bounded table of the
+ * routes built so far and compared against the path by char ranges, so
+ * only the first request of a route builds its {@link String}. Once
+ * {@code -Ddt.restlet.normalize.maxRoutes} routes (default 1024) have been
+ * built, further ones are reported as {@value MetricKeyTable#OVERFLOW}.
+ * </p>
+ * <p>
+ * The cost is linear in the length of the path, see
+ * {@code PathNormalizerBenchmark}. The target of well below 100 ns per path
+ * is not met: on a single core build host paths without a segment to
+ * collapse take 50 to 80 ns, whereas paths with one take 100 to 240 ns,
+ * most of it spent in the scan and in comparing the path against its
+ * route.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class PathNormalizer {
+
+	static final String ID = "{id}";
+	static final String UUID = "{uuid}";
+	static final String HASH = "{hash}";
+
+	static final int MIN_HASH_LENGTH = 16;
+
+	private static final int RAW = 0;
+	private static final int NUMERIC = 1;
+	private static final int UUID_SEGMENT = 2;
+	private static final int HEX = 3;
+
+	private static final String[] PLACEHOLDERS = { null, ID, UUID, HASH };
+
+	/**
+	 * {@link String#hashCode()} of the placeholders and {@code 31} to the
+	 * power of their length, so collapsing a segment only needs to replace
+	 * the hash of that segment
+	 */
+	private static final int[] PLACEHOLDER_HASHES = new int[PLACEHOLDERS.length];
+	private static final int[] PLACEHOLDER_POWERS = new int[PLACEHOLDERS.length];
+
+	static {
+		for (int kind = NUMERIC; kind < PLACEHOLDERS.length; kind++) {
+			int power = 1;
+			for (int i = 0; i < PLACEHOLDERS[kind].length(); i++) {
+				power *= 31;
+			}
+			PLACEHOLDER_HASHES[kind] = PLACEHOLDERS[kind].hashCode();
+			PLACEHOLDER_POWERS[kind] = power;
+		}
+	}
+
+	private static final int UUID_LENGTH = 36;
+
+	/**
+	 * The classes of the characters within a segment, combined per segment
+	 * so a character costs a single table lookup
+	 */
+	private static final int DIGIT = 1;
+	private static final int HEX_LETTER = 2;
+	private static final int DASH = 4;
+	private static final int OTHER = 8;
+
+	private static final byte[] CLASSES = new byte[128];
+
+	static {
+		Arrays.fill(CLASSES, (byte) OTHER);
+		for (char c = '0'; c <= '9'; c++) {
+			CLASSES[c] = DIGIT;
+		}
+		for (char c = 'a'; c <= 'f'; c++) {
+			CLASSES[c] = HEX_LETTER;
+			CLASSES[Character.toUpperCase(c)] = HEX_LETTER;
+		}
+		CLASSES['-'] = DASH;
+	}
+
+	/**
+	 * The kinds of the segments of a path are remembered while scanning it,
+	 * two bits each, so comparing it against a route built already does not
+	 * need to classify them again. Paths with more segments are not
+	 * normalized.
+	 */
+	private static final int MAX_SEGMENTS = 32;
+
+	static final PathNormalizer INSTANCE = new PathNormalizer(
+		Integer.getInteger("dt.restlet.normalize.maxRoutes", 1024)
+	);
+
+	private final int maxRoutes;
+	private final int mask;
+	private final AtomicReferenceArray<String> routes;
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * c'tor
+	 *
+	 * @param maxRoutes the maximum number of normalized routes built
+	 */
+	PathNormalizer(int maxRoutes) {
+		this.maxRoutes = Math.max(0, maxRoutes);
+		int capacity = 2;
+		while (capacity < this.maxRoutes * 2) {
+			capacity <<= 1;
+		}
+		this.mask = capacity - 1;
+		this.routes = new AtomicReferenceArray<String>(capacity);
+	}
+
+	/**
+	 * @param path the plain path of a request
+	 * @param rules the prefix rules in effect
+	 * @return the route of the given path
+	 */
+	String normalize(String path, PrefixTrie rules) {
+		if (path == null) {
+			return null;
+		}
+		String route = rules.match(path);
+		if (route != null) {
+			return route;
+		}
+		int length = path.length();
+		int hash = 0;
+		long kinds = 0L;
+		int segment = 0;
+		int start = 0;
+		while (true) {
+			int segmentHash = hash;
+			int classes = 0;
+			int dashes = 0;
+			int i = start;
+			char c;
+			while ((i < length) && ((c = path.charAt(i)) != '/')) {
+				hash = 31 * hash + c;
+				int cls = (c < CLASSES.length) ? CLASSES[c] : OTHER;
+				classes |= cls;
+				dashes += cls & DASH;
+				i++;
+			}
+			int kind = kind(path, start, i, classes, dashes / DASH);
+			if (kind != RAW) {
+				hash = segmentHash * PLACEHOLDER_POWERS[kind] + PLACEHOLDER_HASHES[kind];
+				kinds |= ((long) kind) << (segment << 1);
+			}
+			if (i >= length) {
+				break;
+			}
+			if (++segment == MAX_SEGMENTS) {
+				return path;
+			}
+			hash = 31 * hash + '/';
+			start = i + 1;
+		}
+		if (kinds == 0L) {
+			return path;
+		}
+		return intern(path, hash, kinds);
+	}
+
+	/**
+	 * @param path the path the segment is part of
+	 * @param start the index the segment starts at
+	 * @param end the index the segment ends at (exclusive)
+	 * @param classes the classes of all characters within the segment
+	 * @param dashes the number of dashes within the segment
+	 * @return the kind of the segment
+	 */
+	private static int kind(String path, int start, int end, int classes, int dashes) {
+		int length = end - start;
+		switch (classes) {
+		case DIGIT:
+			return NUMERIC;
+		case DIGIT | HEX_LETTER:
+			return (length >= MIN_HASH_LENGTH) ? HEX : RAW;
+		case DIGIT | HEX_LETTER | DASH:
+		case DIGIT | DASH:
+			// exactly four dashes, at 8, 13, 18 and 23
+			return ((length == UUID_LENGTH)
+					&& (dashes == 4)
+					&& (path.charAt(start + 8) == '-')
+					&& (path.charAt(start + 13) == '-')
+					&& (path.charAt(start + 18) == '-')
+					&& (path.charAt(start + 23) == '-')) ? UUID_SEGMENT : RAW;
+		default:
+			return RAW;
+		}
+	}
+
+	private static int kind(long kinds, int segment) {
+		return (int) (kinds >>> (segment << 1)) & 3;
+	}
+
+	/**
+	 * @param path a path with at least one segment to collapse
+	 * @param hash the hash of its normalized form
+	 * @param kinds the kinds of its segments
+	 * @return the normalized form of the given path, built only once
+	 */
+	private String intern(String path, int hash, long kinds) {
+		int i = (hash ^ (hash >>> 16)) & mask;
+		String built = null;
+		while (true) {
+			String route = routes.get(i);
+			if (route == null) {
+				if (built == null) {
+					// reserve first, so the table never fills up under
+					// concurrent inserts and probing always ends
+					if (size.incrementAndGet() > maxRoutes) {
+						size.decrementAndGet();
+						return MetricKeyTable.OVERFLOW;
+					}
+					built = build(path, kinds);
+				}
+				if (routes.compareAndSet(i, null, built)) {
+					return built;
+				}
+				// lost against a concurrent insert, examine its route
+				route = routes.get(i);
+			}
+			if ((route.hashCode() == hash) && matches(route, path, kinds)) {
+				if (built != null) {
+					size.decrementAndGet();
+				}
+				return route;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Walks the path and the route side by side in a single pass, comparing
+	 * the segments kept as they are char by char and skipping the ones to
+	 * collapse.
+	 *
+	 * @return {@code true} if the given route is the normalized form of the
+	 * 		given path
+	 */
+	private static boolean matches(String route, String path, long kinds) {
+		int length = path.length();
+		int routeLength = route.length();
+		int i = 0;
+		int r = 0;
+		int segment = 0;
+		while (true) {
+			int kind = kind(kinds, segment);
+			if (kind == RAW) {
+				char c;
+				while ((i < length) && ((c = path.charAt(i)) != '/')) {
+					if ((r == routeLength) || (route.charAt(r) != c)) {
+						return false;
+					}
+					i++;
+					r++;
+				}
+			} else {
+				String placeholder = PLACEHOLDERS[kind];
+				if (!route.startsWith(placeholder, r)) {
+					return false;
+				}
+				r += placeholder.length();
+				if (kind == UUID_SEGMENT) {
+					i += UUID_LENGTH;
+				} else {
+					while ((i < length) && (path.charAt(i) != '/')) {
+						i++;
+					}
+				}
+			}
+			if (i == length) {
+				return r == routeLength;
+			}
+			if ((r == routeLength) || (route.charAt(r) != '/')) {
+				return false;
+			}
+			i++;
+			r++;
+			segment++;
+		}
+	}
+
+	private static String build(String path, long kinds) {
+		StringBuilder sb = new StringBuilder(path.length());
+		int length = path.length();
+		int segment = 0;
+		int start = 0;
+		while (true) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+			String placeholder = PLACEHOLDERS[kind(kinds, segment)];
+			if (placeholder == null) {
+				sb.append(path, start, end);
+			} else {
+				sb.append(placeholder);
+			}
+			if (end == length) {
+				return sb.toString();
+			}
+			sb.append('/');
+			start = end + 1;
+			segment++;
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * The prefix rules of the {@link PathNormalizer}, configured via
+ * {@code normalize.prefix.<prefix>=<route>} of the {@link Configuration}.
+ * Every path starting with a prefix, followed by the end of the path or a
+ * {@code /}, is reported as the route of that rule. If several prefixes
+ * match, the longest one wins.
+ * </p>
+ * <p>
+ * The rules are stored as a trie of characters, which is immutable once
+ * built, so matching a path walks it only once and does not allocate.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class PrefixTrie {
+
+	/**
+	 * A trie without any rules
+	 */
+	static final PrefixTrie EMPTY = new PrefixTrie(new Node());
+
+	/**
+	 * A single character within the trie. The children are kept within
+	 * parallel arrays, the number of children per node being small.
+	 */
+	private static final class Node {
+
+		char[] chars = new char[0];
+		Node[] children = new Node[0];
+		String route = null;
+
+		Node child(char c) {
+			char[] cs = chars;
+			for (int i = 0; i < cs.length; i++) {
+				if (cs[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		Node add(char c) {
+			Node child = child(c);
+			if (child != null) {
+				return child;
+			}
+			int n = chars.length;
+			char[] cs = new char[n + 1];
+			Node[] ns = new Node[n + 1];
+			System.arraycopy(chars, 0, cs, 0, n);
+			System.arraycopy(children, 0, ns, 0, n);
+			cs[n] = c;
+			ns[n] = child = new Node();
+			chars = cs;
+			children = ns;
+			return child;
+		}
+
+	}
+
+	private final Node root;
+	private final boolean empty;
+
+	private PrefixTrie(Node root) {
+		this.root = root;
+		this.empty = root.chars.length == 0;
+	}
+
+	/**
+	 * @param rules the routes keyed by path prefix
+	 * @return a trie holding the given rules
+	 */
+	static PrefixTrie of(Map<String, String> rules) {
+		if (rules.isEmpty()) {
+			return EMPTY;
+		}
+		Node root = new Node();
+		for (Map.Entry<String, String> rule : rules.entrySet()) {
+			Node node = root;
+			String prefix = rule.getKey();
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.add(prefix.charAt(i));
+			}
+			node.route = rule.getValue();
+		}
+		return new PrefixTrie(root);
+	}
+
+	/**
+	 * @return {@code true} if there are no rules
+	 */
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @param path the path of a request
+	 * @return the route of the longest prefix matching the given path or
+	 * 		{@code null} if none matches
+	 */
+	String match(String path) {
+		if (empty) {
+			return null;
+		}
+		String route = null;
+		Node node = root;
+		int length = path.length();
+		for (int i = 0; i < length; i++) {
+			char c = path.charAt(i);
+			if ((c == '/') && (node.route != null)) {
+				route = node.route;
+			}
+			node = node.child(c);
+			if (node == null) {
+				return route;
+			}
+			if ((c == '/') && (node.route != null)) {
+				// the prefix ends with a slash itself
+				route = node.route;
+			}
+		}
+		return (node.route != null) ? node.route : route;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ThreadPoolExecutor} which remembers when a task has been handed
+ * over to it. Once a worker thread picks up the task, that timestamp is
+ * passed on to the {@link ActiveRequest} slot of the worker thread, which
+ * allows to tell how long a request has been waiting for a thread before
+ * {@code Server.handle} got invoked. While the {@link KillSwitch} is off,
+ * tasks are handed over as they are, without wrapping them.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class QueueTimingThreadPoolExecutor extends ThreadPoolExecutor {
+
+	/**
+	 * c'tor
+	 *
+	 * @see ThreadPoolExecutor#ThreadPoolExecutor(int, int, long, TimeUnit,
+	 * 		BlockingQueue, ThreadFactory)
+	 */
+	QueueTimingThreadPoolExecutor(
+			int corePoolSize,
+			int maximumPoolSize,
+			long keepAliveTime,
+			TimeUnit unit,
+			BlockingQueue<Runnable> workQueue,
+			ThreadFactory threadFactory
+	) {
+		super(
+			corePoolSize,
+			maximumPoolSize,
+			keepAliveTime,
+			unit,
+			workQueue,
+			threadFactory
+		);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (command == null) {
+			throw new NullPointerException();
+		}
+		if (!KillSwitch.isOn()) {
+			super.execute(command);
+			return;
+		}
+		super.execute(new Timed(command, System.nanoTime()));
+	}
+
+	/**
+	 * Wraps a task together with the time it has been submitted
+	 */
+	private static final class Timed implements Runnable {
+
+		private final Runnable task;
+		private final long enqueuedNanos;
+
+		Timed(Runnable task, long enqueuedNanos) {
+			this.task = task;
+			this.enqueuedNanos = enqueuedNanos;
+		}
+
+		@Override
+		public void run() {
+			ActiveRequest slot = InFlightRegistry.INSTANCE.current();
+			slot.enqueued(enqueuedNanos);
+			try {
+				task.run();
+			} finally {
+				slot.enqueued(ActiveRequest.IDLE);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable rate limit as configured via {@code rate.client} or
+ * {@code rate.route.<route>} of the {@link Configuration}, written as
+ * {@code <permitsPerSecond>[,<burst>]}. Without an explicit burst a
+ * {@link TokenBucket} holds the permits of one second.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class RateLimit {
+
+	private final double permitsPerSecond;
+	private final long burst;
+
+	/**
+	 * The time it takes to refill a single permit
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * How far ahead of the current time a bucket may have been drained,
+	 * which is the time it takes to refill all permits but one
+	 */
+	private final long toleranceNanos;
+
+	private RateLimit(double permitsPerSecond, long burst) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1L) / permitsPerSecond));
+		this.toleranceNanos = (burst - 1L) * intervalNanos;
+	}
+
+	/**
+	 * @param key the configuration key, used for the error message only
+	 * @param value {@code <permitsPerSecond>[,<burst>]}
+	 * @return the parsed rate limit or {@code null} if the value is
+	 * 		{@code null} or the rate is {@code 0}
+	 * @throws IllegalArgumentException if the value is invalid
+	 */
+	static RateLimit parse(String key, String value) {
+		if (value == null) {
+			return null;
+		}
+		String rate = value.trim();
+		String burst = null;
+		int comma = rate.indexOf(',');
+		if (comma >= 0) {
+			burst = rate.substring(comma + 1).trim();
+			rate = rate.substring(0, comma).trim();
+		}
+		try {
+			double permitsPerSecond = Double.parseDouble(rate);
+			if (permitsPerSecond < 0d || Double.isNaN(permitsPerSecond)
+					|| Double.isInfinite(permitsPerSecond)) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+			}
+			if (permitsPerSecond == 0d) {
+				return null;
+			}
+			long permits = (burst == null)
+					? Math.max(1L, (long) Math.ceil(permitsPerSecond))
+					: Long.parseLong(burst);
+			if (permits < 1L) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+			}
+			return new RateLimit(permitsPerSecond, permits);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+		}
+	}
+
+	double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	long getBurst() {
+		return burst;
+	}
+
+	long getIntervalNanos() {
+		return intervalNanos;
+	}
+
+	long getToleranceNanos() {
+		return toleranceNanos;
+	}
+
+	@Override
+	public String toString() {
+		return permitsPerSecond + "," + burst;
+	}
+
+}
@@ -0,0 +1,252 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Status;
+
+/**
+ * <p>
+ * Enforces the token buckets configured via {@code rate.client} and
+ * {@code rate.route.<route>} of the {@link Configuration}. Requests
+ * exceeding them are answered with {@code 429 Too Many Requests} and a
+ * {@code Retry-After} header, without invoking the resource.
+ * </p>
+ * <p>
+ * The buckets per client address live within a fixed size table of
+ * {@code -Ddt.restlet.rate.maxClients} slots (default 4096). Every
+ * address maps to two neighboring slots. If both are taken by other
+ * addresses, the bucket which has been full for the longest time gets
+ * evicted. Evicting a bucket which is not full grants its client a new
+ * burst, which is the price for a fixed amount of memory.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RateLimiter implements RateLimiterMXBean {
+
+	/**
+	 * Restlet 2.2 does not know about RFC 6585 yet
+	 */
+	static final Status TOO_MANY_REQUESTS = new Status(
+		429,
+		"Too Many Requests",
+		"The user has sent too many requests in a given amount of time",
+		"http://tools.ietf.org/html/rfc6585#section-4"
+	);
+
+	private static final String UNKNOWN = "unknown";
+
+	public static final RateLimiter INSTANCE = new RateLimiter(
+		Math.max(2, Integer.getInteger("dt.restlet.rate.maxClients", 4096))
+	);
+
+	static {
+		Management.register("RateLimiter", INSTANCE);
+	}
+
+	private final int maxClients;
+	private final int mask;
+	private final AtomicReferenceArray<TokenBucket> clients;
+	private final ConcurrentMap<String, TokenBucket> routes =
+			new ConcurrentHashMap<String, TokenBucket>();
+	private final ConcurrentMap<String, AtomicLong> rejectedByRoute =
+			new ConcurrentHashMap<String, AtomicLong>();
+	private final StripedCounter rejectedByClient = new StripedCounter();
+	private final StripedCounter evictedClients = new StripedCounter();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private RateLimiter(int maxClients) {
+		int size = Integer.highestOneBit(maxClients - 1) << 1;
+		this.maxClients = size;
+		this.mask = size - 1;
+		this.clients = new AtomicReferenceArray<TokenBucket>(size);
+	}
+
+	/**
+	 * Takes a permit from the bucket of the client address of the given
+	 * request, if {@code rate.client} has been configured
+	 *
+	 * @param config the settings in effect for the request
+	 * @param request the request about to be handled
+	 * @param response the response, which gets a {@code 429} if the client
+	 * 		exceeded its rate
+	 * @return {@code true} if the request may proceed
+	 */
+	boolean admitClient(
+			InstrumentationConfig config,
+			Request request,
+			Response response
+	) {
+		RateLimit limit = config.getClientRateLimit();
+		if (limit == null) {
+			return true;
+		}
+		ClientInfo info = request.getClientInfo();
+		String address = (info == null) ? null : info.getAddress();
+		long now = System.nanoTime();
+		long wait = client((address == null) ? UNKNOWN : address, now)
+				.tryAcquire(limit, now);
+		if (wait == 0L) {
+			return true;
+		}
+		rejectedByClient.increment();
+		reject(response, wait);
+		return false;
+	}
+
+	/**
+	 * Takes a permit from the bucket of the route the given request has
+	 * been matched with so far, if {@code rate.route.<route>} has been
+	 * configured for it
+	 *
+	 * @param active the request currently executed
+	 * @param response the response, which gets a {@code 429} if the route
+	 * 		exceeded its rate
+	 * @return {@code true} if the request may proceed
+	 */
+	boolean admitRoute(ActiveRequest active, Response response) {
+		InstrumentationConfig config = active.config;
+		if ((config == null) || !config.hasRouteRateLimits()) {
+			return true;
+		}
+		String route = active.getRoute();
+		RateLimit limit = config.getRouteRateLimit(route);
+		if (limit == null) {
+			return true;
+		}
+		long now = System.nanoTime();
+		long wait = route(route, now).tryAcquire(limit, now);
+		if (wait == 0L) {
+			return true;
+		}
+		AtomicLong rejected = rejectedByRoute.get(route);
+		if (rejected == null) {
+			AtomicLong created = new AtomicLong();
+			rejected = rejectedByRoute.putIfAbsent(route, created);
+			if (rejected == null) {
+				rejected = created;
+			}
+		}
+		rejected.incrementAndGet();
+		reject(response, wait);
+		return false;
+	}
+
+	private static void reject(Response response, long waitNanos) {
+		response.setStatus(TOO_MANY_REQUESTS);
+		long seconds = Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(
+			waitNanos + TimeUnit.SECONDS.toNanos(1L) - 1L
+		));
+		response.setRetryAfter(new Date(
+			System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds)
+		));
+	}
+
+	/**
+	 * The number of routes is bounded by the routes configured, so these
+	 * buckets are never evicted
+	 */
+	private TokenBucket route(String route, long now) {
+		TokenBucket bucket = routes.get(route);
+		if (bucket != null) {
+			return bucket;
+		}
+		bucket = new TokenBucket(route, now);
+		TokenBucket existing = routes.putIfAbsent(route, bucket);
+		return (existing == null) ? bucket : existing;
+	}
+
+	/**
+	 * @return the bucket of the given client address, created if necessary
+	 */
+	private TokenBucket client(String address, long now) {
+		int h = address.hashCode();
+		h ^= (h >>> 16);
+		int first = h & mask;
+		int second = first ^ 1;
+		while (true) {
+			TokenBucket a = clients.get(first);
+			if ((a != null) && address.equals(a.getKey())) {
+				return a;
+			}
+			TokenBucket b = clients.get(second);
+			if ((b != null) && address.equals(b.getKey())) {
+				return b;
+			}
+			int slot;
+			TokenBucket victim;
+			if (a == null) {
+				slot = first;
+				victim = null;
+			} else if (b == null) {
+				slot = second;
+				victim = null;
+			} else if (a.idleNanos(now) >= b.idleNanos(now)) {
+				slot = first;
+				victim = a;
+			} else {
+				slot = second;
+				victim = b;
+			}
+			TokenBucket bucket = new TokenBucket(address, now);
+			if (clients.compareAndSet(slot, victim, bucket)) {
+				if (victim != null) {
+					evictedClients.increment();
+				}
+				return bucket;
+			}
+			// another thread changed the slot, it may have inserted this
+			// very address
+		}
+	}
+
+	@Override
+	public long getRejectedByClient() {
+		return rejectedByClient.sum();
+	}
+
+	@Override
+	public Map<String, Long> getRejectedByRoute() {
+		Map<String, Long> result = new HashMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : rejectedByRoute.entrySet()) {
+			result.put(entry.getKey(), Long.valueOf(entry.getValue().get()));
+		}
+		return result;
+	}
+
+	@Override
+	public int getTrackedClients() {
+		int count = 0;
+		for (int i = 0; i < clients.length(); i++) {
+			if (clients.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int getMaxClients() {
+		return maxClients;
+	}
+
+	@Override
+	public long getEvictedClients() {
+		return evictedClients.sum();
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link RateLimiter}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface RateLimiterMXBean {
+
+	/**
+	 * @return the number of requests rejected because their client
+	 * 		exceeded {@code rate.client}
+	 */
+	long getRejectedByClient();
+
+	/**
+	 * @return the number of requests rejected per route because that route
+	 * 		exceeded its {@code rate.route.<route>}
+	 */
+	Map<String, Long> getRejectedByRoute();
+
+	/**
+	 * @return the number of client addresses currently tracked
+	 */
+	int getTrackedClients();
+
+	/**
+	 * @return the maximum number of client addresses tracked at once
+	 */
+	int getMaxClients();
+
+	/**
+	 * @return the number of client buckets evicted in favor of other
+	 * 		clients
+	 */
+	long getEvictedClients();
+
+}
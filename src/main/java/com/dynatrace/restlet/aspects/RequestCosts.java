@@ -0,0 +1,230 @@
+package com.dynatrace.restlet.aspects;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Accounts the CPU time consumed and the bytes allocated by the thread
+ * executing {@code Server.handle} to the route of the request.
+ * </p>
+ * <p>
+ * Querying the {@link ThreadMXBean} costs considerably more than the rest
+ * of the instrumentation, which is why only every n-th request of a thread
+ * gets sampled. The fraction of requests sampled is configured via
+ * {@code cost.sampleRate} of the {@link Configuration} (default
+ * {@code 0.0}, disabled) and can be changed at runtime. Whether a request is
+ * sampled is
+ * decided by a countdown owned by the executing thread, so the decision
+ * itself does not contend.
+ * </p>
+ * <p>
+ * The number of routes tracked individually is bounded by
+ * {@code -Ddt.restlet.cost.maxRoutes} (default 256). Samples of any
+ * further route are accounted to a single overflow route.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RequestCosts implements RequestCostsMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(RequestCosts.class.getName());
+
+	public static final RequestCosts INSTANCE = new RequestCosts(
+		Integer.getInteger("dt.restlet.cost.maxRoutes", 256)
+	);
+
+	static {
+		Management.register("RequestCosts", INSTANCE);
+	}
+
+	private static final Comparator<RouteCostStats> BY_CPU =
+			new Comparator<RouteCostStats>() {
+		@Override
+		public int compare(RouteCostStats o1, RouteCostStats o2) {
+			return Double.compare(o2.getCpuTotalMillis(), o1.getCpuTotalMillis());
+		}
+	};
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final boolean cpuTimeSupported;
+	private final boolean allocatedBytesSupported;
+
+	private final MetricKeyTable<RouteCost> routes;
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private RequestCosts(int maxRoutes) {
+		this.routes = new MetricKeyTable<RouteCost>(maxRoutes) {
+			@Override
+			protected RouteCost create(String key) {
+				return new RouteCost(key);
+			}
+		};
+		this.cpuTimeSupported = enableCpuTime(threads);
+		this.allocatedBytesSupported = enableAllocatedBytes(threads);
+	}
+
+	private static boolean enableCpuTime(ThreadMXBean threads) {
+		try {
+			if (!threads.isCurrentThreadCpuTimeSupported()) {
+				return false;
+			}
+			if (!threads.isThreadCpuTimeEnabled()) {
+				threads.setThreadCpuTimeEnabled(true);
+			}
+			return true;
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.FINE, "Thread CPU time not available", e);
+			return false;
+		}
+	}
+
+	private static boolean enableAllocatedBytes(ThreadMXBean threads) {
+		try {
+			if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+				return false;
+			}
+			com.sun.management.ThreadMXBean allocations =
+					(com.sun.management.ThreadMXBean) threads;
+			if (!allocations.isThreadAllocatedMemorySupported()) {
+				return false;
+			}
+			if (!allocations.isThreadAllocatedMemoryEnabled()) {
+				allocations.setThreadAllocatedMemoryEnabled(true);
+			}
+			return true;
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.FINE, "Thread allocated bytes not available", e);
+			return false;
+		} catch (LinkageError e) {
+			LOGGER.log(Level.FINE, "Thread allocated bytes not available", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Decides whether the request about to be executed by the calling
+	 * thread gets sampled and if so, takes the initial readings.
+	 *
+	 * @param slot the slot of the calling thread
+	 * @param interval every how many requests of a thread one gets sampled
+	 * 		or {@code 0} if sampling is disabled
+	 */
+	void begin(ActiveRequest slot, int interval) {
+		if ((interval == 0) || (!cpuTimeSupported && !allocatedBytesSupported)) {
+			return;
+		}
+		if (--slot.costCountdown > 0) {
+			return;
+		}
+		slot.costCountdown = interval;
+		slot.cpuStartNanos = cpuTime();
+		slot.allocatedStartBytes = allocatedBytes();
+		slot.costSampled = true;
+	}
+
+	/**
+	 * Records the costs of the request executed by the calling thread, in
+	 * case it has been sampled.
+	 *
+	 * @param slot the slot of the calling thread
+	 */
+	void end(ActiveRequest slot) {
+		if (!slot.costSampled) {
+			return;
+		}
+		slot.costSampled = false;
+		if (slot.isExcluded()) {
+			return;
+		}
+		long cpuNanos = cpuTime();
+		long allocated = allocatedBytes();
+		if ((cpuNanos >= 0L) && (slot.cpuStartNanos >= 0L)) {
+			cpuNanos -= slot.cpuStartNanos;
+		} else {
+			cpuNanos = -1L;
+		}
+		if ((allocated >= 0L) && (slot.allocatedStartBytes >= 0L)) {
+			allocated -= slot.allocatedStartBytes;
+		} else {
+			allocated = -1L;
+		}
+		routes.get(slot.getRoute()).record(cpuNanos, allocated);
+	}
+
+	/**
+	 * @return the CPU time of the calling thread or {@code -1} if not
+	 * 		supported
+	 */
+	private long cpuTime() {
+		if (!cpuTimeSupported) {
+			return -1L;
+		}
+		return threads.getCurrentThreadCpuTime();
+	}
+
+	/**
+	 * @return the number of bytes allocated by the calling thread so far
+	 * 		or {@code -1} if not supported
+	 */
+	private long allocatedBytes() {
+		if (!allocatedBytesSupported) {
+			return -1L;
+		}
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+			Thread.currentThread().getId()
+		);
+	}
+
+	@Override
+	public List<RouteCostStats> getRouteCosts() {
+		List<RouteCostStats> result = new ArrayList<RouteCostStats>();
+		for (RouteCost cost : routes.values()) {
+			result.add(cost.snapshot());
+		}
+		Collections.sort(result, BY_CPU);
+		return result;
+	}
+
+	@Override
+	public double getSampleRate() {
+		return Configuration.INSTANCE.current().getSampleRate();
+	}
+
+	@Override
+	public void setSampleRate(double sampleRate) {
+		Configuration.INSTANCE.setSampleRate(sampleRate);
+	}
+
+	@Override
+	public boolean isCpuTimeSupported() {
+		return cpuTimeSupported;
+	}
+
+	@Override
+	public boolean isAllocatedBytesSupported() {
+		return allocatedBytesSupported;
+	}
+
+	@Override
+	public int getMaxRoutes() {
+		return routes.getMaxKeys();
+	}
+
+	@Override
+	public long getOverflowSamples() {
+		return routes.getDropped();
+	}
+
+}
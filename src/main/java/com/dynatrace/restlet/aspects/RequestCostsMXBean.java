@@ -0,0 +1,56 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link RequestCosts}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface RequestCostsMXBean {
+
+	/**
+	 * @return the costs per route, the route which consumed the most CPU
+	 * 		time first
+	 */
+	List<RouteCostStats> getRouteCosts();
+
+	/**
+	 * @return the fraction of requests sampled, between {@code 0.0}
+	 * 		(disabled) and {@code 1.0} (every request)
+	 */
+	double getSampleRate();
+
+	/**
+	 * @param sampleRate the fraction of requests to sample, between
+	 * 		{@code 0.0} (disabled) and {@code 1.0} (every request). Gets
+	 * 		overridden once the configuration file changes.
+	 */
+	void setSampleRate(double sampleRate);
+
+	/**
+	 * @return {@code true} if the JVM supports measuring the CPU time of
+	 * 		the current thread
+	 */
+	boolean isCpuTimeSupported();
+
+	/**
+	 * @return {@code true} if the JVM supports measuring the bytes
+	 * 		allocated by a thread
+	 */
+	boolean isAllocatedBytesSupported();
+
+	/**
+	 * @return the maximum number of routes tracked individually
+	 */
+	int getMaxRoutes();
+
+	/**
+	 * @return the number of samples which have been accounted to the
+	 * 		overflow route because the maximum number of routes had already
+	 * 		been reached
+	 */
+	long getOverflowSamples();
+
+}
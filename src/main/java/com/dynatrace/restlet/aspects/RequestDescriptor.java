@@ -0,0 +1,65 @@
+package com.dynatrace.restlet.aspects;
+
+import org.restlet.Request;
+import org.restlet.Response;
+
+/**
+ * Describes a request handled by {@code Server.handle} towards a
+ * {@link TelemetryBackend}.
+ * <p>
+ * Descriptors are reused by the thread handling the request. Their state is
+ * therefore only valid during the callbacks of a {@link TelemetryBackend}
+ * and they must not be retained beyond.
+ * </p>
+ * 
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface RequestDescriptor {
+
+	/**
+	 * @return the Restlet request object
+	 */
+	Request getRequest();
+
+	/**
+	 * @return the Restlet response object
+	 */
+	Response getResponse();
+
+	/**
+	 * @return the matched route template or the request path if no route
+	 * 		has been matched (yet), normalized if {@code normalize.enabled}
+	 */
+	String getRoute();
+
+	/**
+	 * @return the {@code Server} which received the request or {@code null}
+	 * 		if unknown
+	 */
+	ServerIdentity getServer();
+
+	/**
+	 * @return the wall clock time in milliseconds when the request started
+	 */
+	long getStartMillis();
+
+	/**
+	 * @return the {@link System#nanoTime()} when the request started
+	 */
+	long getStartNanos();
+
+	/**
+	 * @return for how many nanoseconds the request has been waiting for a
+	 * 		thread of the connector before being handled or {@code 0} if
+	 * 		unknown
+	 */
+	long getQueueWaitNanos();
+
+	/**
+	 * @return the exception which escaped {@code Server.handle} or
+	 * 		{@code null} if the request has been handled without one
+	 */
+	Throwable getFailure();
+
+}
@@ -0,0 +1,234 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * The shape of a single request as recorded by the {@link ShapeRecorder}
+ * and replayed by {@link ShapeReplay}: method, route template, number of
+ * query parameters, names and sizes of the headers, size of the body and
+ * when the request arrived. Neither the path nor the values of query
+ * parameters or headers nor the body are part of it, so a shape does not
+ * carry any personal data.
+ * </p>
+ * <p>
+ * Shapes are stored within a file starting with {@value #MAGIC} and a
+ * version byte, followed by one record per request:
+ * </p>
+ * <pre>
+ * record := offsetMicros method route queryParameters
+ *           headerCount (name size)* bodySize
+ * string := index [length utf8]
+ * </pre>
+ * <p>
+ * All numbers are unsigned variable length integers (7 bits per byte, the
+ * least significant group first). {@code bodySize} is stored incremented
+ * by one, so that {@code 0} denotes an unknown size. Strings are
+ * dictionary encoded: an index equal to the number of strings seen so far
+ * introduces a new string, which follows as length and UTF-8 bytes, any
+ * smaller index refers to a string seen before.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class RequestShape {
+
+	static final String MAGIC = "DTRS";
+
+	static final int VERSION = 1;
+
+	/**
+	 * The route of requests which have not been matched by a
+	 * {@code TemplateRoute}, whose path must not be recorded
+	 */
+	static final String UNMATCHED = "";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * When the request arrived, relative to the start of the recording
+	 */
+	final long offsetMicros;
+	final String method;
+	final String route;
+	final int queryParameters;
+	final String[] headerNames;
+	final int[] headerSizes;
+
+	/**
+	 * The size of the body or {@code -1} if unknown
+	 */
+	final long bodySize;
+
+	/**
+	 * c'tor
+	 */
+	RequestShape(
+			long offsetMicros,
+			String method,
+			String route,
+			int queryParameters,
+			String[] headerNames,
+			int[] headerSizes,
+			long bodySize
+	) {
+		this.offsetMicros = offsetMicros;
+		this.method = method;
+		this.route = route;
+		this.queryParameters = queryParameters;
+		this.headerNames = headerNames;
+		this.headerSizes = headerSizes;
+		this.bodySize = bodySize;
+	}
+
+	/**
+	 * @param out the stream to write the file header to
+	 */
+	static void writeHeader(OutputStream out) throws IOException {
+		out.write(MAGIC.getBytes(UTF_8));
+		out.write(VERSION);
+	}
+
+	/**
+	 * @param in the stream to read the file header from
+	 * @throws IOException if the stream does not contain shapes of a
+	 * 		supported version
+	 */
+	static void readHeader(InputStream in) throws IOException {
+		byte[] magic = new byte[MAGIC.length()];
+		new DataInputStream(in).readFully(magic);
+		if (!MAGIC.equals(new String(magic, UTF_8))) {
+			throw new IOException("Not a file of request shapes");
+		}
+		int version = in.read();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version);
+		}
+	}
+
+	/**
+	 * @param out the stream to write this shape to
+	 * @param strings the strings written so far, mapped to their index
+	 * @return the number of bytes written
+	 */
+	int write(OutputStream out, Map<String, Integer> strings)
+			throws IOException {
+		int length = writeNumber(out, offsetMicros);
+		length += writeString(out, method, strings);
+		length += writeString(out, route, strings);
+		length += writeNumber(out, queryParameters);
+		length += writeNumber(out, headerNames.length);
+		for (int i = 0; i < headerNames.length; i++) {
+			length += writeString(out, headerNames[i], strings);
+			length += writeNumber(out, headerSizes[i]);
+		}
+		length += writeNumber(out, bodySize + 1L);
+		return length;
+	}
+
+	/**
+	 * @param in the stream to read a shape from
+	 * @param strings the strings read so far, in the order of their index
+	 * @return the shape read or {@code null} at the end of the stream
+	 */
+	static RequestShape read(InputStream in, List<String> strings)
+			throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+		long offsetMicros = readNumber(in, first);
+		String method = readString(in, strings);
+		String route = readString(in, strings);
+		int queryParameters = (int) readNumber(in, in.read());
+		int headers = (int) readNumber(in, in.read());
+		String[] headerNames = new String[headers];
+		int[] headerSizes = new int[headers];
+		for (int i = 0; i < headers; i++) {
+			headerNames[i] = readString(in, strings);
+			headerSizes[i] = (int) readNumber(in, in.read());
+		}
+		long bodySize = readNumber(in, in.read()) - 1L;
+		return new RequestShape(
+			offsetMicros, method, route, queryParameters,
+			headerNames, headerSizes, bodySize
+		);
+	}
+
+	private static int writeNumber(OutputStream out, long value)
+			throws IOException {
+		int length = 1;
+		long v = Math.max(0L, value);
+		while ((v & ~0x7FL) != 0L) {
+			out.write((int) ((v & 0x7FL) | 0x80L));
+			v >>>= 7;
+			length++;
+		}
+		out.write((int) v);
+		return length;
+	}
+
+	/**
+	 * @param first the first byte of the number, already read
+	 */
+	private static long readNumber(InputStream in, int first)
+			throws IOException {
+		long value = 0L;
+		int shift = 0;
+		int b = first;
+		while (true) {
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+			b = in.read();
+		}
+	}
+
+	private static int writeString(
+			OutputStream out,
+			String value,
+			Map<String, Integer> strings
+	) throws IOException {
+		Integer index = strings.get(value);
+		if (index != null) {
+			return writeNumber(out, index.intValue());
+		}
+		int next = strings.size();
+		strings.put(value, Integer.valueOf(next));
+		byte[] bytes = value.getBytes(UTF_8);
+		int length = writeNumber(out, next);
+		length += writeNumber(out, bytes.length);
+		out.write(bytes);
+		return length + bytes.length;
+	}
+
+	private static String readString(InputStream in, List<String> strings)
+			throws IOException {
+		int index = (int) readNumber(in, in.read());
+		if (index < strings.size()) {
+			return strings.get(index);
+		}
+		if (index > strings.size()) {
+			throw new IOException("Invalid string index " + index);
+		}
+		byte[] bytes = new byte[(int) readNumber(in, in.read())];
+		new DataInputStream(in).readFully(bytes);
+		String value = new String(bytes, UTF_8);
+		strings.add(value);
+		return value;
+	}
+
+}
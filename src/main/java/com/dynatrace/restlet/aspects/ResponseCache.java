@@ -0,0 +1,631 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Dimension;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * <p>
+ * Caches the responses of {@code GET} requests for the routes configured
+ * via {@code cache.route.<route>} of the {@link Configuration}, which
+ * specifies how many seconds a response may be served from the cache.
+ * A cached response is served as soon as the {@code TemplateRoute} of such
+ * a route accepted a request, without invoking the resource.
+ * </p>
+ * <p>
+ * Responses are keyed by the server which received the request, the host
+ * addressed by the client, the path, the query with its parameters sorted and
+ * the values of the request headers named by the {@code Vary} dimensions
+ * of the response. Only {@code 200} responses without cookies and without
+ * {@code no-store}, {@code no-cache} or {@code private} directives get
+ * cached. Requests carrying credentials or cookies are always passed on.
+ * A request whose {@code If-None-Match} matches the ETag of the cached
+ * response is answered with {@code 304 Not Modified}.
+ * </p>
+ * <p>
+ * The cache holds at most {@code -Ddt.restlet.cache.maxBytes} bytes
+ * (default 32 MB), responses larger than
+ * {@code -Ddt.restlet.cache.maxEntryBytes} (default 1 MB) are not cached.
+ * Eviction follows the W-TinyLFU policy: new responses enter a small LRU
+ * window (1% of the bytes). Responses falling out of the window only get
+ * admitted to the main segment if they have been requested more often
+ * recently than the response they would replace, according to a
+ * {@link FrequencySketch}. The main segment is a segmented LRU, where
+ * responses requested again move from probation to the protected part
+ * (80% of the bytes).
+ * </p>
+ * <p>
+ * Lookups read a {@link ConcurrentHashMap}. The policy is guarded by a
+ * lock, which lookups only try to acquire. If the lock is contended, the
+ * access simply is not accounted for by the policy.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ResponseCache implements ResponseCacheMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ResponseCache.class.getName());
+
+	private static final String ERRMSG_BUFFER =
+			"Unable to buffer the response of ";
+
+	/**
+	 * The pseudo header keying responses which vary by client address
+	 */
+	private static final String CLIENT_ADDRESS = "Client-Address";
+
+	private static final String[] NO_VARY = new String[0];
+
+	/**
+	 * The average response size assumed to dimension the
+	 * {@link FrequencySketch}
+	 */
+	static final int AVERAGE_BYTES = 4096;
+
+	public static final ResponseCache INSTANCE = new ResponseCache(
+		Math.max(0L, Long.getLong("dt.restlet.cache.maxBytes", 32L << 20)),
+		Math.max(0L, Long.getLong("dt.restlet.cache.maxEntryBytes", 1L << 20))
+	);
+
+	static {
+		Management.register("ResponseCache", INSTANCE);
+	}
+
+	private final long maxBytes;
+	private final long maxEntryBytes;
+	private final long maxWindowBytes;
+	private final long maxProtectedBytes;
+
+	private final ConcurrentMap<String, CachedResponse> entries =
+			new ConcurrentHashMap<String, CachedResponse>();
+
+	/**
+	 * The request headers the responses of a route vary by. Bounded by the
+	 * number of routes configured.
+	 */
+	private final ConcurrentMap<String, String[]> varyByRoute =
+			new ConcurrentHashMap<String, String[]>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final FrequencySketch sketch;
+	private final CachedResponse[] heads = new CachedResponse[3];
+	private final CachedResponse[] tails = new CachedResponse[3];
+	private final long[] queueBytes = new long[3];
+	private volatile long totalBytes = 0L;
+
+	private final StripedCounter hits = new StripedCounter();
+	private final StripedCounter misses = new StripedCounter();
+	private final StripedCounter notModified = new StripedCounter();
+	private final StripedCounter evictions = new StripedCounter();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private ResponseCache(long maxBytes, long maxEntryBytes) {
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = Math.min(maxBytes, maxEntryBytes);
+		this.maxWindowBytes = Math.max(1L, maxBytes / 100L);
+		this.maxProtectedBytes = (maxBytes - maxWindowBytes) * 8L / 10L;
+		this.sketch = new FrequencySketch(
+			(int) Math.min(Integer.MAX_VALUE, maxBytes / AVERAGE_BYTES)
+		);
+	}
+
+	/**
+	 * Answers the given request from the cache if its route is cached and
+	 * a response is available. Otherwise remembers the key of the request,
+	 * so {@link #store(ActiveRequest, Response)} can cache its response.
+	 *
+	 * @param active the request currently executed
+	 * @param request the request object
+	 * @param response the response, which gets filled with the cached one
+	 * @return {@code true} if the request has been answered
+	 */
+	boolean serve(ActiveRequest active, Request request, Response response) {
+		InstrumentationConfig config = active.config;
+		if ((config == null) || !config.hasCachedRoutes()
+				|| !Method.GET.equals(request.getMethod())) {
+			return false;
+		}
+		String route = active.getRoute();
+		long ttl = config.getCacheTtlNanos(route);
+		if ((ttl <= 0L) || (maxEntryBytes == 0L) || hasCredentials(request)) {
+			return false;
+		}
+		String primary = primaryKey(active.getServer(), request);
+		active.cacheRoute = route;
+		active.cacheKey = primary;
+		active.cacheTtlNanos = ttl;
+		if (forbids(request.getCacheDirectives(), false)) {
+			misses.increment();
+			return false;
+		}
+		String key = key(primary, varyByRoute.get(route), request);
+		CachedResponse cached = entries.get(key);
+		if ((cached == null) || cached.isExpired(System.nanoTime())) {
+			if (cached != null) {
+				remove(cached);
+			}
+			record(spread(key.hashCode()));
+			misses.increment();
+			return false;
+		}
+		touch(cached);
+		boolean matches = matches(request.getConditions().getNoneMatch(), cached.getTag());
+		cached.applyTo(response, matches);
+		hits.increment();
+		if (matches) {
+			notModified.increment();
+		}
+		active.cacheKey = null;
+		return true;
+	}
+
+	/**
+	 * Caches the response of a request which has not been answered by
+	 * {@link #serve(ActiveRequest, Request, Response)}, if it qualifies.
+	 * The entity of the response gets buffered and is replaced by a copy of
+	 * the bytes read, unless it exceeds {@code maxEntryBytes}, see
+	 * {@link CachedResponse#capture}.
+	 *
+	 * @param active the request about to finish
+	 * @param response the response of the request
+	 */
+	void store(ActiveRequest active, Response response) {
+		String primary = active.cacheKey;
+		active.cacheKey = null;
+		if ((primary == null) || (active.getFailure() != null)
+				|| !isShareable(response)) {
+			return;
+		}
+		String[] vary = vary(response.getDimensions());
+		if (vary == null) {
+			return;
+		}
+		String route = active.cacheRoute;
+		if (!Arrays.equals(vary, varyByRoute.get(route))) {
+			varyByRoute.put(route, vary);
+		}
+		String key = key(primary, vary, active.getRequest());
+		CachedResponse cached;
+		try {
+			cached = CachedResponse.capture(
+				key,
+				spread(key.hashCode()),
+				response,
+				maxEntryBytes,
+				System.nanoTime() + active.cacheTtlNanos
+			);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, ERRMSG_BUFFER + primary, e);
+			response.setStatus(Status.SERVER_ERROR_INTERNAL, e);
+			response.setEntity(null);
+			return;
+		}
+		if (cached != null) {
+			insert(cached);
+		}
+	}
+
+	/**
+	 * @param response a completed response
+	 * @return {@code true} if the given response may be handed out to
+	 * 		other requests than the one it has been created for
+	 */
+	static boolean isShareable(Response response) {
+		if (!Status.SUCCESS_OK.equals(response.getStatus())) {
+			return false;
+		}
+		Representation entity = response.getEntity();
+		return (entity != null) && entity.isAvailable()
+				&& response.getCookieSettings().isEmpty()
+				&& !forbids(response.getCacheDirectives(), true);
+	}
+
+	private static boolean hasCredentials(Request request) {
+		return (request.getChallengeResponse() != null)
+				|| !request.getCookies().isEmpty();
+	}
+
+	/**
+	 * @param response {@code true} for directives of a response
+	 * @return {@code true} if the given directives forbid serving a cached
+	 * 		response or caching a response
+	 */
+	private static boolean forbids(List<CacheDirective> directives, boolean response) {
+		for (CacheDirective directive : directives) {
+			String name = directive.getName();
+			if (HeaderConstants.CACHE_NO_STORE.equalsIgnoreCase(name)
+					|| HeaderConstants.CACHE_NO_CACHE.equalsIgnoreCase(name)) {
+				return true;
+			}
+			if (response && HeaderConstants.CACHE_PRIVATE.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param noneMatch the {@code If-None-Match} tags of a request
+	 * @param tag the ETag of a stored response
+	 * @return {@code true} if the request should be answered with
+	 * 		{@code 304 Not Modified}
+	 */
+	static boolean matches(List<Tag> noneMatch, Tag tag) {
+		if ((tag == null) || noneMatch.isEmpty()) {
+			return false;
+		}
+		for (Tag candidate : noneMatch) {
+			if (Tag.ALL.equals(candidate) || tag.getName().equals(candidate.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param server the server which received the request or {@code null}
+	 * 		if unknown
+	 * @param request the request to key
+	 * @return the origin of the request, its path and the query parameters
+	 * 		in sorted order, see
+	 * 		{@link #appendPrimaryKey(StringBuilder, ServerIdentity, Request)}
+	 */
+	static String primaryKey(ServerIdentity server, Request request) {
+		return appendPrimaryKey(new StringBuilder(96), server, request).toString();
+	}
+
+	/**
+	 * Appends the key of a request independent of the request headers:
+	 * the server which received it, the host the client addressed (virtual
+	 * hosts served by the same server differ only in it), the path and
+	 * the query parameters in sorted order.
+	 *
+	 * @param sb the builder to append to
+	 * @param server the server which received the request or {@code null}
+	 * 		if unknown
+	 * @param request the request to key
+	 * @return the given builder
+	 */
+	static StringBuilder appendPrimaryKey(StringBuilder sb, ServerIdentity server, Request request) {
+		Reference ref = request.getResourceRef();
+		Reference host = request.getHostRef();
+		String authority = (host == null) ? null : host.getAuthority();
+		if (authority == null) {
+			authority = ref.getAuthority();
+		}
+		sb.append((server == null) ? "-" : server.toString()).append(' ');
+		sb.append((authority == null) ? "-" : authority).append(' ');
+		sb.append(ref.getPath());
+		String query = ref.getQuery();
+		if ((query == null) || query.isEmpty()) {
+			return sb;
+		}
+		String[] params = query.split("&");
+		Arrays.sort(params);
+		sb.append('?');
+		boolean first = true;
+		for (String param : params) {
+			if (param.isEmpty()) {
+				continue;
+			}
+			if (!first) {
+				sb.append('&');
+			}
+			sb.append(param);
+			first = false;
+		}
+		return sb;
+	}
+
+	/**
+	 * @return the primary key followed by the values of the given request
+	 * 		headers
+	 */
+	@SuppressWarnings("unchecked")
+	private static String key(String primary, String[] vary, Request request) {
+		if ((vary == null) || (vary.length == 0)) {
+			return primary;
+		}
+		Series<Header> headers = (Series<Header>) request.getAttributes().get(
+			HeaderConstants.ATTRIBUTE_HEADERS
+		);
+		StringBuilder sb = new StringBuilder(primary);
+		for (String name : vary) {
+			String value;
+			if (CLIENT_ADDRESS.equals(name)) {
+				ClientInfo info = request.getClientInfo();
+				value = (info == null) ? null : info.getAddress();
+			} else {
+				value = (headers == null) ? null : headers.getFirstValue(name, true);
+			}
+			sb.append('\n').append(name).append(':');
+			if (value != null) {
+				sb.append(value);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the names of the request headers selecting the given
+	 * 		dimensions or {@code null} if the response varies by something
+	 * 		which cannot be keyed
+	 */
+	private static String[] vary(Set<Dimension> dimensions) {
+		if (dimensions.isEmpty()) {
+			return NO_VARY;
+		}
+		List<String> result = new ArrayList<String>(dimensions.size());
+		for (Dimension dimension : Dimension.values()) {
+			if (!dimensions.contains(dimension)) {
+				continue;
+			}
+			switch (dimension) {
+			case AUTHORIZATION:
+				result.add(HeaderConstants.HEADER_AUTHORIZATION);
+				break;
+			case CHARACTER_SET:
+				result.add(HeaderConstants.HEADER_ACCEPT_CHARSET);
+				break;
+			case CLIENT_ADDRESS:
+				result.add(CLIENT_ADDRESS);
+				break;
+			case CLIENT_AGENT:
+				result.add(HeaderConstants.HEADER_USER_AGENT);
+				break;
+			case ENCODING:
+				result.add(HeaderConstants.HEADER_ACCEPT_ENCODING);
+				break;
+			case LANGUAGE:
+				result.add(HeaderConstants.HEADER_ACCEPT_LANGUAGE);
+				break;
+			case MEDIA_TYPE:
+				result.add(HeaderConstants.HEADER_ACCEPT);
+				break;
+			default:
+				return null;
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static int spread(int h) {
+		h ^= (h >>> 16);
+		return h * 0x45d9f3b;
+	}
+
+	/*
+	 * The eviction policy, all of it guarded by the lock
+	 */
+
+	private void record(int hash) {
+		if (!lock.tryLock()) {
+			return;
+		}
+		try {
+			sketch.increment(hash);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void touch(CachedResponse cached) {
+		if (!lock.tryLock()) {
+			return;
+		}
+		try {
+			if (entries.get(cached.getKey()) != cached) {
+				return;
+			}
+			sketch.increment(cached.getHash());
+			unlink(cached);
+			if (cached.queue == CachedResponse.PROBATION) {
+				link(CachedResponse.PROTECTED, cached);
+				while (queueBytes[CachedResponse.PROTECTED] > maxProtectedBytes) {
+					CachedResponse demoted = heads[CachedResponse.PROTECTED];
+					unlink(demoted);
+					link(CachedResponse.PROBATION, demoted);
+				}
+			} else {
+				link(cached.queue, cached);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void insert(CachedResponse cached) {
+		lock.lock();
+		try {
+			CachedResponse previous = entries.put(cached.getKey(), cached);
+			if (previous != null) {
+				unlink(previous);
+			}
+			sketch.increment(cached.getHash());
+			link(CachedResponse.WINDOW, cached);
+			evict();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void remove(CachedResponse cached) {
+		lock.lock();
+		try {
+			if (entries.remove(cached.getKey(), cached)) {
+				unlink(cached);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Moves responses exceeding the window to probation and then evicts
+	 * until the cache fits into its bytes again. Every response moved is a
+	 * candidate, which only stays if it is more frequent than the least
+	 * recently used response of probation.
+	 */
+	private void evict() {
+		CachedResponse candidate = null;
+		while (queueBytes[CachedResponse.WINDOW] > maxWindowBytes) {
+			CachedResponse moved = heads[CachedResponse.WINDOW];
+			unlink(moved);
+			link(CachedResponse.PROBATION, moved);
+			if (candidate == null) {
+				candidate = moved;
+			}
+		}
+		while (totalBytes > maxBytes) {
+			CachedResponse victim = heads[CachedResponse.PROBATION];
+			if (victim == null) {
+				victim = heads[CachedResponse.PROTECTED];
+			}
+			if (victim == null) {
+				victim = heads[CachedResponse.WINDOW];
+			}
+			if (victim == null) {
+				return;
+			}
+			CachedResponse evicted = victim;
+			if ((candidate != null) && (candidate != victim)
+					&& (sketch.frequency(candidate.getHash()) <= sketch.frequency(victim.getHash()))) {
+				evicted = candidate;
+			}
+			if (evicted == candidate) {
+				candidate = candidate.next;
+			}
+			unlink(evicted);
+			entries.remove(evicted.getKey(), evicted);
+			evictions.increment();
+		}
+	}
+
+	private void link(int queue, CachedResponse cached) {
+		cached.queue = queue;
+		cached.next = null;
+		cached.prev = tails[queue];
+		if (tails[queue] == null) {
+			heads[queue] = cached;
+		} else {
+			tails[queue].next = cached;
+		}
+		tails[queue] = cached;
+		queueBytes[queue] += cached.getWeight();
+		totalBytes += cached.getWeight();
+	}
+
+	private void unlink(CachedResponse cached) {
+		int queue = cached.queue;
+		if (cached.prev == null) {
+			heads[queue] = cached.next;
+		} else {
+			cached.prev.next = cached.next;
+		}
+		if (cached.next == null) {
+			tails[queue] = cached.prev;
+		} else {
+			cached.next.prev = cached.prev;
+		}
+		cached.prev = null;
+		cached.next = null;
+		queueBytes[queue] -= cached.getWeight();
+		totalBytes -= cached.getWeight();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return (total == 0L) ? 0d : (double) h / total;
+	}
+
+	@Override
+	public double getMissRatio() {
+		long m = misses.sum();
+		long total = m + hits.sum();
+		return (total == 0L) ? 0d : (double) m / total;
+	}
+
+	@Override
+	public long getNotModified() {
+		return notModified.sum();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public int getEntries() {
+		return entries.size();
+	}
+
+	@Override
+	public long getSizeBytes() {
+		return totalBytes;
+	}
+
+	@Override
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			for (CachedResponse cached : new ArrayList<CachedResponse>(entries.values())) {
+				if (entries.remove(cached.getKey(), cached)) {
+					unlink(cached);
+				}
+			}
+			varyByRoute.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
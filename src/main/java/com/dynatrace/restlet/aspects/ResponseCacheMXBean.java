@@ -0,0 +1,74 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * Management interface of the {@link ResponseCache}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ResponseCacheMXBean {
+
+	/**
+	 * @return the number of requests answered from the cache, including
+	 * 		those answered with {@code 304 Not Modified}
+	 */
+	long getHits();
+
+	/**
+	 * @return the number of requests of cached routes which had to be
+	 * 		passed on
+	 */
+	long getMisses();
+
+	/**
+	 * @return the fraction of requests of cached routes answered from the
+	 * 		cache
+	 */
+	double getHitRatio();
+
+	/**
+	 * @return the fraction of requests of cached routes which had to be
+	 * 		passed on
+	 */
+	double getMissRatio();
+
+	/**
+	 * @return the number of requests answered with
+	 * 		{@code 304 Not Modified} because of a matching
+	 * 		{@code If-None-Match}
+	 */
+	long getNotModified();
+
+	/**
+	 * @return the number of responses evicted or not admitted in favor of
+	 * 		others
+	 */
+	long getEvictions();
+
+	/**
+	 * @return the number of responses currently cached
+	 */
+	int getEntries();
+
+	/**
+	 * @return the number of bytes currently accounted for the cached
+	 * 		responses
+	 */
+	long getSizeBytes();
+
+	/**
+	 * @return the maximum number of bytes used for cached responses
+	 */
+	long getMaxBytes();
+
+	/**
+	 * @return the size above which responses do not get cached
+	 */
+	long getMaxEntryBytes();
+
+	/**
+	 * Removes all cached responses
+	 */
+	void clear();
+
+}
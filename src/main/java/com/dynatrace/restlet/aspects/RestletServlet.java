@@ -33,15 +33,31 @@ public class RestletServlet extends HttpServlet {
 	protected final Request request;
 	protected final Response response;
 	protected final Runnable proceedRunnable;
+	protected final ServerIdentity server;
 	
 	public RestletServlet(
 			Request request,
 			Response response,
 			Runnable proceedRunnable
 	) {
-
+		this(request, response, null, proceedRunnable);
+	}
+	
+	/**
+	 * c'tor
+	 * 
+	 * @param server the server which received the request or {@code null}
+	 * 		if unknown
+	 */
+	public RestletServlet(
+			Request request,
+			Response response,
+			ServerIdentity server,
+			Runnable proceedRunnable
+	) {
 		this.request = request;
 		this.response = response;
+		this.server = server;
 		this.proceedRunnable = proceedRunnable;
 	}
 
@@ -77,10 +93,10 @@ public class RestletServlet extends HttpServlet {
 	 */
 	public final void execute() {
 		try {
-			service(
-				new RestletServletRequest(request),
-				RestletServletResponse.INSTANCE
-			);
+			RestletServletRequest servletRequest =
+					new RestletServletRequest(request, server);
+			Overhead.INSTANCE.created();
+			service(servletRequest, RestletServletResponse.INSTANCE);
 		} catch (Throwable throwable) {
 			LOGGER.log(Level.WARNING, ERRMSG_SERVICE, throwable);
 		}
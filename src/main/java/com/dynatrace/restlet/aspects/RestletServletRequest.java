@@ -6,6 +6,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -13,10 +14,7 @@ import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.Vector;
-import java.util.concurrent.ConcurrentMap;
+import java.util.NoSuchElementException;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.DispatcherType;
@@ -33,13 +31,24 @@ import javax.servlet.http.HttpSession;
 import javax.servlet.http.HttpUpgradeHandler;
 import javax.servlet.http.Part;
 
+import org.restlet.Request;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Form;
+import org.restlet.data.Method;
+import org.restlet.data.Parameter;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+import org.restlet.engine.header.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.util.Series;
+
 
 /**
  * <p>
  * In order to provide the required information about the HTTP request
- * to the dynaTrace Servlet Sensor the internal
- * {@link DefaultHttpServerRequest} object is being wrapped and instead
- * offered as a {@link HttpServletRequest}.
+ * to the dynaTrace Servlet Sensor the Restlet {@link Request}
+ * object is being wrapped and instead offered as a
+ * {@link HttpServletRequest}.
  * </p>
  * <p>
  * Not all methods offered by {@link HttpServletRequest} are required
@@ -53,14 +62,28 @@ import javax.servlet.http.Part;
 public final class RestletServletRequest implements HttpServletRequest {
 	
 	/**
-	 * A Server Name to offer during Servlet Invocation
+	 * A Server Name to offer during Servlet Invocation if the
+	 * {@link ServerIdentity} is unknown
 	 */
 	private static final String SERVER_NAME = "restlet";
 	
+	private static final String DEFAULT_METHOD = "GET";
+	
+	private static final String HTTP_1_0 = "HTTP/1.0";
+	private static final String HTTP_1_1 = "HTTP/1.1";
+	
+	private static final String DYNATRACE = "dynatrace";
+	private static final String DYNATRACE_HEADER = "dynaTrace";
+	
+	/**
+	 * The Restlet request object
+	 */
+	private final Request request;
+	
 	/**
-	 * The internal request object of vertx
+	 * The server which received the request or {@code null} if unknown
 	 */
-	private final Object request;
+	private final ServerIdentity server;
 	
 	@SuppressWarnings("unused")
 	private static String stackTraceToString(Throwable t) {
@@ -92,64 +115,95 @@ public final class RestletServletRequest implements HttpServletRequest {
 		t.printStackTrace(System.err);
 	}
 	
-	private static java.lang.reflect.Method getMethod(Class<?> clazz, String name, Class<?>[] paramTypes) {
-		if (clazz == null) {
-			return null;
-		}
-		if (clazz.getName().equals(Object.class.getName())) {
-			return null;
-		}
-		if (name == null) {
-			return null;
-		}
-		try {
-			return clazz.getDeclaredMethod(name, paramTypes);
-		} catch (NoSuchMethodException e) {
-			return getMethod(clazz.getSuperclass(), name, paramTypes);
-		} catch (Throwable t) {
-			error(t);
-			return null;
+	/**
+	 * @param name a header name
+	 * @return {@code true} if the given header name contains
+	 * 		{@code dynatrace}, regardless of its case. Unlike
+	 * 		{@code toLowerCase().contains(...)} this does not allocate.
+	 */
+	private static boolean isDynatrace(String name) {
+		int max = name.length() - DYNATRACE.length();
+		for (int i = 0; i <= max; i++) {
+			if (name.regionMatches(true, i, DYNATRACE, 0, DYNATRACE.length())) {
+				return true;
+			}
 		}
+		return false;
 	}
 	
-	private static <T> T get(Object o, String methodName, Boolean param) {
-		return get(o, methodName, new Class<?>[] { Boolean.class }, new Object[] { param });
-	}
-	
-	private static <T> T get(Object o, String methodName, String param) {
-		return get(o, methodName, new Class<?>[] { String.class }, new Object[] { param });
+	/**
+	 * c'tor
+	 * 
+	 * @param request the Restlet request object
+	 */
+	public RestletServletRequest(Request request) {
+		this(request, null);
 	}
 	
-	private static <T> T get(Object o, String methodName) {
-		return get(o, methodName, new Class<?>[] {}, new Object[] {});
+	/**
+	 * c'tor
+	 * 
+	 * @param request the Restlet request object
+	 * @param server the server which received the request or {@code null}
+	 * 		if unknown
+	 */
+	public RestletServletRequest(Request request, ServerIdentity server) {
+		this.request = request;
+		this.server = server;
 	}
 	
+	/**
+	 * @return the HTTP headers of the request as they have been put into
+	 * 		the request attributes by the server connector or {@code null}
+	 * 		if there are none
+	 */
 	@SuppressWarnings("unchecked")
-	private static <T> T get(Object o, String methodName, Class<?>[] paramTypes, Object[] params) {
-		if (o == null) {
-			return null;
-		}
-		Class<? extends Object> clazz = o.getClass();
-		java.lang.reflect.Method method = getMethod(clazz, methodName, paramTypes);
-		if (method == null) {
+	private Series<Header> headers() {
+		if (request == null) {
 			return null;
 		}
-		method.setAccessible(true);
-		try {
-			return (T) method.invoke(o, params);
-		} catch (Throwable t) {
-			error(t);
-			return null;
+		Object headers = request.getAttributes().get(
+			HeaderConstants.ATTRIBUTE_HEADERS
+		);
+		if (headers instanceof Series) {
+			return (Series<Header>) headers;
 		}
+		return null;
 	}
 	
 	/**
-	 * c'tor
+	 * Looks up the first value of the header with the given name. The
+	 * headers are traversed by index in order to avoid allocating an
+	 * {@link Iterator}.
 	 * 
-	 * @param request the internal request object of vertx
+	 * @param headers the headers of the request
+	 * @param name the name of the header
+	 * @param ignoreCase whether to compare header names case insensitive
+	 * @return the value of the first matching header or {@code null}
+	 */
+	private static String firstValue(
+			Series<Header> headers,
+			String name,
+			boolean ignoreCase
+	) {
+		for (int i = 0, n = headers.size(); i < n; i++) {
+			Header header = headers.get(i);
+			String headerName = header.getName();
+			if (ignoreCase ? name.equalsIgnoreCase(headerName) : name.equals(headerName)) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the Restlet resource reference of the request or {@code null}
 	 */
-	public RestletServletRequest(Object request) {
-		this.request = request;
+	private Reference resourceRef() {
+		if (request == null) {
+			return null;
+		}
+		return request.getResourceRef();
 	}
 
 	/**
@@ -158,22 +212,22 @@ public final class RestletServletRequest implements HttpServletRequest {
 	@Override
 	public String getMethod() {
 		if (request == null) {
-			return "GET";
+			return DEFAULT_METHOD;
 		}
-		Object method = get(request, "getMethod");
+		Method method = request.getMethod();
 		if (method == null) {
-			return "GET";
+			return DEFAULT_METHOD;
 		}
-		return method.toString();
+		return method.getName();
 	}
 	
 	/**
-	 * @return always the same server name since there does not exist such a
-	 * 		feature of naming the server in vertx
+	 * @return the host of the server which received the request or always
+	 * 		the same name if the server is unknown
 	 */
 	@Override
 	public String getServerName() {
-		return SERVER_NAME;
+		return (server == null) ? SERVER_NAME : server.getHost();
 	}
 	
 	/**
@@ -185,11 +239,11 @@ public final class RestletServletRequest implements HttpServletRequest {
 			if (request == null) {
 				return null;
 			}
-			Object clientInfo = get(request, "getClientInfo");
+			ClientInfo clientInfo = request.getClientInfo();
 			if (clientInfo == null) {
 				return null;
 			}
-			return get(clientInfo, "getAddress");
+			return clientInfo.getAddress();
 		} catch (Throwable t) {
 			error(t);
 			return null;
@@ -210,14 +264,11 @@ public final class RestletServletRequest implements HttpServletRequest {
 	@Override
 	public String getRequestURI() {
 		try {
-			if (request == null) {
-				return null;
-			}
-			Object ref = get(request, "getResourceRef");
+			Reference ref = resourceRef();
 			if (ref == null) {
 				return null;
 			}
-			return get(ref, "getPath");
+			return ref.getPath();
 		} catch (Throwable t) {
 			error(t);
 			return null;
@@ -230,14 +281,11 @@ public final class RestletServletRequest implements HttpServletRequest {
 	@Override
 	public String getQueryString() {
 		try {
-			if (request == null) {
-				return null;
-			}
-			Object ref = get(request, "getResourceRef");
+			Reference ref = resourceRef();
 			if (ref == null) {
 				return null;
 			}
-			return get(ref, "getQuery");
+			return ref.getQuery();
 		} catch (Throwable t) {
 			error(t);
 			return null;
@@ -252,26 +300,33 @@ public final class RestletServletRequest implements HttpServletRequest {
 	public String getProtocol() {
 		try {
 			if (request == null) {
-				return "HTTP/1.1";
+				return HTTP_1_1;
 			}
-			Object protocol = get(request, "getProtocol");
+			Protocol protocol = request.getProtocol();
 			if (protocol == null) {
-				return "HTTP/1.1";
+				return HTTP_1_1;
 			}
-			Object sVersion = get(protocol, "getVersion");
-			if (sVersion == null) {
-				return "HTTP/1.1";
+			String version = protocol.getVersion();
+			if (version == null) {
+				return HTTP_1_1;
 			}
-			return "HTTP/" + sVersion;
+			if ("1.1".equals(version)) {
+				return HTTP_1_1;
+			}
+			if ("1.0".equals(version)) {
+				return HTTP_1_0;
+			}
+			return "HTTP/" + version;
 		} catch (Throwable t) {
 			error(t);
-			return "HTTP/1.1";
+			return HTTP_1_1;
 		}
 	}
 
 	/**
 	 * @return the request header with the given name or {@code null} if no
-	 * 		header with the given name has been sent during the HTTP request
+	 * 		header with the given name has been sent during the HTTP request.
+	 * 		The Dynatrace header is also looked up case insensitive.
 	 */
 	@Override
 	public String getHeader(String name) {
@@ -282,32 +337,23 @@ public final class RestletServletRequest implements HttpServletRequest {
 		if (name == null) {
 			return null;
 		}
-		if (name.toLowerCase().contains("dynatrace")) {
-			Enumeration<String> headerNames = getHeaderNames0();
-			if (headerNames == null) {
+		if (isDynatrace(name)) {
+			Series<Header> headers = headers();
+			if (headers == null) {
 				return null;
 			}
-			while (headerNames.hasMoreElements()) {
-				String headerName = headerNames.nextElement();
-				if (name.toLowerCase().equals(headerName.toLowerCase())) {
-					return getHeader0(headerName);
-				}
-			}
+			return firstValue(headers, name, true);
 		}
 		return null;
 	}
 	
 	public String getHeader0(String name) {
 		try {
-			Object headers = get(request, "getHeaders");
-        	if (headers == null) {
-        		return null;
-        	}
-        	Object isEmpty = get(headers, "isEmpty");
-        	if (Boolean.TRUE.equals(isEmpty)) {
-        		return null;
-        	}
-        	return get(headers, "getFirstValue", name);
+			Series<Header> headers = headers();
+			if ((headers == null) || (name == null)) {
+				return null;
+			}
+			return firstValue(headers, name, false);
 		} catch (Throwable t) {
 			error(t);
 			return null;
@@ -323,17 +369,12 @@ public final class RestletServletRequest implements HttpServletRequest {
 		if (name == null) {
 			return Collections.emptyEnumeration();
 		}
-		if (name.toLowerCase().contains("dynatrace")) {
-			Enumeration<String> headerNames = getHeaderNames0();
-			if (headerNames == null) {
-				return null;
-			}
-			while (headerNames.hasMoreElements()) {
-				String headerName = headerNames.nextElement();
-				if (name.toLowerCase().equals(headerName.toLowerCase())) {
-					return getHeaders0(headerName);
-				}
+		if (isDynatrace(name)) {
+			Series<Header> headers = headers();
+			if (headers == null) {
+				return Collections.emptyEnumeration();
 			}
+			return enumeration(headers.getValuesArray(name, true));
 		}
 		return Collections.emptyEnumeration();
 	}
@@ -345,31 +386,28 @@ public final class RestletServletRequest implements HttpServletRequest {
 	 */
 	public Enumeration<String> getHeaders0(String name) {
 		try {
-			Object headers = get(request, "getHeaders");
-        	if (headers == null) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Object isEmpty = get(headers, "isEmpty");
-        	if (Boolean.TRUE.equals(isEmpty)) {
-        		return Collections.emptyEnumeration();
-        	}
-        	String[] values = get(headers, "getValuesArray", name);
-        	if ((values == null) || (values.length == 0)) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Vector<String> v = new Vector<String>();
-        	v.addAll(Arrays.asList(values));
-        	return v.elements();
-        } catch (Throwable t) {
+			Series<Header> headers = headers();
+			if ((headers == null) || headers.isEmpty()) {
+				return Collections.emptyEnumeration();
+			}
+			return enumeration(headers.getValuesArray(name));
+		} catch (Throwable t) {
 			error(t);
 			return Collections.emptyEnumeration();
 		}
 	}
 	
+	private static Enumeration<String> enumeration(String[] values) {
+		if ((values == null) || (values.length == 0)) {
+			return Collections.emptyEnumeration();
+		}
+		return Collections.enumeration(Arrays.asList(values));
+	}
+	
 	
 	/**
 	 * @return always {@code null} because the internal representation of the
-	 * 		HTTP request of vertx does not offer methods to query for cookies.
+	 * 		HTTP request of Restlet does not offer methods to query for cookies.
 	 * 		It is possible to parse the request headers manually and produce
 	 * 		the {@link Cookie} values here, but it is currently not implemented 
 	 */
@@ -395,6 +433,17 @@ public final class RestletServletRequest implements HttpServletRequest {
 			return new StringBuffer();
 		}
 	}
+	
+	/**
+	 * @return the query parameters of the HTTP request or {@code null}
+	 */
+	private Form queryForm() {
+		Reference ref = resourceRef();
+		if (ref == null) {
+			return null;
+		}
+		return ref.getQueryAsForm(true);
+	}
 
 	/**
 	 * @return the value of the request parameter passed within the query string
@@ -402,28 +451,21 @@ public final class RestletServletRequest implements HttpServletRequest {
 	 * 		passed with this HTTP request. This method will not take POST
 	 * 		parameters into considerations because their values are not known
 	 * 		until the request body has been parsed, which is not being ensured
-	 * 		by vertx once the internal representation of the HTTP request is
+	 * 		by Restlet once the internal representation of the HTTP request is
 	 * 		being created and handed over to the request handlers.
 	 */
 	@Override
 	public String getParameter(String name) {
 		try {
-			if (request == null) {
-				return null;
-			}
-			Object ref = get(request, "getResourceRef");
-			if (ref == null) {
-				return null;
-			}
-			Object form = get(ref, "getQueryAsForm", true);
+			Form form = queryForm();
 			if (form == null) {
 				return null;
 			}
-			Object param = get(form, "getFirst", name);
+			Parameter param = form.getFirst(name);
 			if (param == null) {
 				return null;
 			}
-			return get(param, "getValue");
+			return param.getValue();
 		} catch (Throwable t) {
 			error(t);
 			return null;
@@ -437,34 +479,11 @@ public final class RestletServletRequest implements HttpServletRequest {
 	@Override
 	public Enumeration<String> getParameterNames() {
 		try {
-			if (request == null) {
-				return Collections.emptyEnumeration();
-			}
-			Object ref = get(request, "getResourceRef");
-			if (ref == null) {
-				return Collections.emptyEnumeration();
-			}
-			Object form = get(ref, "getQueryAsForm", true);
+			Form form = queryForm();
 			if (form == null) {
 				return Collections.emptyEnumeration();
 			}
-			Map<String, String> names = get(form, "getValuesMap");
-			if (names == null) {
-				return Collections.emptyEnumeration();
-			}
-			final Iterator<Entry<String, String>> it = names.entrySet().iterator();
-			return new Enumeration<String>() {
-
-				@Override
-				public boolean hasMoreElements() {
-					return it.hasNext();
-				}
-
-				@Override
-				public String nextElement() {
-					return it.next().getKey();
-				}
-			};
+			return Collections.enumeration(form.getNames());
 		} catch (Throwable t) {
 			error(t);
 			return Collections.emptyEnumeration();
@@ -479,18 +498,11 @@ public final class RestletServletRequest implements HttpServletRequest {
 	@Override
 	public String[] getParameterValues(String name) {
 		try {
-			if (request == null) {
-				return new String[0];
-			}
-			Object ref = get(request, "getResourceRef");
-			if (ref == null) {
-				return new String[0];
-			}
-			Object form = get(ref, "getQueryAsForm", true);
+			Form form = queryForm();
 			if (form == null) {
 				return new String[0];
 			}
-			String[] values = get(form, "getValuesArray", name);
+			String[] values = form.getValuesArray(name);
 			if (values == null) {
 				return new String[0];
 			}
@@ -502,36 +514,18 @@ public final class RestletServletRequest implements HttpServletRequest {
 	}
 
 	/**
-	 * @return the names of all headers passed with the HTTP request
+	 * @return the names of all headers passed with the HTTP request. The
+	 * 		Dynatrace header is reported as {@code dynaTrace}.
 	 */
 	@Override
 	public Enumeration<String> getHeaderNames() {
 		try {
-			Object headers = get(request, "getHeaders");
-        	if (headers == null) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Object isEmpty = get(headers, "isEmpty");
-        	if (Boolean.TRUE.equals(isEmpty)) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Set<String> names = get(headers, "getNames");
-        	if ((names == null) || names.isEmpty()) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Vector<String> v = new Vector<String>();
-        	for (String name : names) {
-				if (name == null) {
-					continue;
-				}
-				String n = name;
-				if (n.toLowerCase().contains("dynatrace")) {
-					n = n.replace("dynatrace", "dynaTrace");
-				}
-				v.add(n);
+			Series<Header> headers = headers();
+			if ((headers == null) || headers.isEmpty()) {
+				return Collections.emptyEnumeration();
 			}
-        	return v.elements();
-        } catch (Throwable t) {
+			return new HeaderNames(headers, true);
+		} catch (Throwable t) {
 			error(t);
 			return Collections.emptyEnumeration();
 		}
@@ -539,54 +533,97 @@ public final class RestletServletRequest implements HttpServletRequest {
 	
 	public Enumeration<String> getHeaderNames0() {
 		try {
-			Object headers = get(request, "getHeaders");
-        	if (headers == null) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Object isEmpty = get(headers, "isEmpty");
-        	if (Boolean.TRUE.equals(isEmpty)) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Set<String> names = get(headers, "getNames");
-        	if ((names == null) || names.isEmpty()) {
-        		return Collections.emptyEnumeration();
-        	}
-        	Vector<String> v = new Vector<String>();
-			v.addAll(names);
-        	return v.elements();
-        } catch (Throwable t) {
+			Series<Header> headers = headers();
+			if ((headers == null) || headers.isEmpty()) {
+				return Collections.emptyEnumeration();
+			}
+			return new HeaderNames(headers, false);
+		} catch (Throwable t) {
 			error(t);
 			return Collections.emptyEnumeration();
 		}
-	}	
+	}
+	
+	/**
+	 * Enumerates the distinct names of the headers of a request by index,
+	 * without copying them into an intermediate collection.
+	 */
+	private static final class HeaderNames implements Enumeration<String> {
+		
+		private final Series<Header> headers;
+		private final boolean renameDynatrace;
+		private int index = -1;
+		
+		HeaderNames(Series<Header> headers, boolean renameDynatrace) {
+			this.headers = headers;
+			this.renameDynatrace = renameDynatrace;
+			advance();
+		}
+		
+		/**
+		 * Moves on to the next header whose name is not {@code null} and has
+		 * not been seen at a lower index yet
+		 */
+		private void advance() {
+			int n = headers.size();
+			outer:
+			while (++index < n) {
+				String name = headers.get(index).getName();
+				if (name == null) {
+					continue;
+				}
+				for (int i = 0; i < index; i++) {
+					if (name.equals(headers.get(i).getName())) {
+						continue outer;
+					}
+				}
+				return;
+			}
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			return index < headers.size();
+		}
+
+		@Override
+		public String nextElement() {
+			if (!hasMoreElements()) {
+				throw new NoSuchElementException();
+			}
+			String name = headers.get(index).getName();
+			advance();
+			if (renameDynatrace && isDynatrace(name)) {
+				return name.replace(DYNATRACE, DYNATRACE_HEADER);
+			}
+			return name;
+		}
+		
+	}
 	
 	/**
-	 * @return always {@code null} because setting request attributes is not
-	 * 		supported in vertx
+	 * @return the value of the request attribute with the given name or
+	 * 		{@code null} if no such attribute exists
 	 */
 	@Override
 	public Object getAttribute(String name) {
-		ConcurrentMap<String, Object> attributes = get(request, "getAttributes");
-		if (attributes == null) {
+		if ((request == null) || (name == null)) {
 			return null;
 		}
-		return attributes.get(name);
+		return request.getAttributes().get(name);
 	}
 
 	/**
-	 * @return always an empty {@link Enumeration} because setting request
-	 * 		attributes is not supported in vertx
+	 * @return the names of all request attributes
 	 */
 	@Override
 	public Enumeration<String> getAttributeNames() {
-		ConcurrentMap<String, Object> attributes = get(request, "getAttributes");
-		if (attributes == null) {
+		if (request == null) {
 			return Collections.emptyEnumeration();
 		}
-		Set<String> names = attributes.keySet();
-		Vector<String> v = new Vector<String>();
-		v.addAll(names);
-		return v.elements();
+		return Collections.enumeration(
+			new ArrayList<String>(request.getAttributes().keySet())
+		);
 	}
 
 	/**
@@ -641,19 +678,21 @@ public final class RestletServletRequest implements HttpServletRequest {
 	}
 
 	/**
-	 * @return always {@code null}, not being queried
+	 * @return the scheme of the server which received the request or
+	 * 		{@code null} if unknown
 	 */
 	@Override
 	public String getScheme() {
-		return null;
+		return (server == null) ? null : server.getScheme();
 	}
 
 	/**
-	 * @return always {@code 0}, not being queried
+	 * @return the port of the server which received the request or
+	 * 		{@code 0} if unknown
 	 */
 	@Override
 	public int getServerPort() {
-		return 0;
+		return (server == null) ? 0 : server.getPort();
 	}
 
 	/**
@@ -665,14 +704,14 @@ public final class RestletServletRequest implements HttpServletRequest {
 	}
 
 	/**
-	 * ignored because vertx does not support request attributes
+	 * ignored, request attributes are not modified on behalf of the sensor
 	 */
 	@Override
 	public void setAttribute(String name, Object o) {
 	}
 
 	/**
-	 * ignored because vertx does not support request attributes
+	 * ignored, request attributes are not modified on behalf of the sensor
 	 */
 	@Override
 	public void removeAttribute(String name) {
@@ -695,11 +734,12 @@ public final class RestletServletRequest implements HttpServletRequest {
 	}
 
 	/**
-	 * @return always {@code false}, not being queried
+	 * @return {@code true} if the request has been received via
+	 * 		{@code https}
 	 */
 	@Override
 	public boolean isSecure() {
-		return false;
+		return (server != null) && server.isSecure();
 	}
 
 	/**
@@ -727,27 +767,30 @@ public final class RestletServletRequest implements HttpServletRequest {
 	}
 
 	/**
-	 * @return always {@code null}, not being queried
+	 * @return the host of the server which received the request or
+	 * 		{@code null} if unknown
 	 */
 	@Override
 	public String getLocalName() {
-		return null;
+		return (server == null) ? null : server.getHost();
 	}
 
 	/**
-	 * @return always {@code null}, not being queried
+	 * @return the address the server which received the request is bound
+	 * 		to or {@code null} if it listens on all interfaces or is unknown
 	 */
 	@Override
 	public String getLocalAddr() {
-		return null;
+		return (server == null) ? null : server.getAddress();
 	}
 
 	/**
-	 * @return always {@code null}, not being queried
+	 * @return the port of the server which received the request or
+	 * 		{@code 0} if unknown
 	 */
 	@Override
 	public int getLocalPort() {
-		return 0;
+		return (server == null) ? 0 : server.getPort();
 	}
 
 	/**
@@ -0,0 +1,60 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * The CPU time and the bytes allocated by the sampled requests of a single
+ * route. All updates are lock-free.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class RouteCost {
+
+	private final String route;
+	private final LatencyHistogram cpuNanos = new LatencyHistogram();
+	private final LatencyHistogram allocatedBytes = new LatencyHistogram();
+
+	/**
+	 * c'tor
+	 *
+	 * @param route the route this object holds the costs for
+	 */
+	RouteCost(String route) {
+		this.route = route;
+	}
+
+	/**
+	 * @param cpuNanos the CPU time consumed by a request or a negative
+	 * 		value if unknown
+	 * @param allocatedBytes the number of bytes allocated by a request or
+	 * 		a negative value if unknown
+	 */
+	void record(long cpuNanos, long allocatedBytes) {
+		if (cpuNanos >= 0L) {
+			this.cpuNanos.record(cpuNanos);
+		}
+		if (allocatedBytes >= 0L) {
+			this.allocatedBytes.record(allocatedBytes);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the current values
+	 */
+	RouteCostStats snapshot() {
+		return new RouteCostStats(
+			route,
+			Math.max(cpuNanos.getCount(), allocatedBytes.getCount()),
+			cpuNanos.getSum() / 1e6d,
+			cpuNanos.getMean() / 1e3d,
+			cpuNanos.getPercentile(50d) / 1e3d,
+			cpuNanos.getPercentile(99d) / 1e3d,
+			cpuNanos.getMax() / 1e3d,
+			allocatedBytes.getSum(),
+			(long) allocatedBytes.getMean(),
+			allocatedBytes.getPercentile(50d),
+			allocatedBytes.getPercentile(99d),
+			allocatedBytes.getMax()
+		);
+	}
+
+}
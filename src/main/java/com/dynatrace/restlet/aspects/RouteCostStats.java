@@ -0,0 +1,121 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the CPU time and the bytes allocated by the
+ * sampled requests of a single route.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RouteCostStats {
+
+	private final String route;
+	private final long samples;
+	private final double cpuTotalMillis;
+	private final double cpuMeanMicros;
+	private final double cpuP50Micros;
+	private final double cpuP99Micros;
+	private final double cpuMaxMicros;
+	private final long allocatedTotalBytes;
+	private final long allocatedMeanBytes;
+	private final long allocatedP50Bytes;
+	private final long allocatedP99Bytes;
+	private final long allocatedMaxBytes;
+
+	@ConstructorProperties({
+		"route", "samples", "cpuTotalMillis", "cpuMeanMicros", "cpuP50Micros",
+		"cpuP99Micros", "cpuMaxMicros", "allocatedTotalBytes",
+		"allocatedMeanBytes", "allocatedP50Bytes", "allocatedP99Bytes",
+		"allocatedMaxBytes"
+	})
+	public RouteCostStats(
+			String route,
+			long samples,
+			double cpuTotalMillis,
+			double cpuMeanMicros,
+			double cpuP50Micros,
+			double cpuP99Micros,
+			double cpuMaxMicros,
+			long allocatedTotalBytes,
+			long allocatedMeanBytes,
+			long allocatedP50Bytes,
+			long allocatedP99Bytes,
+			long allocatedMaxBytes
+	) {
+		this.route = route;
+		this.samples = samples;
+		this.cpuTotalMillis = cpuTotalMillis;
+		this.cpuMeanMicros = cpuMeanMicros;
+		this.cpuP50Micros = cpuP50Micros;
+		this.cpuP99Micros = cpuP99Micros;
+		this.cpuMaxMicros = cpuMaxMicros;
+		this.allocatedTotalBytes = allocatedTotalBytes;
+		this.allocatedMeanBytes = allocatedMeanBytes;
+		this.allocatedP50Bytes = allocatedP50Bytes;
+		this.allocatedP99Bytes = allocatedP99Bytes;
+		this.allocatedMaxBytes = allocatedMaxBytes;
+	}
+
+	/**
+	 * @return the matched route template or the plain request path
+	 */
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return the number of requests sampled
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return the CPU time consumed by all sampled requests
+	 */
+	public double getCpuTotalMillis() {
+		return cpuTotalMillis;
+	}
+
+	public double getCpuMeanMicros() {
+		return cpuMeanMicros;
+	}
+
+	public double getCpuP50Micros() {
+		return cpuP50Micros;
+	}
+
+	public double getCpuP99Micros() {
+		return cpuP99Micros;
+	}
+
+	public double getCpuMaxMicros() {
+		return cpuMaxMicros;
+	}
+
+	/**
+	 * @return the number of bytes allocated by all sampled requests
+	 */
+	public long getAllocatedTotalBytes() {
+		return allocatedTotalBytes;
+	}
+
+	public long getAllocatedMeanBytes() {
+		return allocatedMeanBytes;
+	}
+
+	public long getAllocatedP50Bytes() {
+		return allocatedP50Bytes;
+	}
+
+	public long getAllocatedP99Bytes() {
+		return allocatedP99Bytes;
+	}
+
+	public long getAllocatedMaxBytes() {
+		return allocatedMaxBytes;
+	}
+
+}
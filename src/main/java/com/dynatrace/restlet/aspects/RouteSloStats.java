@@ -0,0 +1,119 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the latency objective of a single route and
+ * the rates its error budget got burned at, see {@link SloTracker}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RouteSloStats {
+
+	private final String route;
+	private final double objectivePercent;
+	private final long thresholdMillis;
+	private final long requests;
+	private final long bad;
+	private final double burnRate5m;
+	private final double burnRate30m;
+	private final double burnRate1h;
+	private final double burnRate6h;
+	private final double budgetRemaining6h;
+	private final String alert;
+
+	@ConstructorProperties({
+		"route", "objectivePercent", "thresholdMillis", "requests", "bad",
+		"burnRate5m", "burnRate30m", "burnRate1h", "burnRate6h",
+		"budgetRemaining6h", "alert"
+	})
+	public RouteSloStats(
+			String route,
+			double objectivePercent,
+			long thresholdMillis,
+			long requests,
+			long bad,
+			double burnRate5m,
+			double burnRate30m,
+			double burnRate1h,
+			double burnRate6h,
+			double budgetRemaining6h,
+			String alert
+	) {
+		this.route = route;
+		this.objectivePercent = objectivePercent;
+		this.thresholdMillis = thresholdMillis;
+		this.requests = requests;
+		this.bad = bad;
+		this.burnRate5m = burnRate5m;
+		this.burnRate30m = burnRate30m;
+		this.burnRate1h = burnRate1h;
+		this.burnRate6h = burnRate6h;
+		this.budgetRemaining6h = budgetRemaining6h;
+		this.alert = alert;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return the percentage of requests which should complete within the
+	 * 		threshold
+	 */
+	public double getObjectivePercent() {
+		return objectivePercent;
+	}
+
+	public long getThresholdMillis() {
+		return thresholdMillis;
+	}
+
+	/**
+	 * @return the number of requests since the route is being tracked
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of requests which took longer than the threshold
+	 * 		or failed since the route is being tracked
+	 */
+	public long getBad() {
+		return bad;
+	}
+
+	public double getBurnRate5m() {
+		return burnRate5m;
+	}
+
+	public double getBurnRate30m() {
+		return burnRate30m;
+	}
+
+	public double getBurnRate1h() {
+		return burnRate1h;
+	}
+
+	public double getBurnRate6h() {
+		return burnRate6h;
+	}
+
+	/**
+	 * @return the fraction of the error budget of the last 6 hours which
+	 * 		has not been used up, negative once it has been exceeded
+	 */
+	public double getBudgetRemaining6h() {
+		return budgetRemaining6h;
+	}
+
+	/**
+	 * @return {@code none}, {@code slow} or {@code fast}
+	 */
+	public String getAlert() {
+		return alert;
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the queue wait and the run time of the tasks
+ * submitted to the {@code TaskService} by the requests of a single route.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RouteTaskStats {
+
+	private final String route;
+	private final long tasks;
+	private final long failed;
+	private final double queueMeanMillis;
+	private final double queueP99Millis;
+	private final double queueMaxMillis;
+	private final double runMeanMillis;
+	private final double runP99Millis;
+	private final double runMaxMillis;
+
+	@ConstructorProperties({
+		"route", "tasks", "failed", "queueMeanMillis", "queueP99Millis",
+		"queueMaxMillis", "runMeanMillis", "runP99Millis", "runMaxMillis"
+	})
+	public RouteTaskStats(
+			String route,
+			long tasks,
+			long failed,
+			double queueMeanMillis,
+			double queueP99Millis,
+			double queueMaxMillis,
+			double runMeanMillis,
+			double runP99Millis,
+			double runMaxMillis
+	) {
+		this.route = route;
+		this.tasks = tasks;
+		this.failed = failed;
+		this.queueMeanMillis = queueMeanMillis;
+		this.queueP99Millis = queueP99Millis;
+		this.queueMaxMillis = queueMaxMillis;
+		this.runMeanMillis = runMeanMillis;
+		this.runP99Millis = runP99Millis;
+		this.runMaxMillis = runMaxMillis;
+	}
+
+	/**
+	 * @return the route of the requests which submitted the tasks
+	 */
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return the number of tasks executed
+	 */
+	public long getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * @return the number of tasks which threw
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return the mean time tasks waited for a thread beyond their
+	 * 		scheduled delay
+	 */
+	public double getQueueMeanMillis() {
+		return queueMeanMillis;
+	}
+
+	public double getQueueP99Millis() {
+		return queueP99Millis;
+	}
+
+	public double getQueueMaxMillis() {
+		return queueMaxMillis;
+	}
+
+	/**
+	 * @return the mean time tasks executed
+	 */
+	public double getRunMeanMillis() {
+		return runMeanMillis;
+	}
+
+	public double getRunP99Millis() {
+		return runP99Millis;
+	}
+
+	public double getRunMaxMillis() {
+		return runMaxMillis;
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * The queue wait and the run time of the tasks submitted to the
+ * {@code TaskService} by the requests of a single route. All updates are
+ * lock-free.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class RouteTasks {
+
+	private final String route;
+	private final LatencyHistogram queueNanos = new LatencyHistogram();
+	private final LatencyHistogram runNanos = new LatencyHistogram();
+	private final StripedCounter failed = new StripedCounter();
+
+	/**
+	 * c'tor
+	 *
+	 * @param route the route this object holds the tasks for
+	 */
+	RouteTasks(String route) {
+		this.route = route;
+	}
+
+	/**
+	 * @param queueNanos how long the task waited for a thread beyond its
+	 * 		scheduled delay
+	 * @param runNanos how long the task executed
+	 * @param failed whether the task threw
+	 */
+	void record(long queueNanos, long runNanos, boolean failed) {
+		this.queueNanos.record(queueNanos);
+		this.runNanos.record(runNanos);
+		if (failed) {
+			this.failed.increment();
+		}
+	}
+
+	/**
+	 * @return a snapshot of the current values
+	 */
+	RouteTaskStats snapshot() {
+		return new RouteTaskStats(
+			route,
+			runNanos.getCount(),
+			failed.sum(),
+			queueNanos.getMean() / 1e6d,
+			queueNanos.getPercentile(99d) / 1e6d,
+			queueNanos.getMax() / 1e6d,
+			runNanos.getMean() / 1e6d,
+			runNanos.getPercentile(99d) / 1e6d,
+			runNanos.getMax() / 1e6d
+		);
+	}
+
+}
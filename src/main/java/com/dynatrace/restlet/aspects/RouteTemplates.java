@@ -0,0 +1,102 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Interns the templates of requests passing nested routers (virtual host,
+ * application, sub resources), i.e. the template matched so far followed
+ * by the pattern of the next {@code TemplateRoute}. Every request taking
+ * the same path through the routers ends up with the same instance, so
+ * appending a pattern does not allocate once the route has been seen.
+ * </p>
+ * <p>
+ * The templates are kept within an open-addressing array with linear
+ * probing, looked up by the hash of the concatenation computed from the
+ * cached hash of the template so far and the chars of the pattern, see
+ * {@link PathNormalizer}. At most {@code -Ddt.restlet.maxRouteTemplates}
+ * (default 1024) templates get interned, any further ones are
+ * concatenated on every request.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class RouteTemplates {
+
+	static final RouteTemplates INSTANCE = new RouteTemplates(
+		Integer.getInteger("dt.restlet.maxRouteTemplates", 1024)
+	);
+
+	private final int maxTemplates;
+	private final int mask;
+	private final AtomicReferenceArray<String> templates;
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * c'tor
+	 *
+	 * @param maxTemplates the maximum number of templates interned
+	 */
+	RouteTemplates(int maxTemplates) {
+		this.maxTemplates = Math.max(0, maxTemplates);
+		int capacity = 2;
+		while (capacity < this.maxTemplates * 2) {
+			capacity <<= 1;
+		}
+		this.mask = capacity - 1;
+		this.templates = new AtomicReferenceArray<String>(capacity);
+	}
+
+	/**
+	 * @param prefix the template matched so far
+	 * @param pattern the pattern of the route matched next
+	 * @return the given prefix followed by the given pattern
+	 */
+	String join(String prefix, String pattern) {
+		int hash = prefix.hashCode();
+		for (int i = 0, length = pattern.length(); i < length; i++) {
+			hash = 31 * hash + pattern.charAt(i);
+		}
+		int i = (hash ^ (hash >>> 16)) & mask;
+		String joined = null;
+		while (true) {
+			String template = templates.get(i);
+			if (template == null) {
+				if (joined == null) {
+					// reserve first, so the table never fills up under
+					// concurrent inserts and probing always ends
+					if (size.incrementAndGet() > maxTemplates) {
+						size.decrementAndGet();
+						return prefix + pattern;
+					}
+					joined = prefix + pattern;
+				}
+				if (templates.compareAndSet(i, null, joined)) {
+					return joined;
+				}
+				// lost against a concurrent insert, examine its template
+				template = templates.get(i);
+			}
+			if ((template.hashCode() == hash) && matches(template, prefix, pattern)) {
+				if (joined != null) {
+					size.decrementAndGet();
+				}
+				return template;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return {@code true} if the given template is the given prefix
+	 * 		followed by the given pattern
+	 */
+	private static boolean matches(String template, String prefix, String pattern) {
+		return (template.length() == prefix.length() + pattern.length())
+				&& template.startsWith(prefix)
+				&& template.startsWith(pattern, prefix.length());
+	}
+
+}
@@ -0,0 +1,289 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.restlet.Response;
+import org.restlet.data.Status;
+
+/**
+ * <p>
+ * Keeps a ring of one second buckets per route, covering the last
+ * {@code -Ddt.restlet.timeseries.seconds} seconds (default 300, {@code 0}
+ * disables recording). Every bucket holds the number of requests, the
+ * number of errors as well as the sum and the maximum of the latencies of
+ * the requests completed within that second.
+ * </p>
+ * <p>
+ * All rings live within a single {@link AtomicLongArray} allocated up
+ * front for {@code -Ddt.restlet.timeseries.maxRoutes} routes (default 64)
+ * plus one overflow route, so the memory required is fixed at
+ * {@code (maxRoutes + 1) * seconds * 4 * 8} bytes.
+ * </p>
+ * <p>
+ * Every field carries the second it belongs to (modulo 2<sup>20</sup>)
+ * within its upper bits. A recording thread finding a field of an older
+ * second replaces it via compare-and-set, otherwise it simply adds to it.
+ * Rotation therefore requires neither locks nor a background thread and
+ * never loses updates of the current second. Readers ignore fields which
+ * do not belong to the second they are looking for.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RouteTimeSeries implements RouteTimeSeriesMXBean {
+
+	private static final int COUNT = 0;
+	private static final int ERRORS = 1;
+	private static final int SUM_MICROS = 2;
+	private static final int MAX_MICROS = 3;
+	private static final int FIELDS = 4;
+
+	private static final int VALUE_BITS = 44;
+	private static final long VALUE_MASK = (1L << VALUE_BITS) - 1L;
+	private static final long TAG_MASK = (1L << (64 - VALUE_BITS)) - 1L;
+
+	private static final int LAST_MINUTE = 60;
+
+	public static final RouteTimeSeries INSTANCE = new RouteTimeSeries(
+		Math.max(0, Integer.getInteger("dt.restlet.timeseries.seconds", 300)),
+		Math.max(0, Integer.getInteger("dt.restlet.timeseries.maxRoutes", 64))
+	);
+
+	static {
+		Management.register("RouteTimeSeries", INSTANCE);
+	}
+
+	private final int seconds;
+	private final int maxRoutes;
+	private final AtomicLongArray cells;
+
+	/**
+	 * Hands out the ids of the routes, a route's ring within {@link #cells}
+	 * being its id plus one. Index {@code 0} is reserved for the overflow
+	 * route. Only the ids are used, no values are created.
+	 */
+	private final MetricKeyTable<String> routes;
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private RouteTimeSeries(int seconds, int maxRoutes) {
+		this.seconds = seconds;
+		this.maxRoutes = maxRoutes;
+		this.cells = new AtomicLongArray((maxRoutes + 1) * seconds * FIELDS);
+		this.routes = new MetricKeyTable<String>(maxRoutes) {
+			@Override
+			protected String create(String key) {
+				return key;
+			}
+		};
+	}
+
+	/**
+	 * Records a completed request
+	 *
+	 * @param request the request which completed
+	 * @param durationNanos the duration of the request
+	 */
+	void record(ActiveRequest request, long durationNanos) {
+		if (seconds == 0) {
+			return;
+		}
+		long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+		long tag = second & TAG_MASK;
+		int base = offset(index(request.getRoute()), second);
+		long micros = Math.min(
+			VALUE_MASK,
+			TimeUnit.NANOSECONDS.toMicros(Math.max(0L, durationNanos))
+		);
+		add(base + COUNT, tag, 1L);
+		if (isError(request)) {
+			add(base + ERRORS, tag, 1L);
+		}
+		add(base + SUM_MICROS, tag, micros);
+		max(base + MAX_MICROS, tag, micros);
+	}
+
+	/**
+	 * @return {@code true} if the given request threw or got answered with
+	 * 		a server error
+	 */
+	static boolean isError(ActiveRequest request) {
+		if (request.getFailure() != null) {
+			return true;
+		}
+		Response response = request.getResponse();
+		Status status = (response == null) ? null : response.getStatus();
+		return (status != null) && status.isServerError();
+	}
+
+	private int offset(int index, long second) {
+		return (index * seconds + (int) (second % seconds)) * FIELDS;
+	}
+
+	private void add(int i, long tag, long delta) {
+		long v = cells.get(i);
+		while (true) {
+			if ((v >>> VALUE_BITS) == tag) {
+				cells.getAndAdd(i, delta);
+				return;
+			}
+			// the field still belongs to an older second
+			if (cells.compareAndSet(i, v, (tag << VALUE_BITS) | delta)) {
+				return;
+			}
+			v = cells.get(i);
+		}
+	}
+
+	private void max(int i, long tag, long value) {
+		long v = cells.get(i);
+		while (true) {
+			if (((v >>> VALUE_BITS) == tag) && ((v & VALUE_MASK) >= value)) {
+				return;
+			}
+			if (cells.compareAndSet(i, v, (tag << VALUE_BITS) | value)) {
+				return;
+			}
+			v = cells.get(i);
+		}
+	}
+
+	/**
+	 * @return the value of the given field if it belongs to the given
+	 * 		second, otherwise {@code 0}
+	 */
+	private long value(int i, long second) {
+		long v = cells.get(i);
+		return ((v >>> VALUE_BITS) == (second & TAG_MASK)) ? (v & VALUE_MASK) : 0L;
+	}
+
+	/**
+	 * @return the index of the ring of the given route
+	 */
+	private int index(String route) {
+		return routes.id(route) + 1;
+	}
+
+	/**
+	 * @return the index of the ring of the given route or {@code -1} if
+	 * 		that route has not been recorded
+	 */
+	private int lookup(String route) {
+		if (MetricKeyTable.OVERFLOW.equals(route)) {
+			return routes.isOverflowed() ? 0 : -1;
+		}
+		int id = routes.find(route);
+		return (id == MetricKeyTable.OVERFLOW_ID) ? -1 : id + 1;
+	}
+
+	private SecondStats second(int index, long second) {
+		int base = offset(index, second);
+		long requests = value(base + COUNT, second);
+		long sum = value(base + SUM_MICROS, second);
+		return new SecondStats(
+			second,
+			requests,
+			value(base + ERRORS, second),
+			(requests == 0L) ? 0d : sum / 1e3d / requests,
+			value(base + MAX_MICROS, second) / 1e3d
+		);
+	}
+
+	private WindowStats window(String route, int index, long now, int length) {
+		long requests = 0L;
+		long errors = 0L;
+		long sum = 0L;
+		long max = 0L;
+		for (long second = now - length; second < now; second++) {
+			int base = offset(index, second);
+			requests += value(base + COUNT, second);
+			errors += value(base + ERRORS, second);
+			sum += value(base + SUM_MICROS, second);
+			max = Math.max(max, value(base + MAX_MICROS, second));
+		}
+		return new WindowStats(
+			route,
+			length,
+			requests,
+			errors,
+			(double) requests / length,
+			(requests == 0L) ? 0d : sum / 1e3d / requests,
+			max / 1e3d
+		);
+	}
+
+	private long now() {
+		return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+	}
+
+	@Override
+	public List<String> getRoutes() {
+		List<String> result = routes.keys();
+		if (routes.isOverflowed()) {
+			result.add(MetricKeyTable.OVERFLOW);
+		}
+		return result;
+	}
+
+	@Override
+	public int getSeconds() {
+		return seconds;
+	}
+
+	@Override
+	public int getMaxRoutes() {
+		return maxRoutes;
+	}
+
+	@Override
+	public long getMemoryBytes() {
+		return (long) cells.length() * 8L;
+	}
+
+	@Override
+	public List<WindowStats> getLastMinute() {
+		return window(LAST_MINUTE);
+	}
+
+	@Override
+	public List<WindowStats> window(int seconds) {
+		List<WindowStats> result = new ArrayList<WindowStats>();
+		int length = Math.min(seconds, this.seconds - 1);
+		if (length <= 0) {
+			return result;
+		}
+		long now = now();
+		for (int id = 0; id < maxRoutes; id++) {
+			String route = routes.key(id);
+			if (route != null) {
+				result.add(window(route, id + 1, now, length));
+			}
+		}
+		if (routes.isOverflowed()) {
+			result.add(window(MetricKeyTable.OVERFLOW, 0, now, length));
+		}
+		return result;
+	}
+
+	@Override
+	public List<SecondStats> series(String route, int seconds) {
+		List<SecondStats> result = new ArrayList<SecondStats>();
+		int index = lookup(route);
+		int length = Math.min(seconds, this.seconds - 1);
+		if ((index < 0) || (length <= 0)) {
+			return result;
+		}
+		long now = now();
+		for (long second = now - length; second < now; second++) {
+			result.add(second(index, second));
+		}
+		return result;
+	}
+
+}
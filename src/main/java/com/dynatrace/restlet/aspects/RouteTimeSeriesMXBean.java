@@ -0,0 +1,56 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link RouteTimeSeries}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface RouteTimeSeriesMXBean {
+
+	/**
+	 * @return the routes which have been recorded so far
+	 */
+	List<String> getRoutes();
+
+	/**
+	 * @return the number of seconds kept per route
+	 */
+	int getSeconds();
+
+	/**
+	 * @return the maximum number of routes tracked individually
+	 */
+	int getMaxRoutes();
+
+	/**
+	 * @return the number of bytes reserved for all rings, which is
+	 * 		{@code (maxRoutes + 1) * seconds * fields * 8}
+	 */
+	long getMemoryBytes();
+
+	/**
+	 * @return the requests per route which completed within the last
+	 * 		minute
+	 */
+	List<WindowStats> getLastMinute();
+
+	/**
+	 * @param seconds the length of the window, at most {@link #getSeconds()}
+	 * @return the requests per route which completed within the last
+	 * 		{@code seconds} seconds, excluding the current one
+	 */
+	List<WindowStats> window(int seconds);
+
+	/**
+	 * @param route the route template or path
+	 * @param seconds the number of seconds, at most {@link #getSeconds()}
+	 * @return the requests of the given route per second for the last
+	 * 		{@code seconds} seconds, excluding the current one, the oldest
+	 * 		second first
+	 */
+	List<SecondStats> series(String route, int seconds);
+
+}
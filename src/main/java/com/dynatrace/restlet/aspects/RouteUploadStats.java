@@ -0,0 +1,108 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the request bodies read by the requests of a
+ * single route and the time they were blocked reading them, see
+ * {@link Uploads}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class RouteUploadStats {
+
+	private final String route;
+	private final long uploads;
+	private final long bytes;
+	private final double bytesPerSecond;
+	private final double readWaitTotalMillis;
+	private final double readWaitMeanMillis;
+	private final double readWaitP99Millis;
+	private final double readWaitMaxMillis;
+	private final double readWaitShare;
+
+	@ConstructorProperties({
+		"route", "uploads", "bytes", "bytesPerSecond", "readWaitTotalMillis",
+		"readWaitMeanMillis", "readWaitP99Millis", "readWaitMaxMillis",
+		"readWaitShare"
+	})
+	public RouteUploadStats(
+			String route,
+			long uploads,
+			long bytes,
+			double bytesPerSecond,
+			double readWaitTotalMillis,
+			double readWaitMeanMillis,
+			double readWaitP99Millis,
+			double readWaitMaxMillis,
+			double readWaitShare
+	) {
+		this.route = route;
+		this.uploads = uploads;
+		this.bytes = bytes;
+		this.bytesPerSecond = bytesPerSecond;
+		this.readWaitTotalMillis = readWaitTotalMillis;
+		this.readWaitMeanMillis = readWaitMeanMillis;
+		this.readWaitP99Millis = readWaitP99Millis;
+		this.readWaitMaxMillis = readWaitMaxMillis;
+		this.readWaitShare = readWaitShare;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return the number of requests which read their body
+	 */
+	public long getUploads() {
+		return uploads;
+	}
+
+	/**
+	 * @return the number of body bytes read
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the bytes read per second spent reading, the throughput of
+	 * 		the uploading clients
+	 */
+	public double getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @return the time spent reading bodies in total
+	 */
+	public double getReadWaitTotalMillis() {
+		return readWaitTotalMillis;
+	}
+
+	/**
+	 * @return the mean time a request spent reading its body
+	 */
+	public double getReadWaitMeanMillis() {
+		return readWaitMeanMillis;
+	}
+
+	public double getReadWaitP99Millis() {
+		return readWaitP99Millis;
+	}
+
+	public double getReadWaitMaxMillis() {
+		return readWaitMaxMillis;
+	}
+
+	/**
+	 * @return the fraction of the time of the requests which read their
+	 * 		body spent reading it
+	 */
+	public double getReadWaitShare() {
+		return readWaitShare;
+	}
+
+}
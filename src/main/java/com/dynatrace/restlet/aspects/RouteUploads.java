@@ -0,0 +1,57 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * The request bodies read by the requests of a single route, see
+ * {@link Uploads}. All updates are lock-free.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class RouteUploads {
+
+	private final String route;
+	private final StripedCounter bytes = new StripedCounter();
+	private final StripedCounter durationNanos = new StripedCounter();
+	private final LatencyHistogram waitNanos = new LatencyHistogram();
+
+	/**
+	 * c'tor
+	 *
+	 * @param route the route this object holds the uploads for
+	 */
+	RouteUploads(String route) {
+		this.route = route;
+	}
+
+	/**
+	 * @param bytes the number of bytes of the body read
+	 * @param waitNanos how long the request was blocked reading them
+	 * @param durationNanos the duration of the request
+	 */
+	void record(long bytes, long waitNanos, long durationNanos) {
+		this.bytes.add(bytes);
+		this.durationNanos.add(durationNanos);
+		this.waitNanos.record(waitNanos);
+	}
+
+	/**
+	 * @return a snapshot of the current values
+	 */
+	RouteUploadStats snapshot() {
+		long read = bytes.sum();
+		long wait = waitNanos.getSum();
+		long duration = durationNanos.sum();
+		return new RouteUploadStats(
+			route,
+			waitNanos.getCount(),
+			read,
+			(wait == 0L) ? 0d : read * 1e9d / wait,
+			wait / 1e6d,
+			waitNanos.getMean() / 1e6d,
+			waitNanos.getPercentile(99d) / 1e6d,
+			waitNanos.getMax() / 1e6d,
+			(duration == 0L) ? 0d : Math.min(1d, (double) wait / duration)
+		);
+	}
+
+}
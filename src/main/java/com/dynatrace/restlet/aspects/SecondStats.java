@@ -0,0 +1,70 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the requests of a single route which completed
+ * within a single second, see {@link RouteTimeSeries}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class SecondStats {
+
+	private final long epochSecond;
+	private final long requests;
+	private final long errors;
+	private final double meanMillis;
+	private final double maxMillis;
+
+	/**
+	 * c'tor
+	 *
+	 * @param epochSecond the second since the epoch
+	 * @param requests the number of requests completed within that second
+	 * @param errors the number of requests which failed
+	 * @param meanMillis the mean latency
+	 * @param maxMillis the maximum latency
+	 */
+	@ConstructorProperties({
+		"epochSecond", "requests", "errors", "meanMillis", "maxMillis"
+	})
+	public SecondStats(
+			long epochSecond,
+			long requests,
+			long errors,
+			double meanMillis,
+			double maxMillis
+	) {
+		this.epochSecond = epochSecond;
+		this.requests = requests;
+		this.errors = errors;
+		this.meanMillis = meanMillis;
+		this.maxMillis = maxMillis;
+	}
+
+	public long getEpochSecond() {
+		return epochSecond;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of requests which failed with an exception or a
+	 * 		5xx status
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+}
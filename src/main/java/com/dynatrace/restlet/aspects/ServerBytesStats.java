@@ -0,0 +1,74 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the bytes received and sent by a single server
+ * of the internal HTTP connector.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ServerBytesStats {
+
+	private final String server;
+	private final long bytesIn;
+	private final long bytesOut;
+	private final double bytesInPerSecond;
+	private final double bytesOutPerSecond;
+
+	@ConstructorProperties({
+		"server", "bytesIn", "bytesOut", "bytesInPerSecond", "bytesOutPerSecond"
+	})
+	public ServerBytesStats(
+			String server,
+			long bytesIn,
+			long bytesOut,
+			double bytesInPerSecond,
+			double bytesOutPerSecond
+	) {
+		this.server = server;
+		this.bytesIn = bytesIn;
+		this.bytesOut = bytesOut;
+		this.bytesInPerSecond = bytesInPerSecond;
+		this.bytesOutPerSecond = bytesOutPerSecond;
+	}
+
+	/**
+	 * @return the scheme and the address the server listens on
+	 */
+	public String getServer() {
+		return server;
+	}
+
+	/**
+	 * @return the bytes received so far
+	 */
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	/**
+	 * @return the bytes sent so far
+	 */
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	/**
+	 * @return the mean bytes received per second within the last couple of
+	 * 		seconds
+	 */
+	public double getBytesInPerSecond() {
+		return bytesInPerSecond;
+	}
+
+	/**
+	 * @return the mean bytes sent per second within the last couple of
+	 * 		seconds
+	 */
+	public double getBytesOutPerSecond() {
+		return bytesOutPerSecond;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the requests received by a single
+ * {@code Server}, see {@link ServerConnectors}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ServerConnectorStats {
+
+	private final String server;
+	private final String connector;
+	private final long requests;
+	private final long errors;
+	private final long inFlight;
+	private final double share;
+	private final double meanMillis;
+	private final double p99Millis;
+	private final double maxMillis;
+
+	@ConstructorProperties({
+		"server", "connector", "requests", "errors", "inFlight", "share",
+		"meanMillis", "p99Millis", "maxMillis"
+	})
+	public ServerConnectorStats(
+			String server,
+			String connector,
+			long requests,
+			long errors,
+			long inFlight,
+			double share,
+			double meanMillis,
+			double p99Millis,
+			double maxMillis
+	) {
+		this.server = server;
+		this.connector = connector;
+		this.requests = requests;
+		this.errors = errors;
+		this.inFlight = inFlight;
+		this.share = share;
+		this.meanMillis = meanMillis;
+		this.p99Millis = p99Millis;
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * @return {@code scheme://host:port} of the server
+	 */
+	public String getServer() {
+		return server;
+	}
+
+	/**
+	 * @return the connector implementing the server, e.g. {@code internal}
+	 * 		or {@code jetty}
+	 */
+	public String getConnector() {
+		return connector;
+	}
+
+	/**
+	 * @return the number of requests completed
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of requests which threw or got answered with a
+	 * 		server error
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return the fraction of all requests completed by this server
+	 */
+	public double getShare() {
+		return share;
+	}
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	public double getP99Millis() {
+		return p99Millis;
+	}
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.restlet.Server;
+
+/**
+ * <p>
+ * Splits the requests up by the {@link Server} which received them, so
+ * the load of several servers within the same JVM (e.g. HTTP and HTTPS or
+ * an administrative port) can be told apart. Per server the requests
+ * completed and in flight, the errors (exceptions or 5xx) and the latency
+ * are offered.
+ * </p>
+ * <p>
+ * The {@link ServerIdentity} of a server is resolved with its first
+ * request and cached for the lifetime of the {@link Server} instance, so
+ * subsequent requests only cost a lookup by identity. The number of
+ * entries is bounded by the number of servers started.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ServerConnectors implements ServerConnectorsMXBean {
+
+	private static final Comparator<ServerConnectorStats> BY_REQUESTS =
+			new Comparator<ServerConnectorStats>() {
+		@Override
+		public int compare(ServerConnectorStats o1, ServerConnectorStats o2) {
+			return Long.compare(o2.getRequests(), o1.getRequests());
+		}
+	};
+
+	public static final ServerConnectors INSTANCE = new ServerConnectors();
+
+	static {
+		Management.register("ServerConnectors", INSTANCE);
+	}
+
+	/**
+	 * The requests received by a single {@link Server}
+	 */
+	static final class Connector {
+
+		final ServerIdentity identity;
+		private final StripedCounter requests = new StripedCounter();
+		private final StripedCounter errors = new StripedCounter();
+		private final StripedCounter inFlight = new StripedCounter();
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		Connector(ServerIdentity identity) {
+			this.identity = identity;
+		}
+
+		ServerConnectorStats snapshot(long total) {
+			long count = requests.sum();
+			return new ServerConnectorStats(
+				identity.toString(),
+				identity.getConnector(),
+				count,
+				errors.sum(),
+				Math.max(0L, inFlight.sum()),
+				(total == 0L) ? 0d : (double) count / total,
+				latency.getMean() / 1e6d,
+				latency.getPercentile(99d) / 1e6d,
+				latency.getMax() / 1e6d
+			);
+		}
+
+	}
+
+	private final ConcurrentMap<Server, Connector> connectors =
+			new ConcurrentHashMap<Server, Connector>();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private ServerConnectors() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Invoked once the outermost request of the calling thread has been
+	 * admitted
+	 *
+	 * @param server the server which received the request
+	 * @param active the slot of the request
+	 */
+	void begin(Server server, ActiveRequest active) {
+		Connector connector = connector(server);
+		connector.inFlight.increment();
+		active.connector = connector;
+	}
+
+	/**
+	 * Invoked once the outermost request of the calling thread is done.
+	 * Needs to be invoked before the request is marked as finished.
+	 *
+	 * @param active the slot of the request
+	 * @param duration the duration of the request in nanoseconds
+	 */
+	void end(ActiveRequest active, long duration) {
+		Connector connector = active.connector;
+		if (connector == null) {
+			return;
+		}
+		connector.inFlight.decrement();
+		if (active.isExcluded()) {
+			return;
+		}
+		connector.requests.increment();
+		if (RouteTimeSeries.isError(active)) {
+			connector.errors.increment();
+		}
+		connector.latency.record(duration);
+	}
+
+	private Connector connector(Server server) {
+		Connector connector = connectors.get(server);
+		if (connector != null) {
+			return connector;
+		}
+		// resolved at most a couple of times concurrently, only one wins
+		Connector created = new Connector(ServerIdentity.of(server));
+		connector = connectors.putIfAbsent(server, created);
+		return (connector == null) ? created : connector;
+	}
+
+	@Override
+	public List<ServerConnectorStats> getServers() {
+		long total = 0L;
+		for (Connector connector : connectors.values()) {
+			total += connector.requests.sum();
+		}
+		List<ServerConnectorStats> result = new ArrayList<ServerConnectorStats>();
+		for (Connector connector : connectors.values()) {
+			result.add(connector.snapshot(total));
+		}
+		Collections.sort(result, BY_REQUESTS);
+		return result;
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link ServerConnectors}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ServerConnectorsMXBean {
+
+	/**
+	 * @return the requests per server, the server which received the most
+	 * 		requests first
+	 */
+	List<ServerConnectorStats> getServers();
+
+}
@@ -0,0 +1,214 @@
+package com.dynatrace.restlet.aspects;
+
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+
+/**
+ * <p>
+ * Identifies the {@link Server} a request has been received by: scheme,
+ * host, port and the connector implementing it, e.g. {@code internal} for
+ * the connector built into Restlet or {@code jetty} for the extension
+ * {@code org.restlet.ext.jetty}.
+ * </p>
+ * <p>
+ * An identity is resolved once per {@link Server} instance by the
+ * {@link ServerConnectors}, which is why resolving it may take its time
+ * (e.g. looking up the name of the local host of servers listening on all
+ * interfaces).
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ServerIdentity {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ServerIdentity.class.getName());
+
+	private static final String DEFAULT_SCHEME = "http";
+	private static final String UNKNOWN = "unknown";
+	private static final String INTERNAL = "internal";
+	private static final String LOCALHOST = "localhost";
+
+	private static final String ENGINE_CONNECTOR = "org.restlet.engine.connector.";
+	private static final String EXTENSION = "org.restlet.ext.";
+
+	/**
+	 * {@code Server.getHelper()}, which is private
+	 */
+	private static final Method GET_HELPER = helperMethod();
+
+	private final String scheme;
+	private final String host;
+	private final String address;
+	private final int port;
+	private final String connector;
+	private final String key;
+
+	private ServerIdentity(
+			String scheme,
+			String host,
+			String address,
+			int port,
+			String connector
+	) {
+		this.scheme = scheme;
+		this.host = host;
+		this.address = address;
+		this.port = port;
+		this.connector = connector;
+		this.key = scheme + "://" + host + ":" + port;
+	}
+
+	/**
+	 * @param server a started server
+	 * @return the identity of the given server
+	 */
+	static ServerIdentity of(Server server) {
+		List<Protocol> protocols = server.getProtocols();
+		Protocol protocol = protocols.isEmpty() ? null : protocols.get(0);
+		String scheme = (protocol == null) ? null : protocol.getSchemeName();
+		String address = server.getAddress();
+		if (isWildcard(address)) {
+			address = null;
+		}
+		return new ServerIdentity(
+			(scheme == null) ? DEFAULT_SCHEME : scheme.toLowerCase(Locale.ROOT),
+			(address == null) ? localHost() : address,
+			address,
+			port(server, protocol),
+			connector(server)
+		);
+	}
+
+	private static boolean isWildcard(String address) {
+		return (address == null) || address.isEmpty() || "0.0.0.0".equals(address)
+				|| "::".equals(address) || "*".equals(address);
+	}
+
+	private static String localHost() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (Exception e) {
+			LOGGER.log(Level.FINE, "Unable to resolve the local host name", e);
+			return LOCALHOST;
+		}
+	}
+
+	private static int port(Server server, Protocol protocol) {
+		int port = server.getPort();
+		if (port == 0) {
+			try {
+				port = server.getEphemeralPort();
+			} catch (RuntimeException e) {
+				// the connector does not publish its ephemeral port
+				port = 0;
+			}
+		}
+		if ((port <= 0) && (protocol != null)) {
+			port = protocol.getDefaultPort();
+		}
+		return Math.max(0, port);
+	}
+
+	/**
+	 * @return the name of the Restlet extension implementing the given
+	 * 		server, {@code internal} for the connector built into Restlet
+	 * 		or the class name of the connector
+	 */
+	private static String connector(Server server) {
+		Object helper = null;
+		if (GET_HELPER != null) {
+			try {
+				helper = GET_HELPER.invoke(server);
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "Unable to determine the connector of " + server, e);
+			}
+		}
+		if (helper == null) {
+			return UNKNOWN;
+		}
+		String name = helper.getClass().getName();
+		if (name.startsWith(ENGINE_CONNECTOR)) {
+			return INTERNAL;
+		}
+		if (name.startsWith(EXTENSION)) {
+			int end = name.indexOf('.', EXTENSION.length());
+			return (end < 0) ? name : name.substring(EXTENSION.length(), end);
+		}
+		return name;
+	}
+
+	private static Method helperMethod() {
+		try {
+			Method method = Server.class.getDeclaredMethod("getHelper");
+			method.setAccessible(true);
+			return method;
+		} catch (Exception e) {
+			LOGGER.log(Level.FINE, "Unable to access Server.getHelper", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the scheme in lower case, e.g. {@code https}
+	 */
+	public String getScheme() {
+		return scheme;
+	}
+
+	/**
+	 * @return the address the server is bound to or the name of the local
+	 * 		host if it listens on all interfaces
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return the address the server is bound to or {@code null} if it
+	 * 		listens on all interfaces
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return the port the server listens on, the actual one if an
+	 * 		ephemeral port has been requested
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @return the connector implementing the server, e.g. {@code internal}
+	 * 		or {@code jetty}
+	 */
+	public String getConnector() {
+		return connector;
+	}
+
+	/**
+	 * @return {@code true} if the server is reached via {@code https}
+	 */
+	public boolean isSecure() {
+		return "https".equals(scheme);
+	}
+
+	/**
+	 * @return {@code scheme://host:port}
+	 */
+	@Override
+	public String toString() {
+		return key;
+	}
+
+}
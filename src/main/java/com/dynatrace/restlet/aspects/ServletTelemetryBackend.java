@@ -0,0 +1,128 @@
+package com.dynatrace.restlet.aspects;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * The {@link TelemetryBackend} mimicking a call to a Servlet via
+ * {@link RestletServlet}, which allows the Dynatrace Servlet Sensor to
+ * pick up the request as a Pure Path.
+ * </p>
+ * <p>
+ * Whether this backend is active can be controlled via the system property
+ * {@code dt.restlet.backend.servlet}:
+ * </p>
+ * <ul>
+ * <li>{@code true} or {@code on} (default) - always active</li>
+ * <li>{@code auto} - only active if the JVM has been started with the
+ * 		Dynatrace Agent ({@code -agentpath:...dtagent...})</li>
+ * <li>{@code false} or {@code off} - never active</li>
+ * </ul>
+ * <p>
+ * In any case the Servlet API needs to be available on the classpath.
+ * Otherwise this backend fails to load and is skipped.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ServletTelemetryBackend
+		implements TelemetryBackend.Enclosing {
+
+	private static final String PROPERTY = "dt.restlet.backend.servlet";
+
+	private static final String AGENT_LIBRARY = "dtagent";
+
+	static final String MODE_ON = "on";
+	static final String MODE_OFF = "off";
+	static final String MODE_AUTO = "auto";
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ServletTelemetryBackend.class.getName());
+
+	/**
+	 * c'tor
+	 *
+	 * @throws IllegalStateException if Servlet emulation has been disabled
+	 * 		or no Dynatrace Agent has been detected, which causes the
+	 * 		{@link java.util.ServiceLoader} to skip this backend
+	 */
+	public ServletTelemetryBackend() {
+		String mode = System.getProperty(PROPERTY, MODE_ON);
+		if (isOff(mode)) {
+			LOGGER.log(Level.INFO,
+				"Servlet emulation disabled via -D" + PROPERTY + "=" + mode);
+			throw new IllegalStateException("Servlet emulation disabled");
+		}
+		if (!isOn(mode) && !isAgentPresent()) {
+			LOGGER.log(Level.INFO,
+				"No Dynatrace Agent detected, Servlet emulation disabled. "
+				+ "Specify -D" + PROPERTY + "=" + MODE_ON + " to enforce it.");
+			throw new IllegalStateException("No Dynatrace Agent detected");
+		}
+		// fail early if the Servlet API is not available
+		RestletServletConfig.INSTANCE.getServletName();
+	}
+
+	/**
+	 * @param mode the value of a {@code dt.restlet.backend.*} property
+	 * @return {@code true} if the backend should always be active
+	 */
+	static boolean isOn(String mode) {
+		return MODE_ON.equalsIgnoreCase(mode)
+				|| Boolean.TRUE.toString().equalsIgnoreCase(mode);
+	}
+
+	/**
+	 * @param mode the value of a {@code dt.restlet.backend.*} property
+	 * @return {@code true} if the backend should never be active
+	 */
+	static boolean isOff(String mode) {
+		return MODE_OFF.equalsIgnoreCase(mode)
+				|| Boolean.FALSE.toString().equalsIgnoreCase(mode);
+	}
+
+	/**
+	 * @return {@code true} if the JVM has been started with the Dynatrace
+	 * 		Agent
+	 */
+	static boolean isAgentPresent() {
+		try {
+			for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+				if ((arg != null) && arg.contains(AGENT_LIBRARY)) {
+					return true;
+				}
+			}
+		} catch (Throwable t) {
+			LOGGER.log(Level.FINE, "Unable to query JVM arguments", t);
+		}
+		return false;
+	}
+
+	@Override
+	public void onRequestStart(RequestDescriptor request) {
+		// nothing to do, the Servlet Sensor picks up the request in execute
+	}
+
+	@Override
+	public void onRequestEnd(RequestDescriptor request) {
+		// nothing to do, the Servlet Sensor picks up the request in execute
+	}
+
+	/**
+	 * Executes the given invocation from within an artificial call to
+	 * {@link RestletServlet}
+	 */
+	@Override
+	public void execute(RequestDescriptor request, Runnable invocation) {
+		new RestletServlet(
+			request.getRequest(),
+			request.getResponse(),
+			request.getServer(),
+			invocation
+		).execute();
+	}
+
+}
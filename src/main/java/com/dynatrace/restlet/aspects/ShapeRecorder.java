@@ -0,0 +1,288 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Request;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.engine.header.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * <p>
+ * Records the {@link RequestShape} of every request passed on by
+ * {@code Server.handle} into the file given via
+ * {@code -Ddt.restlet.record.file=<path>}, which can be replayed against
+ * a local build via {@link ShapeReplay}. Without that property nothing
+ * gets recorded.
+ * </p>
+ * <p>
+ * The request thread only captures the shape and queues it. A single
+ * daemon thread encodes and writes the queued shapes. If more than
+ * {@code -Ddt.restlet.record.maxQueued} (default 4096) shapes are waiting
+ * to be written, further ones are dropped instead of slowing down
+ * requests. Once {@code -Ddt.restlet.record.maxBytes} (default 64 MB)
+ * have been written the file gets closed and recording stops.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ShapeRecorder implements ShapeRecorderMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(ShapeRecorder.class.getName());
+
+	private static final String ERRMSG_WRITE =
+			"Unable to record request shapes into ";
+
+	private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public static final ShapeRecorder INSTANCE = new ShapeRecorder(
+		System.getProperty("dt.restlet.record.file"),
+		Math.max(1, Integer.getInteger("dt.restlet.record.maxQueued", 4096)),
+		Math.max(0L, Long.getLong("dt.restlet.record.maxBytes", 64L << 20))
+	);
+
+	static {
+		Management.register("ShapeRecorder", INSTANCE);
+	}
+
+	private final String file;
+	private final int maxQueued;
+	private final long maxBytes;
+	private final long startNanos = System.nanoTime();
+
+	private final ConcurrentLinkedQueue<RequestShape> queue =
+			new ConcurrentLinkedQueue<RequestShape>();
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final StripedCounter recorded = new StripedCounter();
+	private final StripedCounter dropped = new StripedCounter();
+
+	/**
+	 * The strings written so far. Only accessed while holding the monitor
+	 * of this object, as are {@link #out} and {@link #bytesWritten}.
+	 */
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+	private OutputStream out = null;
+	private volatile long bytesWritten = 0L;
+
+	private volatile boolean active = false;
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private ShapeRecorder(String file, int maxQueued, long maxBytes) {
+		this.file = file;
+		this.maxQueued = maxQueued;
+		this.maxBytes = maxBytes;
+		if (file == null) {
+			return;
+		}
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+			RequestShape.writeHeader(out);
+			bytesWritten = RequestShape.MAGIC.length() + 1;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, ERRMSG_WRITE + file, e);
+			return;
+		}
+		active = true;
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "dt-restlet-shape-recorder");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				active = false;
+				drain();
+				close();
+			}
+		}, "dt-restlet-shape-recorder-shutdown"));
+	}
+
+	/**
+	 * Captures the shape of the given request and queues it for writing
+	 *
+	 * @param active the request which has been handled
+	 */
+	void record(ActiveRequest active) {
+		if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			dropped.increment();
+			return;
+		}
+		queue.offer(capture(active));
+	}
+
+	@SuppressWarnings("unchecked")
+	private RequestShape capture(ActiveRequest active) {
+		Request request = active.getRequest();
+		Method method = request.getMethod();
+		String template = active.getTemplate();
+		Series<Header> headers = (Series<Header>) request.getAttributes().get(
+			HeaderConstants.ATTRIBUTE_HEADERS
+		);
+		int count = (headers == null) ? 0 : headers.size();
+		String[] names = new String[count];
+		int[] sizes = new int[count];
+		for (int i = 0; i < count; i++) {
+			Header header = headers.get(i);
+			names[i] = header.getName();
+			sizes[i] = (header.getValue() == null) ? 0 : header.getValue().length();
+		}
+		Representation entity = request.getEntity();
+		return new RequestShape(
+			TimeUnit.NANOSECONDS.toMicros(active.getStartNanos() - startNanos),
+			(method == null) ? "" : method.getName(),
+			(template == null) ? RequestShape.UNMATCHED : template,
+			queryParameters(request.getResourceRef()),
+			names,
+			sizes,
+			(entity == null) ? 0L : entity.getSize()
+		);
+	}
+
+	/**
+	 * @return the number of query parameters, without decoding them
+	 */
+	private static int queryParameters(Reference ref) {
+		String query = (ref == null) ? null : ref.getQuery();
+		if ((query == null) || query.isEmpty()) {
+			return 0;
+		}
+		int count = 1;
+		for (int i = 0; i < query.length(); i++) {
+			if (query.charAt(i) == '&') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The loop of the writer thread
+	 */
+	private void write() {
+		while (active) {
+			if (!drain()) {
+				LockSupport.parkNanos(POLL_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Writes all queued shapes and flushes them
+	 *
+	 * @return {@code true} if any shapes have been written
+	 */
+	private synchronized boolean drain() {
+		boolean written = false;
+		RequestShape shape;
+		while ((shape = queue.poll()) != null) {
+			queued.decrementAndGet();
+			if (out == null) {
+				dropped.increment();
+				continue;
+			}
+			try {
+				bytesWritten = bytesWritten + shape.write(out, strings);
+				recorded.increment();
+				written = true;
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, ERRMSG_WRITE + file, e);
+				active = false;
+				close();
+				return false;
+			}
+			if (bytesWritten >= maxBytes) {
+				LOGGER.log(Level.INFO, "Recorded " + bytesWritten
+						+ " bytes of request shapes into " + file);
+				active = false;
+				close();
+				return false;
+			}
+		}
+		if (written) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, ERRMSG_WRITE + file, e);
+			}
+		}
+		return written;
+	}
+
+	private synchronized void close() {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, ERRMSG_WRITE + file, e);
+		}
+		out = null;
+	}
+
+	@Override
+	public String getFile() {
+		return (file == null) ? null : new File(file).getAbsolutePath();
+	}
+
+	@Override
+	public boolean isActive() {
+		return active;
+	}
+
+	@Override
+	public void stop() {
+		active = false;
+		drain();
+		close();
+	}
+
+	@Override
+	public long getRecorded() {
+		return recorded.sum();
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * Management interface of the {@link ShapeRecorder}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface ShapeRecorderMXBean {
+
+	/**
+	 * @return the file the request shapes are recorded into or
+	 * 		{@code null} if recording has not been configured
+	 */
+	String getFile();
+
+	/**
+	 * @return {@code true} if request shapes are currently being recorded
+	 */
+	boolean isActive();
+
+	/**
+	 * Writes the request shapes recorded so far and closes the file.
+	 * Recording cannot be resumed afterwards.
+	 */
+	void stop();
+
+	/**
+	 * @return the number of request shapes written
+	 */
+	long getRecorded();
+
+	/**
+	 * @return the number of request shapes dropped because too many of
+	 * 		them have been waiting to be written
+	 */
+	long getDropped();
+
+	/**
+	 * @return the size of the file written so far
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return the size of the file at which recording stops
+	 */
+	long getMaxBytes();
+
+}
@@ -0,0 +1,384 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+
+/**
+ * <p>
+ * Replays the request shapes recorded by the {@link ShapeRecorder} against
+ * a local build and prints the latency distribution per route, e.g.
+ * </p>
+ * <pre>
+ * java -Dreplay.application=com.example.MyApplication -Dreplay.speedup=4
+ *      -cp dynatrace-restlet-aspect.jar:org.restlet.jar:my-application.jar
+ *      com.dynatrace.restlet.aspects.ShapeReplay shapes.bin
+ * </pre>
+ * <p>
+ * Requests are sent open loop at the recorded arrival times divided by
+ * the speed-up, regardless of how long earlier requests take. Latency is
+ * measured from the time a request was due rather than from when it
+ * actually got sent, so a server falling behind shows up as latency
+ * instead of silently lowering the load.
+ * </p>
+ * <p>
+ * Template variables get replaced by {@code replay.pathValue}. Only the
+ * number of query parameters is recorded, so they are sent as
+ * {@code p0=1&p1=1...}, whereas header values get replaced by fillers of
+ * the recorded size and bodies by zeros of the recorded size. Headers the
+ * server negotiates content with get generic values instead, headers
+ * managed by the HTTP client and range requests are skipped. Requests
+ * which did not match any route get sent to {@code /unmatched}.
+ * </p>
+ * <p>
+ * Configured via system properties:
+ * </p>
+ * <ul>
+ * <li>{@code replay.application} - the {@link Application} to start
+ * 		within a {@link Component} listening on a loopback port</li>
+ * <li>{@code replay.attach} - the path to attach the application to
+ * 		(default: empty, which attaches it to the root)</li>
+ * <li>{@code replay.target} - the base URL of an already running server,
+ * 		used instead of {@code replay.application}</li>
+ * <li>{@code replay.speedup} - how much faster than recorded the requests
+ * 		get sent (default 1.0)</li>
+ * <li>{@code replay.threads} - maximum number of concurrent requests
+ * 		(default 64)</li>
+ * <li>{@code replay.pathValue} - the value of template variables
+ * 		(default {@code 1})</li>
+ * </ul>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class ShapeReplay {
+
+	private static final String UNMATCHED_PATH = "/unmatched";
+
+	/**
+	 * Headers set by the HTTP client itself or which would change the
+	 * semantics of the request if sent with a filler
+	 */
+	private static final Set<String> SKIPPED = new HashSet<String>(Arrays.asList(
+		"host", "content-length", "connection", "transfer-encoding",
+		"keep-alive", "expect", "upgrade", "te", "trailer", "range",
+		"if-range", "content-encoding", "content-range"
+	));
+
+	/**
+	 * Headers the server negotiates content with and generic values for
+	 * them
+	 */
+	private static final Map<String, String> GENERIC = new HashMap<String, String>();
+
+	static {
+		GENERIC.put("accept", "*/*");
+		GENERIC.put("accept-charset", "utf-8");
+		GENERIC.put("accept-encoding", "identity");
+		GENERIC.put("accept-language", "en");
+		GENERIC.put("content-type", "application/octet-stream");
+	}
+
+	private static final Comparator<RequestShape> BY_OFFSET =
+			new Comparator<RequestShape>() {
+		@Override
+		public int compare(RequestShape o1, RequestShape o2) {
+			return Long.compare(o1.offsetMicros, o2.offsetMicros);
+		}
+	};
+
+	private final String target;
+	private final String pathValue;
+	private final ConcurrentMap<String, RouteResult> results =
+			new ConcurrentHashMap<String, RouteResult>();
+
+	/**
+	 * The latencies of all requests of a single route
+	 */
+	private static final class RouteResult {
+
+		final String route;
+		final LatencyHistogram latency = new LatencyHistogram();
+		final StripedCounter errors = new StripedCounter();
+
+		RouteResult(String route) {
+			this.route = route;
+		}
+
+	}
+
+	private ShapeReplay(String target, String pathValue) {
+		this.target = target;
+		this.pathValue = pathValue;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String file = (args.length > 0) ? args[0] : System.getProperty("replay.file");
+		if (file == null) {
+			throw new IllegalArgumentException(
+				"Specify the file of recorded request shapes");
+		}
+		List<RequestShape> shapes = read(file);
+		if (shapes.isEmpty()) {
+			System.out.println("No request shapes recorded within " + file);
+			return;
+		}
+		int threads = Math.max(1, Integer.getInteger("replay.threads", 64));
+		double speedup = Double.parseDouble(System.getProperty("replay.speedup", "1.0"));
+		if (!(speedup > 0d)) {
+			throw new IllegalArgumentException("replay.speedup needs to be positive");
+		}
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", Integer.toString(threads));
+		}
+		Component component = null;
+		String target = System.getProperty("replay.target");
+		if (target == null) {
+			component = start();
+			Server server = component.getServers().get(0);
+			target = "http://127.0.0.1:" + server.getEphemeralPort();
+		}
+		try {
+			ShapeReplay replay = new ShapeReplay(
+				stripTrailingSlash(target),
+				System.getProperty("replay.pathValue", "1")
+			);
+			long millis = replay.run(shapes, speedup, threads);
+			replay.print(shapes.size(), millis);
+		} finally {
+			if (component != null) {
+				component.stop();
+			}
+		}
+	}
+
+	/**
+	 * @return the recorded shapes in the order of their arrival
+	 */
+	static List<RequestShape> read(String file) throws IOException {
+		List<RequestShape> shapes = new ArrayList<RequestShape>();
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			RequestShape.readHeader(in);
+			List<String> strings = new ArrayList<String>();
+			RequestShape shape;
+			while ((shape = RequestShape.read(in, strings)) != null) {
+				shapes.add(shape);
+			}
+		} finally {
+			in.close();
+		}
+		// shapes get recorded once their requests complete
+		Collections.sort(shapes, BY_OFFSET);
+		return shapes;
+	}
+
+	/**
+	 * Starts the application given via {@code replay.application} on a
+	 * loopback port
+	 */
+	private static Component start() throws Exception {
+		String name = System.getProperty("replay.application");
+		if (name == null) {
+			throw new IllegalArgumentException(
+				"Specify either -Dreplay.application or -Dreplay.target");
+		}
+		Application application;
+		try {
+			application = Class.forName(name).asSubclass(Application.class)
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(
+				"replay.application " + name + " cannot be instantiated", e);
+		}
+		Component component = new Component();
+		component.getLogService().setEnabled(false);
+		Server server = component.getServers().add(Protocol.HTTP, "127.0.0.1", 0);
+		server.getContext().getParameters().add(
+			"maxThreads", Integer.toString(Integer.getInteger("replay.serverThreads", 64))
+		);
+		component.getDefaultHost().attach(System.getProperty("replay.attach", ""), application);
+		component.start();
+		return component;
+	}
+
+	private static String stripTrailingSlash(String target) {
+		return target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+	}
+
+	/**
+	 * Sends all requests at their recorded arrival times
+	 *
+	 * @return how long the replay took
+	 */
+	private long run(List<RequestShape> shapes, double speedup, int threads)
+			throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		long first = shapes.get(0).offsetMicros;
+		long start = System.nanoTime();
+		for (final RequestShape shape : shapes) {
+			final long due = start + (long) (
+				TimeUnit.MICROSECONDS.toNanos(shape.offsetMicros - first) / speedup
+			);
+			long wait = due - System.nanoTime();
+			if (wait > 0L) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					send(shape, due);
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	private void send(RequestShape shape, long due) {
+		String route = RequestShape.UNMATCHED.equals(shape.route)
+				? UNMATCHED_PATH
+				: shape.route;
+		RouteResult result = result(shape.method + " " + route);
+		boolean failed = true;
+		try {
+			HttpURLConnection connection =
+					(HttpURLConnection) new URL(url(shape)).openConnection();
+			connection.setRequestMethod(shape.method);
+			for (int i = 0; i < shape.headerNames.length; i++) {
+				String name = shape.headerNames[i];
+				String key = name.toLowerCase(Locale.ROOT);
+				if (SKIPPED.contains(key)) {
+					continue;
+				}
+				String value = GENERIC.get(key);
+				connection.setRequestProperty(name,
+					(value == null) ? filler(shape.headerSizes[i]) : value);
+			}
+			if (shape.bodySize > 0L) {
+				connection.setDoOutput(true);
+				connection.setFixedLengthStreamingMode(shape.bodySize);
+				OutputStream out = connection.getOutputStream();
+				byte[] zeros = new byte[(int) Math.min(8192L, shape.bodySize)];
+				for (long left = shape.bodySize; left > 0L; left -= zeros.length) {
+					out.write(zeros, 0, (int) Math.min(zeros.length, left));
+				}
+				out.close();
+			}
+			int status = connection.getResponseCode();
+			InputStream in = (status >= 400)
+					? connection.getErrorStream()
+					: connection.getInputStream();
+			if (in != null) {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) >= 0) {
+					// drained in order to reuse the connection
+				}
+				in.close();
+			}
+			failed = status >= 500;
+		} catch (IOException e) {
+			failed = true;
+		} catch (RuntimeException e) {
+			// e.g. methods HttpURLConnection does not support
+			failed = true;
+		} finally {
+			result.latency.record(System.nanoTime() - due);
+			if (failed) {
+				result.errors.increment();
+			}
+		}
+	}
+
+	private String url(RequestShape shape) {
+		StringBuilder sb = new StringBuilder(target);
+		if (RequestShape.UNMATCHED.equals(shape.route)) {
+			sb.append(UNMATCHED_PATH);
+		} else {
+			String route = shape.route;
+			int i = 0;
+			while (i < route.length()) {
+				char c = route.charAt(i);
+				int end = (c == '{') ? route.indexOf('}', i) : -1;
+				if (end < 0) {
+					sb.append(c);
+					i++;
+				} else {
+					sb.append(pathValue);
+					i = end + 1;
+				}
+			}
+		}
+		for (int p = 0; p < shape.queryParameters; p++) {
+			sb.append((p == 0) ? '?' : '&').append('p').append(p).append("=1");
+		}
+		return sb.toString();
+	}
+
+	private static String filler(int size) {
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'x');
+		return new String(chars);
+	}
+
+	private RouteResult result(String route) {
+		RouteResult result = results.get(route);
+		if (result != null) {
+			return result;
+		}
+		result = new RouteResult(route);
+		RouteResult existing = results.putIfAbsent(route, result);
+		return (existing == null) ? result : existing;
+	}
+
+	private void print(int requests, long millis) {
+		List<RouteResult> routes = new ArrayList<RouteResult>(results.values());
+		Collections.sort(routes, new Comparator<RouteResult>() {
+			@Override
+			public int compare(RouteResult o1, RouteResult o2) {
+				return Long.compare(o2.latency.getCount(), o1.latency.getCount());
+			}
+		});
+		System.out.println(String.format(Locale.ROOT,
+			"%d requests replayed within %d ms (%.1f requests/s)",
+			requests, millis, requests * 1000d / Math.max(1L, millis)));
+		System.out.println(String.format(Locale.ROOT,
+			"%10s %8s %10s %10s %10s %10s  %s",
+			"requests", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "route"));
+		for (RouteResult route : routes) {
+			LatencyHistogram h = route.latency;
+			System.out.println(String.format(Locale.ROOT,
+				"%10d %8d %10.2f %10.2f %10.2f %10.2f  %s",
+				h.getCount(), route.errors.sum(),
+				h.getPercentile(50d) / 1e6d, h.getPercentile(90d) / 1e6d,
+				h.getPercentile(99d) / 1e6d, h.getMax() / 1e6d,
+				route.route));
+		}
+	}
+
+}
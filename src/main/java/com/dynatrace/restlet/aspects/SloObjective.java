@@ -0,0 +1,79 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable latency objective as configured via
+ * {@code slo.route.<route>} of the {@link Configuration}, written as
+ * {@code <percent>,<thresholdMillis>}, e.g. {@code 99,200} for 99 percent
+ * of the requests completing within 200 ms. Requests taking longer as well
+ * as failed requests consume the error budget, see {@link SloTracker}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class SloObjective {
+
+	private final double percent;
+	private final long thresholdNanos;
+
+	/**
+	 * The fraction of requests which may miss the objective
+	 */
+	private final double budget;
+
+	private SloObjective(double percent, long thresholdNanos) {
+		this.percent = percent;
+		this.thresholdNanos = thresholdNanos;
+		this.budget = 1d - percent / 100d;
+	}
+
+	/**
+	 * @param key the configuration key, used for the error message only
+	 * @param value {@code <percent>,<thresholdMillis>}
+	 * @return the parsed objective or {@code null} if the value is
+	 * 		{@code null}
+	 * @throws IllegalArgumentException if the value is invalid
+	 */
+	static SloObjective parse(String key, String value) {
+		if (value == null) {
+			return null;
+		}
+		int comma = value.indexOf(',');
+		if (comma < 0) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+		}
+		try {
+			double percent = Double.parseDouble(value.substring(0, comma).trim());
+			long millis = Long.parseLong(value.substring(comma + 1).trim());
+			// 100 percent leaves no budget to burn
+			if (!(percent > 0d) || !(percent < 100d) || (millis < 0L)) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+			}
+			return new SloObjective(percent, TimeUnit.MILLISECONDS.toNanos(millis));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+		}
+	}
+
+	double getPercent() {
+		return percent;
+	}
+
+	long getThresholdNanos() {
+		return thresholdNanos;
+	}
+
+	/**
+	 * @return the fraction of requests which may miss the objective
+	 */
+	double getBudget() {
+		return budget;
+	}
+
+	@Override
+	public String toString() {
+		return percent + "," + TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+}
@@ -0,0 +1,359 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanNotificationInfo;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+
+/**
+ * <p>
+ * Tracks the latency objectives configured via {@code slo.route.<route>}
+ * of the {@link Configuration} and raises an alert once a route burns its
+ * error budget too fast. Requests taking longer than the threshold of
+ * their objective as well as failed requests (exceptions or 5xx) count as
+ * bad. The burn rate of a window is the fraction of bad requests within
+ * that window divided by the fraction the objective allows for, so a burn
+ * rate of 1 uses up exactly the budget.
+ * </p>
+ * <p>
+ * Alerts follow the multi-window approach: a route burns fast if the burn
+ * rate exceeds {@value #FAST_BURN} within both the last hour and the last
+ * 5 minutes and slowly if it exceeds {@value #SLOW_BURN} within both the
+ * last 6 hours and the last 30 minutes. The long window keeps short spikes
+ * from raising an alert, the short one ends it soon after the problem is
+ * gone. Every change of the alert of a route is logged (WARNING, INFO once
+ * recovered) and emitted as JMX notification.
+ * </p>
+ * <p>
+ * The request thread merely increments two counters of its route. A
+ * daemon thread takes a snapshot of those counters every
+ * {@code -Ddt.restlet.slo.tickSeconds} seconds (default 10) into a ring
+ * covering the longest window and evaluates the burn rates from the
+ * differences between snapshots. Before a route has been tracked for as
+ * long as a window, that window covers the time since tracking started.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class SloTracker extends NotificationBroadcasterSupport
+		implements SloTrackerMXBean {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(SloTracker.class.getName());
+
+	static final String NOTIFICATION_FAST_BURN = Management.DOMAIN + ".slo.fastBurn";
+	static final String NOTIFICATION_SLOW_BURN = Management.DOMAIN + ".slo.slowBurn";
+	static final String NOTIFICATION_RECOVERED = Management.DOMAIN + ".slo.recovered";
+
+	static final double FAST_BURN = 14.4d;
+	static final double SLOW_BURN = 6d;
+
+	private static final long SHORT_FAST_SECONDS = TimeUnit.MINUTES.toSeconds(5L);
+	private static final long LONG_FAST_SECONDS = TimeUnit.HOURS.toSeconds(1L);
+	private static final long SHORT_SLOW_SECONDS = TimeUnit.MINUTES.toSeconds(30L);
+	private static final long LONG_SLOW_SECONDS = TimeUnit.HOURS.toSeconds(6L);
+
+	static final String NONE = "none";
+	static final String SLOW = "slow";
+	static final String FAST = "fast";
+
+	private static final Comparator<RouteSloStats> BY_BURN_RATE =
+			new Comparator<RouteSloStats>() {
+		@Override
+		public int compare(RouteSloStats o1, RouteSloStats o2) {
+			return Double.compare(o2.getBurnRate1h(), o1.getBurnRate1h());
+		}
+	};
+
+	public static final SloTracker INSTANCE = new SloTracker(
+		Math.max(1, Math.min(60, Integer.getInteger("dt.restlet.slo.tickSeconds", 10)))
+	);
+
+	static {
+		Management.register("SloTracker", INSTANCE);
+		INSTANCE.start();
+	}
+
+	/**
+	 * The requests of a single route with an objective
+	 */
+	private static final class RouteSlo {
+
+		final String route;
+		final StripedCounter total = new StripedCounter();
+		final StripedCounter bad = new StripedCounter();
+
+		/**
+		 * Snapshots of the counters, only accessed by the tick thread
+		 */
+		final long[] totals;
+		final long[] bads;
+		long ticks = 0L;
+		String alert = NONE;
+
+		volatile RouteSloStats stats = null;
+
+		RouteSlo(String route, int snapshots) {
+			this.route = route;
+			this.totals = new long[snapshots];
+			this.bads = new long[snapshots];
+		}
+
+		void snapshot() {
+			int i = (int) (ticks % totals.length);
+			totals[i] = total.sum();
+			bads[i] = bad.sum();
+			ticks++;
+		}
+
+		/**
+		 * @param window the number of ticks to look back
+		 * @return the burn rate within the given window
+		 */
+		double burnRate(int window, SloObjective objective) {
+			long last = ticks - 1L;
+			long first = last - window;
+			int i = (int) (last % totals.length);
+			long requests = totals[i];
+			long failed = bads[i];
+			if (first >= 0L) {
+				int j = (int) (first % totals.length);
+				requests -= totals[j];
+				failed -= bads[j];
+			}
+			if (requests <= 0L) {
+				return 0d;
+			}
+			return ((double) failed / requests) / objective.getBudget();
+		}
+
+	}
+
+	private final int tickSeconds;
+	private final int snapshots;
+	private final ConcurrentMap<String, RouteSlo> routes =
+			new ConcurrentHashMap<String, RouteSlo>();
+	private final AtomicLong sequence = new AtomicLong();
+	private volatile int burning = 0;
+
+	/**
+	 * c'tor is package-private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 *
+	 * @param tickSeconds the seconds between two snapshots
+	 */
+	SloTracker(int tickSeconds) {
+		this.tickSeconds = tickSeconds;
+		this.snapshots = ticks(LONG_SLOW_SECONDS) + 1;
+	}
+
+	private void start() {
+		Thread ticker = new Thread("dt-restlet-slo") {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						TimeUnit.SECONDS.sleep(tickSeconds);
+						tick(Configuration.INSTANCE.current());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		ticker.setDaemon(true);
+		ticker.start();
+	}
+
+	/**
+	 * Counts a finished request against the objective of its route, if
+	 * any. Needs to be invoked before the request is marked as finished.
+	 *
+	 * @param config the settings in effect for the request
+	 * @param request the request about to finish
+	 * @param duration the duration of the request in nanoseconds
+	 */
+	void record(InstrumentationConfig config, ActiveRequest request, long duration) {
+		String route = request.getRoute();
+		SloObjective objective = config.getSlo(route);
+		if (objective == null) {
+			return;
+		}
+		RouteSlo slo = route(route);
+		slo.total.increment();
+		if ((duration > objective.getThresholdNanos())
+				|| RouteTimeSeries.isError(request)) {
+			slo.bad.increment();
+		}
+	}
+
+	/**
+	 * Routes only get tracked if they have an objective configured, which
+	 * is why their number is bounded by the configuration
+	 */
+	private RouteSlo route(String route) {
+		RouteSlo slo = routes.get(route);
+		if (slo != null) {
+			return slo;
+		}
+		RouteSlo created = new RouteSlo(route, snapshots);
+		slo = routes.putIfAbsent(route, created);
+		return (slo == null) ? created : slo;
+	}
+
+	/**
+	 * Takes a snapshot of every route and evaluates its burn rates.
+	 * Routes which no longer have an objective configured are dropped.
+	 */
+	void tick(InstrumentationConfig config) {
+		int count = 0;
+		Iterator<RouteSlo> it = routes.values().iterator();
+		while (it.hasNext()) {
+			RouteSlo slo = it.next();
+			SloObjective objective = config.getSlo(slo.route);
+			if (objective == null) {
+				it.remove();
+				continue;
+			}
+			slo.snapshot();
+			if (!NONE.equals(evaluate(slo, objective))) {
+				count++;
+			}
+		}
+		burning = count;
+	}
+
+	/**
+	 * @return the alert of the given route
+	 */
+	private String evaluate(RouteSlo slo, SloObjective objective) {
+		double shortFast = slo.burnRate(ticks(SHORT_FAST_SECONDS), objective);
+		double longFast = slo.burnRate(ticks(LONG_FAST_SECONDS), objective);
+		double shortSlow = slo.burnRate(ticks(SHORT_SLOW_SECONDS), objective);
+		double longSlow = slo.burnRate(ticks(LONG_SLOW_SECONDS), objective);
+		String alert;
+		if ((shortFast >= FAST_BURN) && (longFast >= FAST_BURN)) {
+			alert = FAST;
+		} else if ((shortSlow >= SLOW_BURN) && (longSlow >= SLOW_BURN)) {
+			alert = SLOW;
+		} else {
+			alert = NONE;
+		}
+		String previous = slo.alert;
+		slo.alert = alert;
+		slo.stats = new RouteSloStats(
+			slo.route,
+			objective.getPercent(),
+			TimeUnit.NANOSECONDS.toMillis(objective.getThresholdNanos()),
+			slo.totals[(int) ((slo.ticks - 1L) % snapshots)],
+			slo.bads[(int) ((slo.ticks - 1L) % snapshots)],
+			shortFast,
+			shortSlow,
+			longFast,
+			longSlow,
+			1d - longSlow,
+			alert
+		);
+		if (!alert.equals(previous)) {
+			notify(slo.route, objective, alert, shortFast, longFast, shortSlow, longSlow);
+		}
+		return alert;
+	}
+
+	private void notify(
+			String route,
+			SloObjective objective,
+			String alert,
+			double shortFast,
+			double longFast,
+			double shortSlow,
+			double longSlow
+	) {
+		String type;
+		Level level;
+		String message;
+		String slo = "SLO of route " + route + " (" + objective.getPercent()
+				+ "% within " + TimeUnit.NANOSECONDS.toMillis(objective.getThresholdNanos())
+				+ " ms)";
+		if (FAST.equals(alert)) {
+			type = NOTIFICATION_FAST_BURN;
+			level = Level.WARNING;
+			message = String.format(Locale.ROOT,
+				"%s burning fast: burn rate %.1f within 1 h and %.1f within 5 min",
+				slo, longFast, shortFast);
+		} else if (SLOW.equals(alert)) {
+			type = NOTIFICATION_SLOW_BURN;
+			level = Level.WARNING;
+			message = String.format(Locale.ROOT,
+				"%s burning slowly: burn rate %.1f within 6 h and %.1f within 30 min",
+				slo, longSlow, shortSlow);
+		} else {
+			type = NOTIFICATION_RECOVERED;
+			level = Level.INFO;
+			message = slo + " recovered";
+		}
+		LOGGER.log(level, message);
+		Notification notification = new Notification(
+			type, this, sequence.incrementAndGet(), System.currentTimeMillis(), message
+		);
+		notification.setUserData(route);
+		sendNotification(notification);
+	}
+
+	private int ticks(long seconds) {
+		return (int) Math.max(1L, seconds / tickSeconds);
+	}
+
+	@Override
+	public MBeanNotificationInfo[] getNotificationInfo() {
+		return new MBeanNotificationInfo[] {
+			new MBeanNotificationInfo(
+				new String[] {
+					NOTIFICATION_FAST_BURN,
+					NOTIFICATION_SLOW_BURN,
+					NOTIFICATION_RECOVERED
+				},
+				Notification.class.getName(),
+				"The alert of the latency objective of a route changed,"
+						+ " the user data carries the route"
+			)
+		};
+	}
+
+	@Override
+	public List<RouteSloStats> getRoutes() {
+		List<RouteSloStats> result = new ArrayList<RouteSloStats>();
+		for (RouteSlo slo : routes.values()) {
+			RouteSloStats stats = slo.stats;
+			if (stats != null) {
+				result.add(stats);
+			}
+		}
+		Collections.sort(result, BY_BURN_RATE);
+		return result;
+	}
+
+	@Override
+	public int getBurning() {
+		return burning;
+	}
+
+	@Override
+	public int getTickSeconds() {
+		return tickSeconds;
+	}
+
+}
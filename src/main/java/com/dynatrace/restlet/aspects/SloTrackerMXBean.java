@@ -0,0 +1,31 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link SloTracker}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface SloTrackerMXBean {
+
+	/**
+	 * @return the burn rates per route with a latency objective as of the
+	 * 		last evaluation, the route burning fastest within the last hour
+	 * 		first
+	 */
+	List<RouteSloStats> getRoutes();
+
+	/**
+	 * @return the number of routes currently burning their error budget
+	 * 		too fast
+	 */
+	int getBurning();
+
+	/**
+	 * @return every how many seconds the burn rates get evaluated
+	 */
+	int getTickSeconds();
+
+}
@@ -0,0 +1,56 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Request;
+import org.restlet.Response;
+
+/**
+ * Logs requests which took longer than the threshold configured for their
+ * route, see {@code slow.thresholdMillis} of the {@link Configuration}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class SlowRequests {
+
+	private static final Logger LOGGER =
+			Logger.getLogger(SlowRequests.class.getName());
+
+	private SlowRequests() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Logs the given request if it has been slow. Needs to be invoked
+	 * before the request is marked as finished.
+	 *
+	 * @param config the settings in effect for the request
+	 * @param request the request about to finish
+	 * @param duration the duration of the request in nanoseconds
+	 */
+	static void check(
+			InstrumentationConfig config,
+			ActiveRequest request,
+			long duration
+	) {
+		String route = request.getRoute();
+		long threshold = config.getSlowThresholdNanos(route);
+		if (threshold == 0L) {
+			return;
+		}
+		if ((duration <= threshold) || !LOGGER.isLoggable(Level.WARNING)) {
+			return;
+		}
+		Request req = request.getRequest();
+		Response resp = request.getResponse();
+		LOGGER.log(Level.WARNING, "Slow request "
+			+ ((req == null) ? null : req.getMethod()) + " " + route
+			+ " took " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms"
+			+ " (threshold " + TimeUnit.NANOSECONDS.toMillis(threshold) + " ms)"
+			+ ", status " + ((resp == null) ? null : resp.getStatus()));
+	}
+
+}
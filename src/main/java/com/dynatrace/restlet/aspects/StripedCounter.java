@@ -0,0 +1,76 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A counter which spreads updates over several cells, chosen by the id of
+ * the updating thread, in order to avoid that all cores contend on the
+ * same cache line. Reading sums up all cells and is therefore more
+ * expensive than updating, which suits counters that are updated per
+ * request but only read for reporting.
+ * </p>
+ * <p>
+ * {@code LongAdder} would do the same, but is not available on Java 1.7.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class StripedCounter {
+
+	/**
+	 * The number of longs per cell, padding every cell to a full cache line
+	 */
+	private static final int PADDING = 8;
+
+	private static final int STRIPES;
+
+	static {
+		int size = 1;
+		int wanted = Runtime.getRuntime().availableProcessors();
+		while (size < wanted) {
+			size <<= 1;
+		}
+		STRIPES = size;
+	}
+
+	private final AtomicLongArray cells =
+			new AtomicLongArray(STRIPES * PADDING);
+
+	/**
+	 * @return the index of the stripe the calling thread updates
+	 */
+	static int stripe() {
+		long id = Thread.currentThread().getId();
+		return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (STRIPES - 1);
+	}
+
+	/**
+	 * @param delta the value to add, may be negative
+	 */
+	void add(long delta) {
+		cells.getAndAdd(stripe() * PADDING, delta);
+	}
+
+	void increment() {
+		add(1L);
+	}
+
+	void decrement() {
+		add(-1L);
+	}
+
+	/**
+	 * @return the sum of all cells. Not an atomic snapshot in case of
+	 * 		concurrent updates.
+	 */
+	long sum() {
+		long sum = 0L;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+}
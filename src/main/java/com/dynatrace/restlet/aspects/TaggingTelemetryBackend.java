@@ -0,0 +1,88 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.dynatrace.adk.DynaTraceADKFactory;
+import com.dynatrace.adk.Tagging;
+
+/**
+ * <p>
+ * The {@link TelemetryBackend} continuing the Pure Path of a request
+ * within the tasks it submits to the {@code TaskService}, the same way the
+ * {@code TaggedRunnable} of the Dynatrace ADK does: the tag is taken on the
+ * submitting thread and the task starts a server side Pure Path with that
+ * tag on the thread executing it.
+ * </p>
+ * <p>
+ * Whether this backend is active can be controlled via the system property
+ * {@code dt.restlet.backend.tagging}, which accepts the same values as
+ * {@code dt.restlet.backend.servlet} of the {@link ServletTelemetryBackend},
+ * but defaults to {@code auto}.
+ * In any case the Dynatrace ADK needs to be available on the classpath.
+ * Otherwise this backend fails to load and is skipped.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class TaggingTelemetryBackend
+		implements TelemetryBackend.Propagating {
+
+	private static final String PROPERTY = "dt.restlet.backend.tagging";
+
+	private static final Logger LOGGER =
+			Logger.getLogger(TaggingTelemetryBackend.class.getName());
+
+	private final Tagging tagging;
+
+	/**
+	 * c'tor
+	 *
+	 * @throws IllegalStateException if tagging has been disabled or no
+	 * 		Dynatrace Agent has been detected, which causes the
+	 * 		{@link java.util.ServiceLoader} to skip this backend
+	 */
+	public TaggingTelemetryBackend() {
+		String mode = System.getProperty(PROPERTY, ServletTelemetryBackend.MODE_AUTO);
+		if (ServletTelemetryBackend.isOff(mode)) {
+			throw new IllegalStateException("Tagging disabled");
+		}
+		if (!ServletTelemetryBackend.isOn(mode)
+				&& !ServletTelemetryBackend.isAgentPresent()) {
+			LOGGER.log(Level.FINE,
+				"No Dynatrace Agent detected, tagging of tasks disabled");
+			throw new IllegalStateException("No Dynatrace Agent detected");
+		}
+		DynaTraceADKFactory.initialize();
+		this.tagging = DynaTraceADKFactory.createTagging();
+	}
+
+	@Override
+	public void onRequestStart(RequestDescriptor request) {
+		// nothing to do, tasks get tagged in capture
+	}
+
+	@Override
+	public void onRequestEnd(RequestDescriptor request) {
+		// nothing to do
+	}
+
+	@Override
+	public Object capture(RequestDescriptor request) {
+		// null unless a Pure Path is active on the submitting thread
+		return tagging.getTag();
+	}
+
+	@Override
+	public void execute(Object context, Runnable task) {
+		tagging.setTag((byte[]) context);
+		tagging.startServerPurePath();
+		try {
+			task.run();
+		} finally {
+			tagging.endServerPurePath();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.dynatrace.restlet.aspects;
+
+/**
+ * <p>
+ * A service provider which gets notified about requests handled by
+ * {@code Server.handle}. Implementations are discovered via
+ * {@link java.util.ServiceLoader} by listing them within
+ * {@code META-INF/services/com.dynatrace.restlet.aspects.TelemetryBackend}
+ * and need to offer a public no-argument constructor.
+ * </p>
+ * <p>
+ * Callbacks are invoked on the thread handling the request and must
+ * neither block nor throw. The {@link RequestDescriptor} passed is reused
+ * and must not be retained after a callback returns.
+ * </p>
+ * 
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface TelemetryBackend {
+
+	/**
+	 * Invoked before the request is passed on to the Restlet chain
+	 * 
+	 * @param request describes the request about to be handled
+	 */
+	void onRequestStart(RequestDescriptor request);
+
+	/**
+	 * Invoked after the request has been handled, regardless of whether
+	 * it has been handled successfully or not
+	 * 
+	 * @param request describes the request which has been handled
+	 */
+	void onRequestEnd(RequestDescriptor request);
+
+	/**
+	 * A {@link TelemetryBackend} which needs the handling of the request
+	 * to happen within its own call stack, e.g. because a sensor picks up
+	 * the request at a method the backend invokes.
+	 */
+	interface Enclosing extends TelemetryBackend {
+
+		/**
+		 * Executes the given invocation within the call stack required by
+		 * this backend. Implementations are expected to run the invocation
+		 * exactly once. In case they fail to do so it gets executed
+		 * afterwards anyways.
+		 * 
+		 * @param request describes the request about to be handled
+		 * @param invocation invokes the original Restlet chain
+		 */
+		void execute(RequestDescriptor request, Runnable invocation);
+
+	}
+
+	/**
+	 * A {@link TelemetryBackend} which continues the trace of a request
+	 * within tasks the request hands over to the {@code TaskService}, e.g.
+	 * by tagging them like the {@code TaggedRunnable} of the Dynatrace ADK.
+	 */
+	interface Propagating extends TelemetryBackend {
+
+		/**
+		 * Invoked on the thread handling the request while it submits a
+		 * task. Must be cheap, as it is invoked for every task submitted.
+		 * 
+		 * @param request describes the request submitting the task
+		 * @return the context to continue the trace with or {@code null}
+		 * 		if there is nothing to continue
+		 */
+		Object capture(RequestDescriptor request);
+
+		/**
+		 * Executes the given task within the context captured before on
+		 * the thread the task has been handed over to. Implementations are
+		 * expected to run the task exactly once. In case they fail to do
+		 * so it gets executed afterwards anyways.
+		 * 
+		 * @param context the context returned by {@link #capture}
+		 * @param task invokes the original task
+		 */
+		void execute(Object context, Runnable task);
+
+	}
+
+}
@@ -0,0 +1,265 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the {@link TelemetryBackend}s discovered via {@link ServiceLoader}.
+ * Discovery happens exactly once when this class gets initialized. The
+ * resulting arrays are never modified afterwards, which allows the aspect
+ * to skip any work for backends if none have been registered.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class TelemetryBackends {
+
+	private static final String ERRMSG_LOAD =
+			"Unable to load Telemetry Backend";
+
+	private static final String ERRMSG_CALLBACK =
+			"Telemetry Backend failed";
+
+	private static final Logger LOGGER =
+			Logger.getLogger(TelemetryBackends.class.getName());
+
+	/**
+	 * All backends which are only interested in start and end of requests
+	 */
+	private static final TelemetryBackend[] BACKENDS;
+
+	/**
+	 * All backends requiring the request to be executed within their
+	 * call stack
+	 */
+	private static final TelemetryBackend.Enclosing[] ENCLOSING;
+
+	/**
+	 * All backends continuing the trace of a request within the tasks it
+	 * submits, regardless of whether they are contained within one of the
+	 * arrays above as well
+	 */
+	private static final TelemetryBackend.Propagating[] PROPAGATING;
+
+	static {
+		List<TelemetryBackend> backends = new ArrayList<TelemetryBackend>();
+		List<TelemetryBackend.Enclosing> enclosing =
+				new ArrayList<TelemetryBackend.Enclosing>();
+		List<TelemetryBackend.Propagating> propagating =
+				new ArrayList<TelemetryBackend.Propagating>();
+		for (TelemetryBackend backend : load()) {
+			if (backend instanceof TelemetryBackend.Enclosing) {
+				enclosing.add((TelemetryBackend.Enclosing) backend);
+			} else {
+				backends.add(backend);
+			}
+			if (backend instanceof TelemetryBackend.Propagating) {
+				propagating.add((TelemetryBackend.Propagating) backend);
+			}
+			LOGGER.log(Level.INFO, "Telemetry Backend "
+					+ backend.getClass().getName() + " registered");
+		}
+		BACKENDS = backends.toArray(new TelemetryBackend[backends.size()]);
+		ENCLOSING = enclosing.toArray(
+			new TelemetryBackend.Enclosing[enclosing.size()]
+		);
+		PROPAGATING = propagating.toArray(
+			new TelemetryBackend.Propagating[propagating.size()]
+		);
+	}
+
+	private TelemetryBackends() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Loads all available backends. Backends which cannot be instantiated,
+	 * e.g. because classes they depend on are not available, are skipped.
+	 *
+	 * @return the backends which could be instantiated
+	 */
+	private static List<TelemetryBackend> load() {
+		List<TelemetryBackend> result = new ArrayList<TelemetryBackend>();
+		try {
+			Iterator<TelemetryBackend> it = ServiceLoader.load(
+				TelemetryBackend.class,
+				TelemetryBackend.class.getClassLoader()
+			).iterator();
+			while (it.hasNext()) {
+				try {
+					result.add(it.next());
+				} catch (ServiceConfigurationError e) {
+					LOGGER.log(Level.FINE, ERRMSG_LOAD, e);
+				} catch (LinkageError e) {
+					LOGGER.log(Level.FINE, ERRMSG_LOAD, e);
+				}
+			}
+		} catch (Throwable t) {
+			LOGGER.log(Level.WARNING, ERRMSG_LOAD, t);
+		}
+		return result;
+	}
+
+	/**
+	 * @return {@code true} if at least one backend has been registered
+	 */
+	static boolean isActive() {
+		return (BACKENDS.length > 0) || (ENCLOSING.length > 0);
+	}
+
+	/**
+	 * @return {@code true} if at least one backend requires the request to
+	 * 		be executed within its call stack
+	 */
+	static boolean hasEnclosing() {
+		return ENCLOSING.length > 0;
+	}
+
+	/**
+	 * @return {@code true} if at least one backend continues the trace of
+	 * 		a request within the tasks it submits
+	 */
+	static boolean isPropagating() {
+		return PROPAGATING.length > 0;
+	}
+
+	/**
+	 * Notifies all backends about the start of a request
+	 *
+	 * @param request describes the request about to be handled
+	 */
+	static void start(RequestDescriptor request) {
+		for (TelemetryBackend backend : BACKENDS) {
+			try {
+				backend.onRequestStart(request);
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, ERRMSG_CALLBACK, t);
+			}
+		}
+		for (TelemetryBackend backend : ENCLOSING) {
+			try {
+				backend.onRequestStart(request);
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, ERRMSG_CALLBACK, t);
+			}
+		}
+	}
+
+	/**
+	 * Notifies all backends about the end of a request, in reverse order
+	 *
+	 * @param request describes the request which has been handled
+	 */
+	static void end(RequestDescriptor request) {
+		for (int i = ENCLOSING.length - 1; i >= 0; i--) {
+			try {
+				ENCLOSING[i].onRequestEnd(request);
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, ERRMSG_CALLBACK, t);
+			}
+		}
+		for (int i = BACKENDS.length - 1; i >= 0; i--) {
+			try {
+				BACKENDS[i].onRequestEnd(request);
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, ERRMSG_CALLBACK, t);
+			}
+		}
+	}
+
+	/**
+	 * Executes the given invocation within the call stacks of all
+	 * enclosing backends, the first registered one being the outermost.
+	 *
+	 * @param request describes the request about to be handled
+	 * @param invocation invokes the original Restlet chain
+	 */
+	static void execute(RequestDescriptor request, Runnable invocation) {
+		execute(0, request, invocation);
+	}
+
+	private static void execute(
+			final int index,
+			final RequestDescriptor request,
+			final Runnable invocation
+	) {
+		if (index == ENCLOSING.length - 1) {
+			ENCLOSING[index].execute(request, invocation);
+			return;
+		}
+		ENCLOSING[index].execute(request, new Runnable() {
+			@Override
+			public void run() {
+				execute(index + 1, request, invocation);
+			}
+		});
+	}
+
+	/**
+	 * Captures the contexts of all propagating backends on the thread
+	 * submitting a task
+	 *
+	 * @param request describes the request submitting the task
+	 * @return the contexts in the order of the propagating backends or
+	 * 		{@code null} if none of them has anything to continue
+	 */
+	static Object[] capture(RequestDescriptor request) {
+		Object[] contexts = null;
+		for (int i = 0; i < PROPAGATING.length; i++) {
+			Object context = null;
+			try {
+				context = PROPAGATING[i].capture(request);
+			} catch (Throwable t) {
+				LOGGER.log(Level.WARNING, ERRMSG_CALLBACK, t);
+			}
+			if (context == null) {
+				continue;
+			}
+			if (contexts == null) {
+				contexts = new Object[PROPAGATING.length];
+			}
+			contexts[i] = context;
+		}
+		return contexts;
+	}
+
+	/**
+	 * Executes the given task within the contexts captured before, the
+	 * first propagating backend being the outermost. Backends which did
+	 * not capture a context are skipped.
+	 *
+	 * @param contexts the contexts returned by {@link #capture}
+	 * @param task invokes the original task
+	 */
+	static void propagate(Object[] contexts, Runnable task) {
+		propagate(0, contexts, task);
+	}
+
+	private static void propagate(
+			final int index,
+			final Object[] contexts,
+			final Runnable task
+	) {
+		int i = index;
+		while ((i < contexts.length) && (contexts[i] == null)) {
+			i++;
+		}
+		if (i == contexts.length) {
+			task.run();
+			return;
+		}
+		final int next = i + 1;
+		PROPAGATING[i].execute(contexts[i], new Runnable() {
+			@Override
+			public void run() {
+				propagate(next, contexts, task);
+			}
+		});
+	}
+
+}
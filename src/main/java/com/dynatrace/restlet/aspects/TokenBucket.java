@@ -0,0 +1,79 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The state of a token bucket for a single key, i.e. a route or a client
+ * address. The limit itself is passed on every invocation, so buckets
+ * survive changes of the {@link Configuration}.
+ * </p>
+ * <p>
+ * Instead of a number of tokens and the time of the last refill, which
+ * would require updating two values at once, the bucket keeps the time at
+ * which it will be full again. Taking a permit advances that time by the
+ * refill interval of a single permit, refilling happens implicitly as time
+ * passes. A single compare-and-set therefore takes a permit and accounts
+ * for all refills since the last one.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+final class TokenBucket {
+
+	private final String key;
+
+	/**
+	 * The {@link System#nanoTime()} at which the bucket will be full again.
+	 * Any value in the past means full.
+	 */
+	private final AtomicLong fullAtNanos;
+
+	/**
+	 * c'tor
+	 *
+	 * @param key the route or client address this bucket belongs to
+	 * @param now the current {@link System#nanoTime()}
+	 */
+	TokenBucket(String key, long now) {
+		this.key = key;
+		this.fullAtNanos = new AtomicLong(now);
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	/**
+	 * Takes a permit if one is available
+	 *
+	 * @param limit the limit in effect
+	 * @param now the current {@link System#nanoTime()}
+	 * @return {@code 0} if a permit has been taken, otherwise the
+	 * 		nanoseconds until the next permit will become available
+	 */
+	long tryAcquire(RateLimit limit, long now) {
+		while (true) {
+			long fullAt = fullAtNanos.get();
+			long base = (fullAt - now < 0L) ? now : fullAt;
+			long wait = base - limit.getToleranceNanos() - now;
+			if (wait > 0L) {
+				return wait;
+			}
+			if (fullAtNanos.compareAndSet(fullAt, base + limit.getIntervalNanos())) {
+				return 0L;
+			}
+		}
+	}
+
+	/**
+	 * @param now the current {@link System#nanoTime()}
+	 * @return how long this bucket has been full, {@code 0} if it is not
+	 * 		full
+	 */
+	long idleNanos(long now) {
+		return Math.max(0L, now - fullAtNanos.get());
+	}
+
+}
@@ -0,0 +1,248 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.engine.io.SelectionChannel;
+import org.restlet.representation.Representation;
+
+/**
+ * <p>
+ * Measures how long requests are blocked reading their bodies, which
+ * otherwise disappears within the time of the resource handling them. Slow
+ * clients uploading a body show up as read wait, slow code does not.
+ * </p>
+ * <p>
+ * With {@code upload.enabled} of the {@link Configuration} the stream and
+ * the channel of the request entity get wrapped into thin pass-through
+ * wrappers, which count the bytes and sum up the time spent within reads
+ * without buffering anything. Per route the bytes read, the read wait per
+ * request, the throughput while reading and the share of the request time
+ * spent waiting for the body are offered.
+ * </p>
+ * <p>
+ * The number of routes tracked individually is bounded by
+ * {@code -Ddt.restlet.upload.maxRoutes} (default 256). Uploads of any
+ * further route are accounted to a single overflow route.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class Uploads implements UploadsMXBean {
+
+	public static final Uploads INSTANCE = new Uploads(
+		Integer.getInteger("dt.restlet.upload.maxRoutes", 256)
+	);
+
+	static {
+		Management.register("Uploads", INSTANCE);
+	}
+
+	private static final Comparator<RouteUploadStats> BY_READ_WAIT =
+			new Comparator<RouteUploadStats>() {
+		@Override
+		public int compare(RouteUploadStats o1, RouteUploadStats o2) {
+			return Double.compare(o2.getReadWaitTotalMillis(), o1.getReadWaitTotalMillis());
+		}
+	};
+
+	/**
+	 * The body of a single request, shared by all wrappers handed out for
+	 * it. Only updated by the thread reading the body.
+	 */
+	static final class Body {
+
+		private volatile long bytes = 0L;
+		private volatile long waitNanos = 0L;
+
+		void read(long n, long nanos) {
+			if (n > 0L) {
+				bytes = bytes + n;
+			}
+			waitNanos = waitNanos + nanos;
+		}
+
+	}
+
+	private final MetricKeyTable<RouteUploads> routes;
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private Uploads(int maxRoutes) {
+		this.routes = new MetricKeyTable<RouteUploads>(maxRoutes) {
+			@Override
+			protected RouteUploads create(String key) {
+				return new RouteUploads(key);
+			}
+		};
+	}
+
+	/**
+	 * @param entity the representation the stream has been obtained from
+	 * @param stream the stream of the representation
+	 * @return a stream timing the reads if the representation is the
+	 * 		entity of the request executed by the calling thread, otherwise
+	 * 		the given stream
+	 */
+	InputStream time(Representation entity, InputStream stream) {
+		Body body = body(entity);
+		if ((body == null) || (stream == null)) {
+			return stream;
+		}
+		return new TimedInputStream(stream, body);
+	}
+
+	/**
+	 * @param entity the representation the channel has been obtained from
+	 * @param channel the channel of the representation
+	 * @return a channel timing the reads if the representation is the
+	 * 		entity of the request executed by the calling thread, otherwise
+	 * 		the given channel. Selectable channels are never wrapped, they
+	 * 		do not block and Restlet checks their type.
+	 */
+	ReadableByteChannel time(Representation entity, ReadableByteChannel channel) {
+		if ((channel == null) || (channel instanceof SelectionChannel)) {
+			return channel;
+		}
+		Body body = body(entity);
+		if (body == null) {
+			return channel;
+		}
+		return new TimedChannel(channel, body);
+	}
+
+	private static Body body(Representation entity) {
+		ActiveRequest active = InFlightRegistry.INSTANCE.current();
+		if (!active.isActive()) {
+			return null;
+		}
+		Request request = active.getRequest();
+		if ((request == null) || (request.getEntity() != entity)) {
+			return null;
+		}
+		Body body = active.upload;
+		if (body == null) {
+			body = new Body();
+			active.upload = body;
+		}
+		return body;
+	}
+
+	/**
+	 * Records the body read by the given request, if any. Needs to be
+	 * invoked before the request is marked as finished.
+	 *
+	 * @param active the request about to finish
+	 * @param duration the duration of the request in nanoseconds
+	 */
+	void record(ActiveRequest active, long duration) {
+		Body body = active.upload;
+		if (body == null) {
+			return;
+		}
+		routes.get(active.getRoute()).record(body.bytes, body.waitNanos, duration);
+	}
+
+	@Override
+	public List<RouteUploadStats> getRouteUploads() {
+		List<RouteUploadStats> result = new ArrayList<RouteUploadStats>();
+		for (RouteUploads uploads : routes.values()) {
+			result.add(uploads.snapshot());
+		}
+		Collections.sort(result, BY_READ_WAIT);
+		return result;
+	}
+
+	@Override
+	public int getMaxRoutes() {
+		return routes.getMaxKeys();
+	}
+
+	@Override
+	public long getOverflowUploads() {
+		return routes.getDropped();
+	}
+
+	/**
+	 * Times the reads from the stream of a request entity
+	 */
+	private static final class TimedInputStream extends FilterInputStream {
+
+		private final Body body;
+
+		TimedInputStream(InputStream in, Body body) {
+			super(in);
+			this.body = body;
+		}
+
+		@Override
+		public int read() throws IOException {
+			long start = System.nanoTime();
+			int b = in.read();
+			body.read((b < 0) ? 0L : 1L, System.nanoTime() - start);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			int n = in.read(b, off, len);
+			body.read(n, System.nanoTime() - start);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long start = System.nanoTime();
+			long skipped = in.skip(n);
+			body.read(skipped, System.nanoTime() - start);
+			return skipped;
+		}
+
+	}
+
+	/**
+	 * Times the reads from the channel of a request entity
+	 */
+	private static final class TimedChannel implements ReadableByteChannel {
+
+		private final ReadableByteChannel channel;
+		private final Body body;
+
+		TimedChannel(ReadableByteChannel channel, Body body) {
+			this.channel = channel;
+			this.body = body;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			long start = System.nanoTime();
+			int n = channel.read(dst);
+			body.read(n, System.nanoTime() - start);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
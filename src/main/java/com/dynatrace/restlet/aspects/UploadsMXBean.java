@@ -0,0 +1,31 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link Uploads}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface UploadsMXBean {
+
+	/**
+	 * @return the request bodies read per route, the route which spent the
+	 * 		most time reading first
+	 */
+	List<RouteUploadStats> getRouteUploads();
+
+	/**
+	 * @return the maximum number of routes tracked individually
+	 */
+	int getMaxRoutes();
+
+	/**
+	 * @return the number of uploads which have been accounted to the
+	 * 		overflow route because the maximum number of routes had already
+	 * 		been reached
+	 */
+	long getOverflowUploads();
+
+}
@@ -0,0 +1,87 @@
+package com.dynatrace.restlet.aspects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable snapshot of the requests of a single route which completed
+ * within the last couple of seconds, see {@link RouteTimeSeries}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class WindowStats {
+
+	private final String route;
+	private final int seconds;
+	private final long requests;
+	private final long errors;
+	private final double requestsPerSecond;
+	private final double meanMillis;
+	private final double maxMillis;
+
+	/**
+	 * c'tor
+	 *
+	 * @param route the route template or path
+	 * @param seconds the length of the window
+	 * @param requests the number of requests completed within the window
+	 * @param errors the number of requests which failed
+	 * @param requestsPerSecond the mean throughput
+	 * @param meanMillis the mean latency
+	 * @param maxMillis the maximum latency
+	 */
+	@ConstructorProperties({
+		"route", "seconds", "requests", "errors", "requestsPerSecond",
+		"meanMillis", "maxMillis"
+	})
+	public WindowStats(
+			String route,
+			int seconds,
+			long requests,
+			long errors,
+			double requestsPerSecond,
+			double meanMillis,
+			double maxMillis
+	) {
+		this.route = route;
+		this.seconds = seconds;
+		this.requests = requests;
+		this.errors = errors;
+		this.requestsPerSecond = requestsPerSecond;
+		this.meanMillis = meanMillis;
+		this.maxMillis = maxMillis;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public int getSeconds() {
+		return seconds;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of requests which failed with an exception or a
+	 * 		5xx status
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+}
@@ -0,0 +1,434 @@
+package com.dynatrace.restlet.aspects;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * <p>
+ * Counts the bytes the internal HTTP connector of Restlet receives and
+ * sends per server and per keep-alive connection (see
+ * {@link Connections}), including request and status lines, headers and
+ * the framing of chunked responses.
+ * </p>
+ * <p>
+ * The sockets are owned by {@code com.sun.net.httpserver} within the JDK,
+ * which cannot be woven. The bodies are therefore counted by thin wrappers
+ * around the request and response streams the connector hands over to
+ * Restlet, which pass arrays through without copying and do not allocate
+ * per read or write. Request and status lines and headers are derived
+ * from the exchange once it is done, as the JDK writes them. Fixed length
+ * request bodies count with their full {@code Content-Length}, as the JDK
+ * drains whatever the application did not read. Only the chunk framing of
+ * chunked requests, which the JDK strips before Restlet gets to see the
+ * body, is not accounted for.
+ * </p>
+ * <p>
+ * Next to the totals the bytes per second within the last
+ * {@value #RATE_SECONDS} seconds are offered per server.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class WireBytes implements WireBytesMXBean {
+
+	/**
+	 * The size of the chunks {@code com.sun.net.httpserver} writes
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * {@code "0\r\n\r\n"} terminating a chunked body
+	 */
+	private static final int LAST_CHUNK = 5;
+
+	/**
+	 * {@code "HTTP/1.1 "} starting the status line
+	 */
+	private static final int STATUS_LINE_PREFIX = 9;
+
+	private static final int CRLF = 2;
+
+	private static final String CHUNKED = "chunked";
+
+	static final int RATE_SECONDS = 10;
+
+	public static final WireBytes INSTANCE = new WireBytes();
+
+	static {
+		Management.register("WireBytes", INSTANCE);
+	}
+
+	/**
+	 * The bytes received and sent by a single {@link HttpServer}
+	 */
+	static final class Server {
+
+		private final String name;
+		private final StripedCounter in = new StripedCounter();
+		private final StripedCounter out = new StripedCounter();
+		private final ByteRate inRate = new ByteRate();
+		private final ByteRate outRate = new ByteRate();
+
+		Server(String name) {
+			this.name = name;
+		}
+
+		void add(long in, long out) {
+			this.in.add(in);
+			this.out.add(out);
+			this.inRate.add(in);
+			this.outRate.add(out);
+		}
+
+		ServerBytesStats snapshot() {
+			return new ServerBytesStats(
+				name,
+				in.sum(),
+				out.sum(),
+				inRate.perSecond(RATE_SECONDS),
+				outRate.perSecond(RATE_SECONDS)
+			);
+		}
+
+	}
+
+	private final ConcurrentMap<HttpServer, Server> servers =
+			new ConcurrentHashMap<HttpServer, Server>();
+
+	private final LatencyHistogram inPerConnection = new LatencyHistogram();
+	private final LatencyHistogram outPerConnection = new LatencyHistogram();
+
+	/**
+	 * c'tor is private to prevent instantiations from outside.
+	 * A single instance is offered publicly.
+	 */
+	private WireBytes() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Invoked once the internal connector starts handling an exchange on
+	 * the calling thread
+	 *
+	 * @param slot the slot of the calling thread
+	 * @param exchange the exchange about to be handled
+	 */
+	void begin(ActiveRequest slot, HttpExchange exchange) {
+		slot.wireBodyIn = 0L;
+		slot.wireBodyOut = 0L;
+		slot.wire = server(exchange);
+	}
+
+	/**
+	 * Invoked once the internal connector is done with an exchange on the
+	 * calling thread
+	 *
+	 * @param slot the slot of the calling thread
+	 * @param exchange the exchange which has been handled
+	 * @param connection the connection of the exchange or {@code null} if
+	 * 		it is not tracked
+	 */
+	void end(
+			ActiveRequest slot,
+			HttpExchange exchange,
+			Connections.Connection connection
+	) {
+		Server server = slot.wire;
+		slot.wire = null;
+		if (server == null) {
+			return;
+		}
+		long in = requestHead(exchange)
+				+ Math.max(slot.wireBodyIn, contentLength(exchange.getRequestHeaders()));
+		long out = responseHead(exchange) + slot.wireBodyOut
+				+ chunking(exchange.getResponseHeaders(), slot.wireBodyOut);
+		server.add(in, out);
+		if (connection != null) {
+			connection.transferred(in, out);
+		}
+	}
+
+	/**
+	 * Records the bytes transferred over a connection which got closed
+	 *
+	 * @param in the bytes received over the connection
+	 * @param out the bytes sent over the connection
+	 */
+	void closed(long in, long out) {
+		inPerConnection.record(in);
+		outPerConnection.record(out);
+	}
+
+	/**
+	 * @param stream the request body handed over to Restlet
+	 * @return a stream counting the bytes read if the calling thread is
+	 * 		handling an exchange, otherwise the given stream
+	 */
+	InputStream count(InputStream stream) {
+		ActiveRequest slot = InFlightRegistry.INSTANCE.current();
+		if ((stream == null) || (slot.wire == null)) {
+			return stream;
+		}
+		return new CountingInputStream(stream, slot);
+	}
+
+	/**
+	 * @param stream the response body handed over to Restlet
+	 * @return a stream counting the bytes written if the calling thread is
+	 * 		handling an exchange, otherwise the given stream
+	 */
+	OutputStream count(OutputStream stream) {
+		ActiveRequest slot = InFlightRegistry.INSTANCE.current();
+		if ((stream == null) || (slot.wire == null)) {
+			return stream;
+		}
+		return new CountingOutputStream(stream, slot);
+	}
+
+	private Server server(HttpExchange exchange) {
+		HttpServer key = exchange.getHttpContext().getServer();
+		Server server = servers.get(key);
+		if (server != null) {
+			return server;
+		}
+		// only ever as many as servers have been started
+		Server created = new Server(name(key));
+		server = servers.putIfAbsent(key, created);
+		return (server == null) ? created : server;
+	}
+
+	private static String name(HttpServer server) {
+		String scheme = (server instanceof HttpsServer) ? "https" : "http";
+		InetSocketAddress address = server.getAddress();
+		if (address == null) {
+			return scheme;
+		}
+		return scheme + "://" + address.getHostString() + ":" + address.getPort();
+	}
+
+	/**
+	 * @return the length of the request line and the request headers
+	 */
+	private static long requestHead(HttpExchange exchange) {
+		long length = exchange.getRequestMethod().length() + 1
+				+ exchange.getRequestURI().toString().length() + 1
+				+ exchange.getProtocol().length() + CRLF;
+		return length + headers(exchange.getRequestHeaders());
+	}
+
+	/**
+	 * @return the length of the status line and the response headers as
+	 * 		written by {@code com.sun.net.httpserver}
+	 */
+	private static long responseHead(HttpExchange exchange) {
+		int code = exchange.getResponseCode();
+		if (code < 0) {
+			// the response has not been sent
+			return 0L;
+		}
+		String reason = Status.valueOf(code).getReasonPhrase();
+		long length = STATUS_LINE_PREFIX + 3
+				+ ((reason == null) ? 0 : reason.length() + 1) + CRLF;
+		return length + headers(exchange.getResponseHeaders());
+	}
+
+	/**
+	 * @return the length of the given headers including the empty line
+	 * 		terminating them
+	 */
+	private static long headers(Headers headers) {
+		long length = CRLF;
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			int name = entry.getKey().length() + 2;
+			for (String value : entry.getValue()) {
+				length += name + ((value == null) ? 0 : value.length()) + CRLF;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @return the {@code Content-Length} of a message or {@code 0} if
+	 * 		absent or invalid
+	 */
+	private static long contentLength(Headers headers) {
+		String value = headers.getFirst(HeaderConstants.HEADER_CONTENT_LENGTH);
+		if (value == null) {
+			return 0L;
+		}
+		try {
+			return Math.max(0L, Long.parseLong(value.trim()));
+		} catch (NumberFormatException e) {
+			return 0L;
+		}
+	}
+
+	/**
+	 * @return the length of the chunk headers and trailers of a chunked
+	 * 		response body of the given size, assuming full chunks
+	 */
+	private static long chunking(Headers headers, long body) {
+		if (!CHUNKED.equalsIgnoreCase(
+				headers.getFirst(HeaderConstants.HEADER_TRANSFER_ENCODING))) {
+			return 0L;
+		}
+		long full = body / CHUNK_SIZE;
+		long rest = body % CHUNK_SIZE;
+		long length = full * (Integer.toHexString(CHUNK_SIZE).length() + 2 * CRLF);
+		if (rest > 0L) {
+			length += Long.toHexString(rest).length() + 2 * CRLF;
+		}
+		return length + LAST_CHUNK;
+	}
+
+	@Override
+	public List<ServerBytesStats> getServers() {
+		List<ServerBytesStats> result = new ArrayList<ServerBytesStats>();
+		for (Server server : servers.values()) {
+			result.add(server.snapshot());
+		}
+		return result;
+	}
+
+	@Override
+	public long getBytesIn() {
+		long sum = 0L;
+		for (Server server : servers.values()) {
+			sum += server.in.sum();
+		}
+		return sum;
+	}
+
+	@Override
+	public long getBytesOut() {
+		long sum = 0L;
+		for (Server server : servers.values()) {
+			sum += server.out.sum();
+		}
+		return sum;
+	}
+
+	@Override
+	public double getBytesInPerConnectionMean() {
+		return inPerConnection.getMean();
+	}
+
+	@Override
+	public long getBytesInPerConnectionP99() {
+		return inPerConnection.getPercentile(99d);
+	}
+
+	@Override
+	public long getBytesInPerConnectionMax() {
+		return inPerConnection.getMax();
+	}
+
+	@Override
+	public double getBytesOutPerConnectionMean() {
+		return outPerConnection.getMean();
+	}
+
+	@Override
+	public long getBytesOutPerConnectionP99() {
+		return outPerConnection.getPercentile(99d);
+	}
+
+	@Override
+	public long getBytesOutPerConnectionMax() {
+		return outPerConnection.getMax();
+	}
+
+	/**
+	 * Counts the bytes read into the slot of the thread handling the
+	 * exchange
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private final ActiveRequest slot;
+
+		CountingInputStream(InputStream in, ActiveRequest slot) {
+			super(in);
+			this.slot = slot;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b >= 0) {
+				slot.wireBodyIn++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				slot.wireBodyIn += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(n);
+			if (skipped > 0L) {
+				slot.wireBodyIn += skipped;
+			}
+			return skipped;
+		}
+
+	}
+
+	/**
+	 * Counts the bytes written into the slot of the thread handling the
+	 * exchange
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		private final ActiveRequest slot;
+
+		CountingOutputStream(OutputStream out, ActiveRequest slot) {
+			super(out);
+			this.slot = slot;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			slot.wireBodyOut++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			// passed on as a whole instead of byte by byte
+			out.write(b, off, len);
+			slot.wireBodyOut += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+	}
+
+}
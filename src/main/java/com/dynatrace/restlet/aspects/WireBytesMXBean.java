@@ -0,0 +1,46 @@
+package com.dynatrace.restlet.aspects;
+
+import java.util.List;
+
+/**
+ * Management interface of the {@link WireBytes}
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public interface WireBytesMXBean {
+
+	/**
+	 * @return the bytes received and sent per server
+	 */
+	List<ServerBytesStats> getServers();
+
+	/**
+	 * @return the bytes received by all servers so far
+	 */
+	long getBytesIn();
+
+	/**
+	 * @return the bytes sent by all servers so far
+	 */
+	long getBytesOut();
+
+	/**
+	 * @return the mean bytes received over a closed connection
+	 */
+	double getBytesInPerConnectionMean();
+
+	long getBytesInPerConnectionP99();
+
+	long getBytesInPerConnectionMax();
+
+	/**
+	 * @return the mean bytes sent over a closed connection
+	 */
+	double getBytesOutPerConnectionMean();
+
+	long getBytesOutPerConnectionP99();
+
+	long getBytesOutPerConnectionMax();
+
+}
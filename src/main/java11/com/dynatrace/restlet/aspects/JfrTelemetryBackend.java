@@ -0,0 +1,91 @@
+package com.dynatrace.restlet.aspects;
+
+import jdk.jfr.EventType;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.representation.Representation;
+
+/**
+ * <p>
+ * A {@link TelemetryBackend} emitting a {@link RestletRequestEvent} for
+ * every request handled while a Flight Recording with that event enabled
+ * is running.
+ * </p>
+ * <p>
+ * This class is part of the Java 11 layer of the multi-release jar. On
+ * older JVMs the {@link java.util.ServiceLoader} does not find it and the
+ * backend is skipped. While no recording is running both callbacks return
+ * after checking {@link EventType#isEnabled()}, without allocating.
+ * </p>
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public final class JfrTelemetryBackend implements TelemetryBackend {
+
+	private static final EventType TYPE =
+			EventType.getEventType(RestletRequestEvent.class);
+
+	private static final ThreadLocal<RestletRequestEvent> EVENTS =
+			new ThreadLocal<RestletRequestEvent>();
+
+	@Override
+	public void onRequestStart(RequestDescriptor request) {
+		if (!TYPE.isEnabled()) {
+			return;
+		}
+		RestletRequestEvent event = new RestletRequestEvent();
+		event.token = request.getStartNanos();
+		EVENTS.set(event);
+		event.begin();
+	}
+
+	@Override
+	public void onRequestEnd(RequestDescriptor request) {
+		if (!TYPE.isEnabled()) {
+			return;
+		}
+		RestletRequestEvent event = EVENTS.get();
+		if (event == null) {
+			return;
+		}
+		EVENTS.remove();
+		if (event.token != request.getStartNanos()) {
+			// begun for a request which ended while recording was disabled
+			return;
+		}
+		event.end();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		Request req = request.getRequest();
+		Response resp = request.getResponse();
+		if ((req != null) && (req.getMethod() != null)) {
+			event.method = req.getMethod().getName();
+		}
+		event.route = request.getRoute();
+		ServerIdentity server = request.getServer();
+		event.server = (server == null) ? null : server.toString();
+		event.connector = (server == null) ? null : server.getConnector();
+		event.requestSize = (req == null) ? -1L : size(req.getEntity());
+		if (resp != null) {
+			if (resp.getStatus() != null) {
+				event.status = resp.getStatus().getCode();
+			}
+			event.responseSize = size(resp.getEntity());
+		} else {
+			event.responseSize = -1L;
+		}
+		event.queueWait = request.getQueueWaitNanos();
+		event.commit();
+	}
+
+	private static long size(Representation entity) {
+		if (entity == null) {
+			return 0L;
+		}
+		return entity.getSize();
+	}
+
+}
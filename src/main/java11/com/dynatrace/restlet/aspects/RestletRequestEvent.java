@@ -0,0 +1,66 @@
+package com.dynatrace.restlet.aspects;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event covering a request handled by
+ * {@code Server.handle}. The duration of the event is the time spent
+ * within {@code Server.handle}.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+@Name("com.dynatrace.restlet.Request")
+@Label("Restlet Request")
+@Category({ "Restlet" })
+@Description("A request handled by a Restlet Server")
+@StackTrace(false)
+final class RestletRequestEvent extends Event {
+
+	@Label("Method")
+	String method;
+
+	@Label("Route")
+	@Description("The matched route template or the request path")
+	String route;
+
+	@Label("Server")
+	@Description("The scheme, host and port of the server which received the request")
+	String server;
+
+	@Label("Connector")
+	@Description("The connector implementing the server, e.g. internal or jetty")
+	String connector;
+
+	@Label("Status")
+	int status;
+
+	@Label("Request Size")
+	@Description("The size of the request entity or -1 if unknown")
+	@DataAmount
+	long requestSize;
+
+	@Label("Response Size")
+	@Description("The size of the response entity or -1 if unknown")
+	@DataAmount
+	long responseSize;
+
+	@Label("Queue Wait")
+	@Description("Time the request waited for a thread of the connector")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueWait;
+
+	/**
+	 * The start of the request this event has been begun for. Transient
+	 * and therefore not recorded.
+	 */
+	transient long token;
+
+}
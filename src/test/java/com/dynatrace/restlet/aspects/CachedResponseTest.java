@@ -0,0 +1,188 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+
+/**
+ * Behaviour of {@link CachedResponse#capture}: entities within the limit
+ * are buffered, larger ones are left intact without being buffered
+ * beyond the limit, whether their size is known up front or not.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class CachedResponseTest {
+
+	private static final long MAX_BYTES = 1024L;
+
+	@Test
+	public void capturesEntitiesOfKnownSize() throws IOException {
+		Response response = response(new StringRepresentation("hello", MediaType.TEXT_PLAIN));
+		CachedResponse cached = CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L);
+		assertNotNull(cached);
+		assertEquals("hello", response.getEntity().getText());
+		assertEquals("hello", cached.toRepresentation().getText());
+		assertEquals(MediaType.TEXT_PLAIN, cached.toRepresentation().getMediaType());
+	}
+
+	@Test
+	public void skipsEntitiesDeclaredTooLarge() throws IOException {
+		Representation entity = new StringRepresentation(text(2048), MediaType.TEXT_PLAIN);
+		Response response = response(entity);
+		assertNull(CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L));
+		assertSame(entity, response.getEntity());
+		assertTrue(entity.isAvailable());
+	}
+
+	@Test
+	public void capturesGeneratedEntitiesOfUnknownSize() throws IOException {
+		Response response = response(new Generated(512));
+		CachedResponse cached = CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L);
+		assertNotNull(cached);
+		assertArrayEquals(Generated.content(512), bytes(response.getEntity()));
+	}
+
+	@Test
+	public void leavesLargeGeneratedEntitiesIntact() throws IOException {
+		Generated entity = new Generated(64 << 20);
+		Response response = response(entity);
+		assertNull(CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L));
+		assertSame(entity, response.getEntity());
+		assertTrue("buffered " + entity.written, entity.written <= MAX_BYTES + 8192);
+
+		Generated small = new Generated(4096);
+		response = response(small);
+		assertNull(CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L));
+		assertArrayEquals(Generated.content(4096), bytes(response.getEntity()));
+	}
+
+	@Test
+	public void capturesStreamedEntitiesOfUnknownSize() throws IOException {
+		byte[] content = Generated.content(700);
+		Response response = response(stream(content));
+		CachedResponse cached = CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L);
+		assertNotNull(cached);
+		assertArrayEquals(content, bytes(response.getEntity()));
+		assertArrayEquals(content, bytes(cached.toRepresentation()));
+	}
+
+	@Test
+	public void resumesLargeStreamedEntities() throws IOException {
+		byte[] content = Generated.content(100000);
+		Counting in = new Counting(content);
+		InputRepresentation entity = new InputRepresentation(in, MediaType.APPLICATION_JSON);
+		entity.setTag(new Tag("v1"));
+		Response response = response(entity);
+		assertNull(CachedResponse.capture("/a", 0, response, MAX_BYTES, 0L));
+		assertTrue("read " + in.read, in.read <= MAX_BYTES + 8192);
+		Representation resumed = response.getEntity();
+		assertEquals(MediaType.APPLICATION_JSON, resumed.getMediaType());
+		assertEquals(new Tag("v1"), resumed.getTag());
+		assertArrayEquals(content, bytes(resumed));
+	}
+
+	private static Response response(Representation entity) {
+		Response response = new Response(new Request(Method.GET, "http://localhost/a"));
+		response.setStatus(Status.SUCCESS_OK);
+		response.setEntity(entity);
+		return response;
+	}
+
+	private static Representation stream(byte[] content) {
+		return new InputRepresentation(new ByteArrayInputStream(content), MediaType.TEXT_PLAIN);
+	}
+
+	private static byte[] bytes(Representation entity) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.write(out);
+		return out.toByteArray();
+	}
+
+	private static String text(int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, 'x');
+		return new String(chars);
+	}
+
+	/**
+	 * An entity of unknown size generated anew whenever it gets written
+	 */
+	private static final class Generated extends OutputRepresentation {
+
+		private final int length;
+		long written = 0L;
+
+		Generated(int length) {
+			super(MediaType.APPLICATION_OCTET_STREAM);
+			this.length = length;
+		}
+
+		static byte[] content(int length) {
+			byte[] content = new byte[length];
+			for (int i = 0; i < length; i++) {
+				content[i] = (byte) i;
+			}
+			return content;
+		}
+
+		@Override
+		public void write(OutputStream out) throws IOException {
+			byte[] chunk = new byte[256];
+			for (int i = 0; i < length; i += chunk.length) {
+				int n = Math.min(chunk.length, length - i);
+				for (int j = 0; j < n; j++) {
+					chunk[j] = (byte) (i + j);
+				}
+				out.write(chunk, 0, n);
+				written += n;
+			}
+		}
+
+	}
+
+	/**
+	 * Counts the bytes read from it
+	 */
+	private static final class Counting extends ByteArrayInputStream {
+
+		long read = 0L;
+
+		Counting(byte[] content) {
+			super(content);
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				read += n;
+			}
+			return n;
+		}
+
+	}
+
+}
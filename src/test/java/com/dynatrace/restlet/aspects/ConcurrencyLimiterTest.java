@@ -0,0 +1,87 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Behaviour of the {@link ConcurrencyLimiter}: admission against the
+ * current limit and how the limit follows the latency observed.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class ConcurrencyLimiterTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1L);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100L);
+
+	@Test
+	public void rejectsRequestsBeyondTheLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, 20, 1.5d);
+		for (int i = 0; i < 20; i++) {
+			assertTrue(limiter.acquire());
+		}
+		assertFalse(limiter.acquire());
+		assertEquals(20, limiter.getInFlight());
+		assertEquals(20L, limiter.getAccepted());
+		assertEquals(1L, limiter.getRejected());
+
+		limiter.release(FAST);
+		assertEquals(19, limiter.getInFlight());
+		assertTrue(limiter.acquire());
+	}
+
+	@Test
+	public void keepsTheLimitWithoutEnoughLoad() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, 20, 1.5d);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(limiter.acquire());
+			limiter.release(FAST);
+		}
+		assertEquals(20, limiter.getLimit());
+	}
+
+	@Test
+	public void growsUpToTheMaximumWhileLatencyIsStable() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, 20, 1.5d);
+		for (int i = 0; i < 1000; i++) {
+			while (limiter.acquire()) {
+				// fill up to the current limit
+			}
+			limiter.release(FAST);
+		}
+		assertEquals(100, limiter.getLimit());
+	}
+
+	@Test
+	public void shrinksDownToTheMinimumOnceLatencyRises() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, 20, 1.5d);
+		for (int i = 0; i < 50; i++) {
+			assertTrue(limiter.acquire());
+			limiter.release(FAST);
+		}
+		assertTrue(limiter.acquire());
+		limiter.release(SLOW);
+		int shrunk = limiter.getLimit();
+		assertTrue("limit " + shrunk, shrunk < 20);
+		for (int i = 0; i < 500; i++) {
+			assertTrue(limiter.acquire());
+			limiter.release(SLOW);
+		}
+		assertEquals(4, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void startsWithinItsBounds() {
+		assertEquals(4, new ConcurrencyLimiter(4, 100, 1, 1.5d).getLimit());
+		assertEquals(100, new ConcurrencyLimiter(4, 100, 1000, 1.5d).getLimit());
+		assertEquals(10, new ConcurrencyLimiter(20, 10, 15, 1.5d).getMinLimit());
+	}
+
+}
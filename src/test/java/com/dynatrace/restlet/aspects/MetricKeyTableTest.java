@@ -0,0 +1,158 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+/**
+ * Behaviour of a {@link MetricKeyTable}: admission of keys up to its
+ * bound, the overflow value beyond it, probing and concurrent inserts.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class MetricKeyTableTest {
+
+	/**
+	 * Aggregates the key itself
+	 */
+	private static final class Table extends MetricKeyTable<String> {
+
+		Table(int maxKeys) {
+			super(maxKeys);
+		}
+
+		@Override
+		protected String create(String key) {
+			return new String(key);
+		}
+
+	}
+
+	@Test
+	public void admitsKeysUpToItsBound() {
+		Table table = new Table(2);
+		assertEquals(0, table.id("/a"));
+		assertEquals(1, table.id("/b"));
+		assertEquals(0, table.id(new String("/a")));
+		assertEquals("/a", table.key(0));
+		assertEquals(Arrays.asList("/a", "/b"), table.keys());
+		assertSame(table.get("/a"), table.get(new String("/a")));
+		assertFalse(table.isOverflowed());
+	}
+
+	@Test
+	public void accountsFurtherKeysToTheOverflowValue() {
+		Table table = new Table(2);
+		table.get("/a");
+		table.get("/b");
+		String other = table.get("/c");
+		assertEquals(MetricKeyTable.OVERFLOW, other);
+		assertSame(other, table.get("/d"));
+		assertEquals(MetricKeyTable.OVERFLOW_ID, table.id("/c"));
+		assertEquals(MetricKeyTable.OVERFLOW_ID, table.find("/c"));
+		assertEquals(1, table.find("/b"));
+		assertEquals(3L, table.getDropped());
+		assertEquals(Arrays.asList("/a", "/b", MetricKeyTable.OVERFLOW), table.values());
+	}
+
+	@Test
+	public void treatsNullAsUnknown() {
+		Table table = new Table(2);
+		assertEquals(MetricKeyTable.UNKNOWN, table.get(null));
+		assertEquals(0, table.find(MetricKeyTable.UNKNOWN));
+		assertEquals(MetricKeyTable.OVERFLOW_ID, table.find(null));
+	}
+
+	@Test
+	public void wrapsAroundWhileProbing() {
+		// capacity 8, all keys hash to the last slot
+		Table table = new Table(4);
+		List<String> keys = new ArrayList<String>();
+		for (int n = 0; keys.size() < 4; n++) {
+			String key = "/k" + n;
+			if ((MetricKeyTable.spread(key.hashCode()) & 7) == 7) {
+				keys.add(key);
+			}
+		}
+		for (int id = 0; id < keys.size(); id++) {
+			assertEquals(id, table.id(keys.get(id)));
+		}
+		for (int id = 0; id < keys.size(); id++) {
+			assertEquals(id, table.find(new String(keys.get(id))));
+			assertEquals(keys.get(id), table.get(keys.get(id)));
+		}
+		assertEquals(MetricKeyTable.OVERFLOW_ID, table.find("/missing"));
+		assertFalse(table.isOverflowed());
+	}
+
+	@Test
+	public void looksUpComposedKeysLikeConcatenatedOnes() {
+		Table table = new Table(8);
+		String first = table.get("http", "example.com", 8080);
+		assertEquals("http://example.com:8080", first);
+		assertSame(first, table.get("http://example.com:8080"));
+		assertSame(first, table.get(new String("http"), new String("example.com"), 8080));
+		assertNotEquals(first, table.get("http", "example.com", 80));
+		assertNotEquals(first, table.get("http", "example.co", 8080));
+		assertEquals("null://null:-1", table.get(null, null, -1));
+		assertEquals(4, table.keys().size());
+	}
+
+	@Test
+	public void agreesOnASingleIdForConcurrentInserts() throws InterruptedException {
+		final int threads = 8;
+		final int keys = 32;
+		// room even if every thread lost the id it reserved for every key
+		final Table table = new Table(threads * keys);
+		final AtomicIntegerArray ids = new AtomicIntegerArray(threads * keys);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int k = 0; k < keys; k++) {
+						ids.set(thread * keys + k, table.id("/key/" + k));
+					}
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		Set<Integer> admitted = new HashSet<Integer>();
+		for (int k = 0; k < keys; k++) {
+			int id = ids.get(k);
+			for (int t = 1; t < threads; t++) {
+				assertEquals("/key/" + k, id, ids.get(t * keys + k));
+			}
+			assertNotEquals(MetricKeyTable.OVERFLOW_ID, id);
+			assertTrue(admitted.add(id));
+			assertEquals("/key/" + k, table.key(id));
+		}
+		assertEquals(keys, table.keys().size());
+		assertFalse(table.isOverflowed());
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Behaviour of the {@link PathNormalizer}: which segments get collapsed,
+ * prefix rules, interning of the routes built and its bound.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class PathNormalizerTest {
+
+	private static final PrefixTrie NO_RULES =
+			PrefixTrie.of(Collections.<String, String>emptyMap());
+
+	private static final String UUID = "123e4567-e89b-12d3-a456-426614174000";
+	private static final String MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+
+	@Test
+	public void collapsesIdsUuidsAndHashes() {
+		PathNormalizer normalizer = new PathNormalizer(16);
+		assertEquals("/api/users/{id}/orders/{id}",
+				normalizer.normalize("/api/users/42/orders/1337", NO_RULES));
+		assertEquals("/api/sessions/{uuid}",
+				normalizer.normalize("/api/sessions/" + UUID, NO_RULES));
+		assertEquals("/api/sessions/{uuid}/",
+				normalizer.normalize("/api/sessions/" + UUID.toUpperCase() + "/", NO_RULES));
+		assertEquals("/api/blobs/{hash}",
+				normalizer.normalize("/api/blobs/" + MD5, NO_RULES));
+		assertEquals("/{id}", normalizer.normalize("/7", NO_RULES));
+	}
+
+	@Test
+	public void keepsOtherSegments() {
+		PathNormalizer normalizer = new PathNormalizer(16);
+		String[] paths = {
+			"/api/users/me/settings",
+			// too short for a hash
+			"/api/blobs/d41d8cd98f00b20",
+			// hexadecimal letters only
+			"/api/blobs/deadbeefdeadbeefdeadbeef",
+			// dashes at the wrong places or too many of them
+			"/api/sessions/123e4567e-89b-12d3-a456-42661417400",
+			"/api/sessions/123e4567-e89b-12d3-a456-4266-4174000",
+			"/api/users/42x",
+			"//",
+			""
+		};
+		for (String path : paths) {
+			assertSame(path, normalizer.normalize(path, NO_RULES));
+		}
+		assertNull(normalizer.normalize(null, NO_RULES));
+	}
+
+	@Test
+	public void buildsEveryRouteOnlyOnce() {
+		PathNormalizer normalizer = new PathNormalizer(16);
+		String first = normalizer.normalize("/api/users/42", NO_RULES);
+		assertSame(first, normalizer.normalize("/api/users/43", NO_RULES));
+		assertSame(first, normalizer.normalize(new String("/api/users/42"), NO_RULES));
+	}
+
+	@Test
+	public void distinguishesRoutesOfEqualHash() {
+		// "Aa" and "BB" share their String.hashCode()
+		PathNormalizer normalizer = new PathNormalizer(16);
+		assertEquals("/Aa/{id}", normalizer.normalize("/Aa/1", NO_RULES));
+		assertEquals("/BB/{id}", normalizer.normalize("/BB/2", NO_RULES));
+		assertEquals("/{id}/Aa", normalizer.normalize("/1/Aa", NO_RULES));
+		assertEquals("/{id}/BB", normalizer.normalize("/2/BB", NO_RULES));
+		assertEquals("/Aa/{id}", normalizer.normalize("/Aa/3", NO_RULES));
+	}
+
+	@Test
+	public void appliesPrefixRulesFirst() {
+		Map<String, String> prefixes = new HashMap<String, String>();
+		prefixes.put("/static", "/static/*");
+		prefixes.put("/api/admin", "/api/admin/*");
+		PrefixTrie rules = PrefixTrie.of(prefixes);
+		PathNormalizer normalizer = new PathNormalizer(16);
+		assertEquals("/static/*", normalizer.normalize("/static/css/42.css", rules));
+		assertEquals("/api/admin/*", normalizer.normalize("/api/admin/users/42", rules));
+		assertEquals("/api/{id}", normalizer.normalize("/api/42", rules));
+	}
+
+	@Test
+	public void keepsPathsWithTooManySegments() {
+		PathNormalizer normalizer = new PathNormalizer(16);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 32; i++) {
+			sb.append('/').append(i);
+		}
+		String path = sb.toString();
+		assertSame(path, normalizer.normalize(path, NO_RULES));
+		String shorter = path.substring(0, path.lastIndexOf('/'));
+		assertEquals(shorter.replaceAll("[0-9]+", "{id}"), normalizer.normalize(shorter, NO_RULES));
+	}
+
+	@Test
+	public void reportsFurtherRoutesAsOverflow() {
+		PathNormalizer normalizer = new PathNormalizer(2);
+		assertEquals("/a/{id}", normalizer.normalize("/a/1", NO_RULES));
+		assertEquals("/b/{id}", normalizer.normalize("/b/1", NO_RULES));
+		assertEquals(MetricKeyTable.OVERFLOW, normalizer.normalize("/c/1", NO_RULES));
+		assertEquals("/a/{id}", normalizer.normalize("/a/2", NO_RULES));
+		assertSame("/plain", normalizer.normalize("/plain", NO_RULES));
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Behaviour of {@link RequestShape#write} and {@link RequestShape#read}:
+ * shapes written read back the same, strings are written only once,
+ * sizes out of range are stored as unknown respectively empty and
+ * truncated files are reported instead of being read past their end.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class RequestShapeTest {
+
+	@Test
+	public void readsBackTheFileHeader() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RequestShape.writeHeader(out);
+		assertEquals(RequestShape.MAGIC.length() + 1, out.size());
+		InputStream in = new ByteArrayInputStream(out.toByteArray());
+		RequestShape.readHeader(in);
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void rejectsForeignFiles() {
+		assertInvalidHeader(new byte[] { 'D', 'T', 'R', 'X', RequestShape.VERSION });
+		assertInvalidHeader(new byte[] { 'D', 'T', 'R', 'S', RequestShape.VERSION + 1 });
+		assertInvalidHeader(new byte[] { 'D', 'T', 'R', 'S' });
+		assertInvalidHeader(new byte[] { 'D', 'T' });
+	}
+
+	@Test
+	public void readsBackShapes() throws IOException {
+		RequestShape get = shape(0L, "GET", "/users/{id}", 2, new String[] { "Accept", "Host" }, new int[] { 16, 9 }, -1L);
+		RequestShape post = shape(1500L, "POST", "/users", 0, new String[] { "Content-Type" }, new int[] { 16 }, 42L);
+		RequestShape unmatched = shape(3000L, "GET", RequestShape.UNMATCHED, 0, new String[0], new int[0], 0L);
+		List<RequestShape> read = roundTrip(get, post, unmatched);
+		assertEquals(3, read.size());
+		assertShape(get, read.get(0));
+		assertShape(post, read.get(1));
+		assertShape(unmatched, read.get(2));
+	}
+
+	@Test
+	public void writesStringsOnlyOnce() throws IOException {
+		RequestShape shape = shape(0L, "GET", "/users/{id}", 0, new String[] { "Accept" }, new int[] { 3 }, -1L);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Map<String, Integer> written = new HashMap<String, Integer>();
+		int first = shape.write(out, written);
+		assertEquals(first, out.size());
+		int second = shape.write(out, written);
+		assertEquals(first + second, out.size());
+		// offset, three indexes, query parameters, header count, size, body
+		assertEquals(8, second);
+		assertEquals(Integer.valueOf(0), written.get("GET"));
+		assertEquals(Integer.valueOf(1), written.get("/users/{id}"));
+		assertEquals(Integer.valueOf(2), written.get("Accept"));
+
+		InputStream in = new ByteArrayInputStream(out.toByteArray());
+		List<String> strings = new ArrayList<String>();
+		RequestShape a = RequestShape.read(in, strings);
+		RequestShape b = RequestShape.read(in, strings);
+		assertNull(RequestShape.read(in, strings));
+		assertEquals(Arrays.asList("GET", "/users/{id}", "Accept"), strings);
+		assertSame(a.method, b.method);
+		assertSame(a.route, b.route);
+		assertSame(a.headerNames[0], b.headerNames[0]);
+	}
+
+	@Test
+	public void readsBackNonAsciiStrings() throws IOException {
+		RequestShape shape = shape(0L, "GET", "/b\u00fccher/{id}/\u65e5\u672c", 0, new String[] { "X-\u00e4" }, new int[] { 1 }, -1L);
+		assertShape(shape, roundTrip(shape).get(0));
+	}
+
+	@Test
+	public void rejectsStringIndexesAhead() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(0); // offset
+		out.write(1); // index of a string not introduced yet
+		try {
+			RequestShape.read(new ByteArrayInputStream(out.toByteArray()), new ArrayList<String>());
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("index"));
+		}
+	}
+
+	@Test
+	public void readsBackLargeSizes() throws IOException {
+		RequestShape shape = shape(
+			Long.MAX_VALUE, "PUT", "/blobs/{id}", Integer.MAX_VALUE,
+			new String[] { "Cookie" }, new int[] { Integer.MAX_VALUE }, 5L << 30
+		);
+		assertShape(shape, roundTrip(shape).get(0));
+	}
+
+	@Test
+	public void storesNegativeSizesAsUnknown() throws IOException {
+		RequestShape shape = shape(-5L, "GET", "/", -1, new String[] { "Accept" }, new int[] { -1 }, -42L);
+		RequestShape read = roundTrip(shape).get(0);
+		assertEquals(0L, read.offsetMicros);
+		assertEquals(0, read.queryParameters);
+		assertArrayEquals(new int[] { 0 }, read.headerSizes);
+		assertEquals(-1L, read.bodySize);
+	}
+
+	@Test
+	public void reportsTruncatedShapes() throws IOException {
+		RequestShape shape = shape(
+			1L << 40, "DELETE", "/users/{id}", 3,
+			new String[] { "Accept", "Authorization" }, new int[] { 300, 70000 }, 1L << 33
+		);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		shape.write(out, new HashMap<String, Integer>());
+		byte[] bytes = out.toByteArray();
+		assertNull(RequestShape.read(new ByteArrayInputStream(bytes, 0, 0), new ArrayList<String>()));
+		for (int length = 1; length < bytes.length; length++) {
+			try {
+				RequestShape.read(new ByteArrayInputStream(bytes, 0, length), new ArrayList<String>());
+				fail("read a shape truncated to " + length + " of " + bytes.length + " bytes");
+			} catch (EOFException e) {
+				// expected
+			}
+		}
+		assertShape(shape, RequestShape.read(new ByteArrayInputStream(bytes), new ArrayList<String>()));
+	}
+
+	private static RequestShape shape(
+			long offsetMicros,
+			String method,
+			String route,
+			int queryParameters,
+			String[] headerNames,
+			int[] headerSizes,
+			long bodySize
+	) {
+		return new RequestShape(
+			offsetMicros, method, route, queryParameters,
+			headerNames, headerSizes, bodySize
+		);
+	}
+
+	private static List<RequestShape> roundTrip(RequestShape... shapes)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RequestShape.writeHeader(out);
+		Map<String, Integer> written = new HashMap<String, Integer>();
+		for (RequestShape shape : shapes) {
+			int before = out.size();
+			assertEquals(shape.write(out, written), out.size() - before);
+		}
+		InputStream in = new ByteArrayInputStream(out.toByteArray());
+		RequestShape.readHeader(in);
+		List<String> strings = new ArrayList<String>();
+		List<RequestShape> read = new ArrayList<RequestShape>();
+		RequestShape shape;
+		while ((shape = RequestShape.read(in, strings)) != null) {
+			read.add(shape);
+		}
+		return read;
+	}
+
+	private static void assertShape(RequestShape expected, RequestShape actual) {
+		assertEquals(expected.offsetMicros, actual.offsetMicros);
+		assertEquals(expected.method, actual.method);
+		assertEquals(expected.route, actual.route);
+		assertEquals(expected.queryParameters, actual.queryParameters);
+		assertArrayEquals(expected.headerNames, actual.headerNames);
+		assertArrayEquals(expected.headerSizes, actual.headerSizes);
+		assertEquals(expected.bodySize, actual.bodySize);
+	}
+
+	private static void assertInvalidHeader(byte[] bytes) {
+		try {
+			RequestShape.readHeader(new ByteArrayInputStream(bytes));
+			fail(new String(bytes));
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Notification;
+import javax.management.NotificationListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+
+/**
+ * Behaviour of the {@link SloTracker} driven tick by tick: burn rates of
+ * the four windows, windows younger than the tracking, the ring of
+ * snapshots wrapping around and the alerts raised and ended on the way.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class SloTrackerTest {
+
+	private static final String ROUTE = "/api/users/{id}";
+
+	/**
+	 * One snapshot per minute, so the windows span 5, 30, 60 and 360 ticks
+	 * and the ring holds 361 snapshots
+	 */
+	private static final int TICK_SECONDS = 60;
+
+	private static final int SNAPSHOTS = 361;
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10L);
+	private static final long SLOW = TimeUnit.SECONDS.toNanos(1L);
+
+	private static final double DELTA = 1e-9d;
+
+	private InstrumentationConfig config;
+	private SloTracker tracker;
+	private ActiveRequest active;
+	private final List<Notification> notifications = new ArrayList<Notification>();
+
+	@Before
+	public void setup() {
+		Properties props = new Properties();
+		// a budget of 1 percent of the requests taking longer than 200 ms
+		props.setProperty(InstrumentationConfig.SLO_ROUTE + ROUTE, "99,200");
+		this.config = InstrumentationConfig.parse(props);
+		this.tracker = new SloTracker(TICK_SECONDS);
+		this.tracker.addNotificationListener(new NotificationListener() {
+			@Override
+			public void handleNotification(Notification notification, Object handback) {
+				notifications.add(notification);
+			}
+		}, null, null);
+		Request request = new Request(Method.GET, "http://localhost/api/users/42");
+		Response response = new Response(request);
+		response.setStatus(Status.SUCCESS_OK);
+		this.active = new ActiveRequest(Thread.currentThread());
+		this.active.start(request, response);
+		this.active.routed(ROUTE);
+	}
+
+	@Test
+	public void computesTheBurnRatesOfWindowsYoungerThanTheTracking() {
+		// 5 of 1000 bad is half the budget
+		tick(1000, 5);
+		assertBurnRates(0.5d, 0.5d, 0.5d, 0.5d);
+		assertEquals(1000L, stats().getRequests());
+		assertEquals(5L, stats().getBad());
+		// no requests since, all windows still reach back to the start
+		for (int i = 0; i < 4; i++) {
+			tick(0, 0);
+		}
+		assertBurnRates(0.5d, 0.5d, 0.5d, 0.5d);
+		// the 5 minute window no longer covers the first tick
+		tick(0, 0);
+		assertBurnRates(0d, 0.5d, 0.5d, 0.5d);
+		tick(100, 2);
+		assertBurnRates(2d, 7d / 1100 / 0.01d, 7d / 1100 / 0.01d, 7d / 1100 / 0.01d);
+		assertEquals(SloTracker.NONE, stats().getAlert());
+		assertTrue(notifications.isEmpty());
+	}
+
+	@Test
+	public void computesTheBurnRatesOnceTheRingWrappedAround() {
+		int ticks = SNAPSHOTS + 40;
+		for (int i = 0; i < ticks; i++) {
+			tick(100, 0);
+		}
+		for (int i = 0; i < 30; i++) {
+			tick(100, 10);
+		}
+		// 10 percent bad is ten times the budget
+		assertBurnRates(10d, 10d, 300d / 6000 / 0.01d, 300d / 36000 / 0.01d);
+		assertEquals(100L * (ticks + 30), stats().getRequests());
+		assertEquals(300L, stats().getBad());
+		// the 6 hour window starts at the oldest snapshot still kept
+		for (int i = 0; i < 330; i++) {
+			tick(100, 0);
+		}
+		assertBurnRates(0d, 0d, 0d, 300d / 36000 / 0.01d);
+		for (int i = 0; i < 29; i++) {
+			tick(100, 0);
+		}
+		assertBurnRates(0d, 0d, 0d, 10d / 36000 / 0.01d);
+		tick(100, 0);
+		assertBurnRates(0d, 0d, 0d, 0d);
+	}
+
+	@Test
+	public void raisesAndEndsAlerts() {
+		for (int i = 0; i < 60; i++) {
+			tick(100, 0);
+		}
+		// 22 percent bad burns the budget at a rate of 22, but the long
+		// windows keep the alert off until they exceed the thresholds too
+		for (int i = 1; i < 23; i++) {
+			tick(100, 22);
+			assertEquals("after " + i + " ticks", SloTracker.NONE, stats().getAlert());
+		}
+		assertEquals(0, tracker.getBurning());
+		// 6 hours: 23 * 22 of 83 * 100 requests bad, still younger
+		tick(100, 22);
+		assertEquals(SloTracker.SLOW, stats().getAlert());
+		assertEquals(1, tracker.getBurning());
+		for (int i = 24; i < 40; i++) {
+			tick(100, 22);
+			assertEquals("after " + i + " ticks", SloTracker.SLOW, stats().getAlert());
+		}
+		// 1 hour: 40 * 22 of 60 * 100 requests bad
+		tick(100, 22);
+		assertEquals(SloTracker.FAST, stats().getAlert());
+		assertEquals(1, tracker.getBurning());
+
+		// the 5 minute window ends the fast burn after the second good tick
+		tick(100, 0);
+		assertEquals(SloTracker.FAST, stats().getAlert());
+		tick(100, 0);
+		assertEquals(SloTracker.SLOW, stats().getAlert());
+		// and the 30 minute window the slow one once less than 9 of its
+		// ticks were bad
+		for (int i = 3; i < 22; i++) {
+			tick(100, 0);
+			assertEquals("after " + i + " good ticks", SloTracker.SLOW, stats().getAlert());
+		}
+		tick(100, 0);
+		assertEquals(SloTracker.NONE, stats().getAlert());
+		assertEquals(0, tracker.getBurning());
+
+		List<String> types = new ArrayList<String>();
+		long sequence = 0L;
+		for (Notification notification : notifications) {
+			types.add(notification.getType());
+			assertEquals(ROUTE, notification.getUserData());
+			assertTrue(notification.getSequenceNumber() > sequence);
+			sequence = notification.getSequenceNumber();
+		}
+		assertEquals(Arrays.asList(
+			SloTracker.NOTIFICATION_SLOW_BURN,
+			SloTracker.NOTIFICATION_FAST_BURN,
+			SloTracker.NOTIFICATION_SLOW_BURN,
+			SloTracker.NOTIFICATION_RECOVERED
+		), types);
+	}
+
+	@Test
+	public void dropsRoutesWithoutObjective() {
+		tick(100, 50);
+		assertEquals(1, tracker.getRoutes().size());
+		tracker.tick(InstrumentationConfig.parse(new Properties()));
+		assertTrue(tracker.getRoutes().isEmpty());
+		assertEquals(0, tracker.getBurning());
+	}
+
+	/**
+	 * Records the given requests and takes the next snapshot
+	 */
+	private void tick(int requests, int bad) {
+		for (int i = 0; i < requests; i++) {
+			tracker.record(config, active, (i < bad) ? SLOW : FAST);
+		}
+		tracker.tick(config);
+	}
+
+	private RouteSloStats stats() {
+		List<RouteSloStats> routes = tracker.getRoutes();
+		assertEquals(1, routes.size());
+		assertEquals(ROUTE, routes.get(0).getRoute());
+		return routes.get(0);
+	}
+
+	private void assertBurnRates(double burnRate5m, double burnRate30m, double burnRate1h, double burnRate6h) {
+		RouteSloStats stats = stats();
+		assertEquals(burnRate5m, stats.getBurnRate5m(), DELTA);
+		assertEquals(burnRate30m, stats.getBurnRate30m(), DELTA);
+		assertEquals(burnRate1h, stats.getBurnRate1h(), DELTA);
+		assertEquals(burnRate6h, stats.getBurnRate6h(), DELTA);
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.dynatrace.restlet.aspects;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Behaviour of a {@link TokenBucket}: bursts, refilling as time passes and
+ * taking permits concurrently.
+ *
+ * @author reinhard.pilz@dynatrace.com
+ *
+ */
+public class TokenBucketTest {
+
+	private static final long START = TimeUnit.SECONDS.toNanos(1000L);
+	private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100L);
+
+	/**
+	 * 10 permits per second, up to 5 at once
+	 */
+	private static final RateLimit LIMIT = RateLimit.parse("rate.client", "10,5");
+
+	@Test
+	public void grantsTheBurstAndThenWaitsForARefill() {
+		TokenBucket bucket = new TokenBucket("client", START);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0L, bucket.tryAcquire(LIMIT, START));
+		}
+		assertEquals(INTERVAL, bucket.tryAcquire(LIMIT, START));
+		assertEquals(INTERVAL / 2, bucket.tryAcquire(LIMIT, START + INTERVAL / 2));
+		assertEquals(0L, bucket.tryAcquire(LIMIT, START + INTERVAL));
+		assertEquals(INTERVAL, bucket.tryAcquire(LIMIT, START + INTERVAL));
+	}
+
+	@Test
+	public void refillsCompletelyButNotBeyondTheBurst() {
+		TokenBucket bucket = new TokenBucket("client", START);
+		for (int i = 0; i < 5; i++) {
+			bucket.tryAcquire(LIMIT, START);
+		}
+		long later = START + TimeUnit.MINUTES.toNanos(1L);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0L, bucket.tryAcquire(LIMIT, later));
+		}
+		assertEquals(INTERVAL, bucket.tryAcquire(LIMIT, later));
+	}
+
+	@Test
+	public void reportsHowLongItHasBeenFull() {
+		TokenBucket bucket = new TokenBucket("client", START);
+		assertEquals(INTERVAL, bucket.idleNanos(START + INTERVAL));
+		bucket.tryAcquire(LIMIT, START);
+		assertEquals(0L, bucket.idleNanos(START));
+		assertEquals(0L, bucket.idleNanos(START + INTERVAL));
+		assertEquals(INTERVAL, bucket.idleNanos(START + 2 * INTERVAL));
+	}
+
+	@Test
+	public void grantsTheBurstOnlyOnceToConcurrentRequests() throws InterruptedException {
+		final RateLimit limit = RateLimit.parse("rate.client", "1,100");
+		final TokenBucket bucket = new TokenBucket("client", START);
+		final AtomicInteger granted = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 1000; i++) {
+						if (bucket.tryAcquire(limit, START) == 0L) {
+							granted.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(100, granted.get());
+	}
+
+}